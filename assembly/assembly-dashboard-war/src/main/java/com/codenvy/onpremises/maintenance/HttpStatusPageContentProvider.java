@@ -10,14 +10,14 @@
  */
 package com.codenvy.onpremises.maintenance;
 
+import com.codenvy.plugin.http.HttpClient;
+import com.codenvy.plugin.http.HttpResponse;
 import java.io.IOException;
-import java.net.HttpURLConnection;
 import java.net.MalformedURLException;
 import java.net.URL;
 import javax.inject.Inject;
 import javax.inject.Named;
 import org.eclipse.che.commons.annotation.Nullable;
-import org.eclipse.che.commons.lang.IoUtil;
 
 /**
  * Provides scheduled maintenance info via sending HTTP request and returning JSON from response.
@@ -27,12 +27,15 @@ import org.eclipse.che.commons.lang.IoUtil;
 public class HttpStatusPageContentProvider implements StatusPageContentProvider {
   private final URL url;
   private final String apiKey;
+  private final HttpClient httpClient;
 
   @Inject
   public HttpStatusPageContentProvider(
       @Named("maintenance.statuspage.id") @Nullable String id,
-      @Named("maintenance.statuspage.apikey") @Nullable String key)
+      @Named("maintenance.statuspage.apikey") @Nullable String key,
+      HttpClient httpClient)
       throws MalformedURLException {
+    this.httpClient = httpClient;
     if (id != null && key != null && !id.isEmpty() && !key.isEmpty()) {
       this.url = new URL("https://api.statuspage.io/v1/pages/" + id + "/incidents/scheduled.json");
       this.apiKey = key;
@@ -44,29 +47,19 @@ public class HttpStatusPageContentProvider implements StatusPageContentProvider
 
   @Override
   public String getContent() throws IOException {
-    HttpURLConnection connection = null;
-    String content;
-
-    try {
-      if (url == null) {
-        throw new IOException("StatusPage ID and API key are not configured");
-      }
-      connection = (HttpURLConnection) url.openConnection();
-      connection.setRequestMethod("GET");
-      connection.setRequestProperty("Authorization", "OAuth " + apiKey);
-      connection.setConnectTimeout(10 * 1000);
-      connection.setReadTimeout(10 * 1000);
-
-      if (connection.getResponseCode() / 100 == 2) {
-        content = IoUtil.readAndCloseQuietly(connection.getInputStream());
-      } else {
-        throw new IOException(IoUtil.readAndCloseQuietly(connection.getErrorStream()));
-      }
-    } finally {
-      if (connection != null) {
-        connection.disconnect();
+    if (url == null) {
+      throw new IOException("StatusPage ID and API key are not configured");
+    }
+    try (HttpResponse response =
+        httpClient
+            .request("GET", url.toString())
+            .header("Authorization", "OAuth " + apiKey)
+            .readTimeout(10 * 1000)
+            .send()) {
+      if (response.isSuccessful()) {
+        return response.asString();
       }
+      throw new IOException(response.asString());
     }
-    return content;
   }
 }
@@ -17,6 +17,11 @@ import static org.eclipse.che.inject.Matchers.names;
 import com.codenvy.api.AdminApiModule;
 import com.codenvy.api.audit.server.AuditService;
 import com.codenvy.api.audit.server.AuditServicePermissionsFilter;
+import com.codenvy.api.audit.server.AuditStateStore;
+import com.codenvy.api.audit.server.AuditStateUpdater;
+import com.codenvy.api.audit.server.JpaRelatedWorkspacesFinder;
+import com.codenvy.api.audit.server.RelatedWorkspacesFinder;
+import com.codenvy.api.audit.server.jpa.JpaAuditStateStore;
 import com.codenvy.api.dao.authentication.AuthenticationDaoInterceptor;
 import com.codenvy.api.dao.authentication.PassportValidator;
 import com.codenvy.api.user.server.AdminUserService;
@@ -282,6 +287,9 @@ public class OnPremisesIdeApiModule extends AbstractModule {
 
     bind(AuditService.class);
     bind(AuditServicePermissionsFilter.class);
+    bind(RelatedWorkspacesFinder.class).to(JpaRelatedWorkspacesFinder.class);
+    bind(AuditStateStore.class).to(JpaAuditStateStore.class);
+    bind(AuditStateUpdater.class).asEagerSingleton();
 
     // authentication
 
@@ -386,6 +394,8 @@ public class OnPremisesIdeApiModule extends AbstractModule {
         MapBinder.newMapBinder(
             binder(), String.class, org.eclipse.che.plugin.docker.client.DockerConnector.class);
     dockerConnectors.addBinding("swarm").to(com.codenvy.swarm.client.SwarmDockerConnector.class);
+    bind(com.codenvy.swarm.client.NodeSelectionStrategy.class)
+        .toProvider(com.codenvy.swarm.client.NodeSelectionStrategyProvider.class);
     bindConstant().annotatedWith(Names.named("che.docker.connector")).to("swarm");
     bind(org.eclipse.che.plugin.docker.client.DockerRegistryDynamicAuthResolver.class)
         .to(AwsEcrAuthResolver.class);
@@ -428,6 +438,12 @@ public class OnPremisesIdeApiModule extends AbstractModule {
                 com.codenvy.machine.HostedServersInstanceRuntimeInfo.class)
             .build(org.eclipse.che.plugin.docker.machine.DockerMachineFactory.class));
 
+    bind(DockerEnvironmentBackupManager.class)
+        .to(com.codenvy.machine.backup.ChunkedDockerEnvironmentBackupManager.class);
+    bind(com.codenvy.machine.backup.storage.ChunkStore.class)
+        .toProvider(com.codenvy.machine.backup.storage.ChunkStoreProvider.class);
+    bind(com.codenvy.machine.backup.WorkspaceBackupService.class);
+    bind(com.codenvy.machine.backup.WorkspaceBackupServicePermissionsFilter.class);
     MapBinder<String, EnvironmentBackupManager> backupManagers =
         MapBinder.newMapBinder(binder(), String.class, EnvironmentBackupManager.class);
     backupManagers.addBinding("compose").to(DockerEnvironmentBackupManager.class);
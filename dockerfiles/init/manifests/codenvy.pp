@@ -21,6 +21,8 @@ node default {
 # coma separated list of <IP>:<PORT>
   $swarm_nodes = getValue("CODENVY_SWARM_NODES","172.17.0.1:2375")
   $swarm_log_level = getValue("CODENVY_SWARM_LOG_LEVEL","info")
+# strategy of placing workspace containers and image pulls: random, least_loaded, bin_packing or image_locality
+  $swarm_node_selection_strategy = getValue("CODENVY_SWARM_NODE_SELECTION_STRATEGY","random")
 
 ###############################
 #
@@ -62,6 +64,9 @@ node default {
   $ldap_auth_user_password_attribute = getValue("CODENVY_LDAP_AUTH_USER_PASSWORD_ATTRIBUTE","NULL")
   $ldap_auth_allow_multiple_dns = getValue("CODENVY_LDAP_AUTH_ALLOW_MULTIPLE_DNS","false")
   $ldap_auth_subtree_search = getValue("CODENVY_LDAP_AUTH_SUBTREE_SEARCH","true")
+  $ldap_auth_cache_ttl_ms = getValue("CODENVY_LDAP_AUTH_CACHE_TTL_MS","0")
+  $ldap_auth_failure_cache_ttl_ms = getValue("CODENVY_LDAP_AUTH_FAILURE_CACHE_TTL_MS","30000")
+  $ldap_auth_cache_size = getValue("CODENVY_LDAP_AUTH_CACHE_SIZE","10000")
 # LDAP connection settings
   $ldap_connection_provider= getValue("CODENVY_LDAP_CONNECTION_PROVIDER","NULL")
   $ldap_connection_bind_dn = getValue("CODENVY_LDAP_CONNECTION_BIND_DN","")
@@ -104,6 +109,11 @@ node default {
   $ldap_sync_group_additional_dn = getValue("CODENVY_LDAP_SYNC_GROUP_ADDITIONAL_DN","NULL")
   $ldap_sync_group_filter = getValue("CODENVY_LDAP_SYNC_GROUP_FILTER","NULL")
   $ldap_sync_group_attr_members = getValue("CODENVY_LDAP_SYNC_GROUP_ATTR_MEMBERS","NULL")
+  $ldap_sync_group_members_batch_size = getValue("CODENVY_LDAP_SYNC_GROUP_MEMBERS_BATCH_SIZE","100")
+  $ldap_sync_change_attr = getValue("CODENVY_LDAP_SYNC_CHANGE_ATTR","modifyTimestamp")
+  $ldap_sync_full_sync_period_ms = getValue("CODENVY_LDAP_SYNC_FULL_SYNC_PERIOD_MS","86400000")
+  $ldap_sync_batch_size = getValue("CODENVY_LDAP_SYNC_BATCH_SIZE","100")
+  $ldap_sync_threads = getValue("CODENVY_LDAP_SYNC_THREADS","2")
 
 ################################
 # Mail server configuration
@@ -223,6 +233,17 @@ node default {
   $linkedin_client_id = getValue("CODENVY_LINKEDIN_CLIENT_ID","NULL")
   $linkedin_secret = getValue("CODENVY_LINKEDIN_SECRET","NULL")
   
+# HTTP client shared by the connectors to git hosting services and CI servers
+  $http_client_connect_timeout_ms = getValue("CODENVY_HTTP_CLIENT_CONNECT_TIMEOUT_MS","10000")
+  $http_client_read_timeout_ms = getValue("CODENVY_HTTP_CLIENT_READ_TIMEOUT_MS","60000")
+  $http_client_max_connections_per_host = getValue("CODENVY_HTTP_CLIENT_MAX_CONNECTIONS_PER_HOST","20")
+  $http_client_cache_max_size_bytes = getValue("CODENVY_HTTP_CLIENT_CACHE_MAX_SIZE_BYTES","16777216")
+  $http_client_cache_ttl_ms = getValue("CODENVY_HTTP_CLIENT_CACHE_TTL_MS","0")
+  $http_client_cache_bitbucket_user_ttl_ms = getValue("CODENVY_HTTP_CLIENT_CACHE_BITBUCKET_USER_TTL_MS","300000")
+  $http_client_cache_bitbucket_repository_ttl_ms = getValue("CODENVY_HTTP_CLIENT_CACHE_BITBUCKET_REPOSITORY_TTL_MS","60000")
+  $http_client_cache_vsts_profile_ttl_ms = getValue("CODENVY_HTTP_CLIENT_CACHE_VSTS_PROFILE_TTL_MS","300000")
+  $http_client_cache_vsts_repository_ttl_ms = getValue("CODENVY_HTTP_CLIENT_CACHE_VSTS_REPOSITORY_TTL_MS","60000")
+
 # Integration
   $integration_factory_owner_username = getValue("CODENVY_INTEGRATION_FACTORY_OWNER_USERNAME","")
   $integration_factory_owner_password = getValue("CODENVY_INTEGRATION_FACTORY_OWNER_PASSWORD","")
@@ -360,6 +381,15 @@ $machine_docker_parent_cgroup = getValue("CODENVY_DOCKER_PARENT_CGROUP","NULL")
 # Sets log level of ssh connection used by rsync for workspace syncing. Value may include dot, unit suffix, e.g. 1.5m.
 # Default value INFO. Possible values: QUIET, FATAL, ERROR, INFO, VERBOSE, DEBUG1, DEBUG2, and DEBUG3
   $rsync_ssh_log_level=getValue("RSYNC_SSH_LOG_LEVEL","INFO")
+# Enables incremental backup of workspace files into deduplicated chunk storage instead of rsync.
+  $machine_backup_chunked_enabled=getValue("CODENVY_MACHINE_BACKUP_CHUNKED_ENABLED","false")
+# Format of incremental backup storage, 'files' or 'packs' (compressed pack files).
+  $machine_backup_chunked_storage_format=getValue("CODENVY_MACHINE_BACKUP_CHUNKED_STORAGE_FORMAT","files")
+# Maximum number of scheduled workspace backups running at the same time in total and on a single node.
+  $machine_backup_max_parallel_backups=getValue("CODENVY_MACHINE_BACKUP_MAX_PARALLEL_BACKUPS","20")
+  $machine_backup_max_parallel_backups_per_node=getValue("CODENVY_MACHINE_BACKUP_MAX_PARALLEL_BACKUPS_PER_NODE","3")
+# Restores recently modified workspace files first and copies the rest in background.
+  $machine_backup_restore_streaming_enabled=getValue("CODENVY_MACHINE_BACKUP_RESTORE_STREAMING_ENABLED","false")
 
 ###############################
 # User mail blacklist
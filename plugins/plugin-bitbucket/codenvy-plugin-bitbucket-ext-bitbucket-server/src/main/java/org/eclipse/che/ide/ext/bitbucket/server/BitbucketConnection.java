@@ -10,8 +10,8 @@
  */
 package org.eclipse.che.ide.ext.bitbucket.server;
 
+import com.codenvy.plugin.http.HttpRequest;
 import java.io.IOException;
-import java.net.HttpURLConnection;
 import java.util.List;
 import org.eclipse.che.api.core.ServerException;
 import org.eclipse.che.ide.ext.bitbucket.shared.BitbucketPullRequest;
@@ -125,13 +125,13 @@ public interface BitbucketConnection {
       throws IOException, BitbucketException, ServerException;
 
   /**
-   * Add authorization header to given HTTP connection.
+   * Add authorization header to given HTTP request.
    *
-   * @param http HTTP connection
+   * @param request HTTP request
    * @param requestMethod request method. Is needed when using oAuth1
    * @param requestUrl request url. Is needed when using oAuth1
    * @throws IOException if i/o error occurs when try to refresh expired oauth token
    */
-  void authorizeRequest(HttpURLConnection http, String requestMethod, String requestUrl)
+  void authorizeRequest(HttpRequest request, String requestMethod, String requestUrl)
       throws IOException;
 }
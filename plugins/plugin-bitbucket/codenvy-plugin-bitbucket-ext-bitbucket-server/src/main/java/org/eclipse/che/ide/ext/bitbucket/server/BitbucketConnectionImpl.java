@@ -25,8 +25,9 @@ import static org.eclipse.che.ide.ext.bitbucket.server.rest.BitbucketRequestUtil
 import static org.eclipse.che.ide.ext.bitbucket.server.rest.BitbucketRequestUtils.parseJsonResponse;
 import static org.eclipse.che.ide.ext.bitbucket.server.rest.BitbucketRequestUtils.postJson;
 
+import com.codenvy.plugin.http.HttpClient;
+import com.codenvy.plugin.http.HttpRequest;
 import java.io.IOException;
-import java.net.HttpURLConnection;
 import java.util.ArrayList;
 import java.util.List;
 import org.eclipse.che.api.auth.shared.dto.OAuthToken;
@@ -49,22 +50,37 @@ public class BitbucketConnectionImpl implements BitbucketConnection {
 
   private final URLTemplates urlTemplates;
   private final OAuthTokenProvider tokenProvider;
-
-  BitbucketConnectionImpl(OAuthTokenProvider tokenProvider) {
+  private final HttpClient httpClient;
+  private final long userCacheTtlMs;
+  private final long repositoryCacheTtlMs;
+
+  BitbucketConnectionImpl(
+      OAuthTokenProvider tokenProvider,
+      HttpClient httpClient,
+      long userCacheTtlMs,
+      long repositoryCacheTtlMs) {
     this.tokenProvider = tokenProvider;
+    this.httpClient = httpClient;
+    this.userCacheTtlMs = userCacheTtlMs;
+    this.repositoryCacheTtlMs = repositoryCacheTtlMs;
     this.urlTemplates = new BitbucketURLTemplates();
   }
 
   @Override
   public BitbucketUser getUser() throws ServerException, IOException, BitbucketException {
-    final String response = getJson(this, urlTemplates.userUrl());
+    final String response = getJson(httpClient, this, urlTemplates.userUrl(), userCacheTtlMs);
     return parseJsonResponse(response, BitbucketUser.class);
   }
 
   @Override
   public BitbucketRepository getRepository(String owner, String repositorySlug)
       throws IOException, BitbucketException, ServerException {
-    final String response = getJson(this, urlTemplates.repositoryUrl(owner, repositorySlug));
+    final String response =
+        getJson(
+            httpClient,
+            this,
+            urlTemplates.repositoryUrl(owner, repositorySlug),
+            repositoryCacheTtlMs);
     return parseJsonResponse(response, BitbucketRepository.class);
   }
 
@@ -79,7 +95,7 @@ public class BitbucketConnectionImpl implements BitbucketConnection {
       final String url =
           nextPageUrl == null ? urlTemplates.pullRequestUrl(owner, repositorySlug) : nextPageUrl;
 
-      pullRequestsPage = getBitbucketPage(this, url, BitbucketPullRequestsPage.class);
+      pullRequestsPage = getBitbucketPage(httpClient, this, url, BitbucketPullRequestsPage.class);
       pullRequests.addAll(pullRequestsPage.getValues());
     } while (pullRequestsPage.getNext() != null);
 
@@ -91,7 +107,7 @@ public class BitbucketConnectionImpl implements BitbucketConnection {
       String owner, String repositorySlug, BitbucketPullRequest pullRequest)
       throws ServerException, IOException, BitbucketException {
     final String url = urlTemplates.pullRequestUrl(owner, repositorySlug);
-    final String response = postJson(this, url, toJson(pullRequest, CAMEL_UNDERSCORE));
+    final String response = postJson(httpClient, this, url, toJson(pullRequest, CAMEL_UNDERSCORE));
     return parseJsonResponse(response, BitbucketPullRequest.class);
   }
 
@@ -101,7 +117,7 @@ public class BitbucketConnectionImpl implements BitbucketConnection {
       throws ServerException, IOException, BitbucketException {
     final String url =
         urlTemplates.updatePullRequestUrl(owner, repositorySlug, pullRequest.getId());
-    String response = doRequest(this, PUT, url, APPLICATION_JSON, toJson(pullRequest));
+    String response = doRequest(httpClient, this, PUT, url, APPLICATION_JSON, toJson(pullRequest));
     return parseJsonResponse(response, BitbucketPullRequest.class);
   }
 
@@ -116,7 +132,7 @@ public class BitbucketConnectionImpl implements BitbucketConnection {
       final String url =
           nextPageUrl == null ? urlTemplates.forksUrl(owner, repositorySlug) : nextPageUrl;
 
-      repositoryPage = getBitbucketPage(this, url, BitbucketRepositoriesPage.class);
+      repositoryPage = getBitbucketPage(httpClient, this, url, BitbucketRepositoriesPage.class);
       repositories.addAll(repositoryPage.getValues());
     } while (repositoryPage.getNext() != null);
 
@@ -129,18 +145,19 @@ public class BitbucketConnectionImpl implements BitbucketConnection {
       throws IOException, BitbucketException, ServerException {
     final String url = urlTemplates.forkRepositoryUrl(owner, repositorySlug);
     final String data = "name=" + encode(forkName, "UTF-8") + "&is_private=" + isForkPrivate;
-    final String response = doRequest(this, POST, url, APPLICATION_FORM_URLENCODED, data);
+    final String response =
+        doRequest(httpClient, this, POST, url, APPLICATION_FORM_URLENCODED, data);
     return parseJsonResponse(response, BitbucketRepositoryFork.class);
   }
 
   @Override
-  public void authorizeRequest(HttpURLConnection http, String requestMethod, String requestUrl)
+  public void authorizeRequest(HttpRequest request, String requestMethod, String requestUrl)
       throws IOException {
     final OAuthToken token =
         tokenProvider.getToken(
             "bitbucket", EnvironmentContext.getCurrent().getSubject().getUserId());
     if (token != null) {
-      http.setRequestProperty(AUTHORIZATION, "Bearer " + token.getToken());
+      request.header(AUTHORIZATION, "Bearer " + token.getToken());
     }
   }
 }
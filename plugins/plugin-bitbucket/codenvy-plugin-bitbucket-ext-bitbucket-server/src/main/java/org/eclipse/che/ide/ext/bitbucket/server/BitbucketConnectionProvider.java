@@ -10,6 +10,10 @@
  */
 package org.eclipse.che.ide.ext.bitbucket.server;
 
+import static org.eclipse.che.ide.ext.bitbucket.server.rest.BitbucketRequestUtils.REPOSITORY_CACHE_TTL_MS;
+import static org.eclipse.che.ide.ext.bitbucket.server.rest.BitbucketRequestUtils.USER_CACHE_TTL_MS;
+
+import com.codenvy.plugin.http.HttpClient;
 import javax.inject.Inject;
 import javax.inject.Named;
 import javax.inject.Provider;
@@ -33,21 +37,35 @@ public class BitbucketConnectionProvider implements Provider<BitbucketConnection
   private final OAuthTokenProvider tokenProvider;
   private final OAuthAuthorizationHeaderProvider headerProvider;
   private final HttpJsonRequestFactory requestFactory;
+  private final HttpClient httpClient;
   private final String apiEndpoint;
 
+  private volatile long userCacheTtlMs = USER_CACHE_TTL_MS;
+  private volatile long repositoryCacheTtlMs = REPOSITORY_CACHE_TTL_MS;
+
   @Inject
   BitbucketConnectionProvider(
       OAuthTokenProvider tokenProvider,
       OAuthAuthorizationHeaderProvider headerProvider,
       HttpJsonRequestFactory requestFactory,
+      HttpClient httpClient,
       @Named("che.api") String apiEndpoint) {
 
     this.tokenProvider = tokenProvider;
     this.headerProvider = headerProvider;
     this.requestFactory = requestFactory;
+    this.httpClient = httpClient;
     this.apiEndpoint = apiEndpoint;
   }
 
+  @com.google.inject.Inject(optional = true)
+  void configureCache(
+      @Named("http.client.cache.bitbucket.user_ttl_ms") long userCacheTtlMs,
+      @Named("http.client.cache.bitbucket.repository_ttl_ms") long repositoryCacheTtlMs) {
+    this.userCacheTtlMs = userCacheTtlMs;
+    this.repositoryCacheTtlMs = repositoryCacheTtlMs;
+  }
+
   @Override
   public BitbucketConnection get() {
     String endpoint = null;
@@ -63,7 +81,9 @@ public class BitbucketConnectionProvider implements Provider<BitbucketConnection
     }
 
     return "https://bitbucket.org".equals(endpoint)
-        ? new BitbucketConnectionImpl(tokenProvider)
-        : new BitbucketServerConnectionImpl(endpoint, headerProvider);
+        ? new BitbucketConnectionImpl(
+            tokenProvider, httpClient, userCacheTtlMs, repositoryCacheTtlMs)
+        : new BitbucketServerConnectionImpl(
+            endpoint, headerProvider, httpClient, userCacheTtlMs, repositoryCacheTtlMs);
   }
 }
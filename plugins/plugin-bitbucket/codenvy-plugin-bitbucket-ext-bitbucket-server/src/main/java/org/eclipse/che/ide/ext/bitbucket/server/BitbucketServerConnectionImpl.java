@@ -29,8 +29,9 @@ import static org.eclipse.che.ide.ext.bitbucket.server.rest.BitbucketRequestUtil
 import static org.eclipse.che.ide.ext.bitbucket.server.rest.BitbucketRequestUtils.parseJsonResponse;
 import static org.eclipse.che.ide.ext.bitbucket.server.rest.BitbucketRequestUtils.postJson;
 
+import com.codenvy.plugin.http.HttpClient;
+import com.codenvy.plugin.http.HttpRequest;
 import java.io.IOException;
-import java.net.HttpURLConnection;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
@@ -59,11 +60,21 @@ public class BitbucketServerConnectionImpl implements BitbucketConnection {
   private final URLTemplates urlTemplates;
   private final String bitbucketEndpoint;
   private final OAuthAuthorizationHeaderProvider headerProvider;
+  private final HttpClient httpClient;
+  private final long userCacheTtlMs;
+  private final long repositoryCacheTtlMs;
 
   BitbucketServerConnectionImpl(
-      String bitbucketEndpoint, OAuthAuthorizationHeaderProvider headerProvider) {
+      String bitbucketEndpoint,
+      OAuthAuthorizationHeaderProvider headerProvider,
+      HttpClient httpClient,
+      long userCacheTtlMs,
+      long repositoryCacheTtlMs) {
     this.bitbucketEndpoint = bitbucketEndpoint;
     this.headerProvider = headerProvider;
+    this.httpClient = httpClient;
+    this.userCacheTtlMs = userCacheTtlMs;
+    this.repositoryCacheTtlMs = repositoryCacheTtlMs;
     this.urlTemplates = new BitbucketServerURLTemplates(bitbucketEndpoint);
   }
 
@@ -72,12 +83,13 @@ public class BitbucketServerConnectionImpl implements BitbucketConnection {
     // Need to check if user has permissions to retrieve full information from Bitbucket Server rest
     // API.
     // Other requests will not fail with 403 error, but may return empty data.
-    doRequest(this, GET, bitbucketEndpoint + "/rest/api/latest/users", null, null);
+    doRequest(httpClient, this, GET, bitbucketEndpoint + "/rest/api/latest/users", null, null);
 
     // Bitbucket Server does not have direct API method to retrieve authenticated user.
     // Authenticated user exists in http clone url of any repository
     // (http://<user>@bitbucketserver.com/scm/project/repository.git).
-    String response = getJson(this, bitbucketEndpoint + "/rest/api/latest/repos");
+    String response =
+        getJson(httpClient, this, bitbucketEndpoint + "/rest/api/latest/repos", userCacheTtlMs);
     Optional<BitbucketLink> optional =
         parseJsonResponse(response, BitbucketServerRepositoriesPage.class)
             .getValues()
@@ -90,7 +102,8 @@ public class BitbucketServerConnectionImpl implements BitbucketConnection {
     if (optional.isPresent()) {
       String href = optional.get().getHref();
       String user = href.substring(href.indexOf("://") + 3, href.indexOf("@"));
-      final String userResponse = getJson(this, urlTemplates.userUrl() + user);
+      final String userResponse =
+          getJson(httpClient, this, urlTemplates.userUrl() + user, userCacheTtlMs);
       return convertToBitbucketUser(parseJsonResponse(userResponse, BitbucketServerUser.class));
     } else {
       throw new BitbucketException(
@@ -101,7 +114,12 @@ public class BitbucketServerConnectionImpl implements BitbucketConnection {
   @Override
   public BitbucketRepository getRepository(String owner, String repositorySlug)
       throws IOException, BitbucketException, ServerException {
-    final String response = getJson(this, urlTemplates.repositoryUrl(owner, repositorySlug));
+    final String response =
+        getJson(
+            httpClient,
+            this,
+            urlTemplates.repositoryUrl(owner, repositorySlug),
+            repositoryCacheTtlMs);
     return convertToBitbucketRepository(
         parseJsonResponse(response, BitbucketServerRepository.class));
   }
@@ -119,7 +137,8 @@ public class BitbucketServerConnectionImpl implements BitbucketConnection {
                   ? "?start=" + valueOf(pullRequestsPage.getNextPageStart())
                   : "");
 
-      pullRequestsPage = getBitbucketPage(this, url, BitbucketServerPullRequestsPage.class);
+      pullRequestsPage =
+          getBitbucketPage(httpClient, this, url, BitbucketServerPullRequestsPage.class);
       pullRequests.addAll(
           pullRequestsPage
               .getValues()
@@ -138,7 +157,7 @@ public class BitbucketServerConnectionImpl implements BitbucketConnection {
       throws ServerException, IOException, BitbucketException {
     final String url = urlTemplates.pullRequestUrl(owner, repositorySlug);
     final String response =
-        postJson(this, url, toJson(convertToBitbucketServerPullRequest(pullRequest)));
+        postJson(httpClient, this, url, toJson(convertToBitbucketServerPullRequest(pullRequest)));
     return convertToBitbucketPullRequest(
         parseJsonResponse(response, BitbucketServerPullRequest.class));
   }
@@ -149,7 +168,7 @@ public class BitbucketServerConnectionImpl implements BitbucketConnection {
       throws ServerException, IOException, BitbucketException {
     final String url =
         urlTemplates.updatePullRequestUrl(owner, repositorySlug, pullRequest.getId());
-    String response = doRequest(this, PUT, url, APPLICATION_JSON, toJson(pullRequest));
+    String response = doRequest(httpClient, this, PUT, url, APPLICATION_JSON, toJson(pullRequest));
     return convertToBitbucketPullRequest(
         parseJsonResponse(response, BitbucketServerPullRequest.class));
   }
@@ -166,7 +185,8 @@ public class BitbucketServerConnectionImpl implements BitbucketConnection {
               + (repositoriesPage != null
                   ? "?start=" + valueOf(repositoriesPage.getNextPageStart())
                   : "");
-      repositoriesPage = getBitbucketPage(this, url, BitbucketServerRepositoriesPage.class);
+      repositoriesPage =
+          getBitbucketPage(httpClient, this, url, BitbucketServerRepositoriesPage.class);
       repositories.addAll(
           repositoriesPage
               .getValues()
@@ -184,12 +204,16 @@ public class BitbucketServerConnectionImpl implements BitbucketConnection {
       throws IOException, BitbucketException, ServerException {
     final String url = urlTemplates.repositoryUrl(owner, repositorySlug);
     final String response =
-        postJson(this, url, toJson(newDto(BitbucketServerRepository.class).withName(forkName)));
+        postJson(
+            httpClient,
+            this,
+            url,
+            toJson(newDto(BitbucketServerRepository.class).withName(forkName)));
     return parseJsonResponse(response, BitbucketRepositoryFork.class);
   }
 
   @Override
-  public void authorizeRequest(HttpURLConnection http, String requestMethod, String requestUrl) {
+  public void authorizeRequest(HttpRequest request, String requestMethod, String requestUrl) {
     String authorizationHeader =
         headerProvider.getAuthorizationHeader(
             "bitbucket-server",
@@ -198,7 +222,7 @@ public class BitbucketServerConnectionImpl implements BitbucketConnection {
             requestUrl,
             null);
     if (authorizationHeader != null) {
-      http.setRequestProperty(AUTHORIZATION, authorizationHeader);
+      request.header(AUTHORIZATION, authorizationHeader);
     }
   }
 }
@@ -13,18 +13,15 @@ package org.eclipse.che.ide.ext.bitbucket.server.rest;
 import static javax.ws.rs.HttpMethod.GET;
 import static javax.ws.rs.HttpMethod.POST;
 import static javax.ws.rs.core.HttpHeaders.ACCEPT;
-import static javax.ws.rs.core.HttpHeaders.CONTENT_TYPE;
 import static javax.ws.rs.core.MediaType.APPLICATION_JSON;
 import static org.eclipse.che.commons.json.JsonNameConventions.CAMEL_UNDERSCORE;
 
-import java.io.BufferedWriter;
-import java.io.ByteArrayOutputStream;
+import com.codenvy.plugin.http.HttpClient;
+import com.codenvy.plugin.http.HttpRequest;
+import com.codenvy.plugin.http.HttpResponse;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.OutputStreamWriter;
-import java.net.HttpURLConnection;
-import java.net.URL;
 import org.eclipse.che.api.core.ServerException;
+import org.eclipse.che.commons.env.EnvironmentContext;
 import org.eclipse.che.commons.json.JsonHelper;
 import org.eclipse.che.commons.json.JsonParseException;
 import org.eclipse.che.ide.ext.bitbucket.server.BitbucketConnection;
@@ -38,8 +35,23 @@ import org.eclipse.che.ide.ext.bitbucket.server.BitbucketException;
 public class BitbucketRequestUtils {
 
   /**
-   * Returns Bitbucket page object from Bitbucket API request.
+   * Default of how long user profiles are served from the response cache without revalidation, see
+   * {@code http.client.cache.bitbucket.user_ttl_ms}.
+   */
+  public static final long USER_CACHE_TTL_MS = 5 * 60 * 1000;
+
+  /**
+   * Default of how long repositories are served from the response cache without revalidation, see
+   * {@code http.client.cache.bitbucket.repository_ttl_ms}.
+   */
+  public static final long REPOSITORY_CACHE_TTL_MS = 60 * 1000;
+
+  /**
+   * Returns Bitbucket page object from Bitbucket API request, the page is parsed right from the
+   * response stream. The page is served from the response cache of the current user when Bitbucket
+   * confirms that it is not modified.
    *
+   * @param httpClient client to send the HTTP request with
    * @param connection {@link BitbucketConnection} connection object to authorize the HTTP request
    * @param url request url
    * @param pageClass Bitbucket page object to return
@@ -48,41 +60,72 @@ public class BitbucketRequestUtils {
    * @throws BitbucketException if Bitbucket returned unexpected or error status for request
    */
   public static <T> T getBitbucketPage(
-      BitbucketConnection connection, String url, Class<T> pageClass)
+      HttpClient httpClient, BitbucketConnection connection, String url, Class<T> pageClass)
       throws IOException, BitbucketException, ServerException {
-    final String response = getJson(connection, url);
-    return parseJsonResponse(response, pageClass);
+    final HttpRequest request = newRequest(httpClient, connection, GET, url).cache(getUserId(), 0);
+    try (HttpResponse response = send(request)) {
+      return JsonHelper.fromJson(response.getBody(), pageClass, null, CAMEL_UNDERSCORE);
+    } catch (JsonParseException e) {
+      throw new ServerException(e);
+    }
+  }
+
+  /**
+   * Returns a Json in String format from GET Bitbucket API request. The response is served from the
+   * response cache of the current user when Bitbucket confirms that it is not modified.
+   *
+   * @param httpClient client to send the HTTP request with
+   * @param connection {@link BitbucketConnection} connection object to authorize the HTTP request
+   * @param url request url
+   * @throws IOException if any i/o errors occurs
+   * @throws BitbucketException if Bitbucket returned unexpected or error status for request
+   */
+  public static String getJson(HttpClient httpClient, BitbucketConnection connection, String url)
+      throws IOException, BitbucketException {
+    return getJson(httpClient, connection, url, 0);
   }
 
   /**
-   * Returns a Json in String format from GET Bitbucket API request.
+   * Returns a Json in String format from GET Bitbucket API request. The response is served from the
+   * response cache of the current user without a request for the given ttl, after that it is
+   * revalidated.
    *
+   * @param httpClient client to send the HTTP request with
    * @param connection {@link BitbucketConnection} connection object to authorize the HTTP request
    * @param url request url
+   * @param cacheTtlMs how long the cached response is returned without revalidation
    * @throws IOException if any i/o errors occurs
    * @throws BitbucketException if Bitbucket returned unexpected or error status for request
    */
-  public static String getJson(BitbucketConnection connection, String url)
+  public static String getJson(
+      HttpClient httpClient, BitbucketConnection connection, String url, long cacheTtlMs)
       throws IOException, BitbucketException {
-    return doRequest(connection, GET, url, null, null);
+    final HttpRequest request =
+        newRequest(httpClient, connection, GET, url).cache(getUserId(), cacheTtlMs);
+    try (HttpResponse response = send(request)) {
+      return response.asString();
+    }
   }
 
   /**
    * Returns a Json in String format from POST Bitbucket API request.
    *
+   * @param httpClient client to send the HTTP request with
    * @param connection {@link BitbucketConnection} connection object to authorize the HTTP request
    * @param url request url
    * @throws IOException if any i/o errors occurs
    * @throws BitbucketException if Bitbucket returned unexpected or error status for request
    */
-  public static String postJson(BitbucketConnection connection, String url, String data)
+  public static String postJson(
+      HttpClient httpClient, BitbucketConnection connection, String url, String data)
       throws IOException, BitbucketException {
-    return doRequest(connection, POST, url, APPLICATION_JSON, data);
+    return doRequest(httpClient, connection, POST, url, APPLICATION_JSON, data);
   }
 
   /**
    * Returns a Json in String format from specified Bitbucket API request.
    *
+   * @param httpClient client to send the HTTP request with
    * @param connection {@link BitbucketConnection} connection object to authorize the HTTP request
    * @param requestMethod HTTP request method
    * @param url request url
@@ -90,48 +133,19 @@ public class BitbucketRequestUtils {
    * @throws BitbucketException if Bitbucket returned unexpected or error status for request
    */
   public static String doRequest(
+      HttpClient httpClient,
       BitbucketConnection connection,
       String requestMethod,
       String url,
       String contentType,
       String data)
       throws IOException, BitbucketException {
-    HttpURLConnection http = null;
-
-    try {
-
-      http = (HttpURLConnection) new URL(url).openConnection();
-      http.setInstanceFollowRedirects(false);
-      http.setRequestMethod(requestMethod);
-      http.setRequestProperty(ACCEPT, APPLICATION_JSON);
-
-      connection.authorizeRequest(http, requestMethod, url);
-
-      if (data != null && !data.isEmpty()) {
-        http.setRequestProperty(CONTENT_TYPE, contentType);
-        http.setDoOutput(true);
-
-        try (BufferedWriter writer =
-            new BufferedWriter(new OutputStreamWriter(http.getOutputStream()))) {
-          writer.write(data);
-        }
-      }
-
-      if (http.getResponseCode() / 100 != 2) {
-        throw fault(http);
-      }
-
-      String result;
-      try (InputStream input = http.getInputStream()) {
-        result = readBody(input, http.getContentLength());
-      }
-
-      return result;
-
-    } finally {
-      if (http != null) {
-        http.disconnect();
-      }
+    final HttpRequest request = newRequest(httpClient, connection, requestMethod, url);
+    if (data != null && !data.isEmpty()) {
+      request.body(contentType, data);
+    }
+    try (HttpResponse response = send(request)) {
+      return response.asString();
     }
   }
 
@@ -151,42 +165,29 @@ public class BitbucketRequestUtils {
     }
   }
 
-  private static BitbucketException fault(final HttpURLConnection http) throws IOException {
-    final int responseCode = http.getResponseCode();
-
-    try (final InputStream stream =
-        (responseCode >= 400 ? http.getErrorStream() : http.getInputStream())) {
+  private static HttpRequest newRequest(
+      HttpClient httpClient, BitbucketConnection connection, String requestMethod, String url)
+      throws IOException {
+    final HttpRequest request =
+        httpClient
+            .request(requestMethod, url)
+            .followRedirects(false)
+            .header(ACCEPT, APPLICATION_JSON);
+    connection.authorizeRequest(request, requestMethod, url);
+    return request;
+  }
 
-      String body = null;
-      if (stream != null) {
-        final int length = http.getContentLength();
-        body = readBody(stream, length);
+  private static HttpResponse send(HttpRequest request) throws IOException, BitbucketException {
+    final HttpResponse response = request.send();
+    if (!response.isSuccessful()) {
+      try (HttpResponse error = response) {
+        throw new BitbucketException(error.getStatus(), error.asString(), error.getContentType());
       }
-
-      return new BitbucketException(responseCode, body, http.getContentType());
     }
+    return response;
   }
 
-  private static String readBody(final InputStream input, final int contentLength)
-      throws IOException {
-    String body = null;
-    if (contentLength > 0) {
-      byte[] b = new byte[contentLength];
-      int off = 0;
-      int i;
-      while ((i = input.read(b, off, contentLength - off)) > 0) {
-        off += i;
-      }
-      body = new String(b);
-    } else if (contentLength < 0) {
-      ByteArrayOutputStream bout = new ByteArrayOutputStream();
-      byte[] buf = new byte[1024];
-      int point;
-      while ((point = input.read(buf)) != -1) {
-        bout.write(buf, 0, point);
-      }
-      body = bout.toString();
-    }
-    return body;
+  private static String getUserId() {
+    return EnvironmentContext.getCurrent().getSubject().getUserId();
   }
 }
@@ -11,13 +11,15 @@
 package com.codenvy.plugin.webhooks.bitbucketserver;
 
 import static com.google.common.base.Strings.isNullOrEmpty;
+import static java.util.stream.Collectors.joining;
 import static java.util.stream.Collectors.toSet;
 import static javax.ws.rs.core.MediaType.APPLICATION_JSON;
 
-import com.codenvy.plugin.webhooks.AuthConnection;
 import com.codenvy.plugin.webhooks.BaseWebhookService;
 import com.codenvy.plugin.webhooks.CloneUrlMatcher;
 import com.codenvy.plugin.webhooks.FactoryConnection;
+import com.codenvy.plugin.webhooks.WebhookEvent;
+import com.codenvy.plugin.webhooks.WebhookTokenProvider;
 import com.codenvy.plugin.webhooks.bitbucketserver.shared.Changeset;
 import com.codenvy.plugin.webhooks.bitbucketserver.shared.Project;
 import com.codenvy.plugin.webhooks.bitbucketserver.shared.PushEvent;
@@ -34,11 +36,13 @@ import javax.inject.Named;
 import javax.ws.rs.Consumes;
 import javax.ws.rs.POST;
 import javax.ws.rs.Path;
+import javax.ws.rs.core.Response;
 import org.eclipse.che.api.core.ServerException;
 import org.eclipse.che.api.core.rest.shared.dto.Link;
 import org.eclipse.che.api.factory.shared.dto.FactoryDto;
 import org.eclipse.che.api.workspace.shared.dto.SourceStorageDto;
 import org.eclipse.che.commons.env.EnvironmentContext;
+import org.eclipse.che.dto.server.DtoFactory;
 import org.eclipse.che.inject.ConfigurationProperties;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -46,8 +50,13 @@ import org.slf4j.LoggerFactory;
 @Path("/bitbucketserver-webhook")
 public class BitbucketServerWebhookService extends BaseWebhookService {
 
+  public static final String BITBUCKET_SERVER_WEBHOOK_EVENT_SOURCE = "bitbucketserver";
+
   private static final Logger LOG = LoggerFactory.getLogger(BitbucketServerWebhookService.class);
 
+  private static final String MERGE_COMMIT_MESSAGE_PREFIX = "Merge pull request #";
+  private static final String PUSH_EVENT_TYPE = "push";
+
   private static final String WEBHOOK_PROPERTY_PATTERN = "env.CODENVY_BITBUCKET_SERVER_WEBHOOK_.+";
   private static final String WEBHOOK_REPOSITORY_URL_SUFFIX = "_REPOSITORY_URL";
   private static final String WEBHOOK_FACTORY_ID_SUFFIX_PATTERN = "_FACTORY.+_ID";
@@ -58,13 +67,11 @@ public class BitbucketServerWebhookService extends BaseWebhookService {
 
   @Inject
   public BitbucketServerWebhookService(
-      final AuthConnection authConnection,
       final FactoryConnection factoryConnection,
       ConfigurationProperties configurationProperties,
-      @Named("integration.factory.owner.username") String username,
-      @Named("integration.factory.owner.password") String password,
+      WebhookTokenProvider tokenProvider,
       @Named("bitbucket.endpoint") String bitbucketEndpoint) {
-    super(authConnection, factoryConnection, configurationProperties, username, password);
+    super(factoryConnection, configurationProperties, tokenProvider);
     this.configurationProperties = configurationProperties;
     this.bitbucketEndpoint = bitbucketEndpoint;
 
@@ -91,7 +98,23 @@ public class BitbucketServerWebhookService extends BaseWebhookService {
 
   @POST
   @Consumes(APPLICATION_JSON)
-  public void handleWebhookEvent(PushEvent event) throws ServerException {
+  public Response handleWebhookEvent(PushEvent event) throws ServerException {
+    try {
+      final String payload = DtoFactory.getInstance().toJson(event);
+      return submit(
+              BITBUCKET_SERVER_WEBHOOK_EVENT_SOURCE, PUSH_EVENT_TYPE, coalescingKey(event), payload)
+          ? Response.accepted().build()
+          : Response.noContent().build();
+    } catch (IOException e) {
+      LOG.warn(e.getMessage());
+      throw new ServerException(e.getMessage());
+    }
+  }
+
+  @Override
+  public void handle(WebhookEvent webhookEvent) throws ServerException, IOException {
+    final PushEvent event =
+        DtoFactory.getInstance().createDtoFromJson(webhookEvent.getPayload(), PushEvent.class);
     EnvironmentContext.getCurrent().setSubject(new TokenSubject());
     LOG.debug("{}", event);
     try {
@@ -107,7 +130,7 @@ public class BitbucketServerWebhookService extends BaseWebhookService {
           continue;
         }
         String commitMessage = changeset.get().getToCommit().getMessage();
-        if (commitMessage.startsWith("Merge pull request #")) {
+        if (commitMessage.startsWith(MERGE_COMMIT_MESSAGE_PREFIX)) {
           handleMergeEvent(event, commitMessage);
           continue;
         }
@@ -117,14 +140,35 @@ public class BitbucketServerWebhookService extends BaseWebhookService {
           handlePushEvent(event, refChange.getRefId().substring(11));
         }
       }
-    } catch (IOException e) {
-      LOG.warn(e.getMessage());
-      throw new ServerException(e.getMessage());
     } finally {
       EnvironmentContext.reset();
     }
   }
 
+  /**
+   * Returns the key which makes the queue keep only the last of pending pushes of the same refs, or
+   * null if the push contains merge commits which update factories to the merged commit.
+   */
+  private String coalescingKey(PushEvent event) {
+    if (event
+        .getChangesets()
+        .getValues()
+        .stream()
+        .anyMatch(
+            changeset ->
+                changeset.getToCommit().getMessage().startsWith(MERGE_COMMIT_MESSAGE_PREFIX))) {
+      return null;
+    }
+    final Repository repository = event.getRepository();
+    return BITBUCKET_SERVER_WEBHOOK_EVENT_SOURCE
+        + ':'
+        + repository.getProject().getKey()
+        + '/'
+        + repository.getSlug()
+        + ':'
+        + event.getRefChanges().stream().map(RefChange::getRefId).sorted().collect(joining(","));
+  }
+
   @VisibleForTesting
   void handlePushEvent(PushEvent event, String branch) throws ServerException, IOException {
     Repository repository = event.getRepository();
@@ -184,7 +228,11 @@ public class BitbucketServerWebhookService extends BaseWebhookService {
     return sb.toString().toLowerCase();
   }
 
-  private Set<String> getFactoriesIDs(final String repositoryUrl) throws ServerException {
+  private Set<String> getFactoriesIDs(final String repositoryUrl) {
+    return getWebhookFactoryIds(repositoryUrl, () -> readFactoriesIDs(repositoryUrl));
+  }
+
+  private Set<String> readFactoriesIDs(final String repositoryUrl) {
     Map<String, String> properties =
         configurationProperties.getProperties(WEBHOOK_PROPERTY_PATTERN);
 
@@ -10,8 +10,12 @@
  */
 package com.codenvy.plugin.webhooks.bitbucketserver.inject;
 
+import static com.codenvy.plugin.webhooks.bitbucketserver.BitbucketServerWebhookService.BITBUCKET_SERVER_WEBHOOK_EVENT_SOURCE;
+
+import com.codenvy.plugin.webhooks.WebhookEventHandler;
 import com.codenvy.plugin.webhooks.bitbucketserver.BitbucketServerWebhookService;
 import com.google.inject.AbstractModule;
+import com.google.inject.multibindings.MapBinder;
 
 /**
  * Guice binding for Bitbucket Server webhook service.
@@ -23,5 +27,8 @@ public class BitbucketServerWebhookModule extends AbstractModule {
   @Override
   protected void configure() {
     bind(BitbucketServerWebhookService.class);
+    MapBinder.newMapBinder(binder(), String.class, WebhookEventHandler.class)
+        .addBinding(BITBUCKET_SERVER_WEBHOOK_EVENT_SOURCE)
+        .to(BitbucketServerWebhookService.class);
   }
 }
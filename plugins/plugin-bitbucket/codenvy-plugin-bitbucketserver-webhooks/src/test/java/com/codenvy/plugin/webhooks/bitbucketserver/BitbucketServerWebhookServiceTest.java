@@ -23,6 +23,7 @@ import static org.testng.Assert.assertFalse;
 
 import com.codenvy.plugin.webhooks.AuthConnection;
 import com.codenvy.plugin.webhooks.FactoryConnection;
+import com.codenvy.plugin.webhooks.WebhookTokenProvider;
 import com.codenvy.plugin.webhooks.bitbucketserver.shared.Changeset;
 import com.codenvy.plugin.webhooks.bitbucketserver.shared.Changesets;
 import com.codenvy.plugin.webhooks.bitbucketserver.shared.Commit;
@@ -83,11 +84,9 @@ public class BitbucketServerWebhookServiceTest {
     service =
         spy(
             new BitbucketServerWebhookService(
-                mock(AuthConnection.class),
                 factoryConnection,
                 configurationProperties,
-                "username",
-                "password",
+                new WebhookTokenProvider(mock(AuthConnection.class), "username", "password", 0),
                 "http://bitbucketserver.host"));
   }
 
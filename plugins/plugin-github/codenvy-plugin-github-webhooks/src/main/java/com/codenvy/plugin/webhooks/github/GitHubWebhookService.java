@@ -15,9 +15,10 @@ import static com.google.common.base.Strings.isNullOrEmpty;
 import static java.util.stream.Collectors.toSet;
 import static javax.ws.rs.core.MediaType.APPLICATION_JSON;
 
-import com.codenvy.plugin.webhooks.AuthConnection;
 import com.codenvy.plugin.webhooks.BaseWebhookService;
 import com.codenvy.plugin.webhooks.FactoryConnection;
+import com.codenvy.plugin.webhooks.WebhookEvent;
+import com.codenvy.plugin.webhooks.WebhookTokenProvider;
 import com.codenvy.plugin.webhooks.github.shared.PullRequestEvent;
 import com.codenvy.plugin.webhooks.github.shared.PushEvent;
 import io.swagger.annotations.Api;
@@ -31,7 +32,6 @@ import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
 import javax.inject.Inject;
-import javax.inject.Named;
 import javax.servlet.ServletInputStream;
 import javax.servlet.http.HttpServletRequest;
 import javax.ws.rs.Consumes;
@@ -44,6 +44,7 @@ import org.eclipse.che.api.core.ServerException;
 import org.eclipse.che.api.core.rest.shared.dto.Link;
 import org.eclipse.che.api.factory.shared.dto.FactoryDto;
 import org.eclipse.che.commons.env.EnvironmentContext;
+import org.eclipse.che.commons.lang.IoUtil;
 import org.eclipse.che.dto.server.DtoFactory;
 import org.eclipse.che.inject.ConfigurationProperties;
 import org.slf4j.Logger;
@@ -55,6 +56,8 @@ public class GitHubWebhookService extends BaseWebhookService {
 
   private static final Logger LOG = LoggerFactory.getLogger(GitHubWebhookService.class);
 
+  public static final String GITHUB_WEBHOOK_EVENT_SOURCE = "github";
+
   private static final String GITHUB_REQUEST_HEADER = "X-GitHub-Event";
   private static final String WEBHOOK_PROPERTY_PATTERN = "env.CODENVY_GITHUB_WEBHOOK_.+";
   private static final String WEBHOOK_REPOSITORY_URL_SUFFIX = "_REPOSITORY_URL";
@@ -64,12 +67,10 @@ public class GitHubWebhookService extends BaseWebhookService {
 
   @Inject
   public GitHubWebhookService(
-      final AuthConnection authConnection,
       final FactoryConnection factoryConnection,
       final ConfigurationProperties configurationProperties,
-      @Named("integration.factory.owner.username") String username,
-      @Named("integration.factory.owner.password") String password) {
-    super(authConnection, factoryConnection, configurationProperties, username, password);
+      final WebhookTokenProvider tokenProvider) {
+    super(factoryConnection, configurationProperties, tokenProvider);
     this.configurationProperties = configurationProperties;
   }
 
@@ -94,26 +95,33 @@ public class GitHubWebhookService extends BaseWebhookService {
       if (inputStream != null) {
         String githubHeader = request.getHeader(GITHUB_REQUEST_HEADER);
         if (!isNullOrEmpty(githubHeader)) {
+          final String payload = IoUtil.readAndCloseQuietly(inputStream);
           switch (githubHeader) {
             case "push":
               final PushEvent pushEvent =
-                  DtoFactory.getInstance().createDtoFromJson(inputStream, PushEvent.class);
-              handlePushEvent(pushEvent);
+                  DtoFactory.getInstance().createDtoFromJson(payload, PushEvent.class);
+              // only the last of pending pushes to the same branch needs to be processed
+              final String key =
+                  GITHUB_WEBHOOK_EVENT_SOURCE
+                      + ':'
+                      + pushEvent.getRepository().getHtmlUrl()
+                      + ':'
+                      + pushEvent.getRef();
+              if (submit(GITHUB_WEBHOOK_EVENT_SOURCE, githubHeader, key, payload)) {
+                response = Response.accepted().build();
+              }
               break;
             case "pull_request":
               final PullRequestEvent PRevent =
-                  DtoFactory.getInstance().createDtoFromJson(inputStream, PullRequestEvent.class);
-              handlePullRequestEvent(PRevent);
+                  DtoFactory.getInstance().createDtoFromJson(payload, PullRequestEvent.class);
+              if (!"closed".equals(PRevent.getAction()) || !PRevent.getPullRequest().getMerged()) {
+                response = notProcessed(githubHeader + " " + PRevent.getAction());
+              } else if (submit(GITHUB_WEBHOOK_EVENT_SOURCE, githubHeader, null, payload)) {
+                response = Response.accepted().build();
+              }
               break;
             default:
-              response =
-                  Response.accepted(
-                          new GenericEntity<>(
-                              "GitHub message \'"
-                                  + githubHeader
-                                  + "\' received. It isn't intended to be processed.",
-                              String.class))
-                      .build();
+              response = notProcessed(githubHeader);
               break;
           }
         }
@@ -128,6 +136,36 @@ public class GitHubWebhookService extends BaseWebhookService {
     return response;
   }
 
+  @Override
+  public void handle(WebhookEvent event) throws ServerException, IOException {
+    try {
+      switch (event.getType()) {
+        case "push":
+          handlePushEvent(
+              DtoFactory.getInstance().createDtoFromJson(event.getPayload(), PushEvent.class));
+          break;
+        case "pull_request":
+          handlePullRequestEvent(
+              DtoFactory.getInstance()
+                  .createDtoFromJson(event.getPayload(), PullRequestEvent.class));
+          break;
+        default:
+          LOG.warn("GitHub message '{}' isn't intended to be processed", event.getType());
+          break;
+      }
+    } finally {
+      EnvironmentContext.reset();
+    }
+  }
+
+  private Response notProcessed(String message) {
+    return Response.accepted(
+            new GenericEntity<>(
+                "GitHub message \'" + message + "\' received. It isn't intended to be processed.",
+                String.class))
+        .build();
+  }
+
   /**
    * Handle GitHub {@link PushEvent}
    *
@@ -252,6 +290,11 @@ public class GitHubWebhookService extends BaseWebhookService {
    *     repo and branch
    */
   private Set<String> getWebhookConfiguredFactoriesIDs(final String baseRepositoryHtmlUrl) {
+    return getWebhookFactoryIds(
+        baseRepositoryHtmlUrl, () -> readWebhookConfiguredFactoriesIDs(baseRepositoryHtmlUrl));
+  }
+
+  private Set<String> readWebhookConfiguredFactoriesIDs(final String baseRepositoryHtmlUrl) {
     Map<String, String> properties =
         configurationProperties.getProperties(WEBHOOK_PROPERTY_PATTERN);
 
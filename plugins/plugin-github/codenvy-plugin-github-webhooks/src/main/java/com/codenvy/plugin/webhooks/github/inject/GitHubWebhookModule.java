@@ -10,8 +10,12 @@
  */
 package com.codenvy.plugin.webhooks.github.inject;
 
+import static com.codenvy.plugin.webhooks.github.GitHubWebhookService.GITHUB_WEBHOOK_EVENT_SOURCE;
+
+import com.codenvy.plugin.webhooks.WebhookEventHandler;
 import com.codenvy.plugin.webhooks.github.GitHubWebhookService;
 import com.google.inject.AbstractModule;
+import com.google.inject.multibindings.MapBinder;
 import org.eclipse.che.inject.DynaModule;
 
 /**
@@ -25,5 +29,8 @@ public class GitHubWebhookModule extends AbstractModule {
   @Override
   protected void configure() {
     bind(GitHubWebhookService.class);
+    MapBinder.newMapBinder(binder(), String.class, WebhookEventHandler.class)
+        .addBinding(GITHUB_WEBHOOK_EVENT_SOURCE)
+        .to(GitHubWebhookService.class);
   }
 }
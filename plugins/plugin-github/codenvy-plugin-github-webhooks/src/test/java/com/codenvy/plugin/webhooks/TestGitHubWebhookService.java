@@ -91,11 +91,9 @@ public class TestGitHubWebhookService {
     // Prepare GitHubWebhookService
     fakeGitHubWebhookService =
         new GitHubWebhookService(
-            mockAuthConnection,
             mockFactoryConnection,
             configurationProperties,
-            "username",
-            "password");
+            new WebhookTokenProvider(mockAuthConnection, "username", "password", 0));
   }
 
   @Test
@@ -12,6 +12,7 @@ package com.codenvy.machine;
 
 import static org.slf4j.LoggerFactory.getLogger;
 
+import com.codenvy.machine.backup.BackupConcurrencyLimiter;
 import com.codenvy.machine.backup.DockerEnvironmentBackupManager;
 import com.codenvy.swarm.client.SwarmDockerConnector;
 import com.google.inject.assistedinject.Assisted;
@@ -45,6 +46,7 @@ public class RemoteDockerNode implements DockerNode {
 
   private final String workspaceId;
   private final DockerEnvironmentBackupManager backupManager;
+  private final BackupConcurrencyLimiter backupConcurrencyLimiter;
   private final String containerId;
   private final String nodeHost;
   private final String nodeIp;
@@ -56,11 +58,13 @@ public class RemoteDockerNode implements DockerNode {
       DockerConnector dockerConnector,
       @Assisted("container") String containerId,
       @Assisted("workspace") String workspaceId,
-      DockerEnvironmentBackupManager backupManager)
+      DockerEnvironmentBackupManager backupManager,
+      BackupConcurrencyLimiter backupConcurrencyLimiter)
       throws MachineException {
 
     this.workspaceId = workspaceId;
     this.backupManager = backupManager;
+    this.backupConcurrencyLimiter = backupConcurrencyLimiter;
     this.containerId = containerId;
 
     try {
@@ -103,6 +107,8 @@ public class RemoteDockerNode implements DockerNode {
           containerId,
           workspaceId);
     } else {
+      // backup on stop doesn't wait for a free slot on the node, but holds one while running
+      backupConcurrencyLimiter.acquireUrgent(nodeHost);
       try {
         backupManager.backupWorkspaceAndCleanup(workspaceId, containerId, nodeHost);
       } catch (EnvironmentException e) {
@@ -112,6 +118,8 @@ public class RemoteDockerNode implements DockerNode {
       } catch (ServerException e) {
         // TODO do throw it further when it won't brake ws stop
         LOG.error(e.getLocalizedMessage(), e);
+      } finally {
+        backupConcurrencyLimiter.release(nodeHost);
       }
     }
   }
@@ -11,16 +11,46 @@
 package com.codenvy.machine.agent;
 
 import java.util.Collections;
+import javax.inject.Inject;
+import javax.inject.Named;
 import org.eclipse.che.api.agent.shared.model.impl.AgentImpl;
 
 /**
  * Agent that runs inside of dev machine container and ensures that rsync is available and public
  * key for SSH access is added to authorized keys.
  *
+ * <p>If inotify-tools are available in the machine agent also starts a watcher of projects folder
+ * that marks projects as changed on any file system event, so scheduled backups of unchanged
+ * workspaces can be skipped. Mark is checked and reset with {@link #CHECK_CHANGES_COMMAND}.
+ *
  * @author Alexander Garagatyi
  */
 public class MachineInnerRsyncAgent extends AgentImpl {
-  public MachineInnerRsyncAgent() {
+  /** Directory in machine where watcher of projects changes keeps its state. */
+  public static final String CHANGES_WATCHER_DIR = "/tmp/codenvy-sync";
+
+  /**
+   * Output of {@link #CHECK_CHANGES_COMMAND} when projects have no changes since the last check.
+   */
+  public static final String UNCHANGED = "unchanged";
+
+  /**
+   * Prints {@code changed} and resets change mark if projects were changed since the last check,
+   * prints {@link #UNCHANGED} if they were not and {@code unknown} if changes watcher is not
+   * running in the machine.
+   */
+  public static final String CHECK_CHANGES_COMMAND =
+      "D="
+          + CHANGES_WATCHER_DIR
+          // watcher may stay as zombie if machine has no init process that reaps orphans
+          + "; P=$(cat $D/watcher.pid 2>/dev/null); if test -n \"$P\" && test -f /proc/$P/status"
+          + " && ! grep -q '^State:[[:space:]]*Z' /proc/$P/status; then"
+          + " if rm $D/changed 2>/dev/null; then echo changed; else echo "
+          + UNCHANGED
+          + "; fi; else echo unknown; fi";
+
+  @Inject
+  public MachineInnerRsyncAgent(@Named("che.workspace.projects.storage") String projectsFolder) {
     super(
         "com.codenvy.rsync_in_machine",
         "Rsync sync agent",
@@ -55,6 +85,7 @@ public class MachineInnerRsyncAgent extends AgentImpl {
             + "# Ubuntu 14.04 16.04 / Linux Mint 17 \n"
             + "####################################\n"
             + "elif echo ${LINUX_TYPE} | grep -qi \"ubuntu\"; then\n"
+            + "    command -v inotifywait >/dev/null 2>&1 || { PACKAGES=${PACKAGES}\" inotify-tools\"; }\n"
             + "    command -v rsync >/dev/null 2>&1 || { PACKAGES=${PACKAGES}\" rsync\"; }\n"
             + "    test \"${PACKAGES}\" = \"\" || {\n"
             + "        ${SUDO} apt-get update;\n"
@@ -63,6 +94,7 @@ public class MachineInnerRsyncAgent extends AgentImpl {
             + "# Debian 8\n"
             + "##########\n"
             + "elif echo ${LINUX_TYPE} | grep -qi \"debian\"; then\n"
+            + "    command -v inotifywait >/dev/null 2>&1 || { PACKAGES=${PACKAGES}\" inotify-tools\"; }\n"
             + "    command -v rsync >/dev/null 2>&1 || { PACKAGES=${PACKAGES}\" rsync\"; }\n"
             + "    test \"${PACKAGES}\" = \"\" || {\n"
             + "        ${SUDO} apt-get update;\n"
@@ -72,6 +104,7 @@ public class MachineInnerRsyncAgent extends AgentImpl {
             + "###########\n"
             + "elif echo ${LINUX_TYPE} | grep -qi \"fedora\"; then\n"
             + "    PACKAGES=${PACKAGES}\" procps-ng\"\n"
+            + "    command -v inotifywait >/dev/null 2>&1 || { PACKAGES=${PACKAGES}\" inotify-tools\"; }\n"
             + "    command -v rsync >/dev/null 2>&1 || { PACKAGES=${PACKAGES}\" rsync\"; }\n"
             + "    test \"${PACKAGES}\" = \"\" || {\n"
             + "        ${SUDO} dnf -y install ${PACKAGES};\n"
@@ -86,6 +119,7 @@ public class MachineInnerRsyncAgent extends AgentImpl {
             + "# openSUSE 13.2\n"
             + "###############\n"
             + "elif echo ${LINUX_TYPE} | grep -qi \"opensuse\"; then\n"
+            + "    command -v inotifywait >/dev/null 2>&1 || { PACKAGES=${PACKAGES}\" inotify-tools\"; }\n"
             + "    command -v rsync >/dev/null 2>&1 || { PACKAGES=${PACKAGES}\" rsync\"; }\n"
             + "    test \"${PACKAGES}\" = \"\" || {\n"
             + "        ${SUDO} zypper install -y ${PACKAGES};\n"
@@ -104,7 +138,24 @@ public class MachineInnerRsyncAgent extends AgentImpl {
             + "    exit 1\n"
             + "fi\n\n"
             + "mkdir -p ~/.ssh\n"
-            + "echo ${CODENVY_SYNC_PUB_KEY} >> ~/.ssh/authorized_keys\n"
+            + "echo ${CODENVY_SYNC_PUB_KEY} >> ~/.ssh/authorized_keys\n\n"
+            + "# Watch projects for changes, so unchanged workspaces are not backed up\n"
+            + "CHANGES_WATCHER_DIR="
+            + CHANGES_WATCHER_DIR
+            + "\n"
+            + "PROJECTS_DIR='"
+            + projectsFolder.replace("'", "'\\''")
+            + "'\n"
+            + "if command -v inotifywait >/dev/null 2>&1 && test -d \"${PROJECTS_DIR}\"; then\n"
+            + "    mkdir -p ${CHANGES_WATCHER_DIR}\n"
+            + "    test -f ${CHANGES_WATCHER_DIR}/watcher.pid && kill $(cat ${CHANGES_WATCHER_DIR}/watcher.pid) 2>/dev/null\n"
+            + "    touch ${CHANGES_WATCHER_DIR}/changed\n"
+            + "    nohup sh -c \"echo \\$\\$ > ${CHANGES_WATCHER_DIR}/watcher.pid; "
+            + "exec inotifywait -m -r -q -e modify,attrib,move,create,delete --format x \\\"${PROJECTS_DIR}\\\"\" "
+            + "</dev/null 2>/dev/null | "
+            + "while read -r event; do test -e ${CHANGES_WATCHER_DIR}/changed || : > ${CHANGES_WATCHER_DIR}/changed; done "
+            + ">/dev/null 2>&1 &\n"
+            + "fi\n\n"
             + "echo \"Rsync agent installed\"",
         null);
   }
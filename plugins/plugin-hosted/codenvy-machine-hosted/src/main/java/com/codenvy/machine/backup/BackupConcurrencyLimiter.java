@@ -0,0 +1,99 @@
+/*
+ * Copyright (c) [2012] - [2017] Red Hat, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *   Red Hat, Inc. - initial API and implementation
+ */
+package com.codenvy.machine.backup;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+
+/**
+ * Limits the number of simultaneous backups of workspaces located on the same node.
+ *
+ * <p>Scheduled backups take a slot with {@link #tryAcquire(String)} and are postponed if node is
+ * busy. Backups performed on workspace stop take a slot with {@link #acquireUrgent(String)} which
+ * never waits, so stopping workspace is not delayed by queued scheduled backups, but scheduled
+ * backups are not started on the node until urgent ones free their slots.
+ */
+@Singleton
+public class BackupConcurrencyLimiter {
+  private static final String UNKNOWN_NODE = "";
+
+  private final int maxBackupsPerNode;
+  private final Map<String, Integer> backupsPerNode;
+  private final CopyOnWriteArrayList<Runnable> releaseListeners;
+
+  @Inject
+  public BackupConcurrencyLimiter(
+      @Named("machine.backup.max_parallel_backups_per_node") int maxBackupsPerNode) {
+    this.maxBackupsPerNode = maxBackupsPerNode;
+    this.backupsPerNode = new HashMap<>();
+    this.releaseListeners = new CopyOnWriteArrayList<>();
+  }
+
+  /**
+   * Takes a backup slot on the node if there is a free one.
+   *
+   * @param node host of the node, {@code null} if node is unknown
+   * @return true if slot is taken, false if node already runs maximum number of backups
+   */
+  public synchronized boolean tryAcquire(String node) {
+    String key = node == null ? UNKNOWN_NODE : node;
+    int inProgress = backupsPerNode.getOrDefault(key, 0);
+    if (inProgress >= maxBackupsPerNode) {
+      return false;
+    }
+    backupsPerNode.put(key, inProgress + 1);
+    return true;
+  }
+
+  /**
+   * Takes a backup slot on the node regardless of the limit.
+   *
+   * @param node host of the node, {@code null} if node is unknown
+   */
+  public synchronized void acquireUrgent(String node) {
+    backupsPerNode.merge(node == null ? UNKNOWN_NODE : node, 1, Integer::sum);
+  }
+
+  /**
+   * Frees backup slot on the node taken by {@link #tryAcquire(String)} or {@link
+   * #acquireUrgent(String)}.
+   *
+   * @param node host of the node, {@code null} if node is unknown
+   */
+  public void release(String node) {
+    synchronized (this) {
+      String key = node == null ? UNKNOWN_NODE : node;
+      Integer inProgress = backupsPerNode.get(key);
+      if (inProgress == null || inProgress <= 1) {
+        backupsPerNode.remove(key);
+      } else {
+        backupsPerNode.put(key, inProgress - 1);
+      }
+    }
+    for (Runnable listener : releaseListeners) {
+      listener.run();
+    }
+  }
+
+  /** Returns the number of backups that are currently running on the node. */
+  public synchronized int getBackupsInProgress(String node) {
+    return backupsPerNode.getOrDefault(node == null ? UNKNOWN_NODE : node, 0);
+  }
+
+  /** Adds listener that is notified each time a backup slot is freed. */
+  public void addReleaseListener(Runnable listener) {
+    releaseListeners.add(listener);
+  }
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright (c) [2012] - [2017] Red Hat, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *   Red Hat, Inc. - initial API and implementation
+ */
+package com.codenvy.machine.backup;
+
+/**
+ * Statistics of a single backup run of a workspace.
+ *
+ * <p>{@code bytesScanned} is the size of all the files in workspace projects folder, {@code
+ * bytesTransferred} is the amount of data that was actually fetched from the machine and {@code
+ * bytesStored} is the amount of data that was written into backup storage after deduplication.
+ */
+public class BackupStats {
+  private final String workspaceId;
+  private final long filesScanned;
+  private final long filesTransferred;
+  private final long bytesScanned;
+  private final long bytesTransferred;
+  private final long bytesStored;
+  private final long durationMillis;
+
+  public BackupStats(
+      String workspaceId,
+      long filesScanned,
+      long filesTransferred,
+      long bytesScanned,
+      long bytesTransferred,
+      long bytesStored,
+      long durationMillis) {
+    this.workspaceId = workspaceId;
+    this.filesScanned = filesScanned;
+    this.filesTransferred = filesTransferred;
+    this.bytesScanned = bytesScanned;
+    this.bytesTransferred = bytesTransferred;
+    this.bytesStored = bytesStored;
+    this.durationMillis = durationMillis;
+  }
+
+  public String getWorkspaceId() {
+    return workspaceId;
+  }
+
+  public long getFilesScanned() {
+    return filesScanned;
+  }
+
+  public long getFilesTransferred() {
+    return filesTransferred;
+  }
+
+  public long getBytesScanned() {
+    return bytesScanned;
+  }
+
+  public long getBytesTransferred() {
+    return bytesTransferred;
+  }
+
+  public long getBytesStored() {
+    return bytesStored;
+  }
+
+  public long getDurationMillis() {
+    return durationMillis;
+  }
+
+  @Override
+  public String toString() {
+    return "BackupStats{"
+        + "workspaceId='"
+        + workspaceId
+        + '\''
+        + ", filesScanned="
+        + filesScanned
+        + ", filesTransferred="
+        + filesTransferred
+        + ", bytesScanned="
+        + bytesScanned
+        + ", bytesTransferred="
+        + bytesTransferred
+        + ", bytesStored="
+        + bytesStored
+        + ", durationMillis="
+        + durationMillis
+        + '}';
+  }
+}
@@ -0,0 +1,1207 @@
+/*
+ * Copyright (c) [2012] - [2017] Red Hat, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *   Red Hat, Inc. - initial API and implementation
+ */
+package com.codenvy.machine.backup;
+
+import static java.lang.String.format;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.slf4j.LoggerFactory.getLogger;
+
+import com.codahale.metrics.annotation.Gauge;
+import com.codenvy.machine.backup.storage.BackupManifest;
+import com.codenvy.machine.backup.storage.BackupManifest.Entry;
+import com.codenvy.machine.backup.storage.BackupManifest.Type;
+import com.codenvy.machine.backup.storage.ChunkStore;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.hash.BloomFilter;
+import com.google.common.hash.Funnels;
+import com.google.common.hash.Hashing;
+import com.google.common.io.ByteStreams;
+import com.google.common.io.CountingInputStream;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Stream;
+import javax.annotation.PreDestroy;
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveInputStream;
+import org.apache.commons.compress.archivers.tar.TarArchiveOutputStream;
+import org.apache.commons.compress.archivers.tar.TarConstants;
+import org.eclipse.che.api.core.ServerException;
+import org.eclipse.che.api.workspace.server.WorkspaceManager;
+import org.eclipse.che.plugin.docker.client.DockerConnector;
+import org.eclipse.che.plugin.docker.client.Exec;
+import org.eclipse.che.plugin.docker.client.LogMessage;
+import org.eclipse.che.plugin.docker.client.exception.DockerException;
+import org.eclipse.che.plugin.docker.client.json.ExecInfo;
+import org.eclipse.che.plugin.docker.client.params.CreateExecParams;
+import org.eclipse.che.plugin.docker.client.params.GetResourceParams;
+import org.eclipse.che.plugin.docker.client.params.PutResourceParams;
+import org.eclipse.che.plugin.docker.client.params.StartExecParams;
+import org.slf4j.Logger;
+
+/**
+ * Incremental, content-addressed implementation of workspace backups.
+ *
+ * <p>Instead of running backup script on each backup this implementation lists files of projects
+ * folder in the container (path, size, modification time, permissions) and compares the listing
+ * with the manifest of the previous backup. Only files which differ from the manifest are fetched
+ * from the container. Content of fetched files is split into chunks which are stored in {@link
+ * ChunkStore} by their hashes, so unchanged chunks and chunks shared between workspaces are stored
+ * only once. If nothing changed since the previous backup no data is transferred at all.
+ *
+ * <p>Manifests are stored in {@code <che.user.workspaces.storage>/.manifests} in the folder
+ * calculated by {@link WorkspaceIdHashLocationFinder}. Workspaces which don't have a manifest yet
+ * are restored by the restore script, so enabling of this implementation doesn't affect backups
+ * made by the script. Note that the opposite is not true, after disabling this implementation
+ * backups made by it won't be restored by the script.
+ *
+ * <p>Implementation is enabled by {@code machine.backup.chunked.enabled} property, otherwise it
+ * behaves exactly as {@link DockerEnvironmentBackupManager}.
+ *
+ * <p>If {@code machine.backup.restore.streaming.enabled} is set, restore doesn't wait for all the
+ * files to be copied into the machine. Only the hot set is restored synchronously. It includes
+ * directories, symbolic links, build metadata and the most recently modified files up to {@code
+ * machine.backup.restore.hot_set_max_mb}. The rest of the files are copied in background by {@code
+ * machine.backup.restore.parallel_streams} parallel streams, see {@link
+ * #getRestoreProgress(String)}. Files that are not restored yet are listed in a pending restore
+ * file next to the manifest. Backups keep such files in the manifest as they are, so a backup made
+ * during or after an unfinished restore never loses them. Files which are created in the machine
+ * before background restore reaches them, e.g. by the user, are never overwritten by their backed
+ * up copies. Backup made while the restore is running takes such files from the machine and removes
+ * them from the pending restore.
+ *
+ * <p>Chunks which are not referenced by any manifest are removed by garbage collection scheduled by
+ * {@link #removeBackup(String)} when workspace files are cleaned up.
+ */
+@Singleton
+public class ChunkedDockerEnvironmentBackupManager extends DockerEnvironmentBackupManager {
+  private static final Logger LOG = getLogger(ChunkedDockerEnvironmentBackupManager.class);
+
+  static final int CHUNK_SIZE = 1024 * 1024;
+  static final String MANIFESTS_DIR = ".manifests";
+  static final String MANIFEST_FILE = "manifest";
+  // If more files changed than this threshold the whole projects folder is fetched as a single
+  // archive instead of fetching each changed file separately
+  static final int MAX_SEPARATELY_FETCHED_FILES = 100;
+  static final String PENDING_RESTORE_FILE = "restore.pending";
+  // Limits of a single archive streamed into machine by background restore
+  static final long RESTORE_BATCH_MAX_BYTES = 64 * 1024 * 1024;
+  static final int RESTORE_BATCH_MAX_FILES = 5000;
+  // Single command line argument can't be longer than 128KB on Linux
+  static final int MAX_CHECKED_PATHS_LENGTH = 100 * 1024;
+  // Bloom filter of referenced chunks is sized for this number of chunks, filling it over the size
+  // only makes garbage collection keep more unreferenced chunks
+  static final int GC_EXPECTED_CHUNKS = 10_000_000;
+
+  // Files which are needed by IDE and build tools right after workspace start
+  private static final Set<String> BUILD_METADATA_FILES =
+      ImmutableSet.of(
+          "pom.xml",
+          "build.gradle",
+          "settings.gradle",
+          "gradle.properties",
+          "package.json",
+          "package-lock.json",
+          "yarn.lock",
+          "bower.json",
+          "composer.json",
+          "Gemfile",
+          "Gemfile.lock",
+          "requirements.txt",
+          "setup.py",
+          "Cargo.toml",
+          "go.mod",
+          "Makefile",
+          "CMakeLists.txt",
+          "project.json",
+          ".gitignore",
+          ".gitmodules");
+
+  private static final String LIST_EXISTING_FILES_COMMAND =
+      "cd '%s' && for f in %s; do { [ -e \"$f\" ] || [ -L \"$f\" ]; } && echo \"$f\"; done; true";
+
+  private static final String LIST_FILES_COMMAND =
+      "cd '%s' && find . -mindepth 1 \\( -type f -o -type d -o -type l \\)"
+          + " -exec stat -c '%%F|%%s|%%Y|%%a|%%n' {} +";
+
+  private final boolean enabled;
+  private final File manifestsRootDir;
+  private final WorkspaceIdHashLocationFinder workspaceIdHashLocationFinder;
+  private final DockerConnector dockerConnector;
+  private final ChunkStore chunkStore;
+  private final ConcurrentMap<String, BackupStats> lastBackupStats;
+  private final AtomicLong bytesScanned;
+  private final AtomicLong bytesTransferred;
+  private final AtomicLong bytesStored;
+  private final boolean streamingRestore;
+  private final long hotSetMaxBytes;
+  private final int parallelStreams;
+  private final ExecutorService restoreExecutor;
+  private final ConcurrentMap<String, BackgroundRestore> restores;
+  // read lock is held by backups, write lock by garbage collection of chunks
+  private final ReadWriteLock gcLock;
+  private final ExecutorService gcExecutor;
+  private final AtomicBoolean gcScheduled;
+  private final AtomicLong bytesCollected;
+
+  @Inject
+  public ChunkedDockerEnvironmentBackupManager(
+      @Named("machine.backup.backup_script") String backupScript,
+      @Named("machine.backup.restore_script") String restoreScript,
+      @Named("machine.backup.backup_duration_second") int maxBackupDurationSec,
+      @Named("machine.backup.restore_duration_second") int restoreDurationSec,
+      @Named("che.user.workspaces.storage") File backupsRootDir,
+      WorkspaceIdHashLocationFinder workspaceIdHashLocationFinder,
+      @Named("che.workspace.projects.storage") String projectFolderPath,
+      WorkspaceManager workspaceManager,
+      DockerConnector dockerConnector,
+      @Named("machine.backup.chunked.enabled") boolean enabled,
+      @Named("machine.backup.restore.streaming.enabled") boolean streamingRestore,
+      @Named("machine.backup.restore.hot_set_max_mb") long hotSetMaxMb,
+      @Named("machine.backup.restore.parallel_streams") int parallelStreams,
+      ChunkStore chunkStore) {
+    super(
+        backupScript,
+        restoreScript,
+        maxBackupDurationSec,
+        restoreDurationSec,
+        backupsRootDir,
+        workspaceIdHashLocationFinder,
+        projectFolderPath,
+        workspaceManager,
+        dockerConnector);
+    this.enabled = enabled;
+    this.manifestsRootDir = new File(backupsRootDir, MANIFESTS_DIR);
+    this.workspaceIdHashLocationFinder = workspaceIdHashLocationFinder;
+    this.dockerConnector = dockerConnector;
+    this.chunkStore = chunkStore;
+    this.lastBackupStats = new ConcurrentHashMap<>();
+    this.bytesScanned = new AtomicLong();
+    this.bytesTransferred = new AtomicLong();
+    this.bytesStored = new AtomicLong();
+    this.streamingRestore = streamingRestore;
+    this.hotSetMaxBytes = hotSetMaxMb * 1024 * 1024;
+    this.parallelStreams = parallelStreams;
+    this.restoreExecutor =
+        Executors.newCachedThreadPool(
+            new ThreadFactoryBuilder()
+                .setNameFormat("WorkspaceBackgroundRestore-%s")
+                .setDaemon(true)
+                .build());
+    this.restores = new ConcurrentHashMap<>();
+    this.gcLock = new ReentrantReadWriteLock(true);
+    this.gcExecutor =
+        Executors.newSingleThreadExecutor(
+            new ThreadFactoryBuilder()
+                .setNameFormat("WorkspaceBackupsGarbageCollector-%s")
+                .setDaemon(true)
+                .build());
+    this.gcScheduled = new AtomicBoolean();
+    this.bytesCollected = new AtomicLong();
+  }
+
+  /**
+   * Returns statistics of the last backup of workspace or {@code null} if workspace wasn't backed
+   * up since start of the server.
+   */
+  @Override
+  public BackupStats getLastBackupStats(String workspaceId) {
+    return lastBackupStats.get(workspaceId);
+  }
+
+  /** Returns path to the manifest of the workspace backup. */
+  public Path getManifestPath(String workspaceId) {
+    return workspaceIdHashLocationFinder
+        .calculateDirPath(manifestsRootDir, workspaceId)
+        .toPath()
+        .resolve(MANIFEST_FILE);
+  }
+
+  /** Returns path to the list of files which are not restored into machine yet. */
+  public Path getPendingRestorePath(String workspaceId) {
+    return getManifestPath(workspaceId).resolveSibling(PENDING_RESTORE_FILE);
+  }
+
+  /**
+   * Returns progress of the last restore of the workspace or {@code null} if workspace wasn't
+   * restored from incremental backup since start of the server or it was stopped after that.
+   */
+  public RestoreProgress getRestoreProgress(String workspaceId) {
+    BackgroundRestore restore = restores.get(workspaceId);
+    return restore == null ? null : restore.getProgress();
+  }
+
+  /** @return the number of workspaces which files are being restored in background. */
+  @Gauge(name = "machine.backup.restore.background_in_progress")
+  public long getBackgroundRestoresInProgress() {
+    return restores.values().stream()
+        .filter(restore -> restore.status == RestoreProgress.Status.IN_PROGRESS)
+        .count();
+  }
+
+  /** @return total size of files which wait for background restore. */
+  @Gauge(name = "machine.backup.restore.pending_bytes")
+  public long getPendingRestoreBytes() {
+    return restores.values().stream()
+        .filter(restore -> restore.status == RestoreProgress.Status.IN_PROGRESS)
+        .mapToLong(restore -> restore.totalBytes - restore.restoredBytes.get())
+        .sum();
+  }
+
+  /** @return total size of files that were checked for changes by backups. */
+  @Gauge(name = "machine.backup.chunked.bytes_scanned")
+  public long getBytesScanned() {
+    return bytesScanned.get();
+  }
+
+  /** @return total amount of data fetched from machines by backups. */
+  @Gauge(name = "machine.backup.chunked.bytes_transferred")
+  public long getBytesTransferred() {
+    return bytesTransferred.get();
+  }
+
+  /** @return total amount of data written into the chunk store by backups. */
+  @Gauge(name = "machine.backup.chunked.bytes_stored")
+  public long getBytesStored() {
+    return bytesStored.get();
+  }
+
+  /** @return total amount of storage freed by garbage collection of chunks. */
+  @Gauge(name = "machine.backup.chunked.bytes_collected")
+  public long getBytesCollected() {
+    return bytesCollected.get();
+  }
+
+  /**
+   * Removes incremental backup of the workspace and schedules garbage collection of chunks which
+   * are not referenced by other backups anymore.
+   *
+   * @param workspaceId id of the workspace which backup should be removed
+   * @throws IOException if backup can't be removed
+   */
+  public void removeBackup(String workspaceId) throws IOException {
+    cancelBackgroundRestore(workspaceId);
+    restores.remove(workspaceId);
+    lastBackupStats.remove(workspaceId);
+    gcLock.readLock().lock();
+    try {
+      Files.deleteIfExists(getPendingRestorePath(workspaceId));
+      Files.deleteIfExists(getManifestPath(workspaceId));
+    } finally {
+      gcLock.readLock().unlock();
+    }
+    scheduleGarbageCollection();
+  }
+
+  /**
+   * Schedules garbage collection of chunks. If collection is already scheduled but not started yet,
+   * no other collection is scheduled, so removals of many workspaces at once are followed by a
+   * single collection.
+   */
+  public void scheduleGarbageCollection() {
+    if (gcScheduled.compareAndSet(false, true)) {
+      gcExecutor.execute(
+          () -> {
+            gcScheduled.set(false);
+            try {
+              collectGarbage();
+            } catch (IOException e) {
+              LOG.error("Garbage collection of backup chunks failed. " + e.getMessage(), e);
+            }
+          });
+    }
+  }
+
+  /**
+   * Removes chunks which are not referenced by manifests of backups. Backups wait while garbage is
+   * collected, so chunk that was found in the store by a backup can't be removed before the backup
+   * writes the manifest that references it.
+   *
+   * @return the number of bytes freed in the chunk store
+   */
+  @VisibleForTesting
+  long collectGarbage() throws IOException {
+    gcLock.writeLock().lock();
+    try {
+      final long start = System.currentTimeMillis();
+      final BloomFilter<String> referenced =
+          BloomFilter.create(Funnels.stringFunnel(UTF_8), GC_EXPECTED_CHUNKS, 0.01);
+      int manifests = 0;
+      if (manifestsRootDir.exists()) {
+        try (Stream<Path> files = Files.walk(manifestsRootDir.toPath())) {
+          for (Path file : (Iterable<Path>) files::iterator) {
+            final String name = file.getFileName().toString();
+            if (name.equals(MANIFEST_FILE) || name.equals(PENDING_RESTORE_FILE)) {
+              BackupManifest.read(file).getChunks().forEach(referenced::put);
+              manifests++;
+            }
+          }
+        }
+      }
+      final long freed = chunkStore.removeUnreferenced(referenced::mightContain);
+      bytesCollected.addAndGet(freed);
+      LOG.info(
+          "Garbage collection of backup chunks finished in {}ms. Manifests: {}, freed bytes: {}",
+          System.currentTimeMillis() - start,
+          manifests,
+          freed);
+      return freed;
+    } finally {
+      gcLock.writeLock().unlock();
+    }
+  }
+
+  @Override
+  protected void executeBackup(
+      String workspaceId,
+      String containerId,
+      String srcPath,
+      String srcAddress,
+      int srcPort,
+      boolean removeSourceOnSuccess,
+      String srcUserName,
+      String destPath)
+      throws ServerException {
+    if (!enabled) {
+      super.executeBackup(
+          workspaceId,
+          containerId,
+          srcPath,
+          srcAddress,
+          srcPort,
+          removeSourceOnSuccess,
+          srcUserName,
+          destPath);
+      return;
+    }
+    try {
+      if (removeSourceOnSuccess) {
+        // machine is going to be removed, there is no sense to continue restoring files into it
+        cancelBackgroundRestore(workspaceId);
+      }
+      BackupStats stats = backup(workspaceId, containerId, srcPath);
+      LOG.debug(
+          "Backup of workspace '{}' on node '{}' finished. {}", workspaceId, srcAddress, stats);
+      if (removeSourceOnSuccess) {
+        lastBackupStats.remove(workspaceId);
+        restores.remove(workspaceId);
+        // files which were not restored are kept in the manifest by the backup above
+        Files.deleteIfExists(getPendingRestorePath(workspaceId));
+      } else {
+        lastBackupStats.put(workspaceId, stats);
+      }
+    } catch (IOException e) {
+      LOG.error(e.getLocalizedMessage(), e);
+      throw new ServerException(
+          "Backup of workspace "
+              + workspaceId
+              + " filesystem terminated on "
+              + srcAddress
+              + " node. "
+              + e.getLocalizedMessage());
+    }
+  }
+
+  @Override
+  protected void executeRestore(
+      String workspaceId,
+      String containerId,
+      String srcPath,
+      String destinationPath,
+      String destUserId,
+      String destGroupId,
+      String destUserName,
+      String destAddress,
+      int destPort)
+      throws TimeoutException, IOException, InterruptedException, ServerException {
+    BackupManifest manifest =
+        enabled ? BackupManifest.read(getManifestPath(workspaceId)) : new BackupManifest();
+    if (manifest.isEmpty()) {
+      // workspace might be backed up by the backup script before
+      super.executeRestore(
+          workspaceId,
+          containerId,
+          srcPath,
+          destinationPath,
+          destUserId,
+          destGroupId,
+          destUserName,
+          destAddress,
+          destPort);
+      return;
+    }
+    cancelBackgroundRestore(workspaceId);
+    // manifest is restored completely, so nothing from the previous restore is pending anymore
+    Files.deleteIfExists(getPendingRestorePath(workspaceId));
+
+    final Set<String> hotSet =
+        streamingRestore ? selectHotSet(manifest, hotSetMaxBytes) : manifest.asMap().keySet();
+    final BackupManifest hot = new BackupManifest();
+    final List<Entry> cold = new ArrayList<>();
+    for (Entry entry : manifest.getEntries()) {
+      if (hotSet.contains(entry.getPath())) {
+        hot.put(entry);
+      } else {
+        cold.add(entry);
+      }
+    }
+    final BackgroundRestore backgroundRestore =
+        new BackgroundRestore(
+            workspaceId,
+            containerId,
+            destinationPath,
+            Integer.parseInt(destUserId),
+            Integer.parseInt(destGroupId),
+            manifest,
+            cold);
+    restores.put(workspaceId, backgroundRestore);
+    if (!cold.isEmpty()) {
+      backgroundRestore.savePending();
+    }
+    try {
+      restore(
+          hot, containerId, destinationPath, backgroundRestore.userId, backgroundRestore.groupId);
+    } catch (IOException e) {
+      backgroundRestore.fail(e);
+      throw e;
+    }
+    backgroundRestore.start(hot.size(), hot.getTotalSize());
+  }
+
+  @PreDestroy
+  @Override
+  public void shutdown() {
+    super.shutdown();
+    restoreExecutor.shutdownNow();
+    gcExecutor.shutdownNow();
+  }
+
+  /**
+   * Selects entries of the manifest which should be restored before workspace start continues.
+   * These are all the directories and symbolic links, build metadata files, git metadata except
+   * objects and the most recently modified files which fit into the size limit.
+   *
+   * @param manifest manifest to select entries from
+   * @param maxBytes maximum total size of regular files in the hot set, build metadata files are
+   *     not limited
+   * @return paths of the entries of the hot set
+   */
+  @VisibleForTesting
+  static Set<String> selectHotSet(BackupManifest manifest, long maxBytes) {
+    final Set<String> hotSet = new HashSet<>();
+    final List<Entry> candidates = new ArrayList<>();
+    long size = 0;
+    for (Entry entry : manifest.getEntries()) {
+      if (entry.getType() != Type.FILE || isBuildMetadata(entry.getPath())) {
+        hotSet.add(entry.getPath());
+        size += entry.getSize();
+      } else {
+        candidates.add(entry);
+      }
+    }
+    candidates.sort(Comparator.comparingLong(Entry::getModificationTime).reversed());
+    for (Entry entry : candidates) {
+      if (size + entry.getSize() <= maxBytes) {
+        hotSet.add(entry.getPath());
+        size += entry.getSize();
+      }
+    }
+    return hotSet;
+  }
+
+  private static boolean isBuildMetadata(String path) {
+    if (BUILD_METADATA_FILES.contains(path.substring(path.lastIndexOf('/') + 1))) {
+      return true;
+    }
+    // git metadata except objects which may take most of the repository size
+    final int git = path.startsWith(".git/") ? 0 : path.indexOf("/.git/") + 1;
+    return (git > 0 || path.startsWith(".git/"))
+        && !path.startsWith("objects/", git + ".git/".length());
+  }
+
+  private void cancelBackgroundRestore(String workspaceId) {
+    final BackgroundRestore restore = restores.get(workspaceId);
+    if (restore != null) {
+      restore.cancel();
+    }
+  }
+
+  @VisibleForTesting
+  BackupStats backup(String workspaceId, String containerId, String srcPath)
+      throws IOException, ServerException {
+    gcLock.readLock().lock();
+    try {
+      return doBackup(workspaceId, containerId, srcPath);
+    } finally {
+      gcLock.readLock().unlock();
+    }
+  }
+
+  private BackupStats doBackup(String workspaceId, String containerId, String srcPath)
+      throws IOException, ServerException {
+    final long start = System.currentTimeMillis();
+    final Path manifestPath = getManifestPath(workspaceId);
+    final BackupManifest previous = BackupManifest.read(manifestPath);
+    // files which are not restored into machine yet, they might be absent or partially written
+    final BackupManifest pending = BackupManifest.read(getPendingRestorePath(workspaceId));
+    final BackupManifest listing = listFiles(workspaceId, containerId, srcPath);
+    final BackgroundRestore restore = restores.get(workspaceId);
+
+    final BackupManifest updated = new BackupManifest();
+    final Set<String> toFetch = new HashSet<>();
+    final Set<String> released = new HashSet<>();
+    for (Entry notRestored : pending.getEntries()) {
+      if (restore != null
+          && listing.get(notRestored.getPath()) != null
+          && restore.release(notRestored.getPath())) {
+        // file was created in machine before it was restored, it is backed up as any other file
+        released.add(notRestored.getPath());
+        continue;
+      }
+      Entry backedUp = previous.get(notRestored.getPath());
+      if (backedUp != null) {
+        updated.put(backedUp);
+      }
+    }
+    for (Entry listed : listing.getEntries()) {
+      if (pending.get(listed.getPath()) != null && !released.contains(listed.getPath())) {
+        continue;
+      }
+      if (listed.getType() == Type.DIRECTORY) {
+        // directories don't have content, so listing is enough to back them up
+        updated.put(listed);
+        continue;
+      }
+      Entry backedUp = previous.get(listed.getPath());
+      if (listed.isSameState(backedUp)) {
+        updated.put(backedUp);
+      } else {
+        toFetch.add(listed.getPath());
+      }
+    }
+
+    final TransferCounter counter = new TransferCounter();
+    if (toFetch.size() > MAX_SEPARATELY_FETCHED_FILES) {
+      fetch(containerId, srcPath, null, toFetch, updated, counter);
+    } else {
+      for (String path : toFetch) {
+        fetch(containerId, srcPath + '/' + path, path, toFetch, updated, counter);
+      }
+    }
+
+    if (!toFetch.isEmpty() || !updated.asMap().equals(previous.asMap())) {
+      updated.write(manifestPath);
+    }
+
+    final long scanned = listing.getTotalSize();
+    bytesScanned.addAndGet(scanned);
+    bytesTransferred.addAndGet(counter.transferred);
+    bytesStored.addAndGet(counter.stored);
+    return new BackupStats(
+        workspaceId,
+        listing.size(),
+        counter.files,
+        scanned,
+        counter.transferred,
+        counter.stored,
+        System.currentTimeMillis() - start);
+  }
+
+  /**
+   * Fetches archive of the specified path from the container and stores entries which are included
+   * into the {@code toFetch} set.
+   *
+   * @param containerId id of container that contains data
+   * @param path path to fetch
+   * @param filePath path of fetched file relative to projects folder or {@code null} if the whole
+   *     projects folder is fetched
+   * @param toFetch paths relative to projects folder which should be backed up
+   * @param manifest manifest to add backed up entries to
+   * @param counter counter of transferred data
+   */
+  private void fetch(
+      String containerId,
+      String path,
+      String filePath,
+      Set<String> toFetch,
+      BackupManifest manifest,
+      TransferCounter counter)
+      throws IOException {
+    CountingInputStream counting;
+    try {
+      counting =
+          new CountingInputStream(
+              dockerConnector.getResource(GetResourceParams.create(containerId, path)));
+    } catch (DockerException e) {
+      if (e.getStatus() == 404) {
+        // file was removed after listing, it will be excluded from the manifest
+        return;
+      }
+      throw e;
+    }
+    try (TarArchiveInputStream tar = new TarArchiveInputStream(counting)) {
+      TarArchiveEntry tarEntry;
+      while ((tarEntry = tar.getNextTarEntry()) != null) {
+        String relativePath;
+        if (filePath == null) {
+          // entries of the folder archive are prefixed with the folder name
+          int slash = tarEntry.getName().indexOf('/');
+          relativePath =
+              slash < 0 ? "" : trimTrailingSlash(tarEntry.getName().substring(slash + 1));
+        } else {
+          // single file archive contains only one entry
+          relativePath = filePath;
+        }
+        if (!toFetch.contains(relativePath)) {
+          continue;
+        }
+
+        final long modificationTime = tarEntry.getModTime().getTime() / 1000;
+        final int mode = tarEntry.getMode() & 07777;
+        if (tarEntry.isSymbolicLink()) {
+          manifest.put(
+              new Entry(
+                  relativePath,
+                  Type.SYMLINK,
+                  0,
+                  modificationTime,
+                  mode,
+                  tarEntry.getLinkName(),
+                  null));
+        } else if (tarEntry.isFile()) {
+          List<String> chunks = storeChunks(tar, counter);
+          manifest.put(
+              new Entry(
+                  relativePath,
+                  Type.FILE,
+                  tarEntry.getSize(),
+                  modificationTime,
+                  mode,
+                  null,
+                  chunks));
+        } else {
+          continue;
+        }
+        counter.files++;
+      }
+    } finally {
+      counter.transferred += counting.getCount();
+    }
+  }
+
+  private List<String> storeChunks(InputStream content, TransferCounter counter)
+      throws IOException {
+    final List<String> chunks = new ArrayList<>();
+    final byte[] buffer = new byte[CHUNK_SIZE];
+    int read;
+    while ((read = ByteStreams.read(content, buffer, 0, CHUNK_SIZE)) > 0) {
+      String hash = Hashing.sha256().hashBytes(buffer, 0, read).toString();
+      if (chunkStore.put(hash, buffer, 0, read)) {
+        counter.stored += read;
+      }
+      chunks.add(hash);
+      if (read < CHUNK_SIZE) {
+        break;
+      }
+    }
+    return chunks;
+  }
+
+  /** Streams content of the manifest into the container as a tar archive. */
+  private void restore(
+      BackupManifest manifest, String containerId, String destinationPath, int userId, int groupId)
+      throws IOException {
+    Path archive = Files.createTempFile("workspace-restore-", ".tar");
+    try {
+      try (TarArchiveOutputStream tar =
+          new TarArchiveOutputStream(Files.newOutputStream(archive))) {
+        tar.setLongFileMode(TarArchiveOutputStream.LONGFILE_POSIX);
+        tar.setBigNumberMode(TarArchiveOutputStream.BIGNUMBER_POSIX);
+        writeEntries(manifest.getEntries(), tar, userId, groupId);
+      }
+      try (InputStream content = Files.newInputStream(archive)) {
+        dockerConnector.putResource(
+            PutResourceParams.create(containerId, destinationPath).withSourceStream(content));
+      }
+    } finally {
+      Files.deleteIfExists(archive);
+    }
+  }
+
+  /** Writes entries of the manifest with their content into the tar archive. */
+  private void writeEntries(
+      Iterable<Entry> entries, TarArchiveOutputStream tar, int userId, int groupId)
+      throws IOException {
+    for (Entry entry : entries) {
+      TarArchiveEntry tarEntry;
+      switch (entry.getType()) {
+        case DIRECTORY:
+          tarEntry = new TarArchiveEntry(entry.getPath() + '/');
+          tarEntry.setMode(040000 | entry.getMode());
+          break;
+        case SYMLINK:
+          tarEntry = new TarArchiveEntry(entry.getPath(), TarConstants.LF_SYMLINK);
+          tarEntry.setLinkName(entry.getLinkTarget());
+          tarEntry.setMode(0120000 | entry.getMode());
+          break;
+        default:
+          tarEntry = new TarArchiveEntry(entry.getPath());
+          tarEntry.setMode(0100000 | entry.getMode());
+          tarEntry.setSize(entry.getSize());
+      }
+      tarEntry.setUserId(userId);
+      tarEntry.setGroupId(groupId);
+      tarEntry.setModTime(entry.getModificationTime() * 1000);
+      tar.putArchiveEntry(tarEntry);
+      if (entry.getType() == Type.FILE) {
+        writeContent(entry, tar);
+      }
+      tar.closeArchiveEntry();
+    }
+  }
+
+  private void writeContent(Entry entry, OutputStream out) throws IOException {
+    long written = 0;
+    for (String chunk : entry.getChunks()) {
+      byte[] content = chunkStore.get(chunk);
+      out.write(content);
+      written += content.length;
+    }
+    if (written != entry.getSize()) {
+      throw new IOException(
+          format(
+              "Backup of file '%s' is corrupted. Expected size %s, actual size %s",
+              entry.getPath(), entry.getSize(), written));
+    }
+  }
+
+  /**
+   * Lists files, directories and symbolic links of projects folder in the container.
+   *
+   * <p>Listing fails if anything is written to the error output or the listing command exits with
+   * non-zero code, e.g. when a folder can't be read. Incomplete listing must never be used by
+   * backup as files which are missing in it are removed from the manifest and their chunks are
+   * collected.
+   *
+   * @return manifest with entries that don't have content chunks
+   * @throws ServerException if files can't be listed completely
+   */
+  private BackupManifest listFiles(String workspaceId, String containerId, String srcPath)
+      throws IOException, ServerException {
+    Exec exec =
+        dockerConnector.createExec(
+            CreateExecParams.create(
+                    containerId, new String[] {"sh", "-c", format(LIST_FILES_COMMAND, srcPath)})
+                .withDetach(false));
+    final BackupManifest listing = new BackupManifest();
+    final StringBuilder errors = new StringBuilder();
+    dockerConnector.startExec(
+        StartExecParams.create(exec.getId()),
+        logMessage -> {
+          if (logMessage.getType() != LogMessage.Type.STDOUT) {
+            errors.append(logMessage.getContent()).append('\n');
+            return;
+          }
+          Entry entry = parseListedEntry(logMessage.getContent());
+          if (entry != null) {
+            listing.put(entry);
+          }
+        });
+    final ExecInfo execInfo = dockerConnector.getExecInfo(exec.getId());
+    if (errors.length() > 0 || execInfo.getExitCode() != 0) {
+      throw new ServerException(
+          format(
+              "Can't list files of workspace %s for backup. Exit code: %s. Error: %s",
+              workspaceId, execInfo.getExitCode(), errors.toString().trim()));
+    }
+    return listing;
+  }
+
+  /**
+   * Returns paths of the given entries which exist in the destination folder of the container.
+   * Paths are checked by several commands if they don't fit into a single command line.
+   */
+  private Set<String> listExisting(
+      String containerId, String destinationPath, Collection<Entry> entries) throws IOException {
+    final Set<String> existing = new HashSet<>();
+    StringBuilder paths = new StringBuilder();
+    for (Entry entry : entries) {
+      paths.append(" '").append(entry.getPath().replace("'", "'\\''")).append('\'');
+      if (paths.length() > MAX_CHECKED_PATHS_LENGTH) {
+        existing.addAll(listExisting(containerId, destinationPath, paths.toString()));
+        paths = new StringBuilder();
+      }
+    }
+    if (paths.length() > 0) {
+      existing.addAll(listExisting(containerId, destinationPath, paths.toString()));
+    }
+    return existing;
+  }
+
+  private List<String> listExisting(String containerId, String destinationPath, String paths)
+      throws IOException {
+    Exec exec =
+        dockerConnector.createExec(
+            CreateExecParams.create(
+                    containerId,
+                    new String[] {
+                      "sh", "-c", format(LIST_EXISTING_FILES_COMMAND, destinationPath, paths)
+                    })
+                .withDetach(false));
+    final List<String> existing = new ArrayList<>();
+    final StringBuilder errors = new StringBuilder();
+    dockerConnector.startExec(
+        StartExecParams.create(exec.getId()),
+        logMessage -> {
+          if (logMessage.getType() != LogMessage.Type.STDOUT) {
+            errors.append(logMessage.getContent()).append('\n');
+          } else {
+            existing.add(logMessage.getContent());
+          }
+        });
+    if (errors.length() > 0) {
+      throw new IOException(
+          "Can't check which files exist in machine before restore. Error: "
+              + errors.toString().trim());
+    }
+    return existing;
+  }
+
+  /**
+   * Parses line of output of the {@code stat -c '%F|%s|%Y|%a|%n'} command.
+   *
+   * @return manifest entry or {@code null} if line is malformed
+   */
+  @VisibleForTesting
+  static Entry parseListedEntry(String line) {
+    String[] fields = line.split("\\|", 5);
+    if (fields.length != 5 || !fields[4].startsWith("./")) {
+      return null;
+    }
+    Type type;
+    if (fields[0].startsWith("directory")) {
+      type = Type.DIRECTORY;
+    } else if (fields[0].startsWith("symbolic link")) {
+      type = Type.SYMLINK;
+    } else {
+      type = Type.FILE;
+    }
+    try {
+      return new Entry(
+          fields[4].substring(2),
+          type,
+          type == Type.FILE ? Long.parseLong(fields[1]) : 0,
+          Long.parseLong(fields[2]),
+          Integer.parseInt(fields[3], 8) & 07777,
+          null,
+          null);
+    } catch (NumberFormatException e) {
+      return null;
+    }
+  }
+
+  private static String trimTrailingSlash(String path) {
+    return path.endsWith("/") ? path.substring(0, path.length() - 1) : path;
+  }
+
+  /**
+   * Restores files which are not included into the hot set. Files are split into batches which are
+   * streamed into machine by several parallel streams, the most recently modified files go first.
+   */
+  private class BackgroundRestore {
+    private final String workspaceId;
+    private final String containerId;
+    private final String destinationPath;
+    private final int userId;
+    private final int groupId;
+    private final long totalFiles;
+    private final long totalBytes;
+    private final long startTime;
+    private final AtomicLong restoredFiles;
+    private final AtomicLong restoredBytes;
+    private final Queue<List<Entry>> batches;
+    private final ConcurrentMap<String, Entry> pending;
+    // paths of the batches which are being streamed into machine
+    private final Set<String> inFlight;
+    private final List<Future<?>> streams;
+    private final AtomicInteger runningStreams;
+
+    private volatile RestoreProgress.Status status;
+    private volatile String error;
+    private volatile boolean cancelled;
+
+    private BackgroundRestore(
+        String workspaceId,
+        String containerId,
+        String destinationPath,
+        int userId,
+        int groupId,
+        BackupManifest manifest,
+        List<Entry> cold) {
+      this.workspaceId = workspaceId;
+      this.containerId = containerId;
+      this.destinationPath = destinationPath;
+      this.userId = userId;
+      this.groupId = groupId;
+      this.totalFiles = manifest.size();
+      this.totalBytes = manifest.getTotalSize();
+      this.startTime = System.currentTimeMillis();
+      this.restoredFiles = new AtomicLong();
+      this.restoredBytes = new AtomicLong();
+      this.batches = new ConcurrentLinkedQueue<>();
+      this.pending = new ConcurrentHashMap<>();
+      this.inFlight = ConcurrentHashMap.newKeySet();
+      this.streams = new CopyOnWriteArrayList<>();
+      this.runningStreams = new AtomicInteger();
+      this.status = RestoreProgress.Status.IN_PROGRESS;
+
+      final List<Entry> sorted = new ArrayList<>(cold);
+      sorted.sort(Comparator.comparingLong(Entry::getModificationTime).reversed());
+      List<Entry> batch = new ArrayList<>();
+      long batchSize = 0;
+      for (Entry entry : sorted) {
+        if (!batch.isEmpty()
+            && (batchSize + entry.getSize() > RESTORE_BATCH_MAX_BYTES
+                || batch.size() >= RESTORE_BATCH_MAX_FILES)) {
+          batches.add(batch);
+          batch = new ArrayList<>();
+          batchSize = 0;
+        }
+        batch.add(entry);
+        batchSize += entry.getSize();
+        pending.put(entry.getPath(), entry);
+      }
+      if (!batch.isEmpty()) {
+        batches.add(batch);
+      }
+    }
+
+    /** Starts streaming of batches after the hot set is restored. */
+    private synchronized void start(long hotFiles, long hotBytes) {
+      restoredFiles.addAndGet(hotFiles);
+      restoredBytes.addAndGet(hotBytes);
+      if (batches.isEmpty()) {
+        complete();
+        return;
+      }
+      final int streamsNumber = Math.min(parallelStreams, batches.size());
+      runningStreams.set(streamsNumber);
+      for (int i = 0; i < streamsNumber; i++) {
+        streams.add(restoreExecutor.submit(this::stream));
+      }
+    }
+
+    private void stream() {
+      try {
+        List<Entry> batch;
+        while (!cancelled
+            && status == RestoreProgress.Status.IN_PROGRESS
+            && (batch = takeBatch()) != null) {
+          try {
+            restoreBatch(batch);
+          } finally {
+            for (Entry entry : batch) {
+              pending.remove(entry.getPath());
+              inFlight.remove(entry.getPath());
+            }
+          }
+          for (Entry entry : batch) {
+            restoredBytes.addAndGet(entry.getSize());
+          }
+          restoredFiles.addAndGet(batch.size());
+          savePending();
+        }
+      } catch (Exception e) {
+        fail(e);
+      } finally {
+        if (runningStreams.decrementAndGet() == 0) {
+          complete();
+        }
+      }
+    }
+
+    /**
+     * Takes the next batch and marks its files as being restored, files which were released by
+     * backup are excluded from the batch.
+     *
+     * @return the next batch or {@code null} if there are no batches left
+     */
+    private synchronized List<Entry> takeBatch() {
+      List<Entry> batch;
+      while ((batch = batches.poll()) != null) {
+        final List<Entry> notReleased = new ArrayList<>(batch.size());
+        for (Entry entry : batch) {
+          if (pending.containsKey(entry.getPath())) {
+            notReleased.add(entry);
+            inFlight.add(entry.getPath());
+          }
+        }
+        if (!notReleased.isEmpty()) {
+          return notReleased;
+        }
+      }
+      return null;
+    }
+
+    /**
+     * Excludes the file from restore as it already exists in machine, so backup can take it from
+     * there.
+     *
+     * @return true if the file won't be written by restore, false if it is being restored
+     */
+    private synchronized boolean release(String path) throws IOException {
+      if (inFlight.contains(path)) {
+        return false;
+      }
+      final Entry released = pending.remove(path);
+      if (released != null) {
+        restoredFiles.incrementAndGet();
+        restoredBytes.addAndGet(released.getSize());
+        savePending();
+      }
+      return true;
+    }
+
+    /**
+     * Streams batch into machine, retries once if streaming fails. Files which already exist in
+     * machine, e.g. created by the user after workspace start, are skipped.
+     */
+    private void restoreBatch(List<Entry> batch) throws IOException {
+      try {
+        restoreNotExisting(batch);
+      } catch (IOException e) {
+        if (cancelled) {
+          throw e;
+        }
+        LOG.warn(
+            "Restoring of files of workspace '{}' failed, retrying. Error: {}",
+            workspaceId,
+            e.getMessage());
+        restoreNotExisting(batch);
+      }
+    }
+
+    private void restoreNotExisting(List<Entry> batch) throws IOException {
+      final Set<String> existing = listExisting(containerId, destinationPath, batch);
+      final BackupManifest part = new BackupManifest();
+      for (Entry entry : batch) {
+        if (!existing.contains(entry.getPath())) {
+          part.put(entry);
+        }
+      }
+      if (!existing.isEmpty()) {
+        LOG.debug(
+            "{} files of workspace '{}' already exist in machine and are not restored",
+            existing.size(),
+            workspaceId);
+      }
+      if (!part.isEmpty()) {
+        restore(part, containerId, destinationPath, userId, groupId);
+      }
+    }
+
+    /** Persists the list of not restored files, so backups don't lose them. */
+    private synchronized void savePending() throws IOException {
+      if (cancelled) {
+        return;
+      }
+      final BackupManifest notRestored = new BackupManifest();
+      pending.values().forEach(notRestored::put);
+      notRestored.write(getPendingRestorePath(workspaceId));
+    }
+
+    private synchronized void complete() {
+      if (cancelled || status != RestoreProgress.Status.IN_PROGRESS) {
+        return;
+      }
+      try {
+        Files.deleteIfExists(getPendingRestorePath(workspaceId));
+      } catch (IOException e) {
+        LOG.error(e.getLocalizedMessage(), e);
+      }
+      status = RestoreProgress.Status.COMPLETED;
+      LOG.debug(
+          "Restore of workspace '{}' finished in {}ms. Files: {}, bytes: {}",
+          workspaceId,
+          System.currentTimeMillis() - startTime,
+          totalFiles,
+          totalBytes);
+    }
+
+    private synchronized void fail(Exception e) {
+      if (cancelled || status != RestoreProgress.Status.IN_PROGRESS) {
+        return;
+      }
+      error = e.getMessage();
+      status = RestoreProgress.Status.FAILED;
+      LOG.error(
+          format(
+              "Restore of workspace '%s' failed, %s files are not restored",
+              workspaceId, pending.size()),
+          e);
+    }
+
+    private void cancel() {
+      synchronized (this) {
+        cancelled = true;
+      }
+      for (Future<?> stream : streams) {
+        stream.cancel(true);
+      }
+    }
+
+    private RestoreProgress getProgress() {
+      return new RestoreProgress(
+          workspaceId,
+          status,
+          totalFiles,
+          restoredFiles.get(),
+          totalBytes,
+          restoredBytes.get(),
+          startTime,
+          error);
+    }
+  }
+
+  private static class TransferCounter {
+    long files;
+    long transferred;
+    long stored;
+  }
+}
@@ -13,24 +13,33 @@ package com.codenvy.machine.backup;
 import static com.google.common.base.MoreObjects.firstNonNull;
 import static java.lang.String.format;
 import static java.util.Collections.emptyMap;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
 import static java.util.concurrent.TimeUnit.SECONDS;
 import static org.slf4j.LoggerFactory.getLogger;
 
+import com.codenvy.machine.agent.MachineInnerRsyncAgent;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.ImmutableSet;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import java.io.File;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeoutException;
 import java.util.concurrent.locks.ReentrantLock;
+import javax.annotation.PreDestroy;
 import javax.inject.Inject;
 import javax.inject.Named;
 import javax.inject.Singleton;
@@ -44,6 +53,7 @@ import org.eclipse.che.api.core.util.ListLineConsumer;
 import org.eclipse.che.api.core.util.ProcessUtil;
 import org.eclipse.che.api.core.util.ValueHolder;
 import org.eclipse.che.api.environment.server.exception.EnvironmentException;
+import org.eclipse.che.api.machine.server.spi.Instance;
 import org.eclipse.che.api.workspace.server.WorkspaceManager;
 import org.eclipse.che.api.workspace.server.model.impl.WorkspaceImpl;
 import org.eclipse.che.plugin.docker.client.DockerConnector;
@@ -74,6 +84,8 @@ public class DockerEnvironmentBackupManager implements EnvironmentBackupManager
   // user performs some files operations like git checkout. So we treat this situation as
   // successful.
   private static final Set<Integer> BACKUP_SUCCESS_RETURN_CODES = ImmutableSet.of(0, 24);
+  private static final int CHANGES_CHECK_THREADS = 10;
+  private static final long CHANGES_CHECK_TIMEOUT_SECONDS = 30;
 
   private final String backupScript;
   private final String restoreScript;
@@ -86,6 +98,7 @@ public class DockerEnvironmentBackupManager implements EnvironmentBackupManager
   private final ConcurrentMap<String, Map<String, User>> workspacesMachinesUsersInfo;
   private final WorkspaceManager workspaceManager;
   private final DockerConnector dockerConnector;
+  private final ExecutorService changesCheckExecutor;
 
   @Inject
   public DockerEnvironmentBackupManager(
@@ -110,6 +123,13 @@ public class DockerEnvironmentBackupManager implements EnvironmentBackupManager
 
     workspacesBackupLocks = new ConcurrentHashMap<>();
     workspacesMachinesUsersInfo = new ConcurrentHashMap<>();
+    changesCheckExecutor =
+        Executors.newFixedThreadPool(
+            CHANGES_CHECK_THREADS,
+            new ThreadFactoryBuilder()
+                .setNameFormat("WorkspaceChangesChecker-%s")
+                .setDaemon(true)
+                .build());
   }
 
   @Override
@@ -133,12 +153,117 @@ public class DockerEnvironmentBackupManager implements EnvironmentBackupManager
       String srcUserName = getUserInfo(workspaceId, dockerDevMachine.getContainer()).name;
       int syncPort = getSyncPort(dockerDevMachine);
 
-      backupInsideLock(workspaceId, projectFolderPath, nodeHost, syncPort, srcUserName, destPath);
+      backupInsideLock(
+          workspaceId,
+          dockerDevMachine.getContainer(),
+          projectFolderPath,
+          nodeHost,
+          syncPort,
+          srcUserName,
+          destPath);
     } catch (IOException e) {
       throw new ServerException(e.getLocalizedMessage(), e);
     }
   }
 
+  @Override
+  public String getBackupNode(String workspaceId) throws ServerException, NotFoundException {
+    DockerInstance devMachine = getRunningDevMachine(workspaceId);
+    return devMachine == null ? null : devMachine.getNode().getHost();
+  }
+
+  /**
+   * Checks changes of the workspaces in parallel. Workspace is considered changed if changes
+   * watcher of {@link MachineInnerRsyncAgent} is not running in its dev machine or check fails.
+   */
+  @Override
+  public Set<String> pollChangedWorkspaces(Set<String> workspaceIds) {
+    Map<String, Future<Boolean>> checks = new HashMap<>();
+    for (String workspaceId : workspaceIds) {
+      checks.put(workspaceId, changesCheckExecutor.submit(() -> hasChanges(workspaceId)));
+    }
+    long deadline = System.currentTimeMillis() + SECONDS.toMillis(CHANGES_CHECK_TIMEOUT_SECONDS);
+    Set<String> changed = new HashSet<>();
+    for (Map.Entry<String, Future<Boolean>> check : checks.entrySet()) {
+      try {
+        if (check
+            .getValue()
+            .get(Math.max(0, deadline - System.currentTimeMillis()), MILLISECONDS)) {
+          changed.add(check.getKey());
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        changed.add(check.getKey());
+      } catch (ExecutionException | TimeoutException e) {
+        check.getValue().cancel(true);
+        LOG.debug("Can't check changes of workspace {}. Error: {}", check.getKey(), e.getMessage());
+        changed.add(check.getKey());
+      }
+    }
+    return changed;
+  }
+
+  /**
+   * Checks whether files of workspace were changed since the previous check and resets the change
+   * mark.
+   *
+   * @return true if files were changed or changes are not tracked in the machine, false otherwise
+   */
+  @VisibleForTesting
+  boolean hasChanges(String workspaceId) throws ServerException, IOException {
+    DockerInstance devMachine;
+    try {
+      devMachine = getRunningDevMachine(workspaceId);
+    } catch (NotFoundException e) {
+      // workspace is not running, there is nothing to backup
+      return false;
+    }
+    if (devMachine == null) {
+      return false;
+    }
+    Exec exec =
+        dockerConnector.createExec(
+            CreateExecParams.create(
+                    devMachine.getContainer(),
+                    new String[] {"sh", "-c", MachineInnerRsyncAgent.CHECK_CHANGES_COMMAND})
+                .withDetach(false));
+    ValueHolder<String> state = new ValueHolder<>();
+    dockerConnector.startExec(
+        StartExecParams.create(exec.getId()),
+        logMessage -> {
+          if (logMessage.getType() == LogMessage.Type.STDOUT) {
+            state.set(logMessage.getContent());
+          }
+        });
+    return !MachineInnerRsyncAgent.UNCHANGED.equals(state.get());
+  }
+
+  @PreDestroy
+  public void shutdown() {
+    changesCheckExecutor.shutdownNow();
+  }
+
+  /**
+   * Returns dev machine of the workspace or {@code null} if it is not running or is not a docker
+   * machine.
+   */
+  private DockerInstance getRunningDevMachine(String workspaceId)
+      throws ServerException, NotFoundException {
+    WorkspaceImpl workspace = workspaceManager.getWorkspace(workspaceId);
+    if (workspace.getRuntime() == null) {
+      throw new NotFoundException("Workspace is not running");
+    }
+    Machine devMachine = workspace.getRuntime().getDevMachine();
+    if (devMachine == null || devMachine.getStatus() != MachineStatus.RUNNING) {
+      return null;
+    }
+    Instance instance = workspaceManager.getMachineInstance(workspaceId, devMachine.getId());
+    if (!(instance instanceof DockerInstance)) {
+      return null;
+    }
+    return (DockerInstance) instance;
+  }
+
   /**
    * Copy files of workspace into backup storage and cleanup them in container.
    *
@@ -158,7 +283,7 @@ public class DockerEnvironmentBackupManager implements EnvironmentBackupManager
       String srcUserName = getUserInfo(workspaceId, containerId).name;
 
       backupAndCleanupInsideLock(
-          workspaceId, projectFolderPath, nodeHost, syncPort, srcUserName, destPath);
+          workspaceId, containerId, projectFolderPath, nodeHost, syncPort, srcUserName, destPath);
     } catch (IOException e) {
       throw new ServerException(e.getLocalizedMessage(), e);
     } finally {
@@ -190,6 +315,7 @@ public class DockerEnvironmentBackupManager implements EnvironmentBackupManager
 
       restoreBackupInsideLock(
           workspaceId,
+          containerId,
           srcPath,
           projectFolderPath,
           user.id,
@@ -208,6 +334,7 @@ public class DockerEnvironmentBackupManager implements EnvironmentBackupManager
 
   private void backupInsideLock(
       String workspaceId,
+      String containerId,
       String srcPath,
       String srcAddress,
       int srcPort,
@@ -228,8 +355,8 @@ public class DockerEnvironmentBackupManager implements EnvironmentBackupManager
             // because it is called after cleanup
             return;
           }
-          executeBackupScript(
-              workspaceId, srcPath, srcAddress, srcPort, false, srcUserName, destPath);
+          executeBackup(
+              workspaceId, containerId, srcPath, srcAddress, srcPort, false, srcUserName, destPath);
         } finally {
           lock.unlock();
         }
@@ -241,6 +368,7 @@ public class DockerEnvironmentBackupManager implements EnvironmentBackupManager
 
   private void backupAndCleanupInsideLock(
       String workspaceId,
+      String containerId,
       String srcPath,
       String srcAddress,
       int srcPort,
@@ -259,7 +387,8 @@ public class DockerEnvironmentBackupManager implements EnvironmentBackupManager
               workspaceId);
           return;
         }
-        executeBackupScript(workspaceId, srcPath, srcAddress, srcPort, true, srcUserName, destPath);
+        executeBackup(
+            workspaceId, containerId, srcPath, srcAddress, srcPort, true, srcUserName, destPath);
       } finally {
         workspacesBackupLocks.remove(workspaceId);
         lock.unlock();
@@ -271,6 +400,7 @@ public class DockerEnvironmentBackupManager implements EnvironmentBackupManager
 
   private void restoreBackupInsideLock(
       String workspaceId,
+      String containerId,
       String srcPath,
       String destinationPath,
       String destUserId,
@@ -296,23 +426,16 @@ public class DockerEnvironmentBackupManager implements EnvironmentBackupManager
       // TODO refactor that code to eliminate creation of directories here
       Files.createDirectories(Paths.get(srcPath));
 
-      CommandLine commandLine =
-          new CommandLine(
-              restoreScript,
-              srcPath,
-              destinationPath,
-              destAddress,
-              Integer.toString(destPort),
-              destUserId,
-              destGroupId,
-              destUserName);
-
-      executeCommand(
-          commandLine.asArray(),
-          restoreDuration,
-          destAddress,
+      executeRestore(
           workspaceId,
-          RESTORE_SUCCESS_RETURN_CODES);
+          containerId,
+          srcPath,
+          destinationPath,
+          destUserId,
+          destGroupId,
+          destUserName,
+          destAddress,
+          destPort);
       restored = true;
     } catch (TimeoutException e) {
       throw new ServerException(
@@ -347,8 +470,25 @@ public class DockerEnvironmentBackupManager implements EnvironmentBackupManager
     }
   }
 
-  private void executeBackupScript(
+  /**
+   * Copies files of workspace from the container into backup storage. Invoked under the workspace
+   * backup lock.
+   *
+   * <p>Default implementation runs {@code machine.backup.backup_script}.
+   *
+   * @param workspaceId id of workspace to backup
+   * @param containerId id of container that contains data
+   * @param srcPath path to projects folder inside of container
+   * @param srcAddress host of a node where container is running
+   * @param srcPort published sync port of container
+   * @param removeSourceOnSuccess whether files should be removed from container after backup
+   * @param srcUserName name of user in container
+   * @param destPath path to workspace folder in backup storage
+   * @throws ServerException if backup fails
+   */
+  protected void executeBackup(
       String workspaceId,
+      String containerId,
       String srcPath,
       String srcAddress,
       int srcPort,
@@ -400,6 +540,57 @@ public class DockerEnvironmentBackupManager implements EnvironmentBackupManager
     }
   }
 
+  /**
+   * Copies files of workspace from backup storage into the container. Invoked under the workspace
+   * backup lock.
+   *
+   * <p>Default implementation runs {@code machine.backup.restore_script}.
+   *
+   * @param workspaceId id of workspace to restore
+   * @param containerId id of container where data should be copied
+   * @param srcPath path to workspace folder in backup storage
+   * @param destinationPath path to projects folder inside of container
+   * @param destUserId id of user in container
+   * @param destGroupId id of group of user in container
+   * @param destUserName name of user in container
+   * @param destAddress host of a node where container is running
+   * @param destPort published sync port of container
+   * @throws TimeoutException if restore takes longer than {@code
+   *     machine.backup.restore_duration_second}
+   * @throws IOException if restore fails
+   * @throws InterruptedException if restoring thread is interrupted
+   * @throws ServerException if any other error occurs
+   */
+  protected void executeRestore(
+      String workspaceId,
+      String containerId,
+      String srcPath,
+      String destinationPath,
+      String destUserId,
+      String destGroupId,
+      String destUserName,
+      String destAddress,
+      int destPort)
+      throws TimeoutException, IOException, InterruptedException, ServerException {
+    CommandLine commandLine =
+        new CommandLine(
+            restoreScript,
+            srcPath,
+            destinationPath,
+            destAddress,
+            Integer.toString(destPort),
+            destUserId,
+            destGroupId,
+            destUserName);
+
+    executeCommand(
+        commandLine.asArray(),
+        restoreDuration,
+        destAddress,
+        workspaceId,
+        RESTORE_SUCCESS_RETURN_CODES);
+  }
+
   /**
    * Returns user id, group id and username in container. This method caches info about users and on
    * second and subsequent calls cached value will be returned.
@@ -10,6 +10,7 @@
  */
 package com.codenvy.machine.backup;
 
+import java.util.Set;
 import org.eclipse.che.api.core.NotFoundException;
 import org.eclipse.che.api.core.ServerException;
 
@@ -27,4 +28,40 @@ public interface EnvironmentBackupManager {
    * @throws ServerException if any other error occurs
    */
   void backupWorkspace(String workspaceId) throws ServerException, NotFoundException;
+
+  /**
+   * Returns host of the node where files of the workspace are located. Backups of workspaces on the
+   * same node share that node's resources, so scheduler limits the number of simultaneous backups
+   * per node.
+   *
+   * @param workspaceId id of workspace
+   * @return host of the node or {@code null} if it is unknown
+   * @throws NotFoundException if workspace is not found or not running
+   * @throws ServerException if any other error occurs
+   */
+  default String getBackupNode(String workspaceId) throws ServerException, NotFoundException {
+    return null;
+  }
+
+  /**
+   * Checks which of the workspaces have changes in their files since the previous check. Change
+   * mark of a workspace is reset by the check, so caller is responsible for remembering changed
+   * workspaces until they are backed up.
+   *
+   * <p>Default implementation doesn't track changes and considers all the workspaces as changed.
+   *
+   * @param workspaceIds ids of running workspaces to check
+   * @return ids of workspaces that have changes or for which it is unknown whether they have any
+   */
+  default Set<String> pollChangedWorkspaces(Set<String> workspaceIds) {
+    return workspaceIds;
+  }
+
+  /**
+   * Returns statistics of the last successful backup of the workspace or {@code null} if they are
+   * not available.
+   */
+  default BackupStats getLastBackupStats(String workspaceId) {
+    return null;
+  }
 }
@@ -0,0 +1,112 @@
+/*
+ * Copyright (c) [2012] - [2017] Red Hat, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *   Red Hat, Inc. - initial API and implementation
+ */
+package com.codenvy.machine.backup;
+
+/**
+ * Progress of restoring of workspace files into machine.
+ *
+ * <p>Files of the hot set are restored before workspace start continues, the rest of the files are
+ * restored in background. Counters include both parts.
+ */
+public class RestoreProgress {
+  /** State of the restore. */
+  public enum Status {
+    IN_PROGRESS,
+    COMPLETED,
+    FAILED
+  }
+
+  private final String workspaceId;
+  private final Status status;
+  private final long totalFiles;
+  private final long restoredFiles;
+  private final long totalBytes;
+  private final long restoredBytes;
+  private final long startTime;
+  private final String error;
+
+  public RestoreProgress(
+      String workspaceId,
+      Status status,
+      long totalFiles,
+      long restoredFiles,
+      long totalBytes,
+      long restoredBytes,
+      long startTime,
+      String error) {
+    this.workspaceId = workspaceId;
+    this.status = status;
+    this.totalFiles = totalFiles;
+    this.restoredFiles = restoredFiles;
+    this.totalBytes = totalBytes;
+    this.restoredBytes = restoredBytes;
+    this.startTime = startTime;
+    this.error = error;
+  }
+
+  public String getWorkspaceId() {
+    return workspaceId;
+  }
+
+  public Status getStatus() {
+    return status;
+  }
+
+  public long getTotalFiles() {
+    return totalFiles;
+  }
+
+  public long getRestoredFiles() {
+    return restoredFiles;
+  }
+
+  public long getTotalBytes() {
+    return totalBytes;
+  }
+
+  public long getRestoredBytes() {
+    return restoredBytes;
+  }
+
+  /** Time when restore started in milliseconds since the epoch. */
+  public long getStartTime() {
+    return startTime;
+  }
+
+  /** Error message if restore failed, {@code null} otherwise. */
+  public String getError() {
+    return error;
+  }
+
+  @Override
+  public String toString() {
+    return "RestoreProgress{"
+        + "workspaceId='"
+        + workspaceId
+        + '\''
+        + ", status="
+        + status
+        + ", totalFiles="
+        + totalFiles
+        + ", restoredFiles="
+        + restoredFiles
+        + ", totalBytes="
+        + totalBytes
+        + ", restoredBytes="
+        + restoredBytes
+        + ", startTime="
+        + startTime
+        + ", error='"
+        + error
+        + '\''
+        + '}';
+  }
+}
@@ -0,0 +1,61 @@
+/*
+ * Copyright (c) [2012] - [2017] Red Hat, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *   Red Hat, Inc. - initial API and implementation
+ */
+package com.codenvy.machine.backup;
+
+import io.swagger.annotations.Api;
+import io.swagger.annotations.ApiOperation;
+import io.swagger.annotations.ApiParam;
+import io.swagger.annotations.ApiResponse;
+import io.swagger.annotations.ApiResponses;
+import javax.inject.Inject;
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.PathParam;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.MediaType;
+import org.eclipse.che.api.core.NotFoundException;
+import org.eclipse.che.api.core.rest.Service;
+
+/** Defines REST API of workspace backups. */
+@Path("/backup")
+@Api(value = "backup", description = "Workspace backup service")
+public class WorkspaceBackupService extends Service {
+
+  private final ChunkedDockerEnvironmentBackupManager backupManager;
+
+  @Inject
+  public WorkspaceBackupService(ChunkedDockerEnvironmentBackupManager backupManager) {
+    this.backupManager = backupManager;
+  }
+
+  @GET
+  @Path("/{workspaceId}/restore")
+  @Produces(MediaType.APPLICATION_JSON)
+  @ApiOperation(
+      value = "Get progress of the restore of workspace files",
+      notes = "Files which are not in the hot set are restored in background after workspace start")
+  @ApiResponses(
+      value = {
+        @ApiResponse(code = 200, message = "OK"),
+        @ApiResponse(code = 404, message = "Workspace files are not being restored"),
+        @ApiResponse(code = 500, message = "Server error")
+      })
+  public RestoreProgress getRestoreProgress(
+      @ApiParam("Workspace id") @PathParam("workspaceId") String workspaceId)
+      throws NotFoundException {
+    final RestoreProgress progress = backupManager.getRestoreProgress(workspaceId);
+    if (progress == null) {
+      throw new NotFoundException(
+          "Files of workspace '" + workspaceId + "' are not being restored");
+    }
+    return progress;
+  }
+}
@@ -0,0 +1,41 @@
+/*
+ * Copyright (c) [2012] - [2017] Red Hat, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *   Red Hat, Inc. - initial API and implementation
+ */
+package com.codenvy.machine.backup;
+
+import static org.eclipse.che.multiuser.permission.workspace.server.WorkspaceDomain.READ;
+
+import javax.ws.rs.Path;
+import org.eclipse.che.api.core.ApiException;
+import org.eclipse.che.api.core.ForbiddenException;
+import org.eclipse.che.commons.env.EnvironmentContext;
+import org.eclipse.che.everrest.CheMethodInvokerFilter;
+import org.eclipse.che.multiuser.permission.workspace.server.WorkspaceDomain;
+import org.everrest.core.Filter;
+import org.everrest.core.resource.GenericResourceMethod;
+
+/** Filter that covers calls to {@link WorkspaceBackupService} with authorization. */
+@Filter
+@Path("/backup{path:(/.*)?}")
+public class WorkspaceBackupServicePermissionsFilter extends CheMethodInvokerFilter {
+  @Override
+  protected void filter(GenericResourceMethod genericResourceMethod, Object[] arguments)
+      throws ApiException {
+    String methodName = genericResourceMethod.getMethod().getName();
+    if ("getRestoreProgress".equals(methodName)) {
+      EnvironmentContext.getCurrent()
+          .getSubject()
+          .checkPermission(WorkspaceDomain.DOMAIN_ID, (String) arguments[0], READ);
+    } else {
+      // unknown method
+      throw new ForbiddenException("User is not authorized to perform this operation");
+    }
+  }
+}
@@ -10,14 +10,26 @@
  */
 package com.codenvy.machine.backup;
 
+import com.codahale.metrics.annotation.Gauge;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import javax.annotation.PreDestroy;
 import javax.inject.Inject;
 import javax.inject.Named;
@@ -37,89 +49,92 @@ import org.slf4j.LoggerFactory;
 /**
  * Schedule backups of projects of running workspace.
  *
+ * <p>Workspaces that are due for backup are put into a queue. Backups from the queue are started
+ * while the number of running backups is below the global limit and the node of the workspace has a
+ * free slot in {@link BackupConcurrencyLimiter}. Workspaces that weren't backed up for the longest
+ * time go first, workspaces that had large changes in their previous backup are aged faster. Backup
+ * period of each workspace is shifted by a random jitter, so workspaces started at the same time
+ * (e.g. after restart of the server) don't come to the queue all at once.
+ *
  * @author Alexander Garagatyi
  */
 @Singleton
 public class WorkspaceFsBackupScheduler {
   private static final Logger LOG = LoggerFactory.getLogger(WorkspaceFsBackupScheduler.class);
 
+  private static final long MEGABYTE = 1024 * 1024;
+
   private final long syncTimeoutMillisecond;
+  private final long jitterMillisecond;
+  private final int maxParallelBackups;
   private final WorkspaceRuntimes workspaceRuntimes;
-  private final Map<String, Long> lastWorkspaceSynchronizationTime;
+  private final ConcurrentMap<String, BackupState> backupStates;
   private final ExecutorService executor;
   private final ConcurrentMap<String, String> workspacesBackupsInProgress;
   private final Map<String, EnvironmentBackupManager> backupManagers;
   private final WorkspaceManager workspaceManager;
+  private final BackupConcurrencyLimiter concurrencyLimiter;
+  // guarded by itself
+  private final Map<String, BackupTask> backupQueue;
+  private final AtomicInteger runningBackups;
+  private final AtomicLong skippedUnchangedBackups;
 
   @Inject
   public WorkspaceFsBackupScheduler(
       Map<String, EnvironmentBackupManager> backupManagers,
       WorkspaceRuntimes workspaceRuntimes,
       @Named("machine.backup.backup_period_second") long syncTimeoutSecond,
-      WorkspaceManager workspaceManager) {
+      @Named("machine.backup.backup_jitter_second") long jitterSecond,
+      @Named("machine.backup.max_parallel_backups") int maxParallelBackups,
+      WorkspaceManager workspaceManager,
+      BackupConcurrencyLimiter concurrencyLimiter) {
     this.workspaceRuntimes = workspaceRuntimes;
     this.backupManagers = backupManagers;
     this.syncTimeoutMillisecond = TimeUnit.SECONDS.toMillis(syncTimeoutSecond);
+    this.jitterMillisecond = TimeUnit.SECONDS.toMillis(jitterSecond);
+    this.maxParallelBackups = maxParallelBackups;
     this.workspaceManager = workspaceManager;
+    this.concurrencyLimiter = concurrencyLimiter;
 
     this.executor =
-        Executors.newCachedThreadPool(
+        Executors.newFixedThreadPool(
+            maxParallelBackups,
             new ThreadFactoryBuilder()
                 .setNameFormat("WorkspaceFsBackupScheduler-%s")
                 .setUncaughtExceptionHandler(LoggingUncaughtExceptionHandler.getInstance())
                 .build());
-    this.lastWorkspaceSynchronizationTime = new ConcurrentHashMap<>();
+    this.backupStates = new ConcurrentHashMap<>();
     this.workspacesBackupsInProgress = new ConcurrentHashMap<>();
+    this.backupQueue = new LinkedHashMap<>();
+    this.runningBackups = new AtomicInteger();
+    this.skippedUnchangedBackups = new AtomicLong();
+
+    // node slot freed by backup on workspace stop may be used by queued backup
+    concurrencyLimiter.addReleaseListener(this::startQueuedBackups);
   }
 
   @ScheduleRate(initialDelay = 1, period = 1, unit = TimeUnit.MINUTES)
   public void scheduleBackup() {
-    for (String workspaceId : workspaceRuntimes.getRuntimesIds()) {
-
+    Set<String> runtimesIds = new HashSet<>(workspaceRuntimes.getRuntimesIds());
+    Map<EnvironmentBackupManager, Set<String>> dueWorkspaces = new HashMap<>();
+    for (String workspaceId : runtimesIds) {
       try {
         // re-read workspace state to ensure that it's still active after processing of all previous
         // workspaces
         WorkspaceImpl workspace = workspaceManager.getWorkspace(workspaceId);
-        // get active env from this WS instead of wsStateEntry because
-        // workspace could be restarted during backup of previous WSs with another environment
-        WorkspaceRuntimeImpl runtime = workspace.getRuntime();
         // If workspace is not in RUNNING state skip it
-        if (workspace.getStatus().equals(WorkspaceStatus.RUNNING)) {
-          if (isTimeToBackup(workspaceId)) {
-            executor.execute(
-                () -> {
-                  // don't start new backup if previous one is in progress
-                  if (workspacesBackupsInProgress.putIfAbsent(workspaceId, workspaceId) == null) {
-                    try {
-                      String environmentType =
-                          workspace
-                              .getConfig()
-                              .getEnvironments()
-                              .get(runtime.getActiveEnv())
-                              .getRecipe()
-                              .getType();
-                      EnvironmentBackupManager backupManager = backupManagers.get(environmentType);
-                      if (backupManager == null) {
-                        throw new ServerException(
-                            "Backing up of environment of type "
-                                + environmentType
-                                + " is not implemented.");
-                      }
-
-                      backupManager.backupWorkspace(workspaceId);
-
-                      lastWorkspaceSynchronizationTime.put(workspaceId, System.currentTimeMillis());
-                    } catch (NotFoundException ignore) {
-                      // it is ok, machine was stopped while this backup task was in the executor
-                      // queue
-                    } catch (Exception e) {
-                      LOG.error(e.getLocalizedMessage(), e);
-                    } finally {
-                      workspacesBackupsInProgress.remove(workspaceId);
-                    }
-                  }
-                });
+        if (workspace.getStatus().equals(WorkspaceStatus.RUNNING)
+            // don't queue new backup if previous one is in progress
+            && !workspacesBackupsInProgress.containsKey(workspaceId)
+            && isTimeToBackup(workspaceId)) {
+          synchronized (backupQueue) {
+            if (backupQueue.containsKey(workspaceId)) {
+              continue;
+            }
           }
+          dueWorkspaces
+              .computeIfAbsent(getBackupManager(workspace), manager -> new HashSet<>())
+              .add(workspaceId);
         }
       } catch (NotFoundException e) {
         // it's ok, means that ws is removed already
@@ -127,14 +142,219 @@ public class WorkspaceFsBackupScheduler {
         LOG.error(e.getLocalizedMessage(), e);
       }
     }
+
+    for (Map.Entry<EnvironmentBackupManager, Set<String>> entry : dueWorkspaces.entrySet()) {
+      EnvironmentBackupManager backupManager = entry.getKey();
+      Set<String> changed = backupManager.pollChangedWorkspaces(entry.getValue());
+      for (String workspaceId : entry.getValue()) {
+        BackupState state = backupStates.get(workspaceId);
+        if (state == null) {
+          continue;
+        }
+        if (changed.contains(workspaceId)) {
+          state.hasChanges = true;
+        }
+        if (!state.hasChanges) {
+          // nothing to backup, check workspace again when the next backup is due
+          skippedUnchangedBackups.incrementAndGet();
+          state.nextBackupTime = System.currentTimeMillis() + syncTimeoutMillisecond + nextJitter();
+          continue;
+        }
+        try {
+          BackupTask task =
+              new BackupTask(
+                  workspaceId,
+                  backupManager,
+                  backupManager.getBackupNode(workspaceId),
+                  state.nextBackupTime);
+          synchronized (backupQueue) {
+            backupQueue.putIfAbsent(workspaceId, task);
+          }
+        } catch (NotFoundException e) {
+          // it's ok, means that ws is stopped already
+        } catch (ServerException e) {
+          LOG.error(e.getLocalizedMessage(), e);
+        }
+      }
+    }
+
+    // forget workspaces that are not running anymore
+    backupStates.keySet().retainAll(runtimesIds);
+    synchronized (backupQueue) {
+      backupQueue.keySet().retainAll(runtimesIds);
+    }
+
+    startQueuedBackups();
   }
 
   @VisibleForTesting
   boolean isTimeToBackup(String workspaceId) {
-    final Long lastWorkspaceSyncTime = lastWorkspaceSynchronizationTime.get(workspaceId);
+    final long now = System.currentTimeMillis();
+    final BackupState state =
+        backupStates.computeIfAbsent(workspaceId, id -> new BackupState(now, now + nextJitter()));
+
+    return now >= state.nextBackupTime;
+  }
+
+  /** Returns the number of workspaces which wait in the queue for backup. */
+  @Gauge(name = "machine.backup.scheduler.queue_size")
+  public int getQueueSize() {
+    synchronized (backupQueue) {
+      return backupQueue.size();
+    }
+  }
+
+  /** Returns the number of due backups which were skipped because workspace had no changes. */
+  @Gauge(name = "machine.backup.scheduler.skipped_unchanged")
+  public long getSkippedUnchangedBackups() {
+    return skippedUnchangedBackups.get();
+  }
+
+  /** Returns the number of scheduled backups that are currently running. */
+  @Gauge(name = "machine.backup.scheduler.backups_in_progress")
+  public int getBackupsInProgress() {
+    return runningBackups.get();
+  }
+
+  /**
+   * Returns the longest delay in milliseconds between the time backup of a workspace became due and
+   * now among workspaces that wait in the queue.
+   */
+  @Gauge(name = "machine.backup.scheduler.max_lag_ms")
+  public long getMaxLagMillis() {
+    final long now = System.currentTimeMillis();
+    long maxLag = 0;
+    synchronized (backupQueue) {
+      for (BackupTask task : backupQueue.values()) {
+        maxLag = Math.max(maxLag, now - task.dueTime);
+      }
+    }
+    return maxLag;
+  }
+
+  /** Starts backups from the queue in priority order while there are free slots. */
+  @VisibleForTesting
+  void startQueuedBackups() {
+    synchronized (backupQueue) {
+      if (backupQueue.isEmpty() || executor.isShutdown()) {
+        return;
+      }
+      final long now = System.currentTimeMillis();
+      final List<BackupTask> tasks = new ArrayList<>(backupQueue.values());
+      tasks.sort(Comparator.comparingDouble((BackupTask task) -> -task.getPriority(now)));
+      for (BackupTask task : tasks) {
+        if (runningBackups.get() >= maxParallelBackups) {
+          return;
+        }
+        if (!concurrencyLimiter.tryAcquire(task.node)) {
+          // node is busy, task stays in the queue
+          continue;
+        }
+        backupQueue.remove(task.workspaceId);
+        workspacesBackupsInProgress.put(task.workspaceId, task.workspaceId);
+        runningBackups.incrementAndGet();
+        try {
+          executor.execute(() -> runBackup(task));
+        } catch (RejectedExecutionException e) {
+          // server is shutting down
+          finishBackup(task);
+          return;
+        }
+      }
+    }
+  }
+
+  private void runBackup(BackupTask task) {
+    try {
+      task.backupManager.backupWorkspace(task.workspaceId);
+
+      final long now = System.currentTimeMillis();
+      final BackupState state = backupStates.get(task.workspaceId);
+      if (state != null) {
+        state.lastBackupTime = now;
+        state.hasChanges = false;
+        state.nextBackupTime = now + syncTimeoutMillisecond + nextJitter();
+      }
+    } catch (NotFoundException ignore) {
+      // it is ok, machine was stopped while this backup task was in the queue
+    } catch (Exception e) {
+      LOG.error(e.getLocalizedMessage(), e);
+    } finally {
+      // freed node slot lets the next queued backup start
+      finishBackup(task);
+    }
+  }
+
+  private void finishBackup(BackupTask task) {
+    runningBackups.decrementAndGet();
+    workspacesBackupsInProgress.remove(task.workspaceId);
+    concurrencyLimiter.release(task.node);
+  }
 
-    return lastWorkspaceSyncTime == null
-        || System.currentTimeMillis() - lastWorkspaceSyncTime > syncTimeoutMillisecond;
+  private EnvironmentBackupManager getBackupManager(WorkspaceImpl workspace)
+      throws ServerException {
+    // get active env from this WS instead of wsStateEntry because
+    // workspace could be restarted during backup of previous WSs with another environment
+    WorkspaceRuntimeImpl runtime = workspace.getRuntime();
+    String environmentType =
+        workspace.getConfig().getEnvironments().get(runtime.getActiveEnv()).getRecipe().getType();
+    EnvironmentBackupManager backupManager = backupManagers.get(environmentType);
+    if (backupManager == null) {
+      throw new ServerException(
+          "Backing up of environment of type " + environmentType + " is not implemented.");
+    }
+    return backupManager;
+  }
+
+  private long nextJitter() {
+    return jitterMillisecond > 0 ? ThreadLocalRandom.current().nextLong(jitterMillisecond) : 0;
+  }
+
+  /** Backup timings of a running workspace. */
+  private static class BackupState {
+    private final long firstSeenTime;
+
+    private volatile long lastBackupTime;
+    private volatile long nextBackupTime;
+    // workspace is considered changed until it is backed up for the first time
+    private volatile boolean hasChanges = true;
+
+    private BackupState(long firstSeenTime, long nextBackupTime) {
+      this.firstSeenTime = firstSeenTime;
+      this.nextBackupTime = nextBackupTime;
+    }
+  }
+
+  /** Backup of a workspace which waits in the queue. */
+  private class BackupTask {
+    private final String workspaceId;
+    private final EnvironmentBackupManager backupManager;
+    private final String node;
+    private final long dueTime;
+
+    private BackupTask(
+        String workspaceId, EnvironmentBackupManager backupManager, String node, long dueTime) {
+      this.workspaceId = workspaceId;
+      this.backupManager = backupManager;
+      this.node = node;
+      this.dueTime = dueTime;
+    }
+
+    /**
+     * Priority grows with the time passed since the last backup of the workspace. Amount of data
+     * transferred by the previous backup multiplies it, so actively changed workspaces are backed
+     * up before idle ones that were backed up at about the same time.
+     */
+    private double getPriority(long now) {
+      final BackupState state = backupStates.get(workspaceId);
+      long staleness = 0;
+      if (state != null) {
+        staleness = now - (state.lastBackupTime > 0 ? state.lastBackupTime : state.firstSeenTime);
+      }
+      final BackupStats stats = backupManager.getLastBackupStats(workspaceId);
+      final long changedMegabytes = stats == null ? 0 : stats.getBytesTransferred() / MEGABYTE;
+      return Math.max(staleness, 1) * (1 + Math.log1p(changedMegabytes));
+    }
   }
 
   @PreDestroy
@@ -0,0 +1,352 @@
+/*
+ * Copyright (c) [2012] - [2017] Red Hat, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *   Red Hat, Inc. - initial API and implementation
+ */
+package com.codenvy.machine.backup.storage;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+
+/**
+ * Describes state of workspace projects folder at the moment of the last successful backup.
+ *
+ * <p>Manifest contains entry for each file, directory and symbolic link of the projects folder.
+ * Entries of regular files hold hashes of chunks that form content of the file, chunks themselves
+ * are kept in {@link ChunkStore}. Manifest is stored as a text file with one tab separated entry
+ * per line, entries are sorted by path so parent directories always precede their children.
+ */
+public class BackupManifest {
+  private static final String HEADER = "# codenvy workspace backup manifest v1";
+
+  /** Type of manifest entry. */
+  public enum Type {
+    FILE,
+    DIRECTORY,
+    SYMLINK
+  }
+
+  /** Manifest entry that describes single file, directory or symbolic link. */
+  public static class Entry {
+    private final String path;
+    private final Type type;
+    private final long size;
+    private final long modificationTime;
+    private final int mode;
+    private final String linkTarget;
+    private final List<String> chunks;
+
+    public Entry(
+        String path,
+        Type type,
+        long size,
+        long modificationTime,
+        int mode,
+        String linkTarget,
+        List<String> chunks) {
+      this.path = path;
+      this.type = type;
+      this.size = size;
+      this.modificationTime = modificationTime;
+      this.mode = mode;
+      this.linkTarget = linkTarget;
+      this.chunks = chunks == null ? Collections.emptyList() : chunks;
+    }
+
+    /** Path relative to the projects folder. */
+    public String getPath() {
+      return path;
+    }
+
+    public Type getType() {
+      return type;
+    }
+
+    /** Size of file content in bytes. */
+    public long getSize() {
+      return size;
+    }
+
+    /** Modification time in seconds since the epoch. */
+    public long getModificationTime() {
+      return modificationTime;
+    }
+
+    /** Permission bits of the entry. */
+    public int getMode() {
+      return mode;
+    }
+
+    /** Target of symbolic link or {@code null} if entry is not a symbolic link. */
+    public String getLinkTarget() {
+      return linkTarget;
+    }
+
+    /** Hashes of chunks that form content of the file in the order of their appearance. */
+    public List<String> getChunks() {
+      return chunks;
+    }
+
+    /**
+     * Checks whether this entry describes the same state of the file as provided one regardless of
+     * the content chunks.
+     */
+    public boolean isSameState(Entry other) {
+      return other != null
+          && type == other.type
+          && size == other.size
+          && modificationTime == other.modificationTime
+          && mode == other.mode;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (this == obj) {
+        return true;
+      }
+      if (!(obj instanceof Entry)) {
+        return false;
+      }
+      final Entry that = (Entry) obj;
+      return isSameState(that)
+          && Objects.equals(path, that.path)
+          && Objects.equals(linkTarget, that.linkTarget)
+          && Objects.equals(chunks, that.chunks);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(path, type, size, modificationTime, mode, linkTarget, chunks);
+    }
+
+    @Override
+    public String toString() {
+      return "Entry{"
+          + "path='"
+          + path
+          + '\''
+          + ", type="
+          + type
+          + ", size="
+          + size
+          + ", modificationTime="
+          + modificationTime
+          + ", mode="
+          + Integer.toOctalString(mode)
+          + ", linkTarget='"
+          + linkTarget
+          + '\''
+          + ", chunks="
+          + chunks
+          + '}';
+    }
+  }
+
+  private final TreeMap<String, Entry> entries;
+
+  public BackupManifest() {
+    this.entries = new TreeMap<>();
+  }
+
+  /** Returns entry with the specified path or {@code null} if there is no such entry. */
+  public Entry get(String path) {
+    return entries.get(path);
+  }
+
+  public void put(Entry entry) {
+    entries.put(entry.getPath(), entry);
+  }
+
+  public Entry remove(String path) {
+    return entries.remove(path);
+  }
+
+  /** Returns entries sorted by path. */
+  public Collection<Entry> getEntries() {
+    return Collections.unmodifiableCollection(entries.values());
+  }
+
+  public int size() {
+    return entries.size();
+  }
+
+  public boolean isEmpty() {
+    return entries.isEmpty();
+  }
+
+  /**
+   * Reads manifest from the file.
+   *
+   * @param file path to manifest file
+   * @return manifest or empty manifest if file doesn't exist
+   * @throws IOException if manifest can't be read or it is malformed
+   */
+  public static BackupManifest read(Path file) throws IOException {
+    BackupManifest manifest = new BackupManifest();
+    if (!Files.exists(file)) {
+      return manifest;
+    }
+    try (BufferedReader reader = Files.newBufferedReader(file, UTF_8)) {
+      String line;
+      while ((line = reader.readLine()) != null) {
+        if (line.isEmpty() || line.startsWith("#")) {
+          continue;
+        }
+        manifest.put(parseEntry(line, file));
+      }
+    }
+    return manifest;
+  }
+
+  /**
+   * Writes manifest into the file. Manifest is written to a temporary file first and then moved
+   * into its place, so the previous version of the manifest stays intact if writing fails.
+   *
+   * @param file path to manifest file
+   * @throws IOException if any I/O error occurs
+   */
+  public void write(Path file) throws IOException {
+    Files.createDirectories(file.getParent());
+    Path tmp = Files.createTempFile(file.getParent(), file.getFileName().toString(), ".tmp");
+    try {
+      try (BufferedWriter writer = Files.newBufferedWriter(tmp, UTF_8)) {
+        writer.write(HEADER);
+        writer.newLine();
+        for (Entry entry : entries.values()) {
+          writer.write(formatEntry(entry));
+          writer.newLine();
+        }
+      }
+      Files.move(tmp, file, REPLACE_EXISTING, ATOMIC_MOVE);
+    } finally {
+      Files.deleteIfExists(tmp);
+    }
+  }
+
+  /** Returns hashes of all the chunks referenced by this manifest. */
+  public List<String> getChunks() {
+    List<String> chunks = new ArrayList<>();
+    for (Entry entry : entries.values()) {
+      chunks.addAll(entry.getChunks());
+    }
+    return chunks;
+  }
+
+  /** Returns sum of sizes of all the files in manifest. */
+  public long getTotalSize() {
+    long total = 0;
+    for (Entry entry : entries.values()) {
+      total += entry.getSize();
+    }
+    return total;
+  }
+
+  private static String formatEntry(Entry entry) {
+    return entry.getType()
+        + "\t"
+        + entry.getSize()
+        + "\t"
+        + entry.getModificationTime()
+        + "\t"
+        + Integer.toOctalString(entry.getMode())
+        + "\t"
+        + escape(entry.getPath())
+        + "\t"
+        + (entry.getLinkTarget() == null ? "" : escape(entry.getLinkTarget()))
+        + "\t"
+        + String.join(",", entry.getChunks());
+  }
+
+  private static Entry parseEntry(String line, Path file) throws IOException {
+    String[] fields = line.split("\t", -1);
+    if (fields.length != 7) {
+      throw new IOException("Malformed backup manifest " + file + ". Line: " + line);
+    }
+    try {
+      return new Entry(
+          unescape(fields[4]),
+          Type.valueOf(fields[0]),
+          Long.parseLong(fields[1]),
+          Long.parseLong(fields[2]),
+          Integer.parseInt(fields[3], 8),
+          fields[5].isEmpty() ? null : unescape(fields[5]),
+          fields[6].isEmpty() ? null : Arrays.asList(fields[6].split(",")));
+    } catch (IllegalArgumentException e) {
+      throw new IOException("Malformed backup manifest " + file + ". Line: " + line, e);
+    }
+  }
+
+  private static String escape(String value) {
+    StringBuilder sb = new StringBuilder(value.length());
+    for (char c : value.toCharArray()) {
+      switch (c) {
+        case '\\':
+          sb.append("\\\\");
+          break;
+        case '\t':
+          sb.append("\\t");
+          break;
+        case '\n':
+          sb.append("\\n");
+          break;
+        case '\r':
+          sb.append("\\r");
+          break;
+        default:
+          sb.append(c);
+      }
+    }
+    return sb.toString();
+  }
+
+  private static String unescape(String value) {
+    StringBuilder sb = new StringBuilder(value.length());
+    for (int i = 0; i < value.length(); i++) {
+      char c = value.charAt(i);
+      if (c == '\\' && i + 1 < value.length()) {
+        char next = value.charAt(++i);
+        switch (next) {
+          case 't':
+            sb.append('\t');
+            break;
+          case 'n':
+            sb.append('\n');
+            break;
+          case 'r':
+            sb.append('\r');
+            break;
+          default:
+            sb.append(next);
+        }
+      } else {
+        sb.append(c);
+      }
+    }
+    return sb.toString();
+  }
+
+  /** Returns manifest entries mapped by path. */
+  public Map<String, Entry> asMap() {
+    return Collections.unmodifiableMap(entries);
+  }
+}
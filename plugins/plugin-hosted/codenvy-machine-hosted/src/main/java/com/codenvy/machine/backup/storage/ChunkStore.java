@@ -0,0 +1,60 @@
+/*
+ * Copyright (c) [2012] - [2017] Red Hat, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *   Red Hat, Inc. - initial API and implementation
+ */
+package com.codenvy.machine.backup.storage;
+
+import java.io.IOException;
+import java.util.function.Predicate;
+
+/**
+ * Content-addressed storage of chunks of workspace files.
+ *
+ * <p>Chunks are identified by the hash of their content, so the same chunk stored by different
+ * workspaces occupies storage only once. Implementations must be thread safe.
+ */
+public interface ChunkStore {
+  /**
+   * Stores chunk if there is no chunk with the same hash in the store yet.
+   *
+   * @param hash hash of chunk content
+   * @param data buffer that contains chunk content
+   * @param offset offset of chunk content in the buffer
+   * @param length length of chunk content
+   * @return true if chunk was written, false if it was already present in the store
+   * @throws IOException if any I/O error occurs
+   */
+  boolean put(String hash, byte[] data, int offset, int length) throws IOException;
+
+  /**
+   * Returns content of the chunk.
+   *
+   * @param hash hash of chunk content
+   * @throws java.io.FileNotFoundException if there is no chunk with such hash
+   * @throws IOException if any other I/O error occurs
+   */
+  byte[] get(String hash) throws IOException;
+
+  /** Checks whether chunk with the specified hash is present in the store. */
+  boolean contains(String hash);
+
+  /**
+   * Removes chunks which are not referenced by backups anymore.
+   *
+   * <p>Caller must guarantee that {@link #put} is not invoked while garbage is collected, otherwise
+   * chunk that was found in the store by a backup might be removed before the backup references it.
+   * Referenced chunks may be read concurrently.
+   *
+   * @param isReferenced tells whether chunk with the specified hash is referenced by any backup,
+   *     may give false positives in which case unreferenced chunk is kept in the store
+   * @return the number of bytes freed in the storage
+   * @throws IOException if any I/O error occurs
+   */
+  long removeUnreferenced(Predicate<String> isReferenced) throws IOException;
+}
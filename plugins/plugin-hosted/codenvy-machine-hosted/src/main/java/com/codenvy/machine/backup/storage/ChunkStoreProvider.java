@@ -0,0 +1,46 @@
+/*
+ * Copyright (c) [2012] - [2017] Red Hat, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *   Red Hat, Inc. - initial API and implementation
+ */
+package com.codenvy.machine.backup.storage;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Provider;
+
+/**
+ * Provides {@link ChunkStore} implementation based on {@code machine.backup.chunked.storage_format}
+ * property.
+ *
+ * <p>Note that chunks of one format are not visible in the other one, so changing the format of
+ * existing storage makes existing incremental backups unrestorable.
+ */
+public class ChunkStoreProvider implements Provider<ChunkStore> {
+
+  @Inject private Provider<FileChunkStore> fileChunkStoreProvider;
+
+  @Inject private Provider<PackChunkStore> packChunkStoreProvider;
+
+  @Inject
+  @Named("machine.backup.chunked.storage_format")
+  private String format;
+
+  @Override
+  public ChunkStore get() {
+    if (format == null || format.equals("files")) {
+      return fileChunkStoreProvider.get();
+    }
+    if (format.equals("packs")) {
+      return packChunkStoreProvider.get();
+    }
+    throw new IllegalStateException(
+        "Supported values for the property 'machine.backup.chunked.storage_format' "
+            + "are 'files' or 'packs'");
+  }
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright (c) [2012] - [2017] Red Hat, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *   Red Hat, Inc. - initial API and implementation
+ */
+package com.codenvy.machine.backup.storage;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.function.Predicate;
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+
+/**
+ * Stores every chunk as a separate file in {@code <che.user.workspaces.storage>/.chunks}.
+ *
+ * <p>Chunk files are spread across 256 folders by the first two characters of the hash, e.g. chunk
+ * {@code 3fa8...} is stored as {@code .chunks/3f/3fa8...}. Chunk is written to a temporary file
+ * first and then hard linked into its place, so concurrent backups of different workspaces never
+ * observe partially written chunks. Unlike a move, linking fails if the chunk already exists, so
+ * only one of concurrent stores of the same chunk is reported as a new one.
+ *
+ * <p>Chunks are not compressed, see {@link PackChunkStore} for more compact storage format.
+ */
+@Singleton
+public class FileChunkStore implements ChunkStore {
+  static final String CHUNKS_DIR = ".chunks";
+
+  private final Path chunksRoot;
+
+  @Inject
+  public FileChunkStore(@Named("che.user.workspaces.storage") File backupsRootDir) {
+    this.chunksRoot = backupsRootDir.toPath().resolve(CHUNKS_DIR);
+  }
+
+  @Override
+  public boolean put(String hash, byte[] data, int offset, int length) throws IOException {
+    Path chunk = chunkPath(hash);
+    if (Files.exists(chunk)) {
+      return false;
+    }
+    Files.createDirectories(chunk.getParent());
+    Path tmp = Files.createTempFile(chunk.getParent(), hash, ".tmp");
+    try {
+      try (OutputStream out = Files.newOutputStream(tmp)) {
+        out.write(data, offset, length);
+      }
+      Files.createLink(chunk, tmp);
+      return true;
+    } catch (FileAlreadyExistsException e) {
+      // the same chunk was stored by another backup in the meantime
+      return false;
+    } finally {
+      Files.deleteIfExists(tmp);
+    }
+  }
+
+  @Override
+  public byte[] get(String hash) throws IOException {
+    try {
+      return Files.readAllBytes(chunkPath(hash));
+    } catch (NoSuchFileException e) {
+      throw new FileNotFoundException("Backup chunk " + hash + " is not found");
+    }
+  }
+
+  @Override
+  public boolean contains(String hash) {
+    return Files.exists(chunkPath(hash));
+  }
+
+  @Override
+  public long removeUnreferenced(Predicate<String> isReferenced) throws IOException {
+    if (!Files.isDirectory(chunksRoot)) {
+      return 0;
+    }
+    long freed = 0;
+    try (DirectoryStream<Path> dirs = Files.newDirectoryStream(chunksRoot)) {
+      for (Path dir : dirs) {
+        try (DirectoryStream<Path> chunks = Files.newDirectoryStream(dir)) {
+          for (Path chunk : chunks) {
+            String name = chunk.getFileName().toString();
+            // temporary files are left only by interrupted writes as puts don't run concurrently
+            if (name.endsWith(".tmp") || !isReferenced.test(name)) {
+              long size = Files.size(chunk);
+              if (Files.deleteIfExists(chunk)) {
+                freed += size;
+              }
+            }
+          }
+        }
+      }
+    }
+    return freed;
+  }
+
+  private Path chunkPath(String hash) {
+    return chunksRoot.resolve(hash.substring(0, 2)).resolve(hash);
+  }
+}
@@ -0,0 +1,566 @@
+/*
+ * Copyright (c) [2012] - [2017] Red Hat, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *   Red Hat, Inc. - initial API and implementation
+ */
+package com.codenvy.machine.backup.storage;
+
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.CREATE_NEW;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.TRUNCATE_EXISTING;
+import static java.nio.file.StandardOpenOption.WRITE;
+import static org.slf4j.LoggerFactory.getLogger;
+
+import com.google.common.io.BaseEncoding;
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Predicate;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+import org.slf4j.Logger;
+
+/**
+ * Stores chunks compressed in append-only pack files in {@code
+ * <che.user.workspaces.storage>/.packs}.
+ *
+ * <p>The folder contains:
+ *
+ * <ul>
+ *   <li>{@code pack-<number>} - concatenated chunks. Each chunk is compressed with deflate unless
+ *       compression doesn't make it smaller. New chunks are appended to a pack created after the
+ *       server start, the pack is replaced with a new one when it reaches {@link #PACK_MAX_BYTES}.
+ *   <li>{@code index} - locations of chunks sorted by hash. Index is memory mapped and searched
+ *       with binary search, so it is neither loaded into heap nor read entirely on lookups.
+ *   <li>{@code journal} - locations of chunks added after the index was written, in the order of
+ *       addition. Journal is loaded into memory on start and merged into the index when it grows
+ *       over {@link #JOURNAL_MAX_ENTRIES} records.
+ * </ul>
+ *
+ * <p>Index and journal consist of fixed size records: SHA-256 hash of the chunk, pack number,
+ * offset in the pack, stored length and original length of the chunk. Chunk is compressed if its
+ * stored length is less than the original one. Journal records which point outside of the pack
+ * (e.g. after a crash) are ignored.
+ *
+ * <p>Garbage collection drops unreferenced chunks from the index and rewrites packs in which
+ * unreferenced chunks take more than a half of the space.
+ */
+@Singleton
+public class PackChunkStore implements ChunkStore {
+  private static final Logger LOG = getLogger(PackChunkStore.class);
+
+  static final String PACKS_DIR = ".packs";
+  static final String INDEX_FILE = "index";
+  static final String JOURNAL_FILE = "journal";
+  static final String PACK_PREFIX = "pack-";
+  static final long PACK_MAX_BYTES = 1024 * 1024 * 1024;
+  static final int JOURNAL_MAX_ENTRIES = 64 * 1024;
+
+  private static final int HASH_BYTES = 32;
+  // hash, pack number, offset in the pack, stored length, original length
+  private static final int RECORD_BYTES = HASH_BYTES + 4 + 8 + 4 + 4;
+  private static final BaseEncoding HEX = BaseEncoding.base16().lowerCase();
+
+  private final Path packsRoot;
+  private final ConcurrentMap<String, Location> journal;
+  private final ConcurrentMap<Integer, FileChannel> readChannels;
+  // read lock is held by lookups, write lock by replacing of the index and deleting of packs
+  private final ReadWriteLock indexLock;
+
+  private ByteBuffer index;
+  private int indexRecords;
+  private FileChannel journalChannel;
+  private long journalSize;
+  private int lastPack;
+  private FileChannel activePack;
+  private long activePackSize;
+
+  @Inject
+  public PackChunkStore(@Named("che.user.workspaces.storage") File backupsRootDir) {
+    this.packsRoot = backupsRootDir.toPath().resolve(PACKS_DIR);
+    this.journal = new ConcurrentHashMap<>();
+    this.readChannels = new ConcurrentHashMap<>();
+    this.indexLock = new ReentrantReadWriteLock();
+  }
+
+  /** Maps the index and loads the journal. */
+  @PostConstruct
+  public synchronized void open() throws IOException {
+    Files.createDirectories(packsRoot);
+    mapIndex();
+    final Map<Integer, Long> packSizes = listPacks();
+    lastPack = packSizes.keySet().stream().mapToInt(Integer::intValue).max().orElse(0);
+
+    final Path journalPath = packsRoot.resolve(JOURNAL_FILE);
+    final byte[] content =
+        Files.exists(journalPath) ? Files.readAllBytes(journalPath) : new byte[0];
+    final ByteBuffer records = ByteBuffer.wrap(content);
+    int ignored = 0;
+    while (records.remaining() >= RECORD_BYTES) {
+      final String hash = HEX.encode(content, records.position(), HASH_BYTES);
+      records.position(records.position() + HASH_BYTES);
+      final Location location = readLocation(records);
+      final Long packSize = packSizes.get(location.pack);
+      if (packSize != null && location.offset + location.storedLength <= packSize) {
+        journal.put(hash, location);
+      } else {
+        ignored++;
+      }
+    }
+    if (ignored > 0) {
+      LOG.warn("{} records of backup chunks journal point to missing data and ignored", ignored);
+    }
+    journalChannel = FileChannel.open(journalPath, CREATE, WRITE);
+    // drops partially written record if any
+    journalSize = content.length - content.length % RECORD_BYTES;
+    journalChannel.truncate(journalSize);
+  }
+
+  @PreDestroy
+  public synchronized void close() throws IOException {
+    closeActivePack();
+    if (journalChannel != null) {
+      journalChannel.close();
+    }
+    for (FileChannel channel : readChannels.values()) {
+      channel.close();
+    }
+    readChannels.clear();
+  }
+
+  @Override
+  public boolean put(String hash, byte[] data, int offset, int length) throws IOException {
+    final byte[] key = decode(hash);
+    if (key == null) {
+      throw new IllegalArgumentException("Invalid chunk hash " + hash);
+    }
+    if (contains(hash)) {
+      return false;
+    }
+    final byte[] compressed = compress(data, offset, length);
+    final ByteBuffer stored =
+        compressed != null ? ByteBuffer.wrap(compressed) : ByteBuffer.wrap(data, offset, length);
+    synchronized (this) {
+      if (contains(hash)) {
+        // the same chunk was stored by another backup in the meantime
+        return false;
+      }
+      final Location location = append(stored, length);
+      final ByteBuffer record = ByteBuffer.allocate(RECORD_BYTES);
+      record.put(key);
+      writeLocation(record, location);
+      record.flip();
+      writeFully(journalChannel, record, journalSize);
+      journalSize += RECORD_BYTES;
+      journal.put(hash, location);
+      if (journal.size() >= JOURNAL_MAX_ENTRIES) {
+        rewriteIndex(chunk -> true, new HashSet<>());
+      }
+    }
+    return true;
+  }
+
+  @Override
+  public byte[] get(String hash) throws IOException {
+    final Location location;
+    final byte[] stored;
+    indexLock.readLock().lock();
+    try {
+      location = find(hash);
+      if (location == null) {
+        throw new FileNotFoundException("Backup chunk " + hash + " is not found");
+      }
+      stored = read(location);
+    } finally {
+      indexLock.readLock().unlock();
+    }
+    return location.isCompressed() ? decompress(stored, location.length, hash) : stored;
+  }
+
+  @Override
+  public boolean contains(String hash) {
+    indexLock.readLock().lock();
+    try {
+      return find(hash) != null;
+    } finally {
+      indexLock.readLock().unlock();
+    }
+  }
+
+  @Override
+  public synchronized long removeUnreferenced(Predicate<String> isReferenced) throws IOException {
+    indexLock.writeLock().lock();
+    try {
+      // all the packs become immutable, new chunks go to a new pack
+      closeActivePack();
+
+      final Map<Integer, Long> liveBytes = new HashMap<>();
+      for (int i = 0; i < indexRecords; i++) {
+        final String hash = HEX.encode(indexRecord(i), 0, HASH_BYTES);
+        if (!journal.containsKey(hash) && isReferenced.test(hash)) {
+          final Location location = readLocation(indexRecordBuffer(i));
+          liveBytes.merge(location.pack, (long) location.storedLength, Long::sum);
+        }
+      }
+      for (Map.Entry<String, Location> entry : journal.entrySet()) {
+        if (isReferenced.test(entry.getKey())) {
+          liveBytes.merge(entry.getValue().pack, (long) entry.getValue().storedLength, Long::sum);
+        }
+      }
+
+      final Set<Integer> toRewrite = new HashSet<>();
+      long freed = 0;
+      for (Map.Entry<Integer, Long> pack : listPacks().entrySet()) {
+        final long live = liveBytes.getOrDefault(pack.getKey(), 0L);
+        if (live == 0 || live * 2 < pack.getValue()) {
+          toRewrite.add(pack.getKey());
+          freed += pack.getValue() - live;
+        }
+      }
+      rewriteIndex(isReferenced, toRewrite);
+      closeActivePack();
+      return freed;
+    } finally {
+      indexLock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * Writes a new index which consists of the current index and journal entries accepted by the
+   * filter. Live chunks of the specified packs are copied into the active pack and the packs are
+   * deleted. Must be called with the monitor of this store held.
+   */
+  private void rewriteIndex(Predicate<String> filter, Set<Integer> packsToRewrite)
+      throws IOException {
+    indexLock.writeLock().lock();
+    try {
+      final List<String> journalHashes = new ArrayList<>(journal.keySet());
+      // lowercase hex strings of the same length are ordered the same way as the bytes they encode
+      journalHashes.sort(null);
+
+      final Path tmp = packsRoot.resolve(INDEX_FILE + ".tmp");
+      int records = 0;
+      try (FileChannel channel = FileChannel.open(tmp, CREATE, WRITE, TRUNCATE_EXISTING);
+          DataOutputStream out =
+              new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel)))) {
+        int i = 0;
+        int j = 0;
+        while (i < indexRecords || j < journalHashes.size()) {
+          final String indexHash =
+              i < indexRecords ? HEX.encode(indexRecord(i), 0, HASH_BYTES) : null;
+          final String journalHash = j < journalHashes.size() ? journalHashes.get(j) : null;
+          final String hash;
+          final Location location;
+          if (journalHash == null || (indexHash != null && indexHash.compareTo(journalHash) < 0)) {
+            hash = indexHash;
+            location = readLocation(indexRecordBuffer(i++));
+          } else {
+            if (journalHash.equals(indexHash)) {
+              // chunk which was journaled but not yet removed from journal after index rewrite
+              i++;
+            }
+            hash = journalHash;
+            location = journal.get(journalHashes.get(j++));
+          }
+          if (!filter.test(hash)) {
+            continue;
+          }
+          final Location written =
+              packsToRewrite.contains(location.pack)
+                  ? append(ByteBuffer.wrap(read(location)), location.length)
+                  : location;
+          out.write(HEX.decode(hash));
+          out.writeInt(written.pack);
+          out.writeLong(written.offset);
+          out.writeInt(written.storedLength);
+          out.writeInt(written.length);
+          records++;
+        }
+        out.flush();
+        if (activePack != null) {
+          // relocated chunks must be persisted before the index that points to them
+          activePack.force(false);
+        }
+        channel.force(true);
+      }
+      Files.move(tmp, packsRoot.resolve(INDEX_FILE), ATOMIC_MOVE, REPLACE_EXISTING);
+      mapIndex();
+      journalChannel.truncate(0);
+      journalSize = 0;
+      journal.clear();
+
+      for (int pack : packsToRewrite) {
+        final FileChannel channel = readChannels.remove(pack);
+        if (channel != null) {
+          channel.close();
+        }
+        Files.deleteIfExists(packPath(pack));
+      }
+      LOG.debug(
+          "Backup chunks index rewritten, {} chunks, {} packs rewritten",
+          records,
+          packsToRewrite.size());
+    } finally {
+      indexLock.writeLock().unlock();
+    }
+  }
+
+  /** Appends stored content of a chunk to the active pack. */
+  private Location append(ByteBuffer stored, int length) throws IOException {
+    final int storedLength = stored.remaining();
+    if (activePack == null || activePackSize + storedLength > PACK_MAX_BYTES) {
+      closeActivePack();
+      activePack = FileChannel.open(packPath(++lastPack), CREATE_NEW, WRITE);
+      activePackSize = 0;
+    }
+    final Location location = new Location(lastPack, activePackSize, storedLength, length);
+    writeFully(activePack, stored, activePackSize);
+    activePackSize += storedLength;
+    return location;
+  }
+
+  private void closeActivePack() throws IOException {
+    if (activePack != null) {
+      activePack.force(false);
+      activePack.close();
+      activePack = null;
+    }
+  }
+
+  private Location find(String hash) {
+    final Location location = journal.get(hash);
+    if (location != null) {
+      return location;
+    }
+    final byte[] key = decode(hash);
+    if (key == null) {
+      return null;
+    }
+    int low = 0;
+    int high = indexRecords - 1;
+    while (low <= high) {
+      final int mid = (low + high) >>> 1;
+      final int cmp = compareKey(mid, key);
+      if (cmp < 0) {
+        low = mid + 1;
+      } else if (cmp > 0) {
+        high = mid - 1;
+      } else {
+        return readLocation(indexRecordBuffer(mid));
+      }
+    }
+    return null;
+  }
+
+  private int compareKey(int record, byte[] key) {
+    final int base = record * RECORD_BYTES;
+    for (int i = 0; i < HASH_BYTES; i++) {
+      final int cmp = Byte.toUnsignedInt(index.get(base + i)) - Byte.toUnsignedInt(key[i]);
+      if (cmp != 0) {
+        return cmp;
+      }
+    }
+    return 0;
+  }
+
+  private byte[] indexRecord(int record) {
+    final byte[] hash = new byte[HASH_BYTES];
+    final ByteBuffer buffer = index.duplicate();
+    buffer.position(record * RECORD_BYTES);
+    buffer.get(hash);
+    return hash;
+  }
+
+  /** Returns buffer positioned at the location part of the index record. */
+  private ByteBuffer indexRecordBuffer(int record) {
+    final ByteBuffer buffer = index.duplicate();
+    buffer.position(record * RECORD_BYTES + HASH_BYTES);
+    return buffer;
+  }
+
+  private void mapIndex() throws IOException {
+    final Path indexPath = packsRoot.resolve(INDEX_FILE);
+    if (!Files.exists(indexPath)) {
+      index = ByteBuffer.allocate(0);
+      indexRecords = 0;
+      return;
+    }
+    try (FileChannel channel = FileChannel.open(indexPath, READ)) {
+      final long size = channel.size();
+      if (size > Integer.MAX_VALUE || size % RECORD_BYTES != 0) {
+        throw new IOException("Backup chunks index " + indexPath + " is corrupted");
+      }
+      index = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+      indexRecords = (int) (size / RECORD_BYTES);
+    }
+  }
+
+  private byte[] read(Location location) throws IOException {
+    final FileChannel channel;
+    try {
+      channel =
+          readChannels.computeIfAbsent(
+              location.pack,
+              pack -> {
+                try {
+                  return FileChannel.open(packPath(pack), READ);
+                } catch (IOException e) {
+                  throw new UncheckedIOException(e);
+                }
+              });
+    } catch (UncheckedIOException e) {
+      throw e.getCause();
+    }
+    final ByteBuffer content = ByteBuffer.allocate(location.storedLength);
+    while (content.hasRemaining()) {
+      if (channel.read(content, location.offset + content.position()) < 0) {
+        throw new IOException("Backup pack " + packPath(location.pack) + " is truncated");
+      }
+    }
+    return content.array();
+  }
+
+  private Map<Integer, Long> listPacks() throws IOException {
+    final Map<Integer, Long> packs = new HashMap<>();
+    try (DirectoryStream<Path> files = Files.newDirectoryStream(packsRoot, PACK_PREFIX + "*")) {
+      for (Path file : files) {
+        try {
+          packs.put(
+              Integer.parseInt(file.getFileName().toString().substring(PACK_PREFIX.length())),
+              Files.size(file));
+        } catch (NumberFormatException ignored) {
+          // not a pack
+        }
+      }
+    }
+    return packs;
+  }
+
+  private Path packPath(int pack) {
+    return packsRoot.resolve(PACK_PREFIX + pack);
+  }
+
+  /** Returns compressed content or {@code null} if compression doesn't make it smaller. */
+  private static byte[] compress(byte[] data, int offset, int length) {
+    final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+    try {
+      deflater.setInput(data, offset, length);
+      deflater.finish();
+      final byte[] buffer = new byte[length];
+      final int compressed = deflater.deflate(buffer);
+      if (!deflater.finished() || compressed >= length) {
+        return null;
+      }
+      final byte[] result = new byte[compressed];
+      System.arraycopy(buffer, 0, result, 0, compressed);
+      return result;
+    } finally {
+      deflater.end();
+    }
+  }
+
+  private static byte[] decompress(byte[] stored, int length, String hash) throws IOException {
+    final Inflater inflater = new Inflater();
+    try {
+      inflater.setInput(stored);
+      final byte[] content = new byte[length];
+      int inflated = 0;
+      while (inflated < length && !inflater.finished()) {
+        final int n = inflater.inflate(content, inflated, length - inflated);
+        if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+          break;
+        }
+        inflated += n;
+      }
+      if (inflated != length || !inflater.finished()) {
+        throw new IOException("Backup chunk " + hash + " is corrupted");
+      }
+      return content;
+    } catch (DataFormatException e) {
+      throw new IOException("Backup chunk " + hash + " is corrupted", e);
+    } finally {
+      inflater.end();
+    }
+  }
+
+  private static byte[] decode(String hash) {
+    if (hash.length() != HASH_BYTES * 2) {
+      return null;
+    }
+    try {
+      return HEX.decode(hash);
+    } catch (IllegalArgumentException e) {
+      return null;
+    }
+  }
+
+  private static void writeFully(FileChannel channel, ByteBuffer content, long position)
+      throws IOException {
+    while (content.hasRemaining()) {
+      position += channel.write(content, position);
+    }
+  }
+
+  private static Location readLocation(ByteBuffer buffer) {
+    return new Location(buffer.getInt(), buffer.getLong(), buffer.getInt(), buffer.getInt());
+  }
+
+  private static void writeLocation(ByteBuffer buffer, Location location) {
+    buffer
+        .putInt(location.pack)
+        .putLong(location.offset)
+        .putInt(location.storedLength)
+        .putInt(location.length);
+  }
+
+  private static class Location {
+    final int pack;
+    final long offset;
+    final int storedLength;
+    final int length;
+
+    Location(int pack, long offset, int storedLength, int length) {
+      this.pack = pack;
+      this.offset = offset;
+      this.storedLength = storedLength;
+      this.length = length;
+    }
+
+    boolean isCompressed() {
+      return storedLength < length;
+    }
+  }
+}
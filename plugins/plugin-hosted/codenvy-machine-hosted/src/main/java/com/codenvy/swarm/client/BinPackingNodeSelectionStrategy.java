@@ -0,0 +1,35 @@
+/*
+ * Copyright (c) [2012] - [2017] Red Hat, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *   Red Hat, Inc. - initial API and implementation
+ */
+package com.codenvy.swarm.client;
+
+import com.codenvy.swarm.client.model.DockerNode;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Selects the most loaded node which still has free RAM, so nodes are filled one by one and the
+ * rest of the nodes keep enough RAM for big workspaces. If none of the nodes has free RAM the least
+ * loaded one is selected.
+ */
+public class BinPackingNodeSelectionStrategy implements NodeSelectionStrategy {
+
+  @Override
+  public DockerNode select(List<DockerNode> nodes) throws IOException {
+    if (nodes.isEmpty()) {
+      throw new IOException("No docker nodes available");
+    }
+    return nodes.stream()
+        .filter(node -> node.getFreeMemory() > 0)
+        .max(LeastLoadedNodeSelectionStrategy.LOAD_COMPARATOR)
+        .orElseGet(
+            () -> nodes.stream().min(LeastLoadedNodeSelectionStrategy.LOAD_COMPARATOR).get());
+  }
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright (c) [2012] - [2017] Red Hat, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *   Red Hat, Inc. - initial API and implementation
+ */
+package com.codenvy.swarm.client;
+
+import com.codenvy.swarm.client.model.DockerNode;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import java.io.IOException;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Prefers nodes that already hold the image, so the image is not downloaded once again. Selection
+ * among such nodes, or among all the nodes if none of them holds the image or has free RAM, is
+ * delegated to {@link LeastLoadedNodeSelectionStrategy}.
+ *
+ * <p>Nodes that hold the image are known from previous operations with the image. The knowledge
+ * expires after a while, as images may be removed from nodes by cleanup.
+ */
+public class ImageLocalityNodeSelectionStrategy implements NodeSelectionStrategy {
+  private static final int MAX_TRACKED_IMAGES = 1000;
+  private static final long IMAGE_LOCATION_EXPIRATION_HOURS = 24;
+
+  private final NodeSelectionStrategy delegate;
+  // image name -> addresses of the nodes which hold the image
+  private final Cache<String, Set<String>> imageNodes;
+
+  public ImageLocalityNodeSelectionStrategy() {
+    this.delegate = new LeastLoadedNodeSelectionStrategy();
+    this.imageNodes =
+        CacheBuilder.newBuilder()
+            .maximumSize(MAX_TRACKED_IMAGES)
+            .expireAfterWrite(IMAGE_LOCATION_EXPIRATION_HOURS, TimeUnit.HOURS)
+            .build();
+  }
+
+  @Override
+  public DockerNode select(List<DockerNode> nodes) throws IOException {
+    return delegate.select(nodes);
+  }
+
+  @Override
+  public DockerNode select(List<DockerNode> nodes, String image) throws IOException {
+    final Set<String> holders = imageNodes.getIfPresent(image);
+    if (holders != null) {
+      final List<DockerNode> candidates =
+          nodes.stream()
+              .filter(node -> holders.contains(node.getAddr()) && node.getFreeMemory() > 0)
+              .collect(Collectors.toList());
+      if (!candidates.isEmpty()) {
+        return delegate.select(candidates);
+      }
+    }
+    return delegate.select(nodes);
+  }
+
+  @Override
+  public void onImagePresent(DockerNode node, String image) {
+    imageNodes
+        .asMap()
+        .computeIfAbsent(image, key -> ConcurrentHashMap.newKeySet())
+        .add(node.getAddr());
+  }
+}
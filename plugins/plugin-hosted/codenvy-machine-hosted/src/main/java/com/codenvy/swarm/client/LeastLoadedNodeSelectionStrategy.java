@@ -0,0 +1,33 @@
+/*
+ * Copyright (c) [2012] - [2017] Red Hat, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *   Red Hat, Inc. - initial API and implementation
+ */
+package com.codenvy.swarm.client;
+
+import com.codenvy.swarm.client.model.DockerNode;
+import java.io.IOException;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Selects node with the least reserved part of RAM, nodes with fewer containers are preferred if
+ * RAM usage is the same. Spreads load evenly across the nodes.
+ */
+public class LeastLoadedNodeSelectionStrategy implements NodeSelectionStrategy {
+  static final Comparator<DockerNode> LOAD_COMPARATOR =
+      Comparator.comparingDouble(DockerNode::getMemoryUsage)
+          .thenComparingInt(DockerNode::getContainers);
+
+  @Override
+  public DockerNode select(List<DockerNode> nodes) throws IOException {
+    return nodes.stream()
+        .min(LOAD_COMPARATOR)
+        .orElseThrow(() -> new IOException("No docker nodes available"));
+  }
+}
@@ -20,9 +20,32 @@ import java.util.List;
  * Node selection strategy for Swarm. Used for not implemented yet in Swarm docker operations.
  * Should be replaced later with native Swarm methods
  *
+ * <p>Implementation is selected by {@code swarm.client.node_selection_strategy} property, see
+ * {@link NodeSelectionStrategyProvider}. Strategies other than {@link RandomNodeSelectionStrategy}
+ * also place containers, see {@link SwarmDockerConnector#createContainer}.
+ *
  * @author Eugene Voevodin
  */
 public interface NodeSelectionStrategy {
 
   DockerNode select(List<DockerNode> nodes) throws IOException;
+
+  /**
+   * Selects node for the operation with the image. By default image is not taken into account.
+   *
+   * @param nodes available nodes
+   * @param image name of the image including tag
+   * @throws IOException if there is no suitable node
+   */
+  default DockerNode select(List<DockerNode> nodes, String image) throws IOException {
+    return select(nodes);
+  }
+
+  /**
+   * Notifies strategy that the image is present on the node, e.g. after it was pulled there.
+   *
+   * @param node node that holds the image
+   * @param image name of the image including tag
+   */
+  default void onImagePresent(DockerNode node, String image) {}
 }
@@ -0,0 +1,44 @@
+/*
+ * Copyright (c) [2012] - [2017] Red Hat, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *   Red Hat, Inc. - initial API and implementation
+ */
+package com.codenvy.swarm.client;
+
+import javax.inject.Named;
+import javax.inject.Provider;
+
+/**
+ * Provides {@link NodeSelectionStrategy} instances based on {@code
+ * swarm.client.node_selection_strategy} property.
+ */
+public class NodeSelectionStrategyProvider implements Provider<NodeSelectionStrategy> {
+
+  @com.google.inject.Inject(optional = true)
+  @Named("swarm.client.node_selection_strategy")
+  private String strategy;
+
+  @Override
+  public NodeSelectionStrategy get() {
+    if (strategy == null || strategy.equals("random")) {
+      return new RandomNodeSelectionStrategy();
+    }
+    switch (strategy) {
+      case "least_loaded":
+        return new LeastLoadedNodeSelectionStrategy();
+      case "bin_packing":
+        return new BinPackingNodeSelectionStrategy();
+      case "image_locality":
+        return new ImageLocalityNodeSelectionStrategy();
+      default:
+        throw new IllegalStateException(
+            "Supported values for the property 'swarm.client.node_selection_strategy' "
+                + "are 'random', 'least_loaded', 'bin_packing' or 'image_locality'");
+    }
+  }
+}
@@ -12,18 +12,25 @@ package com.codenvy.swarm.client;
 
 import static com.google.common.base.MoreObjects.firstNonNull;
 import static com.google.common.primitives.Ints.tryParse;
+import static org.eclipse.che.commons.lang.Size.parseSize;
 import static org.slf4j.LoggerFactory.getLogger;
 
 import com.codenvy.swarm.client.model.DockerNode;
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Strings;
 import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
 import java.io.IOException;
 import java.net.URI;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
 import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import javax.annotation.PreDestroy;
 import javax.inject.Inject;
 import javax.inject.Named;
 import javax.inject.Singleton;
@@ -39,6 +46,7 @@ import org.eclipse.che.plugin.docker.client.ProgressMonitor;
 import org.eclipse.che.plugin.docker.client.connection.DockerConnectionFactory;
 import org.eclipse.che.plugin.docker.client.exception.DockerException;
 import org.eclipse.che.plugin.docker.client.exception.ExecNotFoundException;
+import org.eclipse.che.plugin.docker.client.json.ContainerConfig;
 import org.eclipse.che.plugin.docker.client.json.ContainerCreated;
 import org.eclipse.che.plugin.docker.client.json.ContainerInfo;
 import org.eclipse.che.plugin.docker.client.json.ExecInfo;
@@ -47,6 +55,7 @@ import org.eclipse.che.plugin.docker.client.params.BuildImageParams;
 import org.eclipse.che.plugin.docker.client.params.CreateContainerParams;
 import org.eclipse.che.plugin.docker.client.params.CreateExecParams;
 import org.eclipse.che.plugin.docker.client.params.PullParams;
+import org.eclipse.che.plugin.docker.client.params.RemoveContainerParams;
 import org.eclipse.che.plugin.docker.client.params.StartExecParams;
 import org.slf4j.Logger;
 
@@ -64,8 +73,12 @@ public class SwarmDockerConnector extends DockerConnector {
   private static final Pattern REPOSITORY_NOT_FOUND_BY_SWARM_ERROR_MESSAGE =
       Pattern.compile(
           ".*repository .* not found: does not exist or no pull access.*", Pattern.DOTALL);
+  // spaces and tree symbols in front of the node property name
+  private static final Pattern NODE_PROPERTY_PREFIX = Pattern.compile("^[^\\p{Alpha}]+");
+  private static final Pattern LEADING_NUMBER = Pattern.compile("^\\d+");
   public static final String DOCKER_OUT_OF_RESOURCES_ERROR_MESSAGE =
       "no resources available to schedule container";
+  private static final String NODE_CONSTRAINT_PREFIX = "constraint:node==";
 
   private final NodeSelectionStrategy strategy;
   // TODO should it be done in other way?
@@ -74,6 +87,7 @@ public class SwarmDockerConnector extends DockerConnector {
   // Map of exec ID to container ID (or name)
   // Temporary solution to investigate why swarm returns 404 on exec start
   private final Cache<String, String> execToContainer;
+  private final SwarmTopologyCache topology;
 
   @Inject
   public SwarmDockerConnector(
@@ -81,15 +95,35 @@ public class SwarmDockerConnector extends DockerConnector {
       DockerConnectionFactory connectionFactory,
       DockerRegistryAuthResolver authManager,
       @Named("swarm.client.node_description_length") int nodeDescriptionLength,
-      DockerApiVersionPathPrefixProvider dockerApiVersionPathPrefixProvider) {
+      DockerApiVersionPathPrefixProvider dockerApiVersionPathPrefixProvider,
+      NodeSelectionStrategy strategy,
+      @Named("swarm.client.topology.refresh_period_ms") long topologyRefreshPeriodMs,
+      @Named("swarm.client.topology.max_age_ms") long topologyMaxAgeMs) {
     super(
         connectorConfiguration, connectionFactory, authManager, dockerApiVersionPathPrefixProvider);
     this.nodeDescriptionLength = nodeDescriptionLength;
-    this.strategy = new RandomNodeSelectionStrategy();
+    this.strategy = strategy;
     this.nodeDaemonScheme = "http";
     // entry is not needed after start of exec, and expiration doesn't change anything important
     // start should go right after, so expire entry after 1 minute timeout
     this.execToContainer = CacheBuilder.newBuilder().expireAfterWrite(60, TimeUnit.SECONDS).build();
+    this.topology =
+        new SwarmTopologyCache(this::loadTopology, topologyRefreshPeriodMs, topologyMaxAgeMs);
+  }
+
+  @PreDestroy
+  public void shutdown() {
+    topology.shutdown();
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * <p>Returns system info from the cached topology snapshot, see {@link SwarmTopologyCache}.
+   */
+  @Override
+  public SystemInfo getSystemInfo() throws IOException {
+    return topology.get().getSystemInfo();
   }
 
   /**
@@ -100,8 +134,14 @@ public class SwarmDockerConnector extends DockerConnector {
   @Deprecated
   @Override
   public void pull(PullParams params, ProgressMonitor progressMonitor) throws IOException {
-    final DockerNode node = strategy.select(getAvailableNodes());
+    final String image =
+        (params.getRegistry() != null ? params.getRegistry() + '/' : "")
+            + params.getImage()
+            + ':'
+            + firstNonNull(params.getTag(), "latest");
+    final DockerNode node = strategy.select(getAvailableNodes(), image);
     super.pull(params, progressMonitor, addrToUri(node.getAddr()));
+    strategy.onImagePresent(node, image);
   }
 
   @Override
@@ -121,8 +161,77 @@ public class SwarmDockerConnector extends DockerConnector {
     }
   }
 
+  /**
+   * {@inheritDoc}
+   *
+   * <p>If resource-aware {@link NodeSelectionStrategy} is configured the container is constrained
+   * to the node selected by the strategy among the nodes which have enough free RAM. Otherwise, or
+   * if there is no such node, the container is placed by the Swarm scheduler.
+   */
   @Override
   public ContainerCreated createContainer(CreateContainerParams params) throws IOException {
+    final DockerNode node =
+        strategy instanceof RandomNodeSelectionStrategy
+            ? null
+            : placeContainer(params.getContainerConfig());
+    try {
+      final ContainerCreated created = doCreateContainer(params);
+      if (node != null) {
+        strategy.onImagePresent(node, params.getContainerConfig().getImage());
+      }
+      return created;
+    } finally {
+      // container reserves resources of the node
+      topology.invalidate();
+    }
+  }
+
+  @Override
+  public void removeContainer(RemoveContainerParams params) throws IOException {
+    try {
+      super.removeContainer(params);
+    } finally {
+      topology.invalidate();
+    }
+  }
+
+  /** Returns the node the container is constrained to or null if it is placed by Swarm. */
+  @Nullable
+  private DockerNode placeContainer(ContainerConfig config) throws IOException {
+    if (hasNodeConstraint(config.getEnv())) {
+      return null;
+    }
+    final long memory = config.getHostConfig() != null ? config.getHostConfig().getMemory() : 0;
+    final List<DockerNode> fitting =
+        getAvailableNodes()
+            .stream()
+            .filter(node -> node.getFreeMemory() >= memory)
+            .collect(Collectors.toList());
+    if (fitting.isEmpty()) {
+      // let Swarm report that there are no resources
+      return null;
+    }
+    final DockerNode node = strategy.select(fitting, config.getImage());
+    config.setEnv(addNodeConstraint(config.getEnv(), node.getHostname()));
+    return node;
+  }
+
+  @VisibleForTesting
+  static boolean hasNodeConstraint(@Nullable String[] env) {
+    return env != null
+        && Arrays.stream(env)
+            .anyMatch(var -> var != null && var.startsWith(NODE_CONSTRAINT_PREFIX));
+  }
+
+  /** Returns copy of the environment with Swarm constraint which binds container to the node. */
+  @VisibleForTesting
+  static String[] addNodeConstraint(@Nullable String[] env, String hostname) {
+    final String[] result = env == null ? new String[1] : Arrays.copyOf(env, env.length + 1);
+    result[result.length - 1] = NODE_CONSTRAINT_PREFIX + hostname.trim();
+    return result;
+  }
+
+  private ContainerCreated doCreateContainer(CreateContainerParams params) throws IOException {
     try {
       return super.createContainer(params);
     } catch (DockerException e) {
@@ -230,8 +339,8 @@ public class SwarmDockerConnector extends DockerConnector {
    * [0] -> ["Nodes", "number of nodes"]
    * [1] -> ["hostname", "ip:port"]
    * [2] -> ["Containers", "number of containers"]
-   * [3] -> ["Reserved CPUs", "number of free/reserved CPUs"]
-   * [4] -> ["Reserved Memory", "number of free/reserved Memory"]
+   * [3] -> ["Reserved CPUs", "number of reserved/total CPUs"]
+   * [4] -> ["Reserved Memory", "reserved/total Memory"]
    * [5] -> ["Labels", "executiondriver=native-0.2, kernel..."]
    *
    * Example:
@@ -248,16 +357,41 @@ public class SwarmDockerConnector extends DockerConnector {
    * [9] -> ["Reserved Memory", "0 b / 3.79GiB"]
    * [10] -> ["Labels", "executiondriver=native-0.2, kernel..."]
    * </pre>
+   *
+   * Names of node properties may be prefixed with tree symbols, e.g. {@code " └ Containers"}, and
+   * the number of containers may be followed by details, e.g. {@code "3 (3 Running, 0 Paused)"}.
+   * Properties which can't be parsed are left 0 in the returned nodes.
+   *
+   * <p>Nodes are taken from the cached topology snapshot, see {@link SwarmTopologyCache}.
    */
   public List<DockerNode> getAvailableNodes() throws IOException {
-    SystemInfo systemInfo = getSystemInfo();
+    final List<DockerNode> nodes = topology.get().getNodes();
+    if (nodes == null) {
+      throw new DockerException(
+          "Can't find available docker nodes. DriverStatus, SystemStatus fields missing.", 500);
+    }
+    return nodes;
+  }
+
+  private SwarmTopologyCache.Snapshot loadTopology() throws IOException {
+    final SystemInfo systemInfo = super.getSystemInfo();
+    return new SwarmTopologyCache.Snapshot(
+        systemInfo, parseNodes(systemInfo, nodeDescriptionLength));
+  }
+
+  /**
+   * Parses nodes from the system info as described in {@link #getAvailableNodes()}.
+   *
+   * @return unmodifiable list of nodes or {@code null} if system info doesn't describe nodes
+   */
+  @VisibleForTesting
+  static List<DockerNode> parseNodes(SystemInfo systemInfo, int nodeDescriptionLength) {
     final String[][] systemDescription =
         systemInfo.getSystemStatus() != null
             ? systemInfo.getSystemStatus()
             : systemInfo.getDriverStatus();
     if (systemDescription == null) {
-      throw new DockerException(
-          "Can't find available docker nodes. DriverStatus, SystemStatus fields missing.", 500);
+      return null;
     }
     int count = 0;
     int startsFrom = 0;
@@ -270,10 +404,60 @@ public class SwarmDockerConnector extends DockerConnector {
     }
     final ArrayList<DockerNode> nodes = new ArrayList<>(count);
     for (int i = 0; i < count; ++i) {
-      final String[] node = systemDescription[i * nodeDescriptionLength + startsFrom];
-      nodes.add(new DockerNode(node[0], node[1]));
+      final int nodeStart = i * nodeDescriptionLength + startsFrom;
+      final int nodeEnd = Math.min(nodeStart + nodeDescriptionLength, systemDescription.length);
+      nodes.add(parseNode(systemDescription, nodeStart, nodeEnd));
     }
-    return nodes;
+    return Collections.unmodifiableList(nodes);
+  }
+
+  private static DockerNode parseNode(String[][] systemDescription, int start, int end) {
+    final String[] node = systemDescription[start];
+    int containers = 0;
+    int reservedCpus = 0;
+    int totalCpus = 0;
+    long reservedMemory = 0;
+    long totalMemory = 0;
+    for (int i = start + 1; i < end; ++i) {
+      final String[] property = systemDescription[i];
+      if (property.length < 2 || property[1] == null) {
+        continue;
+      }
+      final String name =
+          NODE_PROPERTY_PREFIX.matcher(Strings.nullToEmpty(property[0])).replaceFirst("");
+      final String value = property[1].trim();
+      switch (name) {
+        case "Containers":
+          final Matcher matcher = LEADING_NUMBER.matcher(value);
+          if (matcher.find()) {
+            containers = firstNonNull(tryParse(matcher.group()), 0);
+          }
+          break;
+        case "Reserved CPUs":
+          final String[] cpuValues = value.split("/");
+          if (cpuValues.length == 2) {
+            reservedCpus = firstNonNull(tryParse(cpuValues[0].trim()), 0);
+            totalCpus = firstNonNull(tryParse(cpuValues[1].trim()), 0);
+          }
+          break;
+        case "Reserved Memory":
+          final String[] memoryValues = value.split("/");
+          if (memoryValues.length == 2) {
+            try {
+              reservedMemory = parseSize(memoryValues[0].trim());
+              totalMemory = parseSize(memoryValues[1].trim());
+            } catch (IllegalArgumentException e) {
+              reservedMemory = 0;
+              LOG.warn("Can't parse RAM '{}' of docker node '{}'", value, node[0]);
+            }
+          }
+          break;
+        default:
+          break;
+      }
+    }
+    return new DockerNode(
+        node[0], node[1], containers, reservedCpus, totalCpus, reservedMemory, totalMemory);
   }
 
   // TODO find better solution
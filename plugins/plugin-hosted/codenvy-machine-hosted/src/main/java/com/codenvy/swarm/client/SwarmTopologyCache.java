@@ -0,0 +1,178 @@
+/*
+ * Copyright (c) [2012] - [2017] Red Hat, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *   Red Hat, Inc. - initial API and implementation
+ */
+package com.codenvy.swarm.client;
+
+import static org.slf4j.LoggerFactory.getLogger;
+
+import com.codenvy.swarm.client.model.DockerNode;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.eclipse.che.commons.lang.concurrent.LoggingUncaughtExceptionHandler;
+import org.eclipse.che.plugin.docker.client.json.SystemInfo;
+import org.slf4j.Logger;
+
+/**
+ * Keeps in-memory snapshot of Swarm cluster topology, so frequent readers such as node selection
+ * and system RAM checks on workspace start don't request Swarm each time.
+ *
+ * <p>Snapshot is refreshed in background every {@code refreshPeriodMs} and as soon as possible
+ * after {@link #invalidate()}, e.g. when containers which reserve resources are created or removed.
+ * Readers get the current snapshot without waiting unless it is older than {@code maxAgeMs}, in
+ * which case it is loaded synchronously. Concurrent readers of an expired snapshot wait for a
+ * single load.
+ */
+public class SwarmTopologyCache {
+  private static final Logger LOG = getLogger(SwarmTopologyCache.class);
+
+  /** Loads topology from Swarm. */
+  @FunctionalInterface
+  public interface Loader {
+    Snapshot load() throws IOException;
+  }
+
+  /** Topology of the cluster at some moment. */
+  public static class Snapshot {
+    private final SystemInfo systemInfo;
+    private final List<DockerNode> nodes;
+    private final long creationTime;
+
+    /**
+     * @param systemInfo system info returned by Swarm
+     * @param nodes nodes parsed from the system info, {@code null} if they can't be parsed
+     */
+    public Snapshot(SystemInfo systemInfo, List<DockerNode> nodes) {
+      this.systemInfo = systemInfo;
+      this.nodes = nodes;
+      this.creationTime = System.currentTimeMillis();
+    }
+
+    public SystemInfo getSystemInfo() {
+      return systemInfo;
+    }
+
+    /** Returns nodes of the cluster or {@code null} if system info doesn't describe them. */
+    public List<DockerNode> getNodes() {
+      return nodes;
+    }
+
+    /** Returns time when snapshot was loaded in milliseconds since the epoch. */
+    public long getCreationTime() {
+      return creationTime;
+    }
+  }
+
+  private final Loader loader;
+  private final long refreshPeriodMs;
+  private final long maxAgeMs;
+  private final Object loadLock;
+  private final AtomicBoolean refreshScheduled;
+  private final ScheduledExecutorService refresher;
+
+  private volatile Snapshot snapshot;
+
+  /**
+   * @param loader loader of topology
+   * @param refreshPeriodMs period of background refresh, background refresh is disabled if the
+   *     value is not positive
+   * @param maxAgeMs maximum age of snapshot returned to readers, caching is disabled if the value
+   *     is not positive
+   */
+  public SwarmTopologyCache(Loader loader, long refreshPeriodMs, long maxAgeMs) {
+    this.loader = loader;
+    this.refreshPeriodMs = refreshPeriodMs;
+    this.maxAgeMs = maxAgeMs;
+    this.loadLock = new Object();
+    this.refreshScheduled = new AtomicBoolean();
+    this.refresher =
+        Executors.newSingleThreadScheduledExecutor(
+            new ThreadFactoryBuilder()
+                .setNameFormat("SwarmTopologyRefresher-%s")
+                .setUncaughtExceptionHandler(LoggingUncaughtExceptionHandler.getInstance())
+                .setDaemon(true)
+                .build());
+    if (maxAgeMs > 0 && refreshPeriodMs > 0) {
+      refresher.scheduleWithFixedDelay(
+          this::refreshIfOutdated, refreshPeriodMs, refreshPeriodMs, TimeUnit.MILLISECONDS);
+    }
+  }
+
+  /**
+   * Returns the current snapshot of topology, loads it if snapshot is older than the maximum age.
+   *
+   * @throws IOException if snapshot is outdated and loading fails
+   */
+  public Snapshot get() throws IOException {
+    Snapshot current = snapshot;
+    if (isActual(current)) {
+      return current;
+    }
+    synchronized (loadLock) {
+      current = snapshot;
+      if (isActual(current)) {
+        return current;
+      }
+      return load();
+    }
+  }
+
+  /** Schedules refresh of the snapshot, readers get the current snapshot until it is refreshed. */
+  public void invalidate() {
+    if (maxAgeMs > 0 && refreshScheduled.compareAndSet(false, true)) {
+      try {
+        refresher.execute(
+            () -> {
+              refreshScheduled.set(false);
+              refresh();
+            });
+      } catch (RuntimeException e) {
+        // refresher is shut down
+        refreshScheduled.set(false);
+      }
+    }
+  }
+
+  /** Stops background refresh. */
+  public void shutdown() {
+    refresher.shutdownNow();
+  }
+
+  private boolean isActual(Snapshot snapshot) {
+    return snapshot != null && System.currentTimeMillis() - snapshot.creationTime < maxAgeMs;
+  }
+
+  private void refreshIfOutdated() {
+    final Snapshot current = snapshot;
+    if (current == null || System.currentTimeMillis() - current.creationTime >= refreshPeriodMs) {
+      refresh();
+    }
+  }
+
+  private void refresh() {
+    synchronized (loadLock) {
+      try {
+        load();
+      } catch (IOException | RuntimeException e) {
+        LOG.warn("Failed to refresh Swarm topology. Error: {}", e.getMessage());
+      }
+    }
+  }
+
+  private Snapshot load() throws IOException {
+    final Snapshot loaded = loader.load();
+    snapshot = loaded;
+    return loaded;
+  }
+}
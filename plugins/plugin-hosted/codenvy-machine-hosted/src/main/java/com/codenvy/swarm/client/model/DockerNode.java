@@ -13,16 +13,38 @@ package com.codenvy.swarm.client.model;
 /**
  * Represents node where docker runs. Used for workarounds because of not implemented APIs in Swarm
  *
+ * <p>Resources values are the ones reported by Swarm, they are 0 if Swarm didn't report them.
+ *
  * @author Eugene Voevodin
  */
 public class DockerNode {
-  // TODO add ram and containers ?
   private final String hostname;
   private final String addr;
+  private final int containers;
+  private final int reservedCpus;
+  private final int totalCpus;
+  private final long reservedMemory;
+  private final long totalMemory;
 
   public DockerNode(String hostname, String addr) {
+    this(hostname, addr, 0, 0, 0, 0, 0);
+  }
+
+  public DockerNode(
+      String hostname,
+      String addr,
+      int containers,
+      int reservedCpus,
+      int totalCpus,
+      long reservedMemory,
+      long totalMemory) {
     this.hostname = hostname;
     this.addr = addr;
+    this.containers = containers;
+    this.reservedCpus = reservedCpus;
+    this.totalCpus = totalCpus;
+    this.reservedMemory = reservedMemory;
+    this.totalMemory = totalMemory;
   }
 
   public String getAddr() {
@@ -32,4 +54,60 @@ public class DockerNode {
   public String getHostname() {
     return hostname;
   }
+
+  /** Returns the number of containers on the node. */
+  public int getContainers() {
+    return containers;
+  }
+
+  /** Returns the number of CPUs reserved by containers. */
+  public int getReservedCpus() {
+    return reservedCpus;
+  }
+
+  public int getTotalCpus() {
+    return totalCpus;
+  }
+
+  /** Returns RAM reserved by containers in bytes. */
+  public long getReservedMemory() {
+    return reservedMemory;
+  }
+
+  /** Returns RAM of the node in bytes. */
+  public long getTotalMemory() {
+    return totalMemory;
+  }
+
+  /** Returns RAM that is not reserved by containers in bytes. */
+  public long getFreeMemory() {
+    return Math.max(0, totalMemory - reservedMemory);
+  }
+
+  /** Returns reserved part of RAM, from 0 to 1. If RAM of the node is unknown returns 1. */
+  public double getMemoryUsage() {
+    return totalMemory <= 0 ? 1 : Math.min(1, (double) reservedMemory / totalMemory);
+  }
+
+  @Override
+  public String toString() {
+    return "DockerNode{"
+        + "hostname='"
+        + hostname
+        + '\''
+        + ", addr='"
+        + addr
+        + '\''
+        + ", containers="
+        + containers
+        + ", reservedCpus="
+        + reservedCpus
+        + ", totalCpus="
+        + totalCpus
+        + ", reservedMemory="
+        + reservedMemory
+        + ", totalMemory="
+        + totalMemory
+        + '}';
+  }
 }
@@ -13,6 +13,7 @@ package com.codenvy.workspace;
 import static java.lang.String.format;
 import static java.util.concurrent.TimeUnit.SECONDS;
 
+import com.codenvy.machine.backup.ChunkedDockerEnvironmentBackupManager;
 import com.codenvy.machine.backup.WorkspaceIdHashLocationFinder;
 import com.google.common.annotations.VisibleForTesting;
 import java.io.File;
@@ -45,21 +46,24 @@ public class WorkspaceFilesCleanUpScriptExecutor implements WorkspaceFilesCleane
   private final File backupsRootDir;
   private final int cleanUpTimeOut;
   private final String workspaceCleanUpScript;
+  private final ChunkedDockerEnvironmentBackupManager backupManager;
 
   @Inject
   public WorkspaceFilesCleanUpScriptExecutor(
       WorkspaceIdHashLocationFinder workspaceIdHashLocationFinder,
       @Named("che.user.workspaces.storage") File backupsRootDir,
       @Named("workspace.projects_storage.cleanup.script_path") String workspaceCleanUpScript,
-      @Named("workspace.projects_storage.cleanup.timeout_seconds") int cleanUpTimeOut) {
+      @Named("workspace.projects_storage.cleanup.timeout_seconds") int cleanUpTimeOut,
+      ChunkedDockerEnvironmentBackupManager backupManager) {
     this.workspaceIdHashLocationFinder = workspaceIdHashLocationFinder;
     this.backupsRootDir = backupsRootDir;
     this.workspaceCleanUpScript = workspaceCleanUpScript;
     this.cleanUpTimeOut = cleanUpTimeOut;
+    this.backupManager = backupManager;
   }
 
   /**
-   * Execute workspace cleanUp script.
+   * Execute workspace cleanUp script and remove incremental backup of the workspace.
    *
    * @param workspace to cleanUp files.
    * @throws IOException in case I/O error.
@@ -80,6 +84,7 @@ public class WorkspaceFilesCleanUpScriptExecutor implements WorkspaceFilesCleane
               wsFolder.getAbsolutePath(), workspace.getId()),
           e);
     }
+    backupManager.removeBackup(workspace.getId());
   }
 
   @VisibleForTesting
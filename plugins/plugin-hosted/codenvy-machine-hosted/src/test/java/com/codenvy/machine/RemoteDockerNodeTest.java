@@ -20,6 +20,7 @@ import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.testng.Assert.fail;
 
+import com.codenvy.machine.backup.BackupConcurrencyLimiter;
 import com.codenvy.machine.backup.DockerEnvironmentBackupManager;
 import org.eclipse.che.api.core.ServerException;
 import org.eclipse.che.plugin.docker.client.DockerConnector;
@@ -49,7 +50,12 @@ public class RemoteDockerNodeTest {
     when(dockerConnector.createExec(any())).thenReturn(exec);
     when(exec.getId()).thenReturn("ExecId");
     remoteDockerNode =
-        new RemoteDockerNode(dockerConnector, "ContainerId", "WorkspaceId", backupManager);
+        new RemoteDockerNode(
+            dockerConnector,
+            "ContainerId",
+            "WorkspaceId",
+            backupManager,
+            new BackupConcurrencyLimiter(1));
   }
 
   @Test
@@ -0,0 +1,510 @@
+/*
+ * Copyright (c) [2012] - [2017] Red Hat, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *   Red Hat, Inc. - initial API and implementation
+ */
+package com.codenvy.machine.backup;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Collections.singletonList;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+import com.codenvy.machine.backup.storage.BackupManifest;
+import com.codenvy.machine.backup.storage.BackupManifest.Entry;
+import com.codenvy.machine.backup.storage.BackupManifest.Type;
+import com.codenvy.machine.backup.storage.FileChunkStore;
+import com.google.common.io.ByteStreams;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveInputStream;
+import org.apache.commons.compress.archivers.tar.TarArchiveOutputStream;
+import org.eclipse.che.api.core.ServerException;
+import org.eclipse.che.api.workspace.server.WorkspaceManager;
+import org.eclipse.che.commons.lang.IoUtil;
+import org.eclipse.che.plugin.docker.client.DockerConnector;
+import org.eclipse.che.plugin.docker.client.Exec;
+import org.eclipse.che.plugin.docker.client.LogMessage;
+import org.eclipse.che.plugin.docker.client.MessageProcessor;
+import org.eclipse.che.plugin.docker.client.json.ExecInfo;
+import org.eclipse.che.plugin.docker.client.params.CreateExecParams;
+import org.eclipse.che.plugin.docker.client.params.GetResourceParams;
+import org.eclipse.che.plugin.docker.client.params.PutResourceParams;
+import org.eclipse.che.plugin.docker.client.params.StartExecParams;
+import org.mockito.Matchers;
+import org.mockito.Mock;
+import org.mockito.testng.MockitoTestNGListener;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Listeners;
+import org.testng.annotations.Test;
+
+@Listeners(value = {MockitoTestNGListener.class})
+public class ChunkedDockerEnvironmentBackupManagerTest {
+  private static final String WORKSPACE_ID = "workspace123";
+  private static final String CONTAINER_ID = "container123";
+  private static final String PROJECTS_PATH = "/projects";
+  private static final byte[] CONTENT = "public class Main {}".getBytes(UTF_8);
+  private static final long MODIFICATION_TIME = 1500000000L;
+
+  @Mock private DockerConnector docker;
+  @Mock private WorkspaceManager workspaceManager;
+  @Mock private ExecInfo execInfo;
+
+  private File backupsRoot;
+  private FileChunkStore chunkStore;
+  private List<String> listing;
+  private List<String> listingErrors;
+  private List<String> existing;
+  private ChunkedDockerEnvironmentBackupManager backupManager;
+
+  @BeforeMethod
+  public void setUp() throws Exception {
+    backupsRoot = Files.createTempDirectory("backups").toFile();
+    chunkStore = new FileChunkStore(backupsRoot);
+    backupManager = createBackupManager(false);
+
+    listing =
+        Arrays.asList(
+            "directory|4096|" + MODIFICATION_TIME + "|755|./project",
+            "regular file|"
+                + CONTENT.length
+                + "|"
+                + MODIFICATION_TIME
+                + "|644|./project/Main.java");
+    listingErrors = new ArrayList<>();
+    existing = new ArrayList<>();
+
+    Exec exec = mock(Exec.class);
+    when(exec.getId()).thenReturn("execId");
+    Exec checkExec = mock(Exec.class);
+    when(checkExec.getId()).thenReturn("checkExecId");
+    when(docker.createExec(any(CreateExecParams.class)))
+        .thenAnswer(
+            invocation -> {
+              CreateExecParams params = (CreateExecParams) invocation.getArguments()[0];
+              return params.getCmd()[2].contains("[ -e") ? checkExec : exec;
+            });
+    doAnswer(
+            invocation -> {
+              @SuppressWarnings("unchecked")
+              MessageProcessor<LogMessage> processor =
+                  (MessageProcessor<LogMessage>) invocation.getArguments()[1];
+              StartExecParams params = (StartExecParams) invocation.getArguments()[0];
+              if ("checkExecId".equals(params.getExecId())) {
+                for (String path : existing) {
+                  processor.process(new LogMessage(LogMessage.Type.STDOUT, path));
+                }
+                return null;
+              }
+              for (String line : listing) {
+                processor.process(new LogMessage(LogMessage.Type.STDOUT, line));
+              }
+              for (String line : listingErrors) {
+                processor.process(new LogMessage(LogMessage.Type.STDERR, line));
+              }
+              return null;
+            })
+        .when(docker)
+        .startExec(any(StartExecParams.class), Matchers.any());
+    when(docker.getExecInfo("execId")).thenReturn(execInfo);
+    when(docker.getResource(any(GetResourceParams.class)))
+        .thenAnswer(invocation -> new ByteArrayInputStream(createFileArchive()));
+  }
+
+  @AfterMethod
+  public void tearDown() {
+    backupManager.shutdown();
+    IoUtil.deleteRecursive(backupsRoot);
+  }
+
+  @Test
+  public void shouldStoreChangedFilesAndWriteManifest() throws Exception {
+    BackupStats stats = backupManager.backup(WORKSPACE_ID, CONTAINER_ID, PROJECTS_PATH);
+
+    verify(docker).getResource(any(GetResourceParams.class));
+    assertEquals(stats.getFilesScanned(), 2);
+    assertEquals(stats.getFilesTransferred(), 1);
+    assertEquals(stats.getBytesScanned(), CONTENT.length);
+    assertEquals(stats.getBytesStored(), CONTENT.length);
+    assertTrue(stats.getBytesTransferred() > 0);
+
+    BackupManifest manifest = BackupManifest.read(backupManager.getManifestPath(WORKSPACE_ID));
+    assertEquals(manifest.size(), 2);
+    Entry file = manifest.get("project/Main.java");
+    assertNotNull(file);
+    assertEquals(file.getType(), Type.FILE);
+    assertEquals(file.getSize(), CONTENT.length);
+    assertEquals(file.getModificationTime(), MODIFICATION_TIME);
+    assertEquals(file.getMode(), 0644);
+    assertEquals(file.getChunks().size(), 1);
+  }
+
+  @Test
+  public void shouldNotTransferAnythingIfNothingChanged() throws Exception {
+    backupManager.backup(WORKSPACE_ID, CONTAINER_ID, PROJECTS_PATH);
+
+    BackupStats stats = backupManager.backup(WORKSPACE_ID, CONTAINER_ID, PROJECTS_PATH);
+
+    verify(docker, times(1)).getResource(any(GetResourceParams.class));
+    assertEquals(stats.getFilesTransferred(), 0);
+    assertEquals(stats.getBytesTransferred(), 0);
+    assertEquals(stats.getBytesStored(), 0);
+  }
+
+  @Test
+  public void shouldNotStoreTheSameChunkTwice() throws Exception {
+    backupManager.backup(WORKSPACE_ID, CONTAINER_ID, PROJECTS_PATH);
+
+    BackupStats stats = backupManager.backup("workspace456", CONTAINER_ID, PROJECTS_PATH);
+
+    assertEquals(stats.getFilesTransferred(), 1);
+    assertEquals(stats.getBytesStored(), 0);
+  }
+
+  @Test
+  public void shouldRemoveDeletedFilesFromManifest() throws Exception {
+    backupManager.backup(WORKSPACE_ID, CONTAINER_ID, PROJECTS_PATH);
+    listing = listing.subList(0, 1);
+
+    backupManager.backup(WORKSPACE_ID, CONTAINER_ID, PROJECTS_PATH);
+
+    BackupManifest manifest = BackupManifest.read(backupManager.getManifestPath(WORKSPACE_ID));
+    assertEquals(manifest.size(), 1);
+    assertNull(manifest.get("project/Main.java"));
+  }
+
+  @Test
+  public void shouldFailBackupAndKeepPreviousManifestIfFilesCanNotBeListed() throws Exception {
+    backupManager.backup(WORKSPACE_ID, CONTAINER_ID, PROJECTS_PATH);
+    listing = listing.subList(0, 1);
+    listingErrors.add("find: './project/src': Permission denied");
+    when(execInfo.getExitCode()).thenReturn(1);
+
+    try {
+      backupManager.backup(WORKSPACE_ID, CONTAINER_ID, PROJECTS_PATH);
+      fail("Backup must fail if files can't be listed");
+    } catch (ServerException expected) {
+      assertTrue(expected.getMessage().contains("Permission denied"));
+    }
+
+    BackupManifest manifest = BackupManifest.read(backupManager.getManifestPath(WORKSPACE_ID));
+    assertEquals(manifest.size(), 2);
+    assertNotNull(manifest.get("project/Main.java"));
+  }
+
+  @Test
+  public void shouldFailBackupIfListingCommandExitsWithError() throws Exception {
+    when(execInfo.getExitCode()).thenReturn(1);
+
+    try {
+      backupManager.backup(WORKSPACE_ID, CONTAINER_ID, PROJECTS_PATH);
+      fail("Backup must fail if listing command fails");
+    } catch (ServerException expected) {
+    }
+
+    assertFalse(Files.exists(backupManager.getManifestPath(WORKSPACE_ID)));
+  }
+
+  @Test
+  public void shouldNotFetchDirectories() throws Exception {
+    listing = listing.subList(0, 1);
+
+    backupManager.backup(WORKSPACE_ID, CONTAINER_ID, PROJECTS_PATH);
+
+    verify(docker, never()).getResource(any(GetResourceParams.class));
+  }
+
+  @Test
+  public void shouldRestoreBackedUpFilesIntoContainer() throws Exception {
+    backupManager.backup(WORKSPACE_ID, CONTAINER_ID, PROJECTS_PATH);
+    List<String> restored = new ArrayList<>();
+    doAnswer(
+            invocation -> {
+              PutResourceParams params = (PutResourceParams) invocation.getArguments()[0];
+              try (TarArchiveInputStream tar =
+                  new TarArchiveInputStream(params.getSourceStream())) {
+                TarArchiveEntry entry;
+                while ((entry = tar.getNextTarEntry()) != null) {
+                  restored.add(entry.getName());
+                  if (entry.isFile()) {
+                    assertEquals(ByteStreams.toByteArray(tar), CONTENT);
+                    assertEquals(entry.getUserId(), 1000);
+                    assertEquals(entry.getModTime().getTime(), MODIFICATION_TIME * 1000);
+                  }
+                }
+              }
+              return null;
+            })
+        .when(docker)
+        .putResource(any(PutResourceParams.class));
+
+    backupManager.executeRestore(
+        WORKSPACE_ID, CONTAINER_ID, "/backups", PROJECTS_PATH, "1000", "1000", "user", "host", 22);
+
+    assertEquals(restored, Arrays.asList("project/", "project/Main.java"));
+  }
+
+  @Test
+  public void shouldParseListedEntries() throws Exception {
+    Entry link =
+        ChunkedDockerEnvironmentBackupManager.parseListedEntry(
+            "symbolic link|7|1500000000|777|./node_modules/.bin/tsc");
+
+    assertNotNull(link);
+    assertEquals(link.getPath(), "node_modules/.bin/tsc");
+    assertEquals(link.getType(), Type.SYMLINK);
+    assertEquals(link.getSize(), 0);
+    assertEquals(link.getMode(), 0777);
+    assertNull(ChunkedDockerEnvironmentBackupManager.parseListedEntry("malformed"));
+  }
+
+  @Test
+  public void shouldSelectHotSet() throws Exception {
+    BackupManifest manifest = new BackupManifest();
+    manifest.put(new Entry("project", Type.DIRECTORY, 0, 1, 0755, null, null));
+    manifest.put(new Entry("project/link", Type.SYMLINK, 0, 1, 0777, "pom.xml", null));
+    manifest.put(new Entry("project/pom.xml", Type.FILE, 1000, 1, 0644, null, null));
+    manifest.put(new Entry("project/.git/HEAD", Type.FILE, 10, 1, 0644, null, null));
+    manifest.put(new Entry("project/.git/objects/pack/p.pack", Type.FILE, 10, 3, 0644, null, null));
+    manifest.put(new Entry("project/Old.java", Type.FILE, 1000, 1, 0644, null, null));
+    manifest.put(new Entry("project/New.java", Type.FILE, 1000, 2, 0644, null, null));
+
+    Set<String> hotSet = ChunkedDockerEnvironmentBackupManager.selectHotSet(manifest, 2500);
+
+    assertEquals(
+        hotSet,
+        new HashSet<>(
+            Arrays.asList(
+                "project",
+                "project/link",
+                "project/pom.xml",
+                "project/.git/HEAD",
+                "project/.git/objects/pack/p.pack",
+                "project/New.java")));
+  }
+
+  @Test
+  public void shouldRestoreHotSetAndStreamOtherFilesInBackground() throws Exception {
+    backupManager = createBackupManager(true);
+    CountDownLatch backgroundRestoreLatch = new CountDownLatch(1);
+    List<List<String>> restored = prepareStreamingRestore(backgroundRestoreLatch);
+
+    restoreWorkspace();
+
+    assertEquals(restored.size(), 1);
+    assertEquals(restored.get(0), Arrays.asList("project/", "project/pom.xml"));
+    RestoreProgress progress = backupManager.getRestoreProgress(WORKSPACE_ID);
+    assertEquals(progress.getStatus(), RestoreProgress.Status.IN_PROGRESS);
+    assertEquals(progress.getTotalFiles(), 3);
+    assertEquals(progress.getRestoredFiles(), 2);
+    assertTrue(Files.exists(backupManager.getPendingRestorePath(WORKSPACE_ID)));
+
+    backgroundRestoreLatch.countDown();
+
+    progress = awaitRestoreCompletion();
+    assertEquals(progress.getRestoredFiles(), 3);
+    assertEquals(progress.getRestoredBytes(), progress.getTotalBytes());
+    assertEquals(restored.get(1), singletonList("project/Main.java"));
+    assertFalse(Files.exists(backupManager.getPendingRestorePath(WORKSPACE_ID)));
+  }
+
+  @Test
+  public void shouldKeepFilesWhichAreNotRestoredYetInBackup() throws Exception {
+    backupManager = createBackupManager(true);
+    CountDownLatch backgroundRestoreLatch = new CountDownLatch(1);
+    prepareStreamingRestore(backgroundRestoreLatch);
+    Entry notRestored =
+        BackupManifest.read(backupManager.getManifestPath(WORKSPACE_ID)).get("project/Main.java");
+    restoreWorkspace();
+    // file is not restored into container yet
+    listing = listing.subList(0, 2);
+
+    backupManager.backup(WORKSPACE_ID, CONTAINER_ID, PROJECTS_PATH);
+
+    BackupManifest manifest = BackupManifest.read(backupManager.getManifestPath(WORKSPACE_ID));
+    assertEquals(manifest.get("project/Main.java"), notRestored);
+    backgroundRestoreLatch.countDown();
+    awaitRestoreCompletion();
+  }
+
+  @Test
+  public void shouldNotOverwriteFilesCreatedInContainerBeforeTheyAreRestored() throws Exception {
+    backupManager = createBackupManager(true);
+    List<List<String>> restored = prepareStreamingRestore(new CountDownLatch(0));
+    existing.add("project/Main.java");
+
+    restoreWorkspace();
+
+    RestoreProgress progress = awaitRestoreCompletion();
+    assertEquals(restored.size(), 1);
+    assertEquals(progress.getRestoredFiles(), 3);
+    assertFalse(Files.exists(backupManager.getPendingRestorePath(WORKSPACE_ID)));
+  }
+
+  @Test
+  public void shouldBackUpFilesCreatedInContainerBeforeTheyAreRestored() throws Exception {
+    // background restore doesn't reach not restored files until backup
+    backupManager = createBackupManager(true, 0);
+    List<List<String>> restored = prepareStreamingRestore(new CountDownLatch(0));
+    restoreWorkspace();
+    listing =
+        Arrays.asList(
+            "directory|4096|" + MODIFICATION_TIME + "|755|./project",
+            "regular file|" + CONTENT.length + "|" + MODIFICATION_TIME + "|644|./project/pom.xml",
+            "regular file|"
+                + CONTENT.length
+                + "|"
+                + (MODIFICATION_TIME + 1)
+                + "|644|./project/Main.java");
+
+    BackupStats stats = backupManager.backup(WORKSPACE_ID, CONTAINER_ID, PROJECTS_PATH);
+
+    // changed file is fetched from container instead of keeping its not restored copy
+    assertEquals(stats.getFilesTransferred(), 1);
+    assertTrue(BackupManifest.read(backupManager.getPendingRestorePath(WORKSPACE_ID)).isEmpty());
+    assertEquals(backupManager.getRestoreProgress(WORKSPACE_ID).getRestoredFiles(), 3);
+    assertEquals(restored.size(), 1);
+  }
+
+  @Test
+  public void shouldRemoveChunksWhichAreNotReferencedByBackups() throws Exception {
+    backupManager.backup(WORKSPACE_ID, CONTAINER_ID, PROJECTS_PATH);
+    backupManager.backup("workspace234", CONTAINER_ID, PROJECTS_PATH);
+    String chunk =
+        BackupManifest.read(backupManager.getManifestPath(WORKSPACE_ID)).getChunks().get(0);
+
+    backupManager.removeBackup(WORKSPACE_ID);
+    backupManager.collectGarbage();
+
+    assertFalse(Files.exists(backupManager.getManifestPath(WORKSPACE_ID)));
+    assertTrue(chunkStore.contains(chunk));
+
+    backupManager.removeBackup("workspace234");
+    backupManager.collectGarbage();
+
+    assertFalse(chunkStore.contains(chunk));
+    assertEquals(backupManager.getBytesCollected(), CONTENT.length);
+  }
+
+  private ChunkedDockerEnvironmentBackupManager createBackupManager(boolean streamingRestore) {
+    return createBackupManager(streamingRestore, 2);
+  }
+
+  private ChunkedDockerEnvironmentBackupManager createBackupManager(
+      boolean streamingRestore, int parallelStreams) {
+    return new ChunkedDockerEnvironmentBackupManager(
+        "/tmp/backup.sh",
+        "/tmp/restore.sh",
+        10,
+        10,
+        backupsRoot,
+        new WorkspaceIdHashLocationFinder(),
+        PROJECTS_PATH,
+        workspaceManager,
+        docker,
+        true,
+        streamingRestore,
+        0,
+        parallelStreams,
+        chunkStore);
+  }
+
+  /**
+   * Backs up workspace with a build file and a source file and records names of the entries of each
+   * archive restored into container. Archives other than the first one are restored after the latch
+   * is released.
+   */
+  private List<List<String>> prepareStreamingRestore(CountDownLatch backgroundRestoreLatch)
+      throws Exception {
+    listing =
+        Arrays.asList(
+            "directory|4096|" + MODIFICATION_TIME + "|755|./project",
+            "regular file|" + CONTENT.length + "|" + MODIFICATION_TIME + "|644|./project/pom.xml",
+            "regular file|"
+                + CONTENT.length
+                + "|"
+                + MODIFICATION_TIME
+                + "|644|./project/Main.java");
+    backupManager.backup(WORKSPACE_ID, CONTAINER_ID, PROJECTS_PATH);
+
+    List<List<String>> restored = new CopyOnWriteArrayList<>();
+    doAnswer(
+            invocation -> {
+              if (!restored.isEmpty()) {
+                backgroundRestoreLatch.await();
+              }
+              PutResourceParams params = (PutResourceParams) invocation.getArguments()[0];
+              List<String> names = new ArrayList<>();
+              try (TarArchiveInputStream tar =
+                  new TarArchiveInputStream(params.getSourceStream())) {
+                TarArchiveEntry entry;
+                while ((entry = tar.getNextTarEntry()) != null) {
+                  names.add(entry.getName());
+                }
+              }
+              restored.add(names);
+              return null;
+            })
+        .when(docker)
+        .putResource(any(PutResourceParams.class));
+    return restored;
+  }
+
+  private void restoreWorkspace() throws Exception {
+    backupManager.executeRestore(
+        WORKSPACE_ID, CONTAINER_ID, "/backups", PROJECTS_PATH, "1000", "1000", "user", "host", 22);
+  }
+
+  private RestoreProgress awaitRestoreCompletion() throws Exception {
+    for (int i = 0; i < 100; i++) {
+      RestoreProgress progress = backupManager.getRestoreProgress(WORKSPACE_ID);
+      if (progress.getStatus() != RestoreProgress.Status.IN_PROGRESS) {
+        assertEquals(progress.getStatus(), RestoreProgress.Status.COMPLETED);
+        return progress;
+      }
+      Thread.sleep(50);
+    }
+    throw new AssertionError("Restore is not finished");
+  }
+
+  private static byte[] createFileArchive() throws Exception {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    try (TarArchiveOutputStream tar = new TarArchiveOutputStream(out)) {
+      TarArchiveEntry entry = new TarArchiveEntry("Main.java");
+      entry.setSize(CONTENT.length);
+      entry.setMode(0100644);
+      entry.setModTime(MODIFICATION_TIME * 1000);
+      tar.putArchiveEntry(entry);
+      tar.write(CONTENT);
+      tar.closeArchiveEntry();
+    }
+    return out.toByteArray();
+  }
+}
@@ -11,6 +11,7 @@
 package com.codenvy.machine.backup;
 
 import static java.lang.Thread.sleep;
+import static java.util.Collections.singleton;
 import static java.util.Collections.singletonList;
 import static java.util.Collections.singletonMap;
 import static org.mockito.ArgumentMatchers.nullable;
@@ -31,10 +32,13 @@ import static org.mockito.Mockito.verifyNoMoreInteractions;
 import static org.mockito.Mockito.when;
 import static org.slf4j.LoggerFactory.getLogger;
 import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
 import static org.testng.Assert.fail;
 import static org.testng.internal.junit.ArrayAsserts.assertArrayEquals;
 
+import com.codenvy.machine.agent.MachineInnerRsyncAgent;
 import java.io.File;
+import java.io.IOException;
 import java.lang.reflect.Field;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
@@ -143,6 +147,7 @@ public class DockerEnvironmentBackupManagerTest {
   private ExecutorService executor;
 
   private DockerEnvironmentBackupManager backupManager;
+  private String changesCheckOutput;
 
   @BeforeMethod
   private void setup() throws Exception {
@@ -199,6 +204,15 @@ public class DockerEnvironmentBackupManagerTest {
                 CreateExecParams.create(CONTAINER_ID, new String[] {"sh", "-c", "id -u -n"})
                     .withDetach(false))))
         .thenReturn(getUserNameExecMock);
+    Exec checkChangesExecMock = mock(Exec.class);
+    when(checkChangesExecMock.getId()).thenReturn("checkChangesExecMockId");
+    when(docker.createExec(
+            eq(
+                CreateExecParams.create(
+                        CONTAINER_ID,
+                        new String[] {"sh", "-c", MachineInnerRsyncAgent.CHECK_CHANGES_COMMAND})
+                    .withDetach(false))))
+        .thenReturn(checkChangesExecMock);
     doAnswer(
             invocation -> {
               String execId = ((StartExecParams) invocation.getArguments()[0]).getExecId();
@@ -216,6 +230,10 @@ public class DockerEnvironmentBackupManagerTest {
                   messageProcessor.process(
                       new LogMessage(LogMessage.Type.STDOUT, USER_IN_CONTAINER));
                   break;
+                case "checkChangesExecMockId":
+                  messageProcessor.process(
+                      new LogMessage(LogMessage.Type.STDOUT, changesCheckOutput));
+                  break;
                 default:
                   throw new RuntimeException("Unexpected exec id");
               }
@@ -928,6 +946,51 @@ public class DockerEnvironmentBackupManagerTest {
    * @param task specifies task which will be run
    * @throws InterruptedException if waiting in this method is interrupted
    */
+  @Test
+  public void shouldReportWorkspaceAsChangedIfWatcherFoundChanges() throws Exception {
+    changesCheckOutput = "changed";
+
+    Set<String> changed = backupManager.pollChangedWorkspaces(singleton(WORKSPACE_ID));
+
+    assertEquals(changed, singleton(WORKSPACE_ID));
+  }
+
+  @Test
+  public void shouldNotReportWorkspaceAsChangedIfWatcherFoundNoChanges() throws Exception {
+    changesCheckOutput = MachineInnerRsyncAgent.UNCHANGED;
+
+    Set<String> changed = backupManager.pollChangedWorkspaces(singleton(WORKSPACE_ID));
+
+    assertTrue(changed.isEmpty());
+  }
+
+  @Test
+  public void shouldReportWorkspaceAsChangedIfWatcherIsNotRunning() throws Exception {
+    changesCheckOutput = "unknown";
+
+    Set<String> changed = backupManager.pollChangedWorkspaces(singleton(WORKSPACE_ID));
+
+    assertEquals(changed, singleton(WORKSPACE_ID));
+  }
+
+  @Test
+  public void shouldReportWorkspaceAsChangedIfChangesCheckFails() throws Exception {
+    when(docker.createExec(any(CreateExecParams.class))).thenThrow(new IOException("test"));
+
+    Set<String> changed = backupManager.pollChangedWorkspaces(singleton(WORKSPACE_ID));
+
+    assertEquals(changed, singleton(WORKSPACE_ID));
+  }
+
+  @Test
+  public void shouldNotReportWorkspaceAsChangedIfDevMachineIsNotRunning() throws Exception {
+    when(devMachine.getStatus()).thenReturn(MachineStatus.DESTROYING);
+
+    Set<String> changed = backupManager.pollChangedWorkspaces(singleton(WORKSPACE_ID));
+
+    assertTrue(changed.isEmpty());
+  }
+
   private void executeTaskNTimesSimultaneouslyWithBarrier(Runnable task)
       throws InterruptedException {
     CountDownLatch latch = new CountDownLatch(5);
@@ -11,10 +11,13 @@
 package com.codenvy.machine.backup;
 
 import static java.lang.Thread.sleep;
+import static org.mockito.Matchers.anySetOf;
+import static org.mockito.Matchers.anyString;
 import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.after;
 import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.inOrder;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.spy;
@@ -22,10 +25,13 @@ import static org.mockito.Mockito.timeout;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
 
 import java.util.Collections;
 import java.util.LinkedHashSet;
 import java.util.Set;
+import java.util.concurrent.CountDownLatch;
 import org.eclipse.che.api.core.ServerException;
 import org.eclipse.che.api.core.model.workspace.WorkspaceStatus;
 import org.eclipse.che.api.workspace.server.WorkspaceManager;
@@ -35,6 +41,7 @@ import org.eclipse.che.api.workspace.server.model.impl.EnvironmentRecipeImpl;
 import org.eclipse.che.api.workspace.server.model.impl.WorkspaceConfigImpl;
 import org.eclipse.che.api.workspace.server.model.impl.WorkspaceImpl;
 import org.eclipse.che.api.workspace.server.model.impl.WorkspaceRuntimeImpl;
+import org.mockito.InOrder;
 import org.mockito.Mock;
 import org.mockito.testng.MockitoTestNGListener;
 import org.testng.annotations.BeforeMethod;
@@ -50,6 +57,8 @@ public class WorkspaceFsBackupSchedulerTest {
   private static final String ACTIVE_ENV = "testActiveEnv";
   private static final String ENV_TYPE = "testEnvType";
   private static final long BACKUP_TIMEOUT = 1; // 1 second
+  private static final int MAX_PARALLEL_BACKUPS = 10;
+  private static final String NODE = "node1";
 
   @Mock private WorkspaceRuntimes workspaceRuntimes;
   @Mock private WorkspaceManager workspaceManager;
@@ -67,7 +76,10 @@ public class WorkspaceFsBackupSchedulerTest {
                 Collections.singletonMap(ENV_TYPE, backupManager),
                 workspaceRuntimes,
                 BACKUP_TIMEOUT,
-                workspaceManager));
+                0,
+                MAX_PARALLEL_BACKUPS,
+                workspaceManager,
+                new BackupConcurrencyLimiter(MAX_PARALLEL_BACKUPS)));
 
     EnvironmentImpl environment = new EnvironmentImpl();
     EnvironmentRecipeImpl environmentRecipe = new EnvironmentRecipeImpl();
@@ -81,6 +93,8 @@ public class WorkspaceFsBackupSchedulerTest {
     addWorkspace(WORKSPACE_ID_1);
     addWorkspace(WORKSPACE_ID_2);
     when(workspaceRuntimes.getRuntimesIds()).thenReturn(ids);
+    when(backupManager.pollChangedWorkspaces(anySetOf(String.class)))
+        .thenAnswer(invocation -> invocation.getArguments()[0]);
   }
 
   private WorkspaceImpl addWorkspace(String wsId) throws Exception {
@@ -211,7 +225,10 @@ public class WorkspaceFsBackupSchedulerTest {
                 Collections.singletonMap(ENV_TYPE, backupManager),
                 workspaceRuntimes,
                 0,
-                workspaceManager));
+                0,
+                MAX_PARALLEL_BACKUPS,
+                workspaceManager,
+                new BackupConcurrencyLimiter(MAX_PARALLEL_BACKUPS)));
 
     scheduler.scheduleBackup();
 
@@ -239,7 +256,10 @@ public class WorkspaceFsBackupSchedulerTest {
                 Collections.singletonMap(ENV_TYPE, backupManager),
                 workspaceRuntimes,
                 0,
-                workspaceManager));
+                0,
+                MAX_PARALLEL_BACKUPS,
+                workspaceManager,
+                new BackupConcurrencyLimiter(MAX_PARALLEL_BACKUPS)));
     doAnswer(
             invocation -> {
               sleep(FAKE_BACKUP_TIME_MS);
@@ -258,4 +278,213 @@ public class WorkspaceFsBackupSchedulerTest {
     verify(workspaceRuntimes, times(2)).getRuntimesIds();
     verify(backupManager, timeout(2000)).backupWorkspace(eq("ws3"));
   }
+
+  @Test
+  public void shouldNotRunMoreBackupsOnNodeThanAllowed() throws Exception {
+    // given
+    scheduler =
+        new WorkspaceFsBackupScheduler(
+            Collections.singletonMap(ENV_TYPE, backupManager),
+            workspaceRuntimes,
+            BACKUP_TIMEOUT,
+            0,
+            MAX_PARALLEL_BACKUPS,
+            workspaceManager,
+            new BackupConcurrencyLimiter(1));
+    when(backupManager.getBackupNode(anyString())).thenReturn(NODE);
+    CountDownLatch backupLatch = new CountDownLatch(1);
+    doAnswer(
+            invocation -> {
+              backupLatch.await();
+              return null;
+            })
+        .when(backupManager)
+        .backupWorkspace(anyString());
+
+    // when
+    scheduler.scheduleBackup();
+
+    // then
+    verify(backupManager, timeout(2000)).backupWorkspace(WORKSPACE_ID_1);
+    verify(backupManager, after(500).never()).backupWorkspace(WORKSPACE_ID_2);
+    assertEquals(scheduler.getQueueSize(), 1);
+    assertEquals(scheduler.getBackupsInProgress(), 1);
+
+    backupLatch.countDown();
+    verify(backupManager, timeout(2000)).backupWorkspace(WORKSPACE_ID_2);
+  }
+
+  @Test
+  public void shouldNotRunMoreBackupsThanAllowedInTotal() throws Exception {
+    // given
+    scheduler =
+        new WorkspaceFsBackupScheduler(
+            Collections.singletonMap(ENV_TYPE, backupManager),
+            workspaceRuntimes,
+            BACKUP_TIMEOUT,
+            0,
+            1,
+            workspaceManager,
+            new BackupConcurrencyLimiter(MAX_PARALLEL_BACKUPS));
+    when(backupManager.getBackupNode(WORKSPACE_ID_1)).thenReturn(NODE);
+    when(backupManager.getBackupNode(WORKSPACE_ID_2)).thenReturn("node2");
+    CountDownLatch backupLatch = new CountDownLatch(1);
+    doAnswer(
+            invocation -> {
+              backupLatch.await();
+              return null;
+            })
+        .when(backupManager)
+        .backupWorkspace(anyString());
+
+    // when
+    scheduler.scheduleBackup();
+
+    // then
+    verify(backupManager, timeout(2000)).backupWorkspace(anyString());
+    assertEquals(scheduler.getQueueSize(), 1);
+
+    backupLatch.countDown();
+    verify(backupManager, timeout(2000).times(2)).backupWorkspace(anyString());
+  }
+
+  @Test
+  public void shouldBackupWorkspaceWithMoreChangesFirst() throws Exception {
+    // given
+    scheduler =
+        new WorkspaceFsBackupScheduler(
+            Collections.singletonMap(ENV_TYPE, backupManager),
+            workspaceRuntimes,
+            BACKUP_TIMEOUT,
+            0,
+            MAX_PARALLEL_BACKUPS,
+            workspaceManager,
+            new BackupConcurrencyLimiter(1));
+    when(backupManager.getBackupNode(anyString())).thenReturn(NODE);
+    when(backupManager.getLastBackupStats(WORKSPACE_ID_2))
+        .thenReturn(new BackupStats(WORKSPACE_ID_2, 10, 10, 1 << 30, 1 << 30, 1 << 30, 1000));
+
+    // when
+    scheduler.scheduleBackup();
+
+    // then
+    InOrder inOrder = inOrder(backupManager);
+    inOrder.verify(backupManager, timeout(2000)).backupWorkspace(WORKSPACE_ID_2);
+    inOrder.verify(backupManager, timeout(2000)).backupWorkspace(WORKSPACE_ID_1);
+  }
+
+  @Test
+  public void shouldNotStartScheduledBackupOnNodeWhileBackupOnStopIsRunning() throws Exception {
+    // given
+    BackupConcurrencyLimiter limiter = new BackupConcurrencyLimiter(1);
+    scheduler =
+        new WorkspaceFsBackupScheduler(
+            Collections.singletonMap(ENV_TYPE, backupManager),
+            workspaceRuntimes,
+            BACKUP_TIMEOUT,
+            0,
+            MAX_PARALLEL_BACKUPS,
+            workspaceManager,
+            limiter);
+    ids.remove(WORKSPACE_ID_2);
+    when(backupManager.getBackupNode(WORKSPACE_ID_1)).thenReturn(NODE);
+    limiter.acquireUrgent(NODE);
+
+    // when
+    scheduler.scheduleBackup();
+
+    // then
+    verify(backupManager, after(500).never()).backupWorkspace(WORKSPACE_ID_1);
+    assertTrue(scheduler.getMaxLagMillis() >= 0);
+
+    limiter.release(NODE);
+    verify(backupManager, timeout(2000)).backupWorkspace(WORKSPACE_ID_1);
+  }
+
+  @Test
+  public void shouldNotBackupWorkspaceWithoutChanges() throws Exception {
+    // given
+    ids.clear();
+    addWorkspace("ws3");
+    scheduler =
+        new WorkspaceFsBackupScheduler(
+            Collections.singletonMap(ENV_TYPE, backupManager),
+            workspaceRuntimes,
+            0,
+            0,
+            MAX_PARALLEL_BACKUPS,
+            workspaceManager,
+            new BackupConcurrencyLimiter(MAX_PARALLEL_BACKUPS));
+    scheduler.scheduleBackup();
+    verify(backupManager, timeout(1000)).backupWorkspace(eq("ws3"));
+    Thread.sleep(100);
+    when(backupManager.pollChangedWorkspaces(anySetOf(String.class)))
+        .thenReturn(Collections.emptySet());
+
+    // when
+    scheduler.scheduleBackup();
+
+    // then
+    verify(backupManager, after(1000).times(1)).backupWorkspace(eq("ws3"));
+    assertEquals(scheduler.getSkippedUnchangedBackups(), 1);
+  }
+
+  @Test
+  public void shouldPostponeNextCheckOfWorkspaceWithoutChanges() throws Exception {
+    // given
+    ids.clear();
+    addWorkspace("ws3");
+    scheduler =
+        new WorkspaceFsBackupScheduler(
+            Collections.singletonMap(ENV_TYPE, backupManager),
+            workspaceRuntimes,
+            1,
+            0,
+            MAX_PARALLEL_BACKUPS,
+            workspaceManager,
+            new BackupConcurrencyLimiter(MAX_PARALLEL_BACKUPS));
+    scheduler.scheduleBackup();
+    verify(backupManager, timeout(1000)).backupWorkspace(eq("ws3"));
+    when(backupManager.pollChangedWorkspaces(anySetOf(String.class)))
+        .thenReturn(Collections.emptySet());
+    Thread.sleep(1100);
+    scheduler.scheduleBackup();
+    assertEquals(scheduler.getSkippedUnchangedBackups(), 1);
+
+    // when
+    scheduler.scheduleBackup();
+
+    // then
+    verify(backupManager, times(2)).pollChangedWorkspaces(anySetOf(String.class));
+    assertEquals(scheduler.getSkippedUnchangedBackups(), 1);
+  }
+
+  @Test
+  public void shouldBackupWorkspaceIfChangesFoundAfterPreviousBackupFailed() throws Exception {
+    // given
+    ids.clear();
+    addWorkspace("ws3");
+    scheduler =
+        new WorkspaceFsBackupScheduler(
+            Collections.singletonMap(ENV_TYPE, backupManager),
+            workspaceRuntimes,
+            0,
+            0,
+            MAX_PARALLEL_BACKUPS,
+            workspaceManager,
+            new BackupConcurrencyLimiter(MAX_PARALLEL_BACKUPS));
+    doThrow(new ServerException("server exception")).when(backupManager).backupWorkspace("ws3");
+    scheduler.scheduleBackup();
+    verify(backupManager, timeout(1000)).backupWorkspace(eq("ws3"));
+    Thread.sleep(100);
+    // changes mark was reset by the previous check
+    when(backupManager.pollChangedWorkspaces(anySetOf(String.class)))
+        .thenReturn(Collections.emptySet());
+
+    // when
+    scheduler.scheduleBackup();
+
+    // then
+    verify(backupManager, timeout(1000).times(2)).backupWorkspace(eq("ws3"));
+  }
 }
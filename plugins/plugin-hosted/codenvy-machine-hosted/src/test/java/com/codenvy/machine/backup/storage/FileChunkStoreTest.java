@@ -0,0 +1,92 @@
+/*
+ * Copyright (c) [2012] - [2017] Red Hat, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *   Red Hat, Inc. - initial API and implementation
+ */
+package com.codenvy.machine.backup.storage;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+import com.google.common.hash.Hashing;
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.eclipse.che.commons.lang.IoUtil;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+public class FileChunkStoreTest {
+  private static final byte[] CONTENT = "public class Main {}".getBytes(UTF_8);
+  private static final String HASH = Hashing.sha256().hashBytes(CONTENT).toString();
+
+  private File backupsRoot;
+  private FileChunkStore store;
+
+  @BeforeMethod
+  public void setUp() throws Exception {
+    backupsRoot = Files.createTempDirectory("backups").toFile();
+    store = new FileChunkStore(backupsRoot);
+  }
+
+  @AfterMethod
+  public void tearDown() {
+    IoUtil.deleteRecursive(backupsRoot);
+  }
+
+  @Test
+  public void shouldStoreChunkOnce() throws Exception {
+    assertTrue(store.put(HASH, CONTENT, 0, CONTENT.length));
+    assertFalse(store.put(HASH, CONTENT, 0, CONTENT.length));
+
+    assertTrue(store.contains(HASH));
+    assertEquals(store.get(HASH), CONTENT);
+  }
+
+  @Test
+  public void shouldReportOnlyOneOfConcurrentStoresOfTheSameChunkAsInsert() throws Exception {
+    final int threads = 8;
+    final ExecutorService executor = Executors.newFixedThreadPool(threads);
+    try {
+      for (int i = 0; i < 20; i++) {
+        final String hash = Hashing.sha256().hashInt(i).toString();
+        final CountDownLatch start = new CountDownLatch(1);
+        final List<Future<Boolean>> puts = new ArrayList<>();
+        for (int j = 0; j < threads; j++) {
+          Callable<Boolean> put =
+              () -> {
+                start.await();
+                return store.put(hash, CONTENT, 0, CONTENT.length);
+              };
+          puts.add(executor.submit(put));
+        }
+        start.countDown();
+
+        int inserts = 0;
+        for (Future<Boolean> put : puts) {
+          if (put.get()) {
+            inserts++;
+          }
+        }
+        assertEquals(inserts, 1);
+        assertEquals(store.get(hash), CONTENT);
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+}
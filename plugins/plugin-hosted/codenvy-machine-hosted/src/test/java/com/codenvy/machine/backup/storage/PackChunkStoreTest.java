@@ -0,0 +1,169 @@
+/*
+ * Copyright (c) [2012] - [2017] Red Hat, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *   Red Hat, Inc. - initial API and implementation
+ */
+package com.codenvy.machine.backup.storage;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+import com.google.common.hash.Hashing;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import org.eclipse.che.commons.lang.IoUtil;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+public class PackChunkStoreTest {
+  private static final byte[] COMPRESSIBLE =
+      new String(new char[10000]).replace('\0', 'a').getBytes(UTF_8);
+  private static final byte[] INCOMPRESSIBLE = new byte[10000];
+
+  static {
+    new Random(42).nextBytes(INCOMPRESSIBLE);
+  }
+
+  private File backupsRoot;
+  private PackChunkStore store;
+
+  @BeforeMethod
+  public void setUp() throws Exception {
+    backupsRoot = Files.createTempDirectory("backups").toFile();
+    store = new PackChunkStore(backupsRoot);
+    store.open();
+  }
+
+  @AfterMethod
+  public void tearDown() throws Exception {
+    store.close();
+    IoUtil.deleteRecursive(backupsRoot);
+  }
+
+  @Test
+  public void shouldStoreAndReadChunks() throws Exception {
+    assertTrue(store.put(hash(COMPRESSIBLE), COMPRESSIBLE, 0, COMPRESSIBLE.length));
+    assertTrue(store.put(hash(INCOMPRESSIBLE), INCOMPRESSIBLE, 0, INCOMPRESSIBLE.length));
+
+    assertEquals(store.get(hash(COMPRESSIBLE)), COMPRESSIBLE);
+    assertEquals(store.get(hash(INCOMPRESSIBLE)), INCOMPRESSIBLE);
+    assertTrue(packsSize() < COMPRESSIBLE.length + INCOMPRESSIBLE.length);
+  }
+
+  @Test
+  public void shouldNotStoreTheSameChunkTwice() throws Exception {
+    assertTrue(store.put(hash(COMPRESSIBLE), COMPRESSIBLE, 0, COMPRESSIBLE.length));
+    long size = packsSize();
+
+    assertFalse(store.put(hash(COMPRESSIBLE), COMPRESSIBLE, 0, COMPRESSIBLE.length));
+
+    assertEquals(packsSize(), size);
+  }
+
+  @Test
+  public void shouldStoreChunkFromTheMiddleOfBuffer() throws Exception {
+    byte[] buffer = new byte[INCOMPRESSIBLE.length + 20];
+    System.arraycopy(INCOMPRESSIBLE, 0, buffer, 10, INCOMPRESSIBLE.length);
+
+    store.put(hash(INCOMPRESSIBLE), buffer, 10, INCOMPRESSIBLE.length);
+
+    assertEquals(store.get(hash(INCOMPRESSIBLE)), INCOMPRESSIBLE);
+  }
+
+  @Test(expectedExceptions = FileNotFoundException.class)
+  public void shouldThrowExceptionIfChunkIsNotFound() throws Exception {
+    store.get(hash(COMPRESSIBLE));
+  }
+
+  @Test
+  public void shouldFindChunksAfterReopening() throws Exception {
+    store.put(hash(COMPRESSIBLE), COMPRESSIBLE, 0, COMPRESSIBLE.length);
+    store.close();
+
+    store = new PackChunkStore(backupsRoot);
+    store.open();
+
+    assertTrue(store.contains(hash(COMPRESSIBLE)));
+    assertEquals(store.get(hash(COMPRESSIBLE)), COMPRESSIBLE);
+  }
+
+  @Test
+  public void shouldRemoveUnreferencedChunks() throws Exception {
+    store.put(hash(COMPRESSIBLE), COMPRESSIBLE, 0, COMPRESSIBLE.length);
+    store.put(hash(INCOMPRESSIBLE), INCOMPRESSIBLE, 0, INCOMPRESSIBLE.length);
+    long size = packsSize();
+
+    long freed = store.removeUnreferenced(hash(COMPRESSIBLE)::equals);
+
+    assertEquals(freed, INCOMPRESSIBLE.length);
+    assertEquals(packsSize(), size - INCOMPRESSIBLE.length);
+    assertFalse(store.contains(hash(INCOMPRESSIBLE)));
+    assertEquals(store.get(hash(COMPRESSIBLE)), COMPRESSIBLE);
+    assertTrue(store.put(hash(INCOMPRESSIBLE), INCOMPRESSIBLE, 0, INCOMPRESSIBLE.length));
+    assertEquals(store.get(hash(INCOMPRESSIBLE)), INCOMPRESSIBLE);
+  }
+
+  @Test
+  public void shouldFindChunksInIndexAfterReopening() throws Exception {
+    store.put(hash(COMPRESSIBLE), COMPRESSIBLE, 0, COMPRESSIBLE.length);
+    store.put(hash(INCOMPRESSIBLE), INCOMPRESSIBLE, 0, INCOMPRESSIBLE.length);
+    // moves journal into index
+    store.removeUnreferenced(hash -> true);
+    store.close();
+
+    store = new PackChunkStore(backupsRoot);
+    store.open();
+
+    assertEquals(store.get(hash(COMPRESSIBLE)), COMPRESSIBLE);
+    assertEquals(store.get(hash(INCOMPRESSIBLE)), INCOMPRESSIBLE);
+    assertEquals(
+        Files.size(packsRoot().resolve(PackChunkStore.JOURNAL_FILE)), 0, "journal is not empty");
+  }
+
+  @Test
+  public void shouldIgnoreJournalRecordsWhichPointToMissingData() throws Exception {
+    store.put(hash(COMPRESSIBLE), COMPRESSIBLE, 0, COMPRESSIBLE.length);
+    store.put(hash(INCOMPRESSIBLE), INCOMPRESSIBLE, 0, INCOMPRESSIBLE.length);
+    store.close();
+    Path pack = packsRoot().resolve(PackChunkStore.PACK_PREFIX + 1);
+    try (RandomAccessFile file = new RandomAccessFile(pack.toFile(), "rw")) {
+      file.setLength(file.length() - 1);
+    }
+
+    store = new PackChunkStore(backupsRoot);
+    store.open();
+
+    assertTrue(store.contains(hash(COMPRESSIBLE)));
+    assertFalse(store.contains(hash(INCOMPRESSIBLE)));
+  }
+
+  private Path packsRoot() {
+    return backupsRoot.toPath().resolve(PackChunkStore.PACKS_DIR);
+  }
+
+  private long packsSize() throws Exception {
+    long size = 0;
+    for (File file : packsRoot().toFile().listFiles()) {
+      if (file.getName().startsWith(PackChunkStore.PACK_PREFIX)) {
+        size += file.length();
+      }
+    }
+    return size;
+  }
+
+  private static String hash(byte[] data) {
+    return Hashing.sha256().hashBytes(data).toString();
+  }
+}
@@ -0,0 +1,58 @@
+/*
+ * Copyright (c) [2012] - [2017] Red Hat, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *   Red Hat, Inc. - initial API and implementation
+ */
+package com.codenvy.swarm.client;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.emptyList;
+import static org.testng.Assert.assertEquals;
+
+import com.codenvy.swarm.client.model.DockerNode;
+import java.io.IOException;
+import org.testng.annotations.Test;
+
+public class BinPackingNodeSelectionStrategyTest {
+  private static final long GB = 1024 * 1024 * 1024;
+
+  private final BinPackingNodeSelectionStrategy binPacking = new BinPackingNodeSelectionStrategy();
+  private final LeastLoadedNodeSelectionStrategy leastLoaded =
+      new LeastLoadedNodeSelectionStrategy();
+
+  @Test
+  public void shouldSelectTheMostLoadedNodeWithFreeMemory() throws Exception {
+    DockerNode idle = new DockerNode("idle", "idle:2375", 1, 0, 2, GB, 8 * GB);
+    DockerNode loaded = new DockerNode("loaded", "loaded:2375", 5, 0, 2, 6 * GB, 8 * GB);
+    DockerNode full = new DockerNode("full", "full:2375", 7, 0, 2, 8 * GB, 8 * GB);
+
+    assertEquals(binPacking.select(asList(idle, loaded, full)), loaded);
+    assertEquals(leastLoaded.select(asList(idle, loaded, full)), idle);
+  }
+
+  @Test
+  public void shouldSelectTheLeastLoadedNodeIfAllNodesAreFull() throws Exception {
+    DockerNode full = new DockerNode("full", "full:2375", 3, 0, 2, 8 * GB, 8 * GB);
+    DockerNode overcommitted = new DockerNode("over", "over:2375", 2, 0, 2, 9 * GB, 8 * GB);
+
+    assertEquals(binPacking.select(asList(full, overcommitted)), overcommitted);
+  }
+
+  @Test
+  public void shouldPreferNodeWithFewerContainersIfMemoryUsageIsTheSame() throws Exception {
+    DockerNode busy = new DockerNode("busy", "busy:2375", 10, 0, 2, GB, 4 * GB);
+    DockerNode quiet = new DockerNode("quiet", "quiet:2375", 2, 0, 2, GB, 4 * GB);
+
+    assertEquals(leastLoaded.select(asList(busy, quiet)), quiet);
+  }
+
+  @Test(expectedExceptions = IOException.class)
+  public void shouldThrowExceptionIfThereAreNoNodes() throws Exception {
+    binPacking.select(emptyList());
+  }
+}
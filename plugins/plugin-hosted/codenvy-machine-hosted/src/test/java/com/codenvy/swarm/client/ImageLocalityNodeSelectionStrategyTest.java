@@ -0,0 +1,57 @@
+/*
+ * Copyright (c) [2012] - [2017] Red Hat, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *   Red Hat, Inc. - initial API and implementation
+ */
+package com.codenvy.swarm.client;
+
+import static java.util.Arrays.asList;
+import static org.testng.Assert.assertEquals;
+
+import com.codenvy.swarm.client.model.DockerNode;
+import java.util.List;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+public class ImageLocalityNodeSelectionStrategyTest {
+  private static final String IMAGE = "codenvy/ubuntu_jdk8:latest";
+  private static final long GB = 1024 * 1024 * 1024;
+
+  private final DockerNode idle = new DockerNode("idle", "idle:2375", 1, 0, 2, GB, 8 * GB);
+  private final DockerNode loaded =
+      new DockerNode("loaded", "loaded:2375", 5, 0, 2, 6 * GB, 8 * GB);
+  private final DockerNode full = new DockerNode("full", "full:2375", 7, 0, 2, 8 * GB, 8 * GB);
+  private final List<DockerNode> nodes = asList(idle, loaded, full);
+
+  private ImageLocalityNodeSelectionStrategy strategy;
+
+  @BeforeMethod
+  public void setUp() {
+    strategy = new ImageLocalityNodeSelectionStrategy();
+  }
+
+  @Test
+  public void shouldSelectTheLeastLoadedNodeIfImageLocationIsUnknown() throws Exception {
+    assertEquals(strategy.select(nodes, IMAGE), idle);
+  }
+
+  @Test
+  public void shouldPreferNodeWhichHoldsImage() throws Exception {
+    strategy.onImagePresent(loaded, IMAGE);
+
+    assertEquals(strategy.select(nodes, IMAGE), loaded);
+    assertEquals(strategy.select(nodes, "other:latest"), idle);
+  }
+
+  @Test
+  public void shouldNotSelectFullNodeEvenIfItHoldsImage() throws Exception {
+    strategy.onImagePresent(full, IMAGE);
+
+    assertEquals(strategy.select(nodes, IMAGE), idle);
+  }
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright (c) [2012] - [2017] Red Hat, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *   Red Hat, Inc. - initial API and implementation
+ */
+package com.codenvy.swarm.client;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+import com.codenvy.swarm.client.model.DockerNode;
+import java.util.List;
+import org.eclipse.che.plugin.docker.client.json.SystemInfo;
+import org.testng.annotations.Test;
+
+public class SwarmDockerConnectorTest {
+
+  @Test
+  public void shouldParseResourcesOfNodes() throws Exception {
+    SystemInfo systemInfo = new SystemInfo();
+    systemInfo.setSystemStatus(
+        new String[][] {
+          {"Role", "primary"},
+          {"Strategy", "spread"},
+          {"Nodes", "2"},
+          {" node1", "192.168.1.1:2375"},
+          {"  └ ID", "ABCD"},
+          {"  └ Status", "Healthy"},
+          {"  └ Containers", "14 (14 Running, 0 Paused, 0 Stopped)"},
+          {"  └ Reserved CPUs", "1 / 4"},
+          {"  └ Reserved Memory", "1 GiB / 4 GiB"},
+          {"  └ Labels", "executiondriver=native-0.2"},
+          {"  └ UpdatedAt", "2017-01-01T00:00:00Z"},
+          {"  └ ServerVersion", "1.12.6"},
+          {" node2", "192.168.1.2:2375"},
+          {"  └ ID", "EFGH"},
+          {"  └ Status", "Healthy"},
+          {"  └ Containers", "9"},
+          {"  └ Reserved CPUs", "0/2"},
+          {"  └ Reserved Memory", "unknown"},
+          {"  └ Labels", "executiondriver=native-0.2"},
+          {"  └ UpdatedAt", "2017-01-01T00:00:00Z"},
+          {"  └ ServerVersion", "1.12.6"}
+        });
+
+    List<DockerNode> nodes = SwarmDockerConnector.parseNodes(systemInfo, 9);
+
+    assertEquals(nodes.size(), 2);
+    DockerNode node1 = nodes.get(0);
+    assertEquals(node1.getHostname(), " node1");
+    assertEquals(node1.getAddr(), "192.168.1.1:2375");
+    assertEquals(node1.getContainers(), 14);
+    assertEquals(node1.getReservedCpus(), 1);
+    assertEquals(node1.getTotalCpus(), 4);
+    assertEquals(node1.getReservedMemory(), 1024L * 1024 * 1024);
+    assertEquals(node1.getTotalMemory(), 4L * 1024 * 1024 * 1024);
+    assertEquals(node1.getMemoryUsage(), 0.25);
+    DockerNode node2 = nodes.get(1);
+    assertEquals(node2.getAddr(), "192.168.1.2:2375");
+    assertEquals(node2.getContainers(), 9);
+    assertEquals(node2.getTotalCpus(), 2);
+    assertEquals(node2.getTotalMemory(), 0);
+    assertEquals(node2.getMemoryUsage(), 1.0);
+  }
+
+  @Test
+  public void shouldReturnNullIfSystemInfoDoesNotDescribeNodes() throws Exception {
+    assertNull(SwarmDockerConnector.parseNodes(new SystemInfo(), 9));
+  }
+
+  @Test
+  public void shouldAddNodeConstraintToContainerEnvironment() throws Exception {
+    String[] env = SwarmDockerConnector.addNodeConstraint(new String[] {"A=B"}, " node1");
+
+    assertEquals(env, new String[] {"A=B", "constraint:node==node1"});
+    assertTrue(SwarmDockerConnector.hasNodeConstraint(env));
+  }
+
+  @Test
+  public void shouldAddNodeConstraintToEmptyContainerEnvironment() throws Exception {
+    String[] env = SwarmDockerConnector.addNodeConstraint(null, "node1");
+
+    assertEquals(env, new String[] {"constraint:node==node1"});
+  }
+
+  @Test
+  public void shouldNotFindNodeConstraintInEnvironmentWithoutIt() throws Exception {
+    assertFalse(SwarmDockerConnector.hasNodeConstraint(new String[] {"A=B"}));
+    assertFalse(SwarmDockerConnector.hasNodeConstraint(null));
+  }
+}
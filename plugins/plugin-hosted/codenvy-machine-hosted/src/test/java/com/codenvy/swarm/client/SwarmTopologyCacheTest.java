@@ -0,0 +1,111 @@
+/*
+ * Copyright (c) [2012] - [2017] Red Hat, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *   Red Hat, Inc. - initial API and implementation
+ */
+package com.codenvy.swarm.client;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotSame;
+import static org.testng.Assert.assertSame;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.eclipse.che.plugin.docker.client.json.SystemInfo;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.Test;
+
+public class SwarmTopologyCacheTest {
+  private final AtomicInteger loads = new AtomicInteger();
+
+  private SwarmTopologyCache cache;
+
+  @AfterMethod
+  public void tearDown() {
+    if (cache != null) {
+      cache.shutdown();
+    }
+    loads.set(0);
+  }
+
+  @Test
+  public void shouldReturnTheSameSnapshotWhileItIsActual() throws Exception {
+    cache = new SwarmTopologyCache(this::load, 0, 60_000);
+
+    SwarmTopologyCache.Snapshot snapshot = cache.get();
+
+    assertSame(cache.get(), snapshot);
+    assertEquals(loads.get(), 1);
+  }
+
+  @Test
+  public void shouldLoadSnapshotIfCachingIsDisabled() throws Exception {
+    cache = new SwarmTopologyCache(this::load, 0, 0);
+
+    SwarmTopologyCache.Snapshot snapshot = cache.get();
+
+    assertNotSame(cache.get(), snapshot);
+    assertEquals(loads.get(), 2);
+  }
+
+  @Test
+  public void shouldLoadSnapshotAgainWhenItIsOutdated() throws Exception {
+    cache = new SwarmTopologyCache(this::load, 0, 50);
+
+    SwarmTopologyCache.Snapshot snapshot = cache.get();
+    Thread.sleep(100);
+
+    assertNotSame(cache.get(), snapshot);
+    assertEquals(loads.get(), 2);
+  }
+
+  @Test
+  public void shouldRefreshSnapshotAfterInvalidation() throws Exception {
+    cache = new SwarmTopologyCache(this::load, 0, 60_000);
+    SwarmTopologyCache.Snapshot snapshot = cache.get();
+
+    cache.invalidate();
+
+    long deadline = System.currentTimeMillis() + 5_000;
+    while (cache.get() == snapshot && System.currentTimeMillis() < deadline) {
+      Thread.sleep(10);
+    }
+    assertNotSame(cache.get(), snapshot);
+  }
+
+  @Test
+  public void shouldRefreshSnapshotInBackground() throws Exception {
+    cache = new SwarmTopologyCache(this::load, 20, 60_000);
+    SwarmTopologyCache.Snapshot snapshot = cache.get();
+
+    long deadline = System.currentTimeMillis() + 5_000;
+    while (cache.get() == snapshot && System.currentTimeMillis() < deadline) {
+      Thread.sleep(10);
+    }
+    assertNotSame(cache.get(), snapshot);
+  }
+
+  @Test(expectedExceptions = IOException.class, expectedExceptionsMessageRegExp = "swarm is down")
+  public void shouldThrowExceptionIfSnapshotCanNotBeLoaded() throws Exception {
+    cache =
+        new SwarmTopologyCache(
+            () -> {
+              throw new IOException("swarm is down");
+            },
+            0,
+            60_000);
+
+    cache.get();
+  }
+
+  private SwarmTopologyCache.Snapshot load() {
+    loads.incrementAndGet();
+    return new SwarmTopologyCache.Snapshot(new SystemInfo(), Collections.emptyList());
+  }
+}
@@ -17,6 +17,7 @@ import static org.mockito.Mockito.spy;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import com.codenvy.machine.backup.ChunkedDockerEnvironmentBackupManager;
 import com.codenvy.machine.backup.WorkspaceIdHashLocationFinder;
 import java.io.File;
 import java.util.concurrent.TimeoutException;
@@ -38,6 +39,7 @@ public class WorkspaceFilesCleanUpScriptExecutorTest {
   @Mock private File file;
   @Mock private Workspace workspace;
   @Mock private WorkspaceIdHashLocationFinder workspaceIdHashLocationFinder;
+  @Mock private ChunkedDockerEnvironmentBackupManager backupManager;
 
   private WorkspaceFilesCleanUpScriptExecutor workspaceFilesCleaner;
 
@@ -46,7 +48,7 @@ public class WorkspaceFilesCleanUpScriptExecutorTest {
     workspaceFilesCleaner =
         spy(
             new WorkspaceFilesCleanUpScriptExecutor(
-                workspaceIdHashLocationFinder, file, TEXT, CLEAN_UP_DURATION));
+                workspaceIdHashLocationFinder, file, TEXT, CLEAN_UP_DURATION, backupManager));
     doReturn(file).when(workspaceIdHashLocationFinder).calculateDirPath(file, TEXT);
     when(workspace.getId()).thenReturn(TEXT);
     when(file.getAbsolutePath()).thenReturn(TEXT);
@@ -60,6 +62,7 @@ public class WorkspaceFilesCleanUpScriptExecutorTest {
     verify(workspaceIdHashLocationFinder).calculateDirPath(file, TEXT);
     verify(file).getAbsolutePath();
     verify(workspaceFilesCleaner).execute(new String[] {TEXT, TEXT}, CLEAN_UP_DURATION);
+    verify(backupManager).removeBackup(TEXT);
   }
 
   @Test(expectedExceptions = ServerException.class)
@@ -0,0 +1,252 @@
+/*
+ * Copyright (c) [2012] - [2017] Red Hat, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *   Red Hat, Inc. - initial API and implementation
+ */
+package com.codenvy.plugin.http;
+
+import static com.google.common.net.HttpHeaders.ACCEPT_ENCODING;
+import static com.google.common.net.HttpHeaders.CACHE_CONTROL;
+import static com.google.common.net.HttpHeaders.CONTENT_TYPE;
+import static com.google.common.net.HttpHeaders.ETAG;
+import static com.google.common.net.HttpHeaders.IF_MODIFIED_SINCE;
+import static com.google.common.net.HttpHeaders.IF_NONE_MATCH;
+import static com.google.common.net.HttpHeaders.LAST_MODIFIED;
+import static java.net.HttpURLConnection.HTTP_NOT_MODIFIED;
+import static java.net.HttpURLConnection.HTTP_OK;
+
+import com.codahale.metrics.annotation.Gauge;
+import com.google.common.annotations.VisibleForTesting;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.inject.Named;
+import javax.inject.Singleton;
+
+/**
+ * HTTP client shared by the connectors to git hosting services and CI servers.
+ *
+ * <p>Requests are sent with {@link HttpURLConnection}, but unlike the usual way of using it the
+ * connection is never disconnected, the response body is read or closed by {@link
+ * HttpResponse#close()} instead. This returns the connection to the keep-alive cache of JDK, so the
+ * next request to the same host reuses it and doesn't pay for TCP and TLS handshakes. JDK keeps up
+ * to {@code http.maxConnections} (5 by default) idle connections per host.
+ *
+ * <p>The number of concurrent requests to a host is limited by {@code
+ * http.client.max_connections_per_host}, a request waits for a free slot not longer than the
+ * connect timeout. Responses are requested gzip compressed and decompressed transparently.
+ *
+ * <p>Responses to GET requests marked with {@link HttpRequest#cache(String, long)} are kept in the
+ * response cache bounded by {@code http.client.cache.max_size_bytes}. A cached response is served
+ * without a request for the ttl given to the request, {@code http.client.cache.ttl_ms} by default,
+ * after that it is revalidated with {@code If-None-Match} and {@code If-Modified-Since} headers, so
+ * the server which didn't modify the resource responds with {@code 304 Not Modified} without the
+ * body. This saves the rate limit of git hosting services, most of which don't count conditional
+ * requests answered with 304.
+ */
+@Singleton
+public class HttpClient {
+  private static final int DEFAULT_CONNECT_TIMEOUT_MS = 10_000;
+  private static final int DEFAULT_READ_TIMEOUT_MS = 60_000;
+  private static final int DEFAULT_MAX_CONNECTIONS_PER_HOST = 20;
+  private static final long DEFAULT_CACHE_MAX_SIZE_BYTES = 16 * 1024 * 1024;
+
+  private final ConcurrentMap<String, Semaphore> hostPermits;
+  private final AtomicLong cacheHits;
+  private final AtomicLong cacheRevalidations;
+  private final AtomicLong cacheMisses;
+
+  private volatile int connectTimeoutMs;
+  private volatile int readTimeoutMs;
+  private volatile int maxConnectionsPerHost;
+  private volatile HttpResponseCache responseCache;
+  private volatile long cacheTtlMs;
+
+  public HttpClient() {
+    this(DEFAULT_CONNECT_TIMEOUT_MS, DEFAULT_READ_TIMEOUT_MS, DEFAULT_MAX_CONNECTIONS_PER_HOST);
+  }
+
+  @VisibleForTesting
+  HttpClient(int connectTimeoutMs, int readTimeoutMs, int maxConnectionsPerHost) {
+    this.hostPermits = new ConcurrentHashMap<>();
+    this.cacheHits = new AtomicLong();
+    this.cacheRevalidations = new AtomicLong();
+    this.cacheMisses = new AtomicLong();
+    configure(connectTimeoutMs, readTimeoutMs, maxConnectionsPerHost);
+    configureCache(DEFAULT_CACHE_MAX_SIZE_BYTES, 0);
+  }
+
+  @com.google.inject.Inject(optional = true)
+  void configure(
+      @Named("http.client.connect_timeout_ms") int connectTimeoutMs,
+      @Named("http.client.read_timeout_ms") int readTimeoutMs,
+      @Named("http.client.max_connections_per_host") int maxConnectionsPerHost) {
+    this.connectTimeoutMs = connectTimeoutMs;
+    this.readTimeoutMs = readTimeoutMs;
+    this.maxConnectionsPerHost = maxConnectionsPerHost;
+    hostPermits.clear();
+  }
+
+  @com.google.inject.Inject(optional = true)
+  void configureCache(
+      @Named("http.client.cache.max_size_bytes") long maxSizeBytes,
+      @Named("http.client.cache.ttl_ms") long ttlMs) {
+    this.responseCache = maxSizeBytes > 0 ? new HttpResponseCache(maxSizeBytes) : null;
+    this.cacheTtlMs = ttlMs;
+  }
+
+  /**
+   * Creates a request.
+   *
+   * @param method HTTP method of the request
+   * @param url the url to send the request to
+   */
+  public HttpRequest request(String method, String url) {
+    return new HttpRequest(this, method, url);
+  }
+
+  /**
+   * Sends the request and returns the response, which must be closed when it is processed. The
+   * response is served from or kept in the response cache if the request allows it.
+   *
+   * @throws IOException when any i/o error occurs or there is no free slot for a request to the
+   *     host in connect timeout
+   */
+  HttpResponse send(HttpRequest request) throws IOException {
+    final HttpResponseCache cache = responseCache;
+    if (cache == null
+        || request.getCachePrincipal() == null
+        || !"GET".equals(request.getMethod())) {
+      return execute(request);
+    }
+
+    final String principal = request.getCachePrincipal();
+    final long ttlMs = request.getCacheTtlMs() >= 0 ? request.getCacheTtlMs() : cacheTtlMs;
+    final HttpResponseCache.Entry cached = cache.get(principal, request.getUrl());
+    if (cached != null) {
+      if (cached.isFresh(ttlMs, System.currentTimeMillis())) {
+        cacheHits.incrementAndGet();
+        return cached.toResponse();
+      }
+      if (cached.getEtag() != null) {
+        request.header(IF_NONE_MATCH, cached.getEtag());
+      }
+      if (cached.getLastModified() != null) {
+        request.header(IF_MODIFIED_SINCE, cached.getLastModified());
+      }
+    }
+
+    final HttpResponse response = execute(request);
+    if (cached != null && response.getStatus() == HTTP_NOT_MODIFIED) {
+      response.close();
+      cacheRevalidations.incrementAndGet();
+      final HttpResponseCache.Entry revalidated = cached.revalidated(System.currentTimeMillis());
+      cache.put(principal, request.getUrl(), revalidated);
+      return revalidated.toResponse();
+    }
+    cacheMisses.incrementAndGet();
+    if (!isCacheable(response, ttlMs)) {
+      return response;
+    }
+    try (HttpResponse fetched = response) {
+      final HttpResponseCache.Entry entry = fetched.toCacheEntry(System.currentTimeMillis());
+      cache.put(principal, request.getUrl(), entry);
+      return entry.toResponse();
+    }
+  }
+
+  /** Returns the number of responses served from the cache without a request. */
+  @Gauge(name = "http.client.cache_hits")
+  public long getCacheHitCount() {
+    return cacheHits.get();
+  }
+
+  /** Returns the number of cached responses revalidated with 304 response. */
+  @Gauge(name = "http.client.cache_revalidations")
+  public long getCacheRevalidationCount() {
+    return cacheRevalidations.get();
+  }
+
+  /** Returns the number of cacheable requests for which the full response was fetched. */
+  @Gauge(name = "http.client.cache_misses")
+  public long getCacheMissCount() {
+    return cacheMisses.get();
+  }
+
+  private HttpResponse execute(HttpRequest request) throws IOException {
+    final URL url = new URL(request.getUrl());
+    final Semaphore permits = acquire(url);
+    boolean responded = false;
+    try {
+      final HttpURLConnection http = (HttpURLConnection) url.openConnection();
+      http.setConnectTimeout(connectTimeoutMs);
+      http.setReadTimeout(
+          request.getReadTimeoutMs() > 0 ? request.getReadTimeoutMs() : readTimeoutMs);
+      http.setInstanceFollowRedirects(request.isFollowRedirects());
+      http.setRequestMethod(request.getMethod());
+      http.setRequestProperty(ACCEPT_ENCODING, "gzip");
+      for (Map.Entry<String, String> header : request.getHeaders().entrySet()) {
+        http.setRequestProperty(header.getKey(), header.getValue());
+      }
+      final byte[] body = request.getBody();
+      if (body != null) {
+        http.setRequestProperty(CONTENT_TYPE, request.getContentType());
+        http.setDoOutput(true);
+        http.setFixedLengthStreamingMode(body.length);
+        try (OutputStream output = http.getOutputStream()) {
+          output.write(body);
+        }
+      }
+      final HttpResponse response = new HttpResponse(http, http.getResponseCode(), permits);
+      responded = true;
+      return response;
+    } finally {
+      if (!responded) {
+        permits.release();
+      }
+    }
+  }
+
+  /**
+   * Returns true if the response can be kept in the cache, that is it can be revalidated or it is
+   * served without revalidation for some time.
+   */
+  private static boolean isCacheable(HttpResponse response, long ttlMs) {
+    final String cacheControl = response.getHeader(CACHE_CONTROL);
+    return response.getStatus() == HTTP_OK
+        && (cacheControl == null || !cacheControl.contains("no-store"))
+        && (ttlMs > 0
+            || response.getHeader(ETAG) != null
+            || response.getHeader(LAST_MODIFIED) != null);
+  }
+
+  private Semaphore acquire(URL url) throws IOException {
+    final String host =
+        url.getHost() + ':' + (url.getPort() != -1 ? url.getPort() : url.getDefaultPort());
+    final Semaphore permits =
+        hostPermits.computeIfAbsent(host, h -> new Semaphore(maxConnectionsPerHost, true));
+    try {
+      if (!permits.tryAcquire(connectTimeoutMs, TimeUnit.MILLISECONDS)) {
+        throw new IOException(
+            "Too many concurrent requests to " + host + ", no request completed in time");
+      }
+    } catch (InterruptedException x) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while waiting for a request to " + host);
+    }
+    return permits;
+  }
+}
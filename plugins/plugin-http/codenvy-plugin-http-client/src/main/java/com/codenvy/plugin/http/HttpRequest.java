@@ -0,0 +1,155 @@
+/*
+ * Copyright (c) [2012] - [2017] Red Hat, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *   Red Hat, Inc. - initial API and implementation
+ */
+package com.codenvy.plugin.http;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import org.eclipse.che.commons.annotation.Nullable;
+
+/**
+ * Request sent by {@link HttpClient}.
+ *
+ * <pre>{@code
+ * try (HttpResponse response =
+ *     httpClient.request("GET", url).header("Authorization", token).send()) {
+ *   return JsonHelper.fromJson(response.getBody(), User.class, null);
+ * }
+ * }</pre>
+ */
+public class HttpRequest {
+  private final HttpClient client;
+  private final String method;
+  private final String url;
+  private final Map<String, String> headers;
+
+  private String contentType;
+  private byte[] body;
+  private boolean followRedirects;
+  private int readTimeoutMs;
+  private String cachePrincipal;
+  private long cacheTtlMs;
+
+  HttpRequest(HttpClient client, String method, String url) {
+    this.client = client;
+    this.method = method;
+    this.url = url;
+    this.headers = new LinkedHashMap<>();
+    this.followRedirects = true;
+    this.cacheTtlMs = -1;
+  }
+
+  /** Sets the request header, replacing the header with the same name if it is already set. */
+  public HttpRequest header(String name, String value) {
+    headers.put(name, value);
+    return this;
+  }
+
+  /** Sets the request body which is sent in UTF-8. */
+  public HttpRequest body(String contentType, String body) {
+    this.contentType = contentType;
+    this.body = body.getBytes(UTF_8);
+    return this;
+  }
+
+  /** Sets whether redirects are followed, they are followed by default. */
+  public HttpRequest followRedirects(boolean followRedirects) {
+    this.followRedirects = followRedirects;
+    return this;
+  }
+
+  /** Sets the read timeout of the request instead of the one configured for the client. */
+  public HttpRequest readTimeout(int readTimeoutMs) {
+    this.readTimeoutMs = readTimeoutMs;
+    return this;
+  }
+
+  /**
+   * Allows the response to be served from the response cache of the client, the response is
+   * revalidated when it is older than the ttl configured for the client. Only GET requests are
+   * cached.
+   *
+   * @param principal identifier of the user the request is sent on behalf of, cached responses are
+   *     never shared between principals
+   */
+  public HttpRequest cache(String principal) {
+    this.cachePrincipal = principal;
+    return this;
+  }
+
+  /**
+   * Allows the response to be served from the response cache of the client, overriding the ttl
+   * configured for the client for the endpoint this request is sent to.
+   *
+   * @param principal identifier of the user the request is sent on behalf of, cached responses are
+   *     never shared between principals
+   * @param ttlMs how long the cached response is served without revalidation, 0 to revalidate the
+   *     response on each request
+   */
+  public HttpRequest cache(String principal, long ttlMs) {
+    this.cachePrincipal = principal;
+    this.cacheTtlMs = ttlMs;
+    return this;
+  }
+
+  /**
+   * Sends the request.
+   *
+   * @return the response with any status, which must be closed when it is processed
+   * @throws IOException when any i/o error occurs
+   */
+  public HttpResponse send() throws IOException {
+    return client.send(this);
+  }
+
+  public String getMethod() {
+    return method;
+  }
+
+  public String getUrl() {
+    return url;
+  }
+
+  Map<String, String> getHeaders() {
+    return headers;
+  }
+
+  @Nullable
+  String getContentType() {
+    return contentType;
+  }
+
+  @Nullable
+  byte[] getBody() {
+    return body;
+  }
+
+  boolean isFollowRedirects() {
+    return followRedirects;
+  }
+
+  /** Returns the read timeout of the request or 0 if the timeout of the client is used. */
+  int getReadTimeoutMs() {
+    return readTimeoutMs;
+  }
+
+  @Nullable
+  String getCachePrincipal() {
+    return cachePrincipal;
+  }
+
+  /** Returns the cache ttl of the request or -1 if the ttl of the client is used. */
+  long getCacheTtlMs() {
+    return cacheTtlMs;
+  }
+}
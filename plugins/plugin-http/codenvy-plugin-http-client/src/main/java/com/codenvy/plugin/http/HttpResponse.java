@@ -0,0 +1,154 @@
+/*
+ * Copyright (c) [2012] - [2017] Red Hat, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *   Red Hat, Inc. - initial API and implementation
+ */
+package com.codenvy.plugin.http;
+
+import static com.google.common.net.HttpHeaders.CONTENT_ENCODING;
+import static com.google.common.net.HttpHeaders.CONTENT_LENGTH;
+import static com.google.common.net.HttpHeaders.CONTENT_TYPE;
+import static com.google.common.net.HttpHeaders.TRANSFER_ENCODING;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.common.io.ByteStreams;
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Semaphore;
+import java.util.zip.GZIPInputStream;
+import org.eclipse.che.commons.annotation.Nullable;
+
+/**
+ * Response to the request sent by {@link HttpClient}.
+ *
+ * <p>The response must be closed, closing it reads the rest of the body, returns the connection to
+ * the keep-alive cache and allows the next request to the same host, see {@link HttpClient}.
+ * Responses served from the response cache are not backed by a connection and hold their body in
+ * memory.
+ */
+public class HttpResponse implements Closeable {
+  private static final long MAX_DRAINED_BYTES = 64 * 1024;
+
+  private final HttpURLConnection connection;
+  private final int status;
+  private final Semaphore permits;
+  private final Map<String, String> headers;
+
+  private InputStream body;
+  private boolean closed;
+
+  HttpResponse(HttpURLConnection connection, int status, Semaphore permits) {
+    this.connection = connection;
+    this.status = status;
+    this.permits = permits;
+    this.headers = null;
+  }
+
+  HttpResponse(int status, Map<String, String> headers, byte[] body) {
+    this.connection = null;
+    this.status = status;
+    this.permits = null;
+    this.headers = headers;
+    this.body = new ByteArrayInputStream(body);
+  }
+
+  /** Returns HTTP status code of the response. */
+  public int getStatus() {
+    return status;
+  }
+
+  /** Returns true if the status code of the response is 2xx. */
+  public boolean isSuccessful() {
+    return status / 100 == 2;
+  }
+
+  /** Returns the value of the response header or null if there is no such header. */
+  @Nullable
+  public String getHeader(String name) {
+    return connection != null ? connection.getHeaderField(name) : headers.get(name);
+  }
+
+  @Nullable
+  public String getContentType() {
+    return getHeader(CONTENT_TYPE);
+  }
+
+  /**
+   * Returns the response body, or the error body if the status code is 4xx or 5xx. The body is
+   * decompressed if it is gzip encoded, it is empty if the response has no body.
+   */
+  public InputStream getBody() throws IOException {
+    if (body == null) {
+      final InputStream stream =
+          status >= 400 ? connection.getErrorStream() : connection.getInputStream();
+      if (stream == null || connection.getContentLengthLong() == 0) {
+        body = stream != null ? stream : new ByteArrayInputStream(new byte[0]);
+      } else if ("gzip".equalsIgnoreCase(connection.getContentEncoding())) {
+        body = new GZIPInputStream(stream);
+      } else {
+        body = stream;
+      }
+    }
+    return body;
+  }
+
+  /** Reads the whole response body as UTF-8 string. */
+  public String asString() throws IOException {
+    return new String(ByteStreams.toByteArray(getBody()), UTF_8);
+  }
+
+  /**
+   * Reads the whole body and returns the response in the form which can be kept in the response
+   * cache. The response must be closed after this call.
+   */
+  HttpResponseCache.Entry toCacheEntry(long now) throws IOException {
+    final byte[] content = ByteStreams.toByteArray(getBody());
+    final Map<String, String> cachedHeaders = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+    for (Map.Entry<String, List<String>> header : connection.getHeaderFields().entrySet()) {
+      final String name = header.getKey();
+      // the body is kept decompressed
+      if (name != null
+          && !CONTENT_ENCODING.equalsIgnoreCase(name)
+          && !CONTENT_LENGTH.equalsIgnoreCase(name)
+          && !TRANSFER_ENCODING.equalsIgnoreCase(name)) {
+        cachedHeaders.put(name, connection.getHeaderField(name));
+      }
+    }
+    return new HttpResponseCache.Entry(status, cachedHeaders, content, now);
+  }
+
+  @Override
+  public void close() {
+    if (closed) {
+      return;
+    }
+    closed = true;
+    if (connection == null) {
+      return;
+    }
+    try (InputStream in = getBody()) {
+      // JDK reuses the connection only when the body is read to the end, the body which is too
+      // long is not worth reading
+      if (ByteStreams.exhaust(ByteStreams.limit(in, MAX_DRAINED_BYTES)) == MAX_DRAINED_BYTES
+          && in.read() != -1) {
+        connection.disconnect();
+      }
+    } catch (IOException x) {
+      // connection can't be reused
+      connection.disconnect();
+    } finally {
+      permits.release();
+    }
+  }
+}
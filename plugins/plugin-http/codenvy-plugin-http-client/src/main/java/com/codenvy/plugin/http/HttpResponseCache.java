@@ -0,0 +1,105 @@
+/*
+ * Copyright (c) [2012] - [2017] Red Hat, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *   Red Hat, Inc. - initial API and implementation
+ */
+package com.codenvy.plugin.http;
+
+import static com.google.common.net.HttpHeaders.ETAG;
+import static com.google.common.net.HttpHeaders.LAST_MODIFIED;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.eclipse.che.commons.annotation.Nullable;
+
+/**
+ * Keeps the successful responses to GET requests which have an entity tag or a last modification
+ * date, so the next request for the same url can be sent as a conditional one and answered from the
+ * cache when the server responds with {@code 304 Not Modified}.
+ *
+ * <p>Responses are kept per principal, as the same url returns different data to different users.
+ * The cache is bounded by the total size of kept bodies, a response which is not requested for an
+ * hour is evicted as well.
+ */
+final class HttpResponseCache {
+  private static final long EXPIRE_AFTER_ACCESS_MS = 60 * 60 * 1000;
+
+  private final Cache<String, Entry> entries;
+
+  HttpResponseCache(long maxSizeBytes) {
+    this.entries =
+        CacheBuilder.newBuilder()
+            .maximumWeight(maxSizeBytes)
+            .weigher((String key, Entry entry) -> key.length() * 2 + entry.weight())
+            .expireAfterAccess(EXPIRE_AFTER_ACCESS_MS, TimeUnit.MILLISECONDS)
+            .build();
+  }
+
+  /** Returns the response cached for the principal and url or null if there is no such response. */
+  @Nullable
+  Entry get(String principal, String url) {
+    return entries.getIfPresent(key(principal, url));
+  }
+
+  void put(String principal, String url, Entry entry) {
+    entries.put(key(principal, url), entry);
+  }
+
+  private static String key(String principal, String url) {
+    return principal + ' ' + url;
+  }
+
+  /** Cached response. */
+  static final class Entry {
+    private final int status;
+    private final Map<String, String> headers;
+    private final byte[] body;
+    private final long validatedAt;
+
+    Entry(int status, Map<String, String> headers, byte[] body, long validatedAt) {
+      this.status = status;
+      this.headers = headers;
+      this.body = body;
+      this.validatedAt = validatedAt;
+    }
+
+    @Nullable
+    String getEtag() {
+      return headers.get(ETAG);
+    }
+
+    @Nullable
+    String getLastModified() {
+      return headers.get(LAST_MODIFIED);
+    }
+
+    /** Returns true if the response was fetched or revalidated not longer than ttl ago. */
+    boolean isFresh(long ttlMs, long now) {
+      return ttlMs > 0 && now - validatedAt < ttlMs;
+    }
+
+    /** Returns the same response revalidated at the given time. */
+    Entry revalidated(long now) {
+      return new Entry(status, headers, body, now);
+    }
+
+    HttpResponse toResponse() {
+      return new HttpResponse(status, headers, body);
+    }
+
+    private int weight() {
+      int weight = body.length;
+      for (Map.Entry<String, String> header : headers.entrySet()) {
+        weight += (header.getKey().length() + header.getValue().length()) * 2;
+      }
+      return weight;
+    }
+  }
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright (c) [2012] - [2017] Red Hat, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *   Red Hat, Inc. - initial API and implementation
+ */
+package com.codenvy.plugin.http;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.common.io.ByteStreams;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Compares calls per second of {@link HttpClient} with a new disconnected connection per call, the
+ * way connectors sent requests before, on a local server responding with a small JSON document. The
+ * local server has no network latency and no TLS, so the gain is the lower bound of the gain on a
+ * remote host, where each saved handshake takes several round trips. Nagle's algorithm is disabled
+ * on the server, otherwise delayed acknowledgements dominate the time of both kinds of calls.
+ *
+ * <p>Run with {@code main} method from the test classpath.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Threads(4)
+@Fork(value = 1, jvmArgsAppend = "-Dsun.net.httpserver.nodelay=true")
+public class HttpClientBenchmark {
+  private static final byte[] RESPONSE =
+      "{\"id\":\"repository\",\"name\":\"codenvy\",\"links\":{\"self\":\"http://localhost\"}}"
+          .getBytes(UTF_8);
+
+  private HttpServer server;
+  private HttpClient client;
+  private String url;
+
+  @Setup
+  public void setUp() throws IOException {
+    server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+    server.createContext(
+        "/repository",
+        exchange -> {
+          exchange.getResponseHeaders().set("Content-Type", "application/json");
+          exchange.sendResponseHeaders(200, RESPONSE.length);
+          try (OutputStream out = exchange.getResponseBody()) {
+            out.write(RESPONSE);
+          }
+        });
+    server.setExecutor(Executors.newFixedThreadPool(8));
+    server.start();
+    url = "http://127.0.0.1:" + server.getAddress().getPort() + "/repository";
+    client = new HttpClient();
+  }
+
+  @TearDown
+  public void tearDown() {
+    server.stop(0);
+  }
+
+  @Benchmark
+  public byte[] connectionPerCall() throws IOException {
+    final HttpURLConnection http = (HttpURLConnection) new URL(url).openConnection();
+    try {
+      http.setRequestMethod("GET");
+      try (InputStream input = http.getInputStream()) {
+        return ByteStreams.toByteArray(input);
+      }
+    } finally {
+      http.disconnect();
+    }
+  }
+
+  @Benchmark
+  public String httpClient() throws IOException {
+    try (HttpResponse response = client.request("GET", url).send()) {
+      return response.asString();
+    }
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    new Runner(new OptionsBuilder().include(HttpClientBenchmark.class.getSimpleName()).build())
+        .run();
+  }
+}
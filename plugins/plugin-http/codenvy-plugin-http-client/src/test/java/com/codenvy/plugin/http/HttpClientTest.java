@@ -0,0 +1,236 @@
+/*
+ * Copyright (c) [2012] - [2017] Red Hat, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *   Red Hat, Inc. - initial API and implementation
+ */
+package com.codenvy.plugin.http;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Arrays.asList;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+import com.google.common.io.ByteStreams;
+import com.sun.net.httpserver.HttpServer;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+/** Tests {@link HttpClient}. */
+public class HttpClientTest {
+
+  private HttpServer server;
+  private String url;
+  private List<Integer> clientPorts;
+  private List<String> conditions;
+  private String version;
+
+  @BeforeMethod
+  public void setUp() throws Exception {
+    clientPorts = new ArrayList<>();
+    conditions = new ArrayList<>();
+    version = "1";
+    server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+    server.createContext(
+        "/echo",
+        exchange -> {
+          clientPorts.add(exchange.getRemoteAddress().getPort());
+          byte[] request = ByteStreams.toByteArray(exchange.getRequestBody());
+          String body =
+              exchange.getRequestMethod()
+                  + ' '
+                  + exchange.getRequestHeaders().getFirst("X-Test")
+                  + ' '
+                  + exchange.getRequestHeaders().getFirst("Content-Type")
+                  + ' '
+                  + new String(request, UTF_8);
+          byte[] response = body.getBytes(UTF_8);
+          if ("gzip".equals(exchange.getRequestHeaders().getFirst("Accept-Encoding"))) {
+            response = gzip(response);
+            exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+          }
+          exchange.sendResponseHeaders(200, response.length);
+          try (OutputStream out = exchange.getResponseBody()) {
+            out.write(response);
+          }
+        });
+    server.createContext(
+        "/missing",
+        exchange -> {
+          clientPorts.add(exchange.getRemoteAddress().getPort());
+          byte[] response = "{\"message\":\"not found\"}".getBytes(UTF_8);
+          exchange.sendResponseHeaders(404, response.length);
+          try (OutputStream out = exchange.getResponseBody()) {
+            out.write(response);
+          }
+        });
+    server.createContext(
+        "/versioned",
+        exchange -> {
+          String condition = exchange.getRequestHeaders().getFirst("If-None-Match");
+          conditions.add(condition);
+          String etag = '"' + version + '"';
+          exchange.getResponseHeaders().set("ETag", etag);
+          if (etag.equals(condition)) {
+            exchange.sendResponseHeaders(304, -1);
+            exchange.close();
+            return;
+          }
+          byte[] response = gzip(("version " + version).getBytes(UTF_8));
+          exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+          exchange.sendResponseHeaders(200, response.length);
+          try (OutputStream out = exchange.getResponseBody()) {
+            out.write(response);
+          }
+        });
+    server.start();
+    url = "http://127.0.0.1:" + server.getAddress().getPort();
+  }
+
+  @AfterMethod
+  public void tearDown() {
+    server.stop(0);
+  }
+
+  @Test
+  public void shouldSendRequestAndReadCompressedResponse() throws Exception {
+    HttpClient client = new HttpClient(1000, 5000, 2);
+
+    try (HttpResponse response =
+        client
+            .request("POST", url + "/echo")
+            .header("X-Test", "value")
+            .body("application/json", "{\"name\":\"é\"}")
+            .send()) {
+      assertEquals(response.getStatus(), 200);
+      assertTrue(response.isSuccessful());
+      assertEquals(response.getHeader("Content-Encoding"), "gzip");
+      assertEquals(response.asString(), "POST value application/json {\"name\":\"é\"}");
+    }
+  }
+
+  @Test
+  public void shouldReadErrorBody() throws Exception {
+    HttpClient client = new HttpClient(1000, 5000, 2);
+
+    try (HttpResponse response = client.request("GET", url + "/missing").send()) {
+      assertEquals(response.getStatus(), 404);
+      assertFalse(response.isSuccessful());
+      assertEquals(response.asString(), "{\"message\":\"not found\"}");
+    }
+  }
+
+  @Test
+  public void shouldReuseConnectionAfterResponseIsClosed() throws Exception {
+    HttpClient client = new HttpClient(1000, 5000, 2);
+
+    for (int i = 0; i < 3; i++) {
+      try (HttpResponse response = client.request("GET", url + "/echo").send()) {
+        response.asString();
+      }
+      try (HttpResponse ignored = client.request("GET", url + "/missing").send()) {
+        // error body is not read, closing the response releases the connection
+      }
+    }
+
+    assertEquals(clientPorts.size(), 6);
+    assertEquals(clientPorts.stream().distinct().count(), 1);
+  }
+
+  @Test
+  public void shouldLimitConcurrentRequestsToHost() throws Exception {
+    HttpClient client = new HttpClient(200, 5000, 1);
+    HttpResponse first = client.request("GET", url + "/echo").send();
+
+    try {
+      client.request("GET", url + "/echo").send();
+      fail("Request must not be sent while the previous response is not closed");
+    } catch (IOException expected) {
+    }
+    first.close();
+
+    try (HttpResponse response = client.request("GET", url + "/echo").send()) {
+      assertEquals(response.getStatus(), 200);
+    }
+  }
+
+  @Test
+  public void shouldRevalidateCachedResponse() throws Exception {
+    HttpClient client = new HttpClient(1000, 5000, 2);
+
+    assertEquals(getVersioned(client, "user1", 0), "version 1");
+    assertEquals(getVersioned(client, "user1", 0), "version 1");
+    version = "2";
+    assertEquals(getVersioned(client, "user1", 0), "version 2");
+
+    assertEquals(conditions, asList(null, "\"1\"", "\"1\""));
+    assertEquals(client.getCacheMissCount(), 2);
+    assertEquals(client.getCacheRevalidationCount(), 1);
+    assertEquals(client.getCacheHitCount(), 0);
+  }
+
+  @Test
+  public void shouldServeCachedResponseWithoutRequestDuringTtl() throws Exception {
+    HttpClient client = new HttpClient(1000, 5000, 2);
+
+    assertEquals(getVersioned(client, "user1", 60_000), "version 1");
+    version = "2";
+    assertEquals(getVersioned(client, "user1", 60_000), "version 1");
+
+    assertEquals(conditions.size(), 1);
+    assertEquals(client.getCacheHitCount(), 1);
+  }
+
+  @Test
+  public void shouldNotShareCachedResponsesBetweenPrincipals() throws Exception {
+    HttpClient client = new HttpClient(1000, 5000, 2);
+
+    getVersioned(client, "user1", 60_000);
+    getVersioned(client, "user2", 60_000);
+
+    assertEquals(conditions, asList(null, null));
+  }
+
+  @Test
+  public void shouldNotCacheResponsesWhenCacheIsDisabled() throws Exception {
+    HttpClient client = new HttpClient(1000, 5000, 2);
+    client.configureCache(0, 60_000);
+
+    getVersioned(client, "user1", 60_000);
+    getVersioned(client, "user1", 60_000);
+
+    assertEquals(conditions, asList(null, null));
+  }
+
+  private String getVersioned(HttpClient client, String principal, long ttlMs) throws Exception {
+    try (HttpResponse response =
+        client.request("GET", url + "/versioned").cache(principal, ttlMs).send()) {
+      assertEquals(response.getStatus(), 200);
+      assertNotNull(response.getHeader("etag"));
+      return response.asString();
+    }
+  }
+
+  private static byte[] gzip(byte[] data) throws IOException {
+    ByteArrayOutputStream bout = new ByteArrayOutputStream();
+    try (GZIPOutputStream out = new GZIPOutputStream(bout)) {
+      out.write(data);
+    }
+    return bout.toByteArray();
+  }
+}
@@ -15,17 +15,16 @@ import static javax.ws.rs.HttpMethod.GET;
 import static javax.ws.rs.HttpMethod.POST;
 import static javax.ws.rs.core.MediaType.APPLICATION_XML;
 import static javax.xml.transform.TransformerFactory.newInstance;
-import static org.eclipse.che.commons.lang.IoUtil.readAndCloseQuietly;
 
+import com.codenvy.plugin.http.HttpClient;
+import com.codenvy.plugin.http.HttpRequest;
+import com.codenvy.plugin.http.HttpResponse;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.inject.Inject;
 import com.google.inject.assistedinject.Assisted;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.OutputStream;
 import java.io.StringWriter;
-import java.net.HttpURLConnection;
 import java.net.URL;
 import java.util.Base64;
 import java.util.Map;
@@ -68,16 +67,19 @@ public class JenkinsConnector {
 
   private final String jobName;
   private final ConfigurationProperties configurationProperties;
+  private final HttpClient httpClient;
 
   @Inject
   public JenkinsConnector(
       @Assisted("url") String url,
       @Assisted("jobName") String jobName,
-      ConfigurationProperties configurationProperties)
+      ConfigurationProperties configurationProperties,
+      HttpClient httpClient)
       throws ServerException {
     this.url = url;
     this.jobName = jobName;
     this.configurationProperties = configurationProperties;
+    this.httpClient = httpClient;
   }
 
   /**
@@ -235,32 +237,21 @@ public class JenkinsConnector {
   private String doRequest(String requestMethod, String requestUrl, String contentType, String data)
       throws IOException, ServerException {
     URL url = new URL(requestUrl + "/job/" + jobName + "/config.xml");
-    HttpURLConnection httpConnection = (HttpURLConnection) url.openConnection();
-    try {
-      String basicAuth =
-          "Basic " + new String(Base64.getEncoder().encode(url.getUserInfo().getBytes()));
-      httpConnection.setRequestProperty("Authorization", basicAuth);
-      httpConnection.setRequestMethod(requestMethod);
-      httpConnection.addRequestProperty(HttpHeaders.CONTENT_TYPE, contentType);
-      httpConnection.setDoOutput(true);
-
-      if (!isNullOrEmpty(data)) {
-        try (OutputStream outputStream = httpConnection.getOutputStream()) {
-          outputStream.write(data.getBytes());
-        }
-      }
-      final int responseCode = httpConnection.getResponseCode();
-      InputStream inputStream = httpConnection.getInputStream();
-      if ((responseCode / 100) != 2) {
-        InputStream errorStream = httpConnection.getErrorStream();
-        throw new ServerException(
-            readAndCloseQuietly(errorStream != null ? errorStream : inputStream));
-      }
-      return readAndCloseQuietly(inputStream);
-    } finally {
-      if (httpConnection != null) {
-        httpConnection.disconnect();
+    String basicAuth =
+        "Basic " + new String(Base64.getEncoder().encode(url.getUserInfo().getBytes()));
+    HttpRequest request =
+        httpClient
+            .request(requestMethod, url.toString())
+            .header("Authorization", basicAuth)
+            .header(HttpHeaders.CONTENT_TYPE, contentType);
+    if (!isNullOrEmpty(data)) {
+      request.body(contentType, data);
+    }
+    try (HttpResponse response = request.send()) {
+      if (!response.isSuccessful()) {
+        throw new ServerException(response.asString());
       }
+      return response.asString();
     }
   }
 }
@@ -15,6 +15,7 @@ import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 import static org.testng.Assert.assertEquals;
 
+import com.codenvy.plugin.http.HttpClient;
 import java.util.HashMap;
 import java.util.Map;
 import org.eclipse.che.inject.ConfigurationProperties;
@@ -41,7 +42,8 @@ public class JenkinsConnectorTest {
     when(configurationProperties.getProperties(eq("env.CODENVY_JENKINS_CONNECTOR_.+")))
         .thenReturn(properties);
     jenkinsConnector =
-        new JenkinsConnector("http://jenkins.url", "jobName", configurationProperties);
+        new JenkinsConnector(
+            "http://jenkins.url", "jobName", configurationProperties, new HttpClient());
   }
 
   @Test
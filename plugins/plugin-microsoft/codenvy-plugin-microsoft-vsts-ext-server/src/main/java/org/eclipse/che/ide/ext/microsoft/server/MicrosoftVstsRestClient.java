@@ -13,18 +13,17 @@ package org.eclipse.che.ide.ext.microsoft.server;
 import static java.net.HttpURLConnection.HTTP_CREATED;
 import static java.net.HttpURLConnection.HTTP_OK;
 
+import com.codenvy.plugin.http.HttpClient;
+import com.codenvy.plugin.http.HttpRequest;
+import com.codenvy.plugin.http.HttpResponse;
 import com.google.api.client.http.HttpMethods;
 import com.google.api.client.repackaged.com.google.common.annotations.Beta;
 import com.google.inject.Singleton;
-import java.io.BufferedWriter;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.OutputStreamWriter;
-import java.net.HttpURLConnection;
-import java.net.URL;
 import java.util.List;
 import java.util.stream.Collectors;
 import javax.inject.Inject;
+import javax.inject.Named;
 import org.eclipse.che.api.auth.shared.dto.OAuthToken;
 import org.eclipse.che.api.core.ServerException;
 import org.eclipse.che.api.core.UnauthorizedException;
@@ -52,14 +51,30 @@ import org.everrest.core.impl.provider.json.JsonValue;
 @Beta
 @Singleton
 public final class MicrosoftVstsRestClient {
+  private static final long DEFAULT_PROFILE_CACHE_TTL_MS = 5 * 60 * 1000;
+  private static final long DEFAULT_REPOSITORY_CACHE_TTL_MS = 60 * 1000;
 
   private final URLTemplates templates;
   private final OAuthTokenProvider tokenProvider;
+  private final HttpClient httpClient;
+
+  private volatile long profileCacheTtlMs = DEFAULT_PROFILE_CACHE_TTL_MS;
+  private volatile long repositoryCacheTtlMs = DEFAULT_REPOSITORY_CACHE_TTL_MS;
 
   @Inject
-  public MicrosoftVstsRestClient(OAuthTokenProvider tokenProvider, URLTemplates templates) {
+  public MicrosoftVstsRestClient(
+      OAuthTokenProvider tokenProvider, URLTemplates templates, HttpClient httpClient) {
     this.tokenProvider = tokenProvider;
     this.templates = templates;
+    this.httpClient = httpClient;
+  }
+
+  @com.google.inject.Inject(optional = true)
+  void configureCache(
+      @Named("http.client.cache.vsts.profile_ttl_ms") long profileCacheTtlMs,
+      @Named("http.client.cache.vsts.repository_ttl_ms") long repositoryCacheTtlMs) {
+    this.profileCacheTtlMs = profileCacheTtlMs;
+    this.repositoryCacheTtlMs = repositoryCacheTtlMs;
   }
 
   /**
@@ -71,7 +86,7 @@ public final class MicrosoftVstsRestClient {
    */
   public MicrosoftUserProfile getUserProfile()
       throws IOException, ServerException, UnauthorizedException {
-    return doGet(templates.profileUrl(), MicrosoftUserProfile.class);
+    return doGet(templates.profileUrl(), MicrosoftUserProfile.class, profileCacheTtlMs);
   }
 
   /**
@@ -87,7 +102,9 @@ public final class MicrosoftVstsRestClient {
       String account, String collection, String project, String name)
       throws IOException, ServerException, UnauthorizedException {
     return doGet(
-        templates.repositoryUrl(account, collection, project, name), MicrosoftRepository.class);
+        templates.repositoryUrl(account, collection, project, name),
+        MicrosoftRepository.class,
+        repositoryCacheTtlMs);
   }
 
   /**
@@ -104,7 +121,8 @@ public final class MicrosoftVstsRestClient {
       throws IOException, ServerException, UnauthorizedException {
     return doGet(
             templates.pullRequestsUrl(account, collection, repositoryId),
-            MicrosoftPullRequestList.class)
+            MicrosoftPullRequestList.class,
+            0)
         .getValue()
         .stream()
         .peek(
@@ -152,7 +170,8 @@ public final class MicrosoftVstsRestClient {
       throws ServerException, IOException, UnauthorizedException {
     return doGet(
         templates.pullRequestUrl(account, collection, repositoryId, prId),
-        MicrosoftPullRequest.class);
+        MicrosoftPullRequest.class,
+        0);
   }
 
   /**
@@ -171,7 +190,8 @@ public final class MicrosoftVstsRestClient {
       throws ServerException, IOException, UnauthorizedException {
     return doGet(
         templates.pullRequestUrl(account, collection, projectName, repoName, prId),
-        MicrosoftPullRequest.class);
+        MicrosoftPullRequest.class,
+        0);
   }
 
   /**
@@ -226,9 +246,13 @@ public final class MicrosoftVstsRestClient {
     }
   }
 
-  private <T> T doGet(String url, Class<T> dto)
+  /**
+   * Sends GET request, the response is served from the response cache of the current user without a
+   * request for the given ttl, after that it is revalidated with VSTS.
+   */
+  private <T> T doGet(String url, Class<T> dto, long cacheTtlMs)
       throws ServerException, IOException, UnauthorizedException {
-    final JsonValue value = doRequest("GET", url, 200, null, null);
+    final JsonValue value = execute(newRequest("GET", url).cache(getUserId(), cacheTtlMs), 200);
     return parseJsonResponse(value, dto);
   }
 
@@ -242,54 +266,47 @@ public final class MicrosoftVstsRestClient {
   private JsonValue doRequest(
       String requestMethod, final String url, int responseCode, String contentType, String data)
       throws IOException, ServerException, UnauthorizedException {
-    HttpURLConnection http = null;
-    try {
-      http = (HttpURLConnection) new URL(url).openConnection();
-      if (HttpMethods.PATCH.equals(requestMethod)) {
-        http.setRequestProperty("X-HTTP-Method-Override", requestMethod);
-        requestMethod = HttpMethods.PUT;
-      }
-      http.setRequestMethod(requestMethod);
-
-      final OAuthToken token = tokenProvider.getToken("microsoft", getUserId());
-      if (token != null) {
-        http.setRequestProperty("Authorization", "Bearer " + token.getToken());
-      }
+    final HttpRequest request = newRequest(requestMethod, url);
+    if (data != null && !data.isEmpty()) {
+      request.body(contentType, data);
+    }
+    return execute(request, responseCode);
+  }
 
-      if (data != null && !data.isEmpty()) {
-        http.setRequestProperty("Content-Type", contentType);
-        http.setRequestProperty("Content-Length", String.valueOf(data.length()));
-        http.setDoOutput(true);
+  private HttpRequest newRequest(String requestMethod, String url) throws IOException {
+    final HttpRequest request;
+    if (HttpMethods.PATCH.equals(requestMethod)) {
+      request =
+          httpClient.request(HttpMethods.PUT, url).header("X-HTTP-Method-Override", requestMethod);
+    } else {
+      request = httpClient.request(requestMethod, url);
+    }
 
-        try (BufferedWriter writer =
-            new BufferedWriter(new OutputStreamWriter(http.getOutputStream()))) {
-          writer.write(data);
-        }
-      }
+    final OAuthToken token = tokenProvider.getToken("microsoft", getUserId());
+    if (token != null) {
+      request.header("Authorization", "Bearer " + token.getToken());
+    }
+    return request;
+  }
 
-      if (http.getResponseCode() != responseCode) {
-        if (http.getResponseCode() == 203) {
+  private JsonValue execute(HttpRequest request, int responseCode)
+      throws IOException, ServerException, UnauthorizedException {
+    try (HttpResponse response = request.send()) {
+      if (response.getStatus() != responseCode) {
+        if (response.getStatus() == 203) {
           throw new UnauthorizedException("Missing auth token");
         }
         final MicrosoftVstsApiError err =
             DtoFactory.getInstance()
-                .createDtoFromJson(http.getErrorStream(), MicrosoftVstsApiError.class);
+                .createDtoFromJson(response.getBody(), MicrosoftVstsApiError.class);
         throw new ServerException(
             DtoFactory.newDto(ExtendedError.class)
                 .withMessage(err.getMessage())
                 .withErrorCode(VstsErrorCodes.getCodeByTypeKey(err.getTypeKey())));
       }
-      JsonValue result;
-      try (InputStream input = http.getInputStream()) {
-        result = JsonHelper.parseJson(input);
-        return result;
-      } catch (JsonParseException e) {
-        throw new ServerException(e);
-      }
-    } finally {
-      if (http != null) {
-        http.disconnect();
-      }
+      return JsonHelper.parseJson(response.getBody());
+    } catch (JsonParseException e) {
+      throw new ServerException(e);
     }
   }
 }
@@ -18,11 +18,12 @@ import static com.codenvy.plugin.webhooks.vsts.VSTSWebhookType.WORK_ITEM_CREATED
 import static com.google.common.base.Strings.isNullOrEmpty;
 import static javax.ws.rs.core.MediaType.APPLICATION_JSON;
 
-import com.codenvy.plugin.webhooks.AuthConnection;
 import com.codenvy.plugin.webhooks.BaseWebhookService;
 import com.codenvy.plugin.webhooks.FactoryConnection;
 import com.codenvy.plugin.webhooks.FactoryType;
 import com.codenvy.plugin.webhooks.UserConnection;
+import com.codenvy.plugin.webhooks.WebhookEvent;
+import com.codenvy.plugin.webhooks.WebhookTokenProvider;
 import com.codenvy.plugin.webhooks.vsts.shared.GenericEvent;
 import com.codenvy.plugin.webhooks.vsts.shared.PullRequestUpdatedEvent;
 import com.codenvy.plugin.webhooks.vsts.shared.WorkItemCreationEvent;
@@ -41,7 +42,6 @@ import java.util.Optional;
 import java.util.Properties;
 import java.util.Set;
 import javax.inject.Inject;
-import javax.inject.Named;
 import javax.servlet.ServletInputStream;
 import javax.servlet.http.HttpServletRequest;
 import javax.ws.rs.Consumes;
@@ -66,6 +66,8 @@ import org.slf4j.LoggerFactory;
 @Path("/vsts-webhook")
 public class VSTSWebhookService extends BaseWebhookService {
 
+  public static final String VSTS_WEBHOOK_EVENT_SOURCE = "vsts";
+
   private static final Logger LOG = LoggerFactory.getLogger(VSTSWebhookService.class);
   private static final String VSTS_WEBHOOKS_PROPERTIES_FILENAME = "vsts-webhooks.properties";
 
@@ -75,14 +77,12 @@ public class VSTSWebhookService extends BaseWebhookService {
 
   @Inject
   public VSTSWebhookService(
-      final AuthConnection authConnection,
       final FactoryConnection factoryConnection,
       final UserConnection userConnection,
       final VSTSConnection vstsConnection,
       final ConfigurationProperties configurationProperties,
-      @Named("integration.factory.owner.username") String username,
-      @Named("integration.factory.owner.password") String password) {
-    super(authConnection, factoryConnection, configurationProperties, username, password);
+      final WebhookTokenProvider tokenProvider) {
+    super(factoryConnection, configurationProperties, tokenProvider);
 
     this.factoryConnection = factoryConnection;
     this.userConnection = userConnection;
@@ -115,18 +115,10 @@ public class VSTSWebhookService extends BaseWebhookService {
       if (!isNullOrEmpty(eventType)) {
         switch (eventType) {
           case "workitem.created":
-            // Create {@link WorkItemCreationEvent} from JSON
-            final WorkItemCreationEvent wicEvent =
-                DtoFactory.getInstance()
-                    .createDtoFromJson(requestInputString, WorkItemCreationEvent.class);
-            handleWorkItemCreationEvent(wicEvent);
-            break;
           case "git.pullrequest.updated":
-            // Create {@link PullRequestUpdatedEvent} from JSON
-            final PullRequestUpdatedEvent pruEvent =
-                DtoFactory.getInstance()
-                    .createDtoFromJson(requestInputString, PullRequestUpdatedEvent.class);
-            handlePullRequestUpdatedEvent(pruEvent);
+            if (submit(VSTS_WEBHOOK_EVENT_SOURCE, eventType, null, requestInputString)) {
+              response = Response.accepted().build();
+            }
             break;
           default:
             response =
@@ -148,6 +140,33 @@ public class VSTSWebhookService extends BaseWebhookService {
     return response;
   }
 
+  @Override
+  public void handle(WebhookEvent event) throws ServerException, IOException {
+    try {
+      switch (event.getType()) {
+        case "workitem.created":
+          // Create {@link WorkItemCreationEvent} from JSON
+          final WorkItemCreationEvent wicEvent =
+              DtoFactory.getInstance()
+                  .createDtoFromJson(event.getPayload(), WorkItemCreationEvent.class);
+          handleWorkItemCreationEvent(wicEvent);
+          break;
+        case "git.pullrequest.updated":
+          // Create {@link PullRequestUpdatedEvent} from JSON
+          final PullRequestUpdatedEvent pruEvent =
+              DtoFactory.getInstance()
+                  .createDtoFromJson(event.getPayload(), PullRequestUpdatedEvent.class);
+          handlePullRequestUpdatedEvent(pruEvent);
+          break;
+        default:
+          LOG.warn("VSTS message '{}' isn't intended to be processed", event.getType());
+          break;
+      }
+    } finally {
+      EnvironmentContext.reset();
+    }
+  }
+
   /**
    * Handle VSTS {@link WorkItemCreationEvent}
    *
@@ -10,8 +10,12 @@
  */
 package com.codenvy.plugin.webhooks.vsts.inject;
 
+import static com.codenvy.plugin.webhooks.vsts.VSTSWebhookService.VSTS_WEBHOOK_EVENT_SOURCE;
+
+import com.codenvy.plugin.webhooks.WebhookEventHandler;
 import com.codenvy.plugin.webhooks.vsts.VSTSWebhookService;
 import com.google.inject.AbstractModule;
+import com.google.inject.multibindings.MapBinder;
 import org.eclipse.che.inject.DynaModule;
 
 /**
@@ -25,5 +29,8 @@ public class VSTSWebhookModule extends AbstractModule {
   @Override
   protected void configure() {
     bind(VSTSWebhookService.class);
+    MapBinder.newMapBinder(binder(), String.class, WebhookEventHandler.class)
+        .addBinding(VSTS_WEBHOOK_EVENT_SOURCE)
+        .to(VSTSWebhookService.class);
   }
 }
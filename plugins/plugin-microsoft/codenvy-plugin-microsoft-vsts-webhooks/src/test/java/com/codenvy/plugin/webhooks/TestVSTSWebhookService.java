@@ -86,13 +86,11 @@ public class TestVSTSWebhookService {
     // Prepare VSTSWebhookService
     fakeVSTSWebhookService =
         new VSTSWebhookService(
-            mockAuthConnection,
             mockFactoryConnection,
             mockUserConnection,
             mockVSTSConnection,
             mock(ConfigurationProperties.class),
-            "username",
-            "password");
+            new WebhookTokenProvider(mockAuthConnection, "username", "password", 0));
   }
 
   @Test
@@ -29,14 +29,15 @@ import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
-import org.eclipse.che.api.auth.shared.dto.Token;
 import org.eclipse.che.api.core.ForbiddenException;
 import org.eclipse.che.api.core.ServerException;
 import org.eclipse.che.api.core.rest.Service;
 import org.eclipse.che.api.factory.shared.dto.FactoryDto;
 import org.eclipse.che.api.workspace.shared.dto.ProjectConfigDto;
 import org.eclipse.che.api.workspace.shared.dto.SourceStorageDto;
+import org.eclipse.che.commons.annotation.Nullable;
 import org.eclipse.che.commons.subject.Subject;
 import org.eclipse.che.inject.ConfigurationProperties;
 import org.slf4j.Logger;
@@ -45,9 +46,13 @@ import org.slf4j.LoggerFactory;
 /**
  * Webhooks handler
  *
+ * <p>Webhook requests are only validated and {@link #submit submitted} to the {@link
+ * WebhookEventQueue}, the events are processed later by {@link #handle(WebhookEvent)} of the
+ * service bound as {@link WebhookEventHandler} for their source.
+ *
  * @author Stephane Tournie
  */
-public abstract class BaseWebhookService extends Service {
+public abstract class BaseWebhookService extends Service implements WebhookEventHandler {
 
   private static final Logger LOG = LoggerFactory.getLogger(BaseWebhookService.class);
 
@@ -58,25 +63,44 @@ public abstract class BaseWebhookService extends Service {
 
   protected static final String FACTORY_URL_REL = "accept-named";
 
-  private final AuthConnection authConnection;
   private final FactoryConnection factoryConnection;
   private final ConfigurationProperties configurationProperties;
-  private final String username;
-  private final String password;
+  private final WebhookTokenProvider tokenProvider;
 
   @Inject private JenkinsConnectorFactory jenkinsConnectorFactory;
+  @Inject private WebhookEventQueue eventQueue;
+  @Inject private FactoryIndex factoryIndex = new FactoryIndex();
 
   public BaseWebhookService(
-      final AuthConnection authConnection,
       final FactoryConnection factoryConnection,
       ConfigurationProperties configurationProperties,
-      String username,
-      String password) {
-    this.authConnection = authConnection;
+      WebhookTokenProvider tokenProvider) {
     this.factoryConnection = factoryConnection;
     this.configurationProperties = configurationProperties;
-    this.username = username;
-    this.password = password;
+    this.tokenProvider = tokenProvider;
+  }
+
+  /**
+   * Submits the event to be processed by {@link #handle(WebhookEvent)}. The event is stored in the
+   * {@link WebhookEventQueue} and processed asynchronously, if the service is created without the
+   * queue the event is processed right away.
+   *
+   * @param source the name the service is bound with as {@link WebhookEventHandler}
+   * @param type the type of the event as it is named by git provider
+   * @param coalescingKey the key of the event, see {@link WebhookEvent#getCoalescingKey()}
+   * @param payload the body of the webhook request
+   * @return true if the event is queued, false if it is already processed
+   */
+  protected boolean submit(
+      String source, String type, @Nullable String coalescingKey, String payload)
+      throws ServerException, IOException {
+    if (eventQueue != null) {
+      eventQueue.enqueue(source, type, coalescingKey, payload);
+      return true;
+    }
+    handle(
+        new WebhookEvent(0, source, type, coalescingKey, payload, System.currentTimeMillis(), 0));
+    return false;
   }
 
   /**
@@ -94,10 +118,18 @@ public abstract class BaseWebhookService extends Service {
       final CloneUrlMatcher matcher)
       throws ServerException {
     List<FactoryDto> factories = new ArrayList<>();
-    for (String factoryID : factoryIDs) {
-      factories.add(factoryConnection.getFactory(factoryID));
+    for (Map.Entry<String, FactoryDto> matching :
+        factoryIndex
+            .findMatching(factoryIDs, headRepositoryUrl, headBranch, matcher, factoryConnection)
+            .entrySet()) {
+      // only the factories served from the index are fetched
+      factories.add(
+          matching.getValue() != null
+              ? matching.getValue()
+              : factoryConnection.getFactory(matching.getKey()));
     }
 
+    // index may be outdated, so factories served from it are checked once again
     return factories
         .stream()
         .filter(
@@ -111,6 +143,18 @@ public abstract class BaseWebhookService extends Service {
         .collect(toList());
   }
 
+  /**
+   * Get the ids of factories configured in webhooks for given repository, the ids are read once
+   * and kept in {@link FactoryIndex}
+   *
+   * @param repositoryUrl the URL of the repository webhooks are configured for
+   * @param loader reads the ids from webhooks configuration
+   */
+  protected Set<String> getWebhookFactoryIds(
+      final String repositoryUrl, final Supplier<Set<String>> loader) {
+    return factoryIndex.getWebhookFactoryIds(getClass().getName() + ':' + repositoryUrl, loader);
+  }
+
   /**
    * Update project matching given predicate in given factory
    *
@@ -176,6 +220,7 @@ public abstract class BaseWebhookService extends Service {
   }
 
   protected void updateFactory(final FactoryDto factory) throws ServerException {
+    factoryIndex.invalidate(factory.getId());
     final FactoryDto persistedFactory = factoryConnection.updateFactory(factory);
 
     if (persistedFactory == null) {
@@ -303,13 +348,13 @@ public abstract class BaseWebhookService extends Service {
     }
   }
 
-  /** A user that only provides a token based on configured credentials */
+  /** A user that only provides a token of the webhook user, see {@link WebhookTokenProvider} */
   protected class TokenSubject implements Subject {
 
-    private final Token token;
+    private final String token;
 
     public TokenSubject() throws ServerException {
-      token = authConnection.authenticateUser(username, password);
+      token = tokenProvider.getToken();
     }
 
     @Override
@@ -330,7 +375,9 @@ public abstract class BaseWebhookService extends Service {
 
     @Override
     public String getToken() {
-      return token.getValue();
+      // the token may be refreshed by the provider while the event is processed
+      final String current = tokenProvider.getCurrentToken();
+      return current != null ? current : token;
     }
 
     @Override
@@ -18,7 +18,6 @@ import javax.inject.Inject;
 import javax.inject.Named;
 import org.eclipse.che.api.core.ApiException;
 import org.eclipse.che.api.core.ServerException;
-import org.eclipse.che.api.core.rest.HttpJsonRequest;
 import org.eclipse.che.api.core.rest.HttpJsonRequestFactory;
 import org.eclipse.che.api.core.rest.HttpJsonResponse;
 import org.eclipse.che.api.factory.server.FactoryService;
@@ -37,12 +36,16 @@ public class FactoryConnection {
 
   private final HttpJsonRequestFactory httpJsonRequestFactory;
   private final String baseUrl;
+  private final WebhookTokenProvider tokenProvider;
 
   @Inject
   public FactoryConnection(
-      HttpJsonRequestFactory httpJsonRequestFactory, @Named("che.api") String baseUrl) {
+      HttpJsonRequestFactory httpJsonRequestFactory,
+      @Named("che.api") String baseUrl,
+      WebhookTokenProvider tokenProvider) {
     this.httpJsonRequestFactory = httpJsonRequestFactory;
     this.baseUrl = baseUrl;
+    this.tokenProvider = tokenProvider;
   }
 
   /**
@@ -60,9 +63,9 @@ public class FactoryConnection {
             .build(factoryId)
             .toString();
     FactoryDto factory;
-    HttpJsonRequest httpJsonRequest = httpJsonRequestFactory.fromUrl(url).useGetMethod();
     try {
-      HttpJsonResponse response = httpJsonRequest.request();
+      HttpJsonResponse response =
+          tokenProvider.request(() -> httpJsonRequestFactory.fromUrl(url).useGetMethod());
       factory = response.asDto(FactoryDto.class);
 
     } catch (IOException | ApiException e) {
@@ -89,14 +92,15 @@ public class FactoryConnection {
             .build()
             .toString();
     List<FactoryDto> factories;
-    HttpJsonRequest httpJsonRequest =
-        httpJsonRequestFactory
-            .fromUrl(url)
-            .useGetMethod()
-            .addQueryParam("name", factoryName)
-            .addQueryParam("creator.userId", userId);
     try {
-      HttpJsonResponse response = httpJsonRequest.request();
+      HttpJsonResponse response =
+          tokenProvider.request(
+              () ->
+                  httpJsonRequestFactory
+                      .fromUrl(url)
+                      .useGetMethod()
+                      .addQueryParam("name", factoryName)
+                      .addQueryParam("creator.userId", userId));
       factories = response.asList(FactoryDto.class);
 
     } catch (IOException | ApiException e) {
@@ -123,10 +127,10 @@ public class FactoryConnection {
             .toString();
 
     FactoryDto newFactory;
-    HttpJsonRequest httpJsonRequest =
-        httpJsonRequestFactory.fromUrl(url).usePutMethod().setBody(factory);
     try {
-      HttpJsonResponse response = httpJsonRequest.request();
+      HttpJsonResponse response =
+          tokenProvider.request(
+              () -> httpJsonRequestFactory.fromUrl(url).usePutMethod().setBody(factory));
       newFactory = response.asDto(FactoryDto.class);
 
     } catch (IOException | ApiException e) {
@@ -146,10 +150,10 @@ public class FactoryConnection {
   public FactoryDto saveFactory(final FactoryDto factory) throws ServerException {
     final String url = fromUri(baseUrl).path(FactoryService.class).build().toString();
     FactoryDto newFactory;
-    HttpJsonRequest httpJsonRequest =
-        httpJsonRequestFactory.fromUrl(url).usePostMethod().setBody(factory);
     try {
-      HttpJsonResponse response = httpJsonRequest.request();
+      HttpJsonResponse response =
+          tokenProvider.request(
+              () -> httpJsonRequestFactory.fromUrl(url).usePostMethod().setBody(factory));
       newFactory = response.asDto(FactoryDto.class);
 
     } catch (IOException | ApiException e) {
@@ -0,0 +1,151 @@
+/*
+ * Copyright (c) [2012] - [2017] Red Hat, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *   Red Hat, Inc. - initial API and implementation
+ */
+package com.codenvy.plugin.webhooks;
+
+import com.codahale.metrics.annotation.Gauge;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import javax.inject.Named;
+import javax.inject.Singleton;
+import org.eclipse.che.api.core.ServerException;
+import org.eclipse.che.api.factory.shared.dto.FactoryDto;
+import org.eclipse.che.api.workspace.shared.dto.ProjectConfigDto;
+
+/**
+ * Index of the factories configured in webhooks, which allows to find the factories matching
+ * repository and branch of a webhook event without fetching all the factories configured for the
+ * repository.
+ *
+ * <p>Index keeps the ids of the factories configured for each repository URL and the projects of
+ * each factory. Factory is fetched only if it isn't indexed yet, so finding the matching factories
+ * is a lookup of configured ids and a check of their indexed projects. Factory is removed from the
+ * index when it is updated by a webhook, the factories changed by other means are re-fetched at the
+ * latest after {@code webhooks.factory_index.ttl_ms}.
+ */
+@Singleton
+public class FactoryIndex {
+  private static final long DEFAULT_TTL_MS = TimeUnit.MINUTES.toMillis(5);
+  private static final long DEFAULT_MAX_SIZE = 10_000;
+
+  private final AtomicLong hits;
+  private final AtomicLong misses;
+
+  private volatile Cache<String, Set<String>> webhookFactoryIds;
+  private volatile Cache<String, List<ProjectConfigDto>> factoryProjects;
+
+  public FactoryIndex() {
+    this(DEFAULT_TTL_MS, DEFAULT_MAX_SIZE);
+  }
+
+  @VisibleForTesting
+  FactoryIndex(long ttlMs, long maxSize) {
+    this.hits = new AtomicLong();
+    this.misses = new AtomicLong();
+    configure(ttlMs, maxSize);
+  }
+
+  @com.google.inject.Inject(optional = true)
+  void configure(
+      @Named("webhooks.factory_index.ttl_ms") long ttlMs,
+      @Named("webhooks.factory_index.size") long maxSize) {
+    this.webhookFactoryIds = newCache(ttlMs, maxSize);
+    this.factoryProjects = newCache(ttlMs, maxSize);
+  }
+
+  /**
+   * Gets the ids of the factories configured in webhooks for the repository.
+   *
+   * @param repositoryKey the key which identifies the webhook type and repository URL
+   * @param loader reads the ids from webhooks configuration if they are not indexed
+   */
+  public Set<String> getWebhookFactoryIds(String repositoryKey, Supplier<Set<String>> loader) {
+    Set<String> ids = webhookFactoryIds.getIfPresent(repositoryKey);
+    if (ids == null) {
+      ids = loader.get();
+      webhookFactoryIds.put(repositoryKey, ids);
+    }
+    return ids;
+  }
+
+  /**
+   * Finds the factories which contain a project matching the repository and branch.
+   *
+   * @param factoryIds the ids of factories to check
+   * @param repositoryUrl the repository URL that factory project must match
+   * @param branch the branch that factory project must match
+   * @param matcher the matcher of the projects
+   * @param factoryConnection the connection used to fetch the factories which are not indexed
+   * @return the ids of the matching factories in the order of the given ids mapped to the factories
+   *     fetched while finding them, ids of the factories which are served from the index are mapped
+   *     to {@code null}
+   * @throws ServerException if a factory which is not indexed can't be fetched
+   */
+  public Map<String, FactoryDto> findMatching(
+      Set<String> factoryIds,
+      String repositoryUrl,
+      String branch,
+      CloneUrlMatcher matcher,
+      FactoryConnection factoryConnection)
+      throws ServerException {
+    final Map<String, FactoryDto> matching = new LinkedHashMap<>();
+    for (String factoryId : factoryIds) {
+      FactoryDto factory = null;
+      List<ProjectConfigDto> projects = factoryProjects.getIfPresent(factoryId);
+      if (projects != null) {
+        hits.incrementAndGet();
+      } else {
+        misses.incrementAndGet();
+        factory = factoryConnection.getFactory(factoryId);
+        if (factory == null) {
+          continue;
+        }
+        projects = factory.getWorkspace().getProjects();
+        factoryProjects.put(factoryId, projects);
+      }
+      if (projects
+          .stream()
+          .anyMatch(project -> matcher.isCloneUrlMatching(project, repositoryUrl, branch))) {
+        matching.put(factoryId, factory);
+      }
+    }
+    return matching;
+  }
+
+  /** Removes the factory from the index, must be called when the factory is changed. */
+  public void invalidate(String factoryId) {
+    factoryProjects.invalidate(factoryId);
+  }
+
+  @Gauge(name = "webhooks.factory_index.hits")
+  public long getHitCount() {
+    return hits.get();
+  }
+
+  @Gauge(name = "webhooks.factory_index.misses")
+  public long getMissCount() {
+    return misses.get();
+  }
+
+  private static <V> Cache<String, V> newCache(long ttlMs, long maxSize) {
+    return CacheBuilder.newBuilder()
+        .maximumSize(maxSize)
+        .expireAfterWrite(ttlMs, TimeUnit.MILLISECONDS)
+        .build();
+  }
+}
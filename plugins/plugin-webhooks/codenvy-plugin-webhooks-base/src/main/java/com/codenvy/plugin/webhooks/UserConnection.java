@@ -17,7 +17,6 @@ import javax.inject.Inject;
 import javax.inject.Named;
 import org.eclipse.che.api.core.ApiException;
 import org.eclipse.che.api.core.ServerException;
-import org.eclipse.che.api.core.rest.HttpJsonRequest;
 import org.eclipse.che.api.core.rest.HttpJsonRequestFactory;
 import org.eclipse.che.api.core.rest.HttpJsonResponse;
 import org.eclipse.che.api.user.server.UserService;
@@ -36,12 +35,16 @@ public class UserConnection {
 
   private final HttpJsonRequestFactory httpJsonRequestFactory;
   private final String baseUrl;
+  private final WebhookTokenProvider tokenProvider;
 
   @Inject
   public UserConnection(
-      HttpJsonRequestFactory httpJsonRequestFactory, @Named("che.api") String baseUrl) {
+      HttpJsonRequestFactory httpJsonRequestFactory,
+      @Named("che.api") String baseUrl,
+      WebhookTokenProvider tokenProvider) {
     this.httpJsonRequestFactory = httpJsonRequestFactory;
     this.baseUrl = baseUrl;
+    this.tokenProvider = tokenProvider;
   }
 
   /**
@@ -58,9 +61,9 @@ public class UserConnection {
             .build()
             .toString();
     UserDto user;
-    HttpJsonRequest httpJsonRequest = httpJsonRequestFactory.fromUrl(url).useGetMethod();
     try {
-      HttpJsonResponse response = httpJsonRequest.request();
+      HttpJsonResponse response =
+          tokenProvider.request(() -> httpJsonRequestFactory.fromUrl(url).useGetMethod());
       user = response.asDto(UserDto.class);
 
     } catch (IOException | ApiException e) {
@@ -0,0 +1,101 @@
+/*
+ * Copyright (c) [2012] - [2017] Red Hat, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *   Red Hat, Inc. - initial API and implementation
+ */
+package com.codenvy.plugin.webhooks;
+
+import org.eclipse.che.commons.annotation.Nullable;
+
+/** Webhook event received from a git provider, which waits in the {@link WebhookEventQueue}. */
+public class WebhookEvent {
+
+  private final long id;
+  private final String source;
+  private final String type;
+  private final String coalescingKey;
+  private final String payload;
+  private final long creationTime;
+  private final int attempts;
+
+  public WebhookEvent(
+      long id,
+      String source,
+      String type,
+      @Nullable String coalescingKey,
+      String payload,
+      long creationTime,
+      int attempts) {
+    this.id = id;
+    this.source = source;
+    this.type = type;
+    this.coalescingKey = coalescingKey;
+    this.payload = payload;
+    this.creationTime = creationTime;
+    this.attempts = attempts;
+  }
+
+  /** Returns sequence number of the event in the queue. */
+  public long getId() {
+    return id;
+  }
+
+  /** Returns the name the handler of the event is registered with e.g. "github". */
+  public String getSource() {
+    return source;
+  }
+
+  /** Returns the type of the event as it is named by the git provider e.g. "push". */
+  public String getType() {
+    return type;
+  }
+
+  /**
+   * Returns the key of the event, the queue keeps only the latest of the pending events having the
+   * same key, or null if the event must be processed even if a newer event of the same kind
+   * arrives.
+   */
+  @Nullable
+  public String getCoalescingKey() {
+    return coalescingKey;
+  }
+
+  /** Returns the body of the webhook request. */
+  public String getPayload() {
+    return payload;
+  }
+
+  /** Returns the time in milliseconds the event was received at. */
+  public long getCreationTime() {
+    return creationTime;
+  }
+
+  /** Returns the number of failed attempts to process the event. */
+  public int getAttempts() {
+    return attempts;
+  }
+
+  @Override
+  public String toString() {
+    return "WebhookEvent{"
+        + "id="
+        + id
+        + ", source='"
+        + source
+        + '\''
+        + ", type='"
+        + type
+        + '\''
+        + ", coalescingKey='"
+        + coalescingKey
+        + '\''
+        + ", attempts="
+        + attempts
+        + '}';
+  }
+}
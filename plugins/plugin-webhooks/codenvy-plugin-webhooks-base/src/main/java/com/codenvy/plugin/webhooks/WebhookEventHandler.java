@@ -0,0 +1,31 @@
+/*
+ * Copyright (c) [2012] - [2017] Red Hat, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *   Red Hat, Inc. - initial API and implementation
+ */
+package com.codenvy.plugin.webhooks;
+
+import java.io.IOException;
+import org.eclipse.che.api.core.ServerException;
+
+/**
+ * Processes webhook events taken from the {@link WebhookEventQueue}. Handlers are bound with {@code
+ * MapBinder<String, WebhookEventHandler>} under the name used as {@link WebhookEvent#getSource()}
+ * of their events.
+ */
+public interface WebhookEventHandler {
+
+  /**
+   * Processes the event.
+   *
+   * @param event the event to process
+   * @throws ServerException if the event is not processed and processing should be retried
+   * @throws IOException if the event is not processed and processing should be retried
+   */
+  void handle(WebhookEvent event) throws ServerException, IOException;
+}
@@ -0,0 +1,423 @@
+/*
+ * Copyright (c) [2012] - [2017] Red Hat, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *   Red Hat, Inc. - initial API and implementation
+ */
+package com.codenvy.plugin.webhooks;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+
+import com.codahale.metrics.annotation.Gauge;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Provider;
+import javax.inject.Singleton;
+import org.eclipse.che.api.core.ServerException;
+import org.eclipse.che.commons.annotation.Nullable;
+import org.eclipse.che.commons.lang.concurrent.LoggingUncaughtExceptionHandler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Durable queue of webhook events which are processed asynchronously, so webhook requests are
+ * answered as soon as the event is stored, and a burst of events doesn't make git provider time out
+ * and redeliver them.
+ *
+ * <p>Each event is stored in its own file in {@code webhooks.queue.dir} until it is processed, so
+ * the events which are pending on shutdown are processed after the next start. Events are processed
+ * by {@code webhooks.queue.threads} worker threads with the {@link WebhookEventHandler} bound for
+ * their source. Pending event is replaced by a newer event with the same {@link
+ * WebhookEvent#getCoalescingKey() coalescing key}, e.g. several pushes to the same branch result in
+ * a single processing of the last push. Events with the same key are never processed concurrently,
+ * newer event is held until the processing of the previous one finishes. Failed event is retried
+ * with exponential backoff starting from {@code webhooks.queue.retry_delay_ms}, and dropped after
+ * {@code webhooks.queue.max_attempts} attempts.
+ */
+@Singleton
+public class WebhookEventQueue {
+
+  private static final Logger LOG = LoggerFactory.getLogger(WebhookEventQueue.class);
+
+  private static final long MAX_RETRY_DELAY_MS = TimeUnit.HOURS.toMillis(1);
+  private static final String EVENT_FILE_SUFFIX = ".json";
+  private static final Gson GSON = new Gson();
+
+  private final Path dir;
+  private final int threads;
+  private final int maxSize;
+  private final int maxAttempts;
+  private final long retryDelayMs;
+  private final Map<String, Provider<WebhookEventHandler>> handlers;
+  private final DelayQueue<Entry> queue;
+  private final Map<String, Entry> pendingByKey;
+  // keys of the events which are being processed and the newer events held until it finishes
+  private final Set<String> inFlightKeys;
+  private final Map<String, Entry> heldByKey;
+  private final AtomicLong sequence;
+  private final AtomicLong processed;
+  private final AtomicLong retries;
+  private final AtomicLong dropped;
+  private final AtomicLong coalesced;
+
+  private ExecutorService executor;
+
+  @Inject
+  public WebhookEventQueue(
+      @Named("webhooks.queue.dir") String dir,
+      @Named("webhooks.queue.threads") int threads,
+      @Named("webhooks.queue.max_size") int maxSize,
+      @Named("webhooks.queue.max_attempts") int maxAttempts,
+      @Named("webhooks.queue.retry_delay_ms") long retryDelayMs,
+      Map<String, Provider<WebhookEventHandler>> handlers) {
+    this.dir = Paths.get(dir);
+    this.threads = threads;
+    this.maxSize = maxSize;
+    this.maxAttempts = maxAttempts;
+    this.retryDelayMs = retryDelayMs;
+    this.handlers = handlers;
+    this.queue = new DelayQueue<>();
+    this.pendingByKey = new HashMap<>();
+    this.inFlightKeys = new HashSet<>();
+    this.heldByKey = new HashMap<>();
+    this.sequence = new AtomicLong();
+    this.processed = new AtomicLong();
+    this.retries = new AtomicLong();
+    this.dropped = new AtomicLong();
+    this.coalesced = new AtomicLong();
+  }
+
+  /** Loads the events left from the previous run and starts worker threads. */
+  @PostConstruct
+  public void start() throws IOException {
+    Files.createDirectories(dir);
+    for (WebhookEvent event : loadEvents()) {
+      sequence.set(Math.max(sequence.get(), event.getId()));
+      if (!offer(event, System.currentTimeMillis())) {
+        LOG.warn("Webhook event queue is full, {} is left till the next start", event);
+      }
+    }
+    executor =
+        Executors.newFixedThreadPool(
+            threads,
+            new ThreadFactoryBuilder()
+                .setNameFormat("WebhookEventQueue-%d")
+                .setUncaughtExceptionHandler(LoggingUncaughtExceptionHandler.getInstance())
+                .setDaemon(true)
+                .build());
+    for (int i = 0; i < threads; i++) {
+      executor.execute(this::drain);
+    }
+  }
+
+  @PreDestroy
+  public void stop() {
+    if (executor != null) {
+      executor.shutdownNow();
+    }
+  }
+
+  /**
+   * Stores the event and schedules its processing.
+   *
+   * @param source the name the handler of the event is bound with
+   * @param type the type of the event as it is named by git provider
+   * @param coalescingKey the key of the event, see {@link WebhookEvent#getCoalescingKey()}
+   * @param payload the body of the webhook request
+   * @throws ServerException if there is no handler for the source, the queue is full or the event
+   *     can't be stored
+   */
+  public void enqueue(String source, String type, @Nullable String coalescingKey, String payload)
+      throws ServerException {
+    if (!handlers.containsKey(source)) {
+      throw new ServerException("No handler is registered for webhook events from " + source);
+    }
+    final WebhookEvent event =
+        new WebhookEvent(
+            sequence.incrementAndGet(),
+            source,
+            type,
+            coalescingKey,
+            payload,
+            System.currentTimeMillis(),
+            0);
+    try {
+      write(event);
+    } catch (IOException x) {
+      LOG.error(x.getLocalizedMessage(), x);
+      throw new ServerException("Failed to store webhook event " + event.getId());
+    }
+    if (!offer(event, event.getCreationTime())) {
+      delete(event);
+      throw new ServerException("Webhook event queue is full");
+    }
+    LOG.debug("Enqueued {}", event);
+  }
+
+  /** Returns the number of events waiting to be processed. */
+  @Gauge(name = "webhooks.queue.depth")
+  public synchronized int getDepth() {
+    return queue.size() + heldByKey.size();
+  }
+
+  /** Returns the number of successfully processed events. */
+  @Gauge(name = "webhooks.queue.processed")
+  public long getProcessedCount() {
+    return processed.get();
+  }
+
+  /** Returns the number of failed attempts to process events which are scheduled for a retry. */
+  @Gauge(name = "webhooks.queue.retries")
+  public long getRetryCount() {
+    return retries.get();
+  }
+
+  /** Returns the number of events dropped after all the attempts to process them failed. */
+  @Gauge(name = "webhooks.queue.dropped")
+  public long getDroppedCount() {
+    return dropped.get();
+  }
+
+  /** Returns the number of events replaced by newer events with the same coalescing key. */
+  @Gauge(name = "webhooks.queue.coalesced")
+  public long getCoalescedCount() {
+    return coalesced.get();
+  }
+
+  /**
+   * Returns the age in milliseconds of the oldest event waiting to be processed, or 0 if there are
+   * no such events. Retried events keep their age.
+   */
+  @Gauge(name = "webhooks.queue.lag_ms")
+  public synchronized long getLagMs() {
+    final long oldest =
+        Stream.concat(queue.stream(), heldByKey.values().stream())
+            .mapToLong(entry -> entry.event.getCreationTime())
+            .min()
+            .orElse(0);
+    return oldest == 0 ? 0 : Math.max(0, System.currentTimeMillis() - oldest);
+  }
+
+  /**
+   * Adds the event to the queue replacing the pending event with the same coalescing key. If the
+   * event with the same key is being processed, the event is held until the processing finishes.
+   *
+   * @return false if the queue is full
+   */
+  private synchronized boolean offer(WebhookEvent event, long dueTime) {
+    final String key = event.getCoalescingKey();
+    final Map<String, Entry> pendingOrHeld =
+        key != null && inFlightKeys.contains(key) ? heldByKey : pendingByKey;
+    final Entry pending = key != null ? pendingOrHeld.get(key) : null;
+    if (pending != null) {
+      queue.remove(pending);
+      delete(pending.event);
+      coalesced.incrementAndGet();
+      LOG.debug("{} is replaced by {}", pending.event, event);
+    } else if (queue.size() + heldByKey.size() >= maxSize) {
+      return false;
+    }
+    final Entry entry = new Entry(event, dueTime);
+    if (pendingOrHeld != heldByKey) {
+      queue.add(entry);
+    }
+    if (key != null) {
+      pendingOrHeld.put(key, entry);
+    }
+    return true;
+  }
+
+  private void drain() {
+    while (!Thread.currentThread().isInterrupted()) {
+      final Entry entry;
+      try {
+        entry = queue.take();
+      } catch (InterruptedException x) {
+        Thread.currentThread().interrupt();
+        return;
+      }
+      final String key = entry.event.getCoalescingKey();
+      if (key == null) {
+        process(entry.event);
+        continue;
+      }
+      synchronized (this) {
+        pendingByKey.remove(key, entry);
+        inFlightKeys.add(key);
+      }
+      try {
+        process(entry.event);
+      } finally {
+        release(key);
+      }
+    }
+  }
+
+  /** Queues the event which was held while the event with the same key was being processed. */
+  private synchronized void release(String key) {
+    inFlightKeys.remove(key);
+    final Entry held = heldByKey.remove(key);
+    if (held != null) {
+      queue.add(held);
+      pendingByKey.put(key, held);
+    }
+  }
+
+  @VisibleForTesting
+  void process(WebhookEvent event) {
+    final Provider<WebhookEventHandler> handler = handlers.get(event.getSource());
+    if (handler == null) {
+      LOG.error(
+          "No handler is registered for webhook events from {}, dropping {}",
+          event.getSource(),
+          event);
+      dropped.incrementAndGet();
+      delete(event);
+      return;
+    }
+    try {
+      handler.get().handle(event);
+      delete(event);
+      processed.incrementAndGet();
+    } catch (Exception x) {
+      retry(event, x);
+    }
+  }
+
+  private void retry(WebhookEvent event, Exception failure) {
+    final int attempts = event.getAttempts() + 1;
+    if (attempts >= maxAttempts) {
+      LOG.error(
+          "Failed to process {} in {} attempts, dropping it. {}",
+          event,
+          attempts,
+          failure.getLocalizedMessage(),
+          failure);
+      dropped.incrementAndGet();
+      delete(event);
+      return;
+    }
+    final WebhookEvent retried =
+        new WebhookEvent(
+            event.getId(),
+            event.getSource(),
+            event.getType(),
+            event.getCoalescingKey(),
+            event.getPayload(),
+            event.getCreationTime(),
+            attempts);
+    final long delay = Math.min(retryDelayMs << Math.min(attempts - 1, 30), MAX_RETRY_DELAY_MS);
+    LOG.warn(
+        "Failed to process {}, retrying in {}ms. {}", event, delay, failure.getLocalizedMessage());
+    synchronized (this) {
+      if (event.getCoalescingKey() != null && heldByKey.containsKey(event.getCoalescingKey())) {
+        // newer event with the same key is already waiting for this one
+        coalesced.incrementAndGet();
+        delete(event);
+        return;
+      }
+      try {
+        write(retried);
+      } catch (IOException x) {
+        LOG.error(x.getLocalizedMessage(), x);
+      }
+      final Entry entry = new Entry(retried, System.currentTimeMillis() + delay);
+      if (retried.getCoalescingKey() != null) {
+        // key is still in flight, so the retry is queued when the processing finishes
+        heldByKey.put(retried.getCoalescingKey(), entry);
+      } else {
+        queue.add(entry);
+      }
+      retries.incrementAndGet();
+    }
+  }
+
+  private List<WebhookEvent> loadEvents() throws IOException {
+    final List<WebhookEvent> events = new ArrayList<>();
+    try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, "*" + EVENT_FILE_SUFFIX)) {
+      for (Path file : files) {
+        try {
+          events.add(
+              GSON.fromJson(new String(Files.readAllBytes(file), UTF_8), WebhookEvent.class));
+        } catch (IOException | JsonParseException x) {
+          LOG.error("Failed to load webhook event from {}. {}", file, x.getLocalizedMessage());
+        }
+      }
+    }
+    events.sort(Comparator.comparingLong(WebhookEvent::getId));
+    return events;
+  }
+
+  /** Writes the event to a temporary file which is then moved in place of the event file. */
+  private void write(WebhookEvent event) throws IOException {
+    final Path file = file(event);
+    final Path tmp = dir.resolve(file.getFileName() + ".tmp");
+    Files.write(tmp, GSON.toJson(event).getBytes(UTF_8));
+    Files.move(tmp, file, REPLACE_EXISTING, ATOMIC_MOVE);
+  }
+
+  private void delete(WebhookEvent event) {
+    try {
+      Files.deleteIfExists(file(event));
+    } catch (IOException x) {
+      LOG.error("Failed to delete {}. {}", file(event), x.getLocalizedMessage());
+    }
+  }
+
+  private Path file(WebhookEvent event) {
+    return dir.resolve(String.format("%019d%s", event.getId(), EVENT_FILE_SUFFIX));
+  }
+
+  private static class Entry implements Delayed {
+    final WebhookEvent event;
+    final long dueTime;
+
+    Entry(WebhookEvent event, long dueTime) {
+      this.event = event;
+      this.dueTime = dueTime;
+    }
+
+    @Override
+    public long getDelay(TimeUnit unit) {
+      return unit.convert(dueTime - System.currentTimeMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public int compareTo(Delayed that) {
+      final Entry other = (Entry) that;
+      final int byTime = Long.compare(dueTime, other.dueTime);
+      return byTime != 0 ? byTime : Long.compare(event.getId(), other.event.getId());
+    }
+  }
+}
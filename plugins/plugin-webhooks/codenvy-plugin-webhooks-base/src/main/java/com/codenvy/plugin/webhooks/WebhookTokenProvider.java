@@ -0,0 +1,159 @@
+/*
+ * Copyright (c) [2012] - [2017] Red Hat, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *   Red Hat, Inc. - initial API and implementation
+ */
+package com.codenvy.plugin.webhooks;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+import com.codahale.metrics.annotation.Gauge;
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+import org.eclipse.che.api.auth.shared.dto.Token;
+import org.eclipse.che.api.core.ApiException;
+import org.eclipse.che.api.core.ServerException;
+import org.eclipse.che.api.core.UnauthorizedException;
+import org.eclipse.che.api.core.rest.HttpJsonRequest;
+import org.eclipse.che.api.core.rest.HttpJsonResponse;
+import org.eclipse.che.commons.annotation.Nullable;
+import org.eclipse.che.commons.env.EnvironmentContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Keeps the token of the user webhook events are processed by, so the user is authenticated once
+ * and not on each event.
+ *
+ * <p>The token is obtained again when it is older than the half of {@code
+ * auth.sso.access_ticket_lifetime_seconds}, so it is never used close to its expiration, and when
+ * it is {@link #refresh(String) rejected} by the server e.g. after restart of the server.
+ */
+@Singleton
+public class WebhookTokenProvider {
+
+  private static final Logger LOG = LoggerFactory.getLogger(WebhookTokenProvider.class);
+
+  private final AuthConnection authConnection;
+  private final String username;
+  private final String password;
+  private final long refreshPeriodMs;
+  private final AtomicLong requests;
+  private final AtomicLong logins;
+
+  private volatile String token;
+  private volatile long obtainedAt;
+
+  /**
+   * Creates provider which obtains the token again when it is older than the half of the ticket
+   * lifetime, zero lifetime means that the token is obtained on each call to {@link #getToken()}.
+   */
+  @Inject
+  public WebhookTokenProvider(
+      AuthConnection authConnection,
+      @Named("integration.factory.owner.username") String username,
+      @Named("integration.factory.owner.password") String password,
+      @Named("auth.sso.access_ticket_lifetime_seconds") long ticketLifetimeSeconds) {
+    this.authConnection = authConnection;
+    this.username = username;
+    this.password = password;
+    this.refreshPeriodMs = SECONDS.toMillis(ticketLifetimeSeconds) / 2;
+    this.requests = new AtomicLong();
+    this.logins = new AtomicLong();
+  }
+
+  /**
+   * Returns the token of the webhook user, authenticates the user if there is no token yet or the
+   * token is about to expire.
+   *
+   * @return the token or null if the user is not authenticated
+   * @throws ServerException when authentication request fails
+   */
+  @Nullable
+  public String getToken() throws ServerException {
+    requests.incrementAndGet();
+    final String current = token;
+    if (current == null || System.currentTimeMillis() - obtainedAt >= refreshPeriodMs) {
+      return login(current);
+    }
+    return current;
+  }
+
+  /** Returns the last obtained token without authenticating the webhook user. */
+  @Nullable
+  public String getCurrentToken() {
+    return token;
+  }
+
+  /**
+   * Authenticates the webhook user once again, unless the rejected token is already replaced with a
+   * new one by another thread.
+   *
+   * @param rejected the token rejected by the server
+   * @return the new token or null if the user is not authenticated
+   * @throws ServerException when authentication request fails
+   */
+  @Nullable
+  public String refresh(@Nullable String rejected) throws ServerException {
+    return login(rejected);
+  }
+
+  /**
+   * Sends the request created by the given supplier, if the token of the current subject is
+   * rejected the token is {@link #refresh(String) refreshed} and the request is created and sent
+   * once again. The request is created each time, as the token may be set to it on creation. If the
+   * current subject is not the webhook user the token is not refreshed, as it is different from the
+   * rejected one, and the request fails the second time.
+   */
+  public HttpJsonResponse request(Supplier<HttpJsonRequest> requestSupplier)
+      throws IOException, ApiException {
+    try {
+      return requestSupplier.get().request();
+    } catch (UnauthorizedException x) {
+      final String rejected = EnvironmentContext.getCurrent().getSubject().getToken();
+      if (rejected == null) {
+        throw x;
+      }
+      LOG.debug("Token of the webhook user '{}' is rejected, authenticating again", username);
+      refresh(rejected);
+      return requestSupplier.get().request();
+    }
+  }
+
+  /** Returns the number of times the token was requested, that is one per processed event. */
+  @Gauge(name = "webhooks.token.requests")
+  public long getRequestCount() {
+    return requests.get();
+  }
+
+  /** Returns the number of times the webhook user was authenticated. */
+  @Gauge(name = "webhooks.token.logins")
+  public long getLoginCount() {
+    return logins.get();
+  }
+
+  private synchronized String login(String stale) throws ServerException {
+    final String current = token;
+    if (current != null && !current.equals(stale)) {
+      return current;
+    }
+    final Token newToken = authConnection.authenticateUser(username, password);
+    logins.incrementAndGet();
+    if (newToken == null) {
+      token = null;
+      return null;
+    }
+    obtainedAt = System.currentTimeMillis();
+    token = newToken.getValue();
+    return token;
+  }
+}
@@ -0,0 +1,160 @@
+/*
+ * Copyright (c) [2012] - [2017] Red Hat, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *   Red Hat, Inc. - initial API and implementation
+ */
+package com.codenvy.plugin.webhooks;
+
+import static com.codenvy.plugin.webhooks.CloneUrlMatcher.DEFAULT_CLONE_URL_MATCHER;
+import static java.util.Arrays.asList;
+import static java.util.Collections.singleton;
+import static java.util.Collections.singletonList;
+import static java.util.Collections.singletonMap;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.eclipse.che.api.factory.shared.dto.FactoryDto;
+import org.eclipse.che.api.workspace.shared.dto.ProjectConfigDto;
+import org.eclipse.che.api.workspace.shared.dto.SourceStorageDto;
+import org.eclipse.che.api.workspace.shared.dto.WorkspaceConfigDto;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+/** Tests {@link FactoryIndex}. */
+public class FactoryIndexTest {
+  private static final String REPOSITORY = "https://github.com/codenvy/codenvy";
+  private static final Set<String> FACTORIES = new HashSet<>(asList("develop", "feature"));
+
+  private FactoryConnection factoryConnection;
+  private FactoryIndex index;
+
+  @BeforeMethod
+  public void setUp() throws Exception {
+    factoryConnection = mock(FactoryConnection.class);
+    FactoryDto develop = createFactory("develop");
+    FactoryDto feature = createFactory("feature");
+    when(factoryConnection.getFactory("develop")).thenReturn(develop);
+    when(factoryConnection.getFactory("feature")).thenReturn(feature);
+    index = new FactoryIndex(60_000, 100);
+  }
+
+  @Test
+  public void shouldFindMatchingFactoriesFetchingEachFactoryOnce() throws Exception {
+    assertEquals(
+        index
+            .findMatching(
+                FACTORIES, REPOSITORY, "develop", DEFAULT_CLONE_URL_MATCHER, factoryConnection)
+            .keySet(),
+        singleton("develop"));
+    assertEquals(
+        index
+            .findMatching(
+                FACTORIES, REPOSITORY, "feature", DEFAULT_CLONE_URL_MATCHER, factoryConnection)
+            .keySet(),
+        singleton("feature"));
+    assertEquals(
+        index
+            .findMatching(
+                FACTORIES,
+                REPOSITORY + "/other",
+                "develop",
+                DEFAULT_CLONE_URL_MATCHER,
+                factoryConnection)
+            .keySet(),
+        new HashSet<>());
+
+    verify(factoryConnection).getFactory("develop");
+    verify(factoryConnection).getFactory("feature");
+    assertEquals(index.getMissCount(), 2);
+    assertEquals(index.getHitCount(), 4);
+  }
+
+  @Test
+  public void shouldReturnFactoriesFetchedWhileFindingMatching() throws Exception {
+    FactoryDto develop = factoryConnection.getFactory("develop");
+
+    Map<String, FactoryDto> fetched =
+        index.findMatching(
+            FACTORIES, REPOSITORY, "develop", DEFAULT_CLONE_URL_MATCHER, factoryConnection);
+    Map<String, FactoryDto> indexed =
+        index.findMatching(
+            FACTORIES, REPOSITORY, "develop", DEFAULT_CLONE_URL_MATCHER, factoryConnection);
+
+    assertSame(fetched.get("develop"), develop);
+    assertTrue(indexed.containsKey("develop"));
+    assertNull(indexed.get("develop"));
+  }
+
+  @Test
+  public void shouldFetchFactoryAgainWhenItIsInvalidated() throws Exception {
+    index.findMatching(
+        FACTORIES, REPOSITORY, "develop", DEFAULT_CLONE_URL_MATCHER, factoryConnection);
+
+    index.invalidate("develop");
+    index.findMatching(
+        FACTORIES, REPOSITORY, "develop", DEFAULT_CLONE_URL_MATCHER, factoryConnection);
+
+    verify(factoryConnection, times(2)).getFactory("develop");
+    verify(factoryConnection).getFactory("feature");
+  }
+
+  @Test
+  public void shouldFetchFactoryAgainWhenItExpires() throws Exception {
+    index = new FactoryIndex(1, 100);
+    index.findMatching(
+        FACTORIES, REPOSITORY, "develop", DEFAULT_CLONE_URL_MATCHER, factoryConnection);
+
+    Thread.sleep(10);
+    index.findMatching(
+        FACTORIES, REPOSITORY, "develop", DEFAULT_CLONE_URL_MATCHER, factoryConnection);
+
+    verify(factoryConnection, times(2)).getFactory("develop");
+  }
+
+  @Test
+  public void shouldReadWebhookFactoryIdsOnce() throws Exception {
+    AtomicInteger reads = new AtomicInteger();
+
+    for (int i = 0; i < 3; i++) {
+      assertEquals(
+          index.getWebhookFactoryIds(
+              REPOSITORY,
+              () -> {
+                reads.incrementAndGet();
+                return FACTORIES;
+              }),
+          FACTORIES);
+    }
+
+    assertEquals(reads.get(), 1);
+  }
+
+  private static FactoryDto createFactory(String branch) {
+    SourceStorageDto source = mock(SourceStorageDto.class);
+    when(source.getLocation()).thenReturn(REPOSITORY + ".git");
+    when(source.getParameters()).thenReturn(singletonMap("branch", branch));
+    ProjectConfigDto project = mock(ProjectConfigDto.class);
+    when(project.getSource()).thenReturn(source);
+    WorkspaceConfigDto workspace = mock(WorkspaceConfigDto.class);
+    when(workspace.getProjects()).thenReturn(singletonList(project));
+    FactoryDto factory = mock(FactoryDto.class);
+    when(factory.getId()).thenReturn(branch);
+    when(factory.getWorkspace()).thenReturn(workspace);
+    return factory;
+  }
+}
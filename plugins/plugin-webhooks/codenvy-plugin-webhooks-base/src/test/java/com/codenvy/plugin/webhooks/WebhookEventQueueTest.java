@@ -0,0 +1,265 @@
+/*
+ * Copyright (c) [2012] - [2017] Red Hat, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *   Red Hat, Inc. - initial API and implementation
+ */
+package com.codenvy.plugin.webhooks;
+
+import static java.util.Collections.singletonMap;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.after;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.function.LongSupplier;
+import org.eclipse.che.api.core.ServerException;
+import org.eclipse.che.commons.lang.IoUtil;
+import org.mockito.ArgumentCaptor;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+/** Tests {@link WebhookEventQueue}. */
+public class WebhookEventQueueTest {
+  private static final String SOURCE = "test";
+
+  private Path dir;
+  private WebhookEventHandler handler;
+  private WebhookEventQueue queue;
+
+  @BeforeMethod
+  public void setUp() throws Exception {
+    dir = Files.createTempDirectory("webhooks");
+    handler = mock(WebhookEventHandler.class);
+    queue = createQueue(1, 10);
+  }
+
+  @AfterMethod
+  public void tearDown() {
+    queue.stop();
+    IoUtil.deleteRecursive(dir.toFile());
+  }
+
+  @Test
+  public void shouldProcessEnqueuedEvent() throws Exception {
+    queue.start();
+
+    queue.enqueue(SOURCE, "push", "key", "payload");
+
+    ArgumentCaptor<WebhookEvent> captor = ArgumentCaptor.forClass(WebhookEvent.class);
+    verify(handler, timeout(1000)).handle(captor.capture());
+    assertEquals(captor.getValue().getType(), "push");
+    assertEquals(captor.getValue().getPayload(), "payload");
+    awaitProcessed(1);
+    assertEquals(listEventFiles().length, 0);
+  }
+
+  @Test
+  public void shouldProcessOnlyLastOfPendingEventsWithTheSameKey() throws Exception {
+    final List<String> processed = new CopyOnWriteArrayList<>();
+    final CountDownLatch firstEventLatch = new CountDownLatch(1);
+    doAnswer(
+            invocation -> {
+              final WebhookEvent event = (WebhookEvent) invocation.getArguments()[0];
+              processed.add(event.getPayload());
+              if ("first".equals(event.getPayload())) {
+                firstEventLatch.await();
+              }
+              return null;
+            })
+        .when(handler)
+        .handle(any(WebhookEvent.class));
+    queue.start();
+    queue.enqueue(SOURCE, "push", "key", "first");
+    verify(handler, timeout(1000)).handle(any(WebhookEvent.class));
+
+    queue.enqueue(SOURCE, "push", "key", "second");
+    queue.enqueue(SOURCE, "push", "other key", "other");
+    queue.enqueue(SOURCE, "push", "key", "third");
+    queue.enqueue(SOURCE, "pull_request", null, "not coalesced");
+    queue.enqueue(SOURCE, "pull_request", null, "not coalesced");
+    firstEventLatch.countDown();
+
+    awaitProcessed(5);
+    assertEquals(
+        processed.toArray(),
+        new String[] {"first", "other", "third", "not coalesced", "not coalesced"});
+    assertEquals(queue.getCoalescedCount(), 1);
+    assertEquals(listEventFiles().length, 0);
+  }
+
+  @Test
+  public void shouldNotProcessEventsWithTheSameKeyConcurrently() throws Exception {
+    queue = createQueue(2, 10);
+    final List<String> processed = new CopyOnWriteArrayList<>();
+    final CountDownLatch firstEventLatch = new CountDownLatch(1);
+    doAnswer(
+            invocation -> {
+              final WebhookEvent event = (WebhookEvent) invocation.getArguments()[0];
+              processed.add(event.getPayload());
+              if ("first".equals(event.getPayload())) {
+                firstEventLatch.await();
+              }
+              return null;
+            })
+        .when(handler)
+        .handle(any(WebhookEvent.class));
+    queue.start();
+    queue.enqueue(SOURCE, "push", "key", "first");
+    verify(handler, timeout(1000)).handle(any(WebhookEvent.class));
+
+    queue.enqueue(SOURCE, "push", "key", "second");
+    queue.enqueue(SOURCE, "push", "other key", "other");
+
+    verify(handler, timeout(1000).times(2)).handle(any(WebhookEvent.class));
+    verify(handler, after(200).times(2)).handle(any(WebhookEvent.class));
+    assertEquals(processed.toArray(), new String[] {"first", "other"});
+    assertEquals(queue.getDepth(), 1);
+    firstEventLatch.countDown();
+
+    awaitProcessed(3);
+    assertEquals(processed.toArray(), new String[] {"first", "other", "second"});
+    assertEquals(listEventFiles().length, 0);
+  }
+
+  @Test
+  public void shouldProcessEventsLeftFromPreviousRun() throws Exception {
+    queue.enqueue(SOURCE, "push", "key", "first");
+    queue.enqueue(SOURCE, "push", null, "second");
+    assertEquals(listEventFiles().length, 2);
+
+    final WebhookEventQueue restarted = createQueue(1, 10);
+    try {
+      restarted.start();
+
+      verify(handler, timeout(1000).times(2)).handle(any(WebhookEvent.class));
+      restarted.enqueue(SOURCE, "push", null, "third");
+      verify(handler, timeout(1000).times(3)).handle(any(WebhookEvent.class));
+    } finally {
+      restarted.stop();
+    }
+  }
+
+  @Test
+  public void shouldRetryFailedEvent() throws Exception {
+    doThrow(new ServerException("failed"))
+        .doThrow(new ServerException("failed"))
+        .doNothing()
+        .when(handler)
+        .handle(any(WebhookEvent.class));
+    queue.start();
+
+    queue.enqueue(SOURCE, "push", "key", "payload");
+
+    awaitProcessed(1);
+    verify(handler, timeout(1000).times(3)).handle(any(WebhookEvent.class));
+    assertEquals(queue.getRetryCount(), 2);
+    assertEquals(queue.getDroppedCount(), 0);
+    assertEquals(listEventFiles().length, 0);
+  }
+
+  @Test
+  public void shouldDropEventWhenAllAttemptsFailed() throws Exception {
+    doThrow(new ServerException("failed")).when(handler).handle(any(WebhookEvent.class));
+    queue.start();
+
+    queue.enqueue(SOURCE, "push", "key", "payload");
+
+    verify(handler, timeout(1000).times(3)).handle(any(WebhookEvent.class));
+    await(queue::getDroppedCount, 1);
+    assertEquals(queue.getProcessedCount(), 0);
+    assertEquals(listEventFiles().length, 0);
+  }
+
+  @Test(
+    expectedExceptions = ServerException.class,
+    expectedExceptionsMessageRegExp = "Webhook event queue is full"
+  )
+  public void shouldRejectEventWhenQueueIsFull() throws Exception {
+    queue = createQueue(1, 1);
+    queue.enqueue(SOURCE, "push", null, "first");
+
+    try {
+      queue.enqueue(SOURCE, "push", null, "second");
+    } finally {
+      assertEquals(listEventFiles().length, 1);
+    }
+  }
+
+  @Test
+  public void shouldReplacePendingEventWhenQueueIsFull() throws Exception {
+    queue = createQueue(1, 1);
+    queue.enqueue(SOURCE, "push", "key", "first");
+
+    queue.enqueue(SOURCE, "push", "key", "second");
+
+    assertEquals(queue.getDepth(), 1);
+    assertEquals(listEventFiles().length, 1);
+  }
+
+  @Test
+  public void shouldReportAgeOfTheOldestPendingEventAsLag() throws Exception {
+    final CountDownLatch firstEventLatch = new CountDownLatch(1);
+    doAnswer(
+            invocation -> {
+              firstEventLatch.await();
+              return null;
+            })
+        .when(handler)
+        .handle(any(WebhookEvent.class));
+    queue.start();
+    queue.enqueue(SOURCE, "push", null, "first");
+    verify(handler, timeout(1000)).handle(any(WebhookEvent.class));
+    assertEquals(queue.getLagMs(), 0);
+
+    queue.enqueue(SOURCE, "push", null, "second");
+    Thread.sleep(50);
+    queue.enqueue(SOURCE, "push", null, "third");
+
+    assertTrue(queue.getLagMs() >= 50);
+    firstEventLatch.countDown();
+    awaitProcessed(3);
+    assertEquals(queue.getLagMs(), 0);
+  }
+
+  @Test(expectedExceptions = ServerException.class)
+  public void shouldRejectEventWithoutHandler() throws Exception {
+    queue.enqueue("unknown", "push", null, "payload");
+  }
+
+  private WebhookEventQueue createQueue(int threads, int maxSize) {
+    return new WebhookEventQueue(
+        dir.toString(), threads, maxSize, 3, 1, singletonMap(SOURCE, () -> handler));
+  }
+
+  private void awaitProcessed(long count) throws InterruptedException {
+    await(queue::getProcessedCount, count);
+  }
+
+  private static void await(LongSupplier counter, long count) throws InterruptedException {
+    for (int i = 0; i < 100 && counter.getAsLong() < count; i++) {
+      Thread.sleep(10);
+    }
+    assertEquals(counter.getAsLong(), count);
+  }
+
+  private File[] listEventFiles() {
+    return dir.toFile().listFiles((d, name) -> name.endsWith(".json"));
+  }
+}
@@ -0,0 +1,135 @@
+/*
+ * Copyright (c) [2012] - [2017] Red Hat, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *   Red Hat, Inc. - initial API and implementation
+ */
+package com.codenvy.plugin.webhooks;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.fail;
+
+import org.eclipse.che.api.auth.shared.dto.Token;
+import org.eclipse.che.api.core.UnauthorizedException;
+import org.eclipse.che.api.core.rest.HttpJsonRequest;
+import org.eclipse.che.api.core.rest.HttpJsonResponse;
+import org.eclipse.che.commons.env.EnvironmentContext;
+import org.eclipse.che.commons.subject.Subject;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+/** Tests {@link WebhookTokenProvider}. */
+public class WebhookTokenProviderTest {
+  private static final String USERNAME = "webhooks@codenvy.com";
+  private static final String PASSWORD = "secret";
+
+  private AuthConnection authConnection;
+
+  @BeforeMethod
+  public void setUp() throws Exception {
+    authConnection = mock(AuthConnection.class);
+    Token first = token("token1");
+    Token second = token("token2");
+    when(authConnection.authenticateUser(USERNAME, PASSWORD)).thenReturn(first, second);
+  }
+
+  @AfterMethod
+  public void tearDown() {
+    EnvironmentContext.reset();
+  }
+
+  @Test
+  public void shouldAuthenticateOnceWhileTokenIsNotExpired() throws Exception {
+    WebhookTokenProvider provider =
+        new WebhookTokenProvider(authConnection, USERNAME, PASSWORD, 120);
+
+    assertEquals(provider.getToken(), "token1");
+    assertEquals(provider.getToken(), "token1");
+    assertEquals(provider.getToken(), "token1");
+
+    verify(authConnection).authenticateUser(USERNAME, PASSWORD);
+    assertEquals(provider.getRequestCount(), 3);
+    assertEquals(provider.getLoginCount(), 1);
+  }
+
+  @Test
+  public void shouldAuthenticateAgainWhenTokenIsAboutToExpire() throws Exception {
+    WebhookTokenProvider provider = new WebhookTokenProvider(authConnection, USERNAME, PASSWORD, 0);
+
+    assertEquals(provider.getToken(), "token1");
+    assertEquals(provider.getToken(), "token2");
+
+    assertEquals(provider.getLoginCount(), 2);
+  }
+
+  @Test
+  public void shouldRefreshRejectedTokenOnlyOnce() throws Exception {
+    WebhookTokenProvider provider =
+        new WebhookTokenProvider(authConnection, USERNAME, PASSWORD, 120);
+    provider.getToken();
+
+    assertEquals(provider.refresh("token1"), "token2");
+    assertEquals(provider.refresh("token1"), "token2");
+    assertEquals(provider.getToken(), "token2");
+
+    verify(authConnection, times(2)).authenticateUser(USERNAME, PASSWORD);
+  }
+
+  @Test
+  public void shouldResendRequestWithNewTokenWhenTokenIsRejected() throws Exception {
+    WebhookTokenProvider provider =
+        new WebhookTokenProvider(authConnection, USERNAME, PASSWORD, 120);
+    setSubjectToken(provider.getToken());
+    HttpJsonResponse response = mock(HttpJsonResponse.class);
+    HttpJsonRequest rejected = mock(HttpJsonRequest.class);
+    when(rejected.request()).thenThrow(new UnauthorizedException("expired"));
+    HttpJsonRequest accepted = mock(HttpJsonRequest.class);
+    when(accepted.request()).thenReturn(response);
+    HttpJsonRequest[] requests = {rejected, accepted};
+    int[] created = {0};
+
+    assertSame(provider.request(() -> requests[created[0]++]), response);
+
+    assertEquals(created[0], 2);
+    assertEquals(provider.getCurrentToken(), "token2");
+    assertEquals(provider.getLoginCount(), 2);
+  }
+
+  @Test
+  public void shouldResendRequestOnlyOnce() throws Exception {
+    WebhookTokenProvider provider =
+        new WebhookTokenProvider(authConnection, USERNAME, PASSWORD, 120);
+    setSubjectToken(provider.getToken());
+    HttpJsonRequest rejected = mock(HttpJsonRequest.class);
+    when(rejected.request()).thenThrow(new UnauthorizedException("expired"));
+
+    try {
+      provider.request(() -> rejected);
+      fail("UnauthorizedException expected");
+    } catch (UnauthorizedException expected) {
+      verify(rejected, times(2)).request();
+    }
+  }
+
+  private static void setSubjectToken(String token) {
+    Subject subject = mock(Subject.class);
+    when(subject.getToken()).thenReturn(token);
+    EnvironmentContext.getCurrent().setSubject(subject);
+  }
+
+  private static Token token(String value) {
+    Token token = mock(Token.class);
+    when(token.getValue()).thenReturn(value);
+    return token;
+  }
+}
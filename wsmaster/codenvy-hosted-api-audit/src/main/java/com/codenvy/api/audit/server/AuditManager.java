@@ -10,34 +10,45 @@
  */
 package com.codenvy.api.audit.server;
 
-import static java.nio.file.Files.createTempDirectory;
-import static org.eclipse.che.multiuser.permission.workspace.server.WorkspaceDomain.DOMAIN_ID;
+import static com.google.common.base.Strings.nullToEmpty;
+import static java.nio.charset.StandardCharsets.UTF_8;
 
-import com.codenvy.api.audit.server.printer.Printer;
+import com.codenvy.api.audit.server.printer.ReportFormat;
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.io.BufferedWriter;
 import java.io.IOException;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.text.SimpleDateFormat;
-import java.util.Date;
+import java.io.OutputStreamWriter;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
-import java.util.concurrent.atomic.AtomicBoolean;
-import java.util.stream.Collectors;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 import javax.inject.Inject;
+import javax.inject.Named;
 import javax.inject.Singleton;
-import org.apache.commons.io.FileUtils;
+import javax.ws.rs.core.StreamingOutput;
 import org.eclipse.che.api.core.ConflictException;
-import org.eclipse.che.api.core.NotFoundException;
 import org.eclipse.che.api.core.Page;
-import org.eclipse.che.api.core.Page.PageRef;
 import org.eclipse.che.api.core.ServerException;
 import org.eclipse.che.api.user.server.UserManager;
 import org.eclipse.che.api.user.server.model.impl.UserImpl;
 import org.eclipse.che.api.workspace.server.WorkspaceManager;
 import org.eclipse.che.api.workspace.server.model.impl.WorkspaceImpl;
+import org.eclipse.che.commons.annotation.Nullable;
+import org.eclipse.che.commons.lang.concurrent.LoggingUncaughtExceptionHandler;
 import org.eclipse.che.multiuser.api.permission.server.PermissionsManager;
 import org.eclipse.che.multiuser.api.permission.server.model.impl.AbstractPermissions;
 import org.slf4j.Logger;
@@ -46,6 +57,16 @@ import org.slf4j.LoggerFactory;
 /**
  * Facade for audit report related operations.
  *
+ * <p>Audit report is generated while it is written to the client. Users are fetched by pages of
+ * {@code audit.report.page_size} users, pages are processed by {@code audit.report.threads} threads
+ * and printed in the order of users through a single buffered writer. Each report stores the
+ * fingerprints of users records in {@link AuditStateStore} to detect the users changed since the
+ * previous report.
+ *
+ * <p>Only one report is generated at a time. Report which is requested but not written to the
+ * client in {@link #REPORT_START_TIMEOUT_MS}, e.g. because the client disconnected, doesn't block
+ * the next report requests.
+ *
  * @author Igor Vinokur
  */
 @Singleton
@@ -53,122 +74,289 @@ public class AuditManager {
 
   private static final Logger LOG = LoggerFactory.getLogger(AuditManager.class);
 
-  private final WorkspaceManager workspaceManager;
-  private final PermissionsManager permissionsManager;
+  private static final int DEFAULT_PAGE_SIZE = 100;
+  private static final int DEFAULT_THREADS = 4;
+
+  /** Time in which requested report is to start writing, otherwise it expires. */
+  static final long REPORT_START_TIMEOUT_MS = TimeUnit.MINUTES.toMillis(1);
+
   private final UserManager userManager;
+  private final RelatedWorkspacesFinder workspacesFinder;
+  private final AuditStateStore stateStore;
 
-  private AtomicBoolean inProgress = new AtomicBoolean(false);
+  private int pageSize = DEFAULT_PAGE_SIZE;
+  private int threads = DEFAULT_THREADS;
+  @VisibleForTesting long reportStartTimeoutMs = REPORT_START_TIMEOUT_MS;
+  // report which is requested or being written, guarded by this
+  private ReportLease lease;
 
   @Inject
+  public AuditManager(
+      UserManager userManager,
+      RelatedWorkspacesFinder workspacesFinder,
+      AuditStateStore stateStore) {
+    this.userManager = userManager;
+    this.workspacesFinder = workspacesFinder;
+    this.stateStore = stateStore;
+  }
+
   public AuditManager(
       UserManager userManager,
       WorkspaceManager workspaceManager,
       PermissionsManager permissionsManager) {
-    this.userManager = userManager;
-    this.workspaceManager = workspaceManager;
-    this.permissionsManager = permissionsManager;
+    this(
+        userManager,
+        new ManagerRelatedWorkspacesFinder(workspaceManager, permissionsManager),
+        new InMemoryAuditStateStore());
+  }
+
+  @com.google.inject.Inject(optional = true)
+  void configure(
+      @Named("audit.report.page_size") int pageSize, @Named("audit.report.threads") int threads) {
+    this.pageSize = pageSize > 0 ? pageSize : DEFAULT_PAGE_SIZE;
+    this.threads = threads > 0 ? threads : DEFAULT_THREADS;
   }
 
   /**
-   * Generates file with audit report in plain/text format. The audit report contains information
-   * about license, users and their workspaces.
+   * Starts generating full audit report in plain/text format.
    *
-   * @return path of the audit report file
-   * @throws ServerException if an error occurs
+   * @see #generateAuditReport(ReportFormat, Long)
+   */
+  public StreamingOutput generateAuditReport() throws ConflictException {
+    return generateAuditReport(ReportFormat.TEXT, null);
+  }
+
+  /**
+   * Starts generating audit report in the given format. The audit report contains information about
+   * license, users and their workspaces, it is generated while the returned output is written.
+   *
+   * <p>Incremental report covers only the users whose records changed since the given time and the
+   * users removed since that time. Changes of user record are detected by comparing it with the
+   * record seen by the previous report, so a change is covered by the first report generated after
+   * it, and the time of the previous report request is to be used as the start of the next
+   * incremental report.
+   *
+   * @param format format of the report
+   * @param since time in milliseconds since which the changes are covered by incremental report, or
+   *     null to generate full report
+   * @return output which writes the audit report
    * @throws ConflictException if generating report is already in progress
    */
-  public Path generateAuditReport() throws ServerException, ConflictException {
-    if (!inProgress.compareAndSet(false, true)) {
+  public StreamingOutput generateAuditReport(ReportFormat format, @Nullable Long since)
+      throws ConflictException {
+    final ReportLease reportLease = acquireLease();
+    final long reportTime = reportLease.creationTime;
+    return output -> {
+      if (!reportLease.startWriting()) {
+        throw new IOException("Audit report request is expired, request a new report");
+      }
+      try {
+        final Writer writer = new BufferedWriter(new OutputStreamWriter(output, UTF_8));
+        printAuditReport(writer, format, since, reportTime);
+        writer.flush();
+      } finally {
+        reportLease.release();
+      }
+    };
+  }
+
+  private synchronized ReportLease acquireLease() throws ConflictException {
+    final long now = System.currentTimeMillis();
+    if (lease != null && (lease.writing || now - lease.creationTime < reportStartTimeoutMs)) {
       throw new ConflictException("Generating report is already in progress");
     }
+    lease = new ReportLease(now);
+    return lease;
+  }
 
-    Path auditReport = null;
+  private void printAuditReport(
+      Writer writer, ReportFormat format, @Nullable Long since, long reportTime)
+      throws IOException {
+    final ExecutorService executor =
+        Executors.newFixedThreadPool(
+            threads,
+            new ThreadFactoryBuilder()
+                .setNameFormat("AuditReportPrinter-%d")
+                .setUncaughtExceptionHandler(LoggingUncaughtExceptionHandler.getInstance())
+                .setDaemon(true)
+                .build());
     try {
-      auditReport = createEmptyAuditReportFile();
-      printSystemInfo(auditReport);
-      printAllUsersInfo(auditReport);
-    } catch (Exception exception) {
-      if (auditReport != null) {
-        deleteReportDirectory(auditReport);
+      format.createHeaderPrinter(writer, userManager.getTotalCount()).print();
+      // pages are printed in parallel, but no more than two pages per thread are kept in memory
+      final Deque<Future<PrintedPage>> pages = new ArrayDeque<>();
+      long nextSkip = 0;
+      for (int i = 0; i < threads * 2; i++, nextSkip += pageSize) {
+        final long skip = nextSkip;
+        pages.add(executor.submit(() -> printPage(format, since, reportTime, skip)));
+      }
+      PrintedPage page;
+      do {
+        page = pages.poll().get();
+        writer.write(page.content);
+        writer.flush();
+        final long skip = nextSkip;
+        pages.add(executor.submit(() -> printPage(format, since, reportTime, skip)));
+        nextSkip += pageSize;
+      } while (page.hasNextPage);
+      if (since != null) {
+        for (String userId : stateStore.getRemoved(since)) {
+          format.createRemovedUserPrinter(writer, userId).print();
+        }
       }
-      LOG.error(exception.getMessage(), exception);
-      throw new ServerException(exception.getMessage(), exception);
+    } catch (InterruptedException x) {
+      Thread.currentThread().interrupt();
+      throw failure(writer, format, x);
+    } catch (ExecutionException x) {
+      throw failure(writer, format, x.getCause());
+    } catch (ServerException x) {
+      throw failure(writer, format, x);
     } finally {
-      inProgress.set(false);
+      executor.shutdownNow();
     }
-
-    return auditReport;
-  }
-
-  private Path createEmptyAuditReportFile() throws IOException {
-    String dateTime = new SimpleDateFormat("dd-MM-yyyy_hh:mm:ss").format(new Date());
-    Path auditReport = createTempDirectory(null).resolve("report_" + dateTime + ".txt");
-    Files.createFile(auditReport);
-    return auditReport;
   }
 
-  void printSystemInfo(Path auditReport) throws ServerException {
-    Printer.createSystemInfoPrinter(auditReport, userManager.getTotalCount()).print();
+  private PrintedPage printPage(
+      ReportFormat format, @Nullable Long since, long reportTime, long skip)
+      throws ServerException {
+    final Page<UserImpl> page = userManager.getAll(pageSize, skip);
+    final StringWriter writer = new StringWriter();
+    printUsersInfo(writer, format, since, reportTime, page.getItems());
+    return new PrintedPage(writer.toString(), page.hasNextPage());
   }
 
-  private void printDelimiter(Path auditReport, String title) throws ServerException {
-    Printer.createDelimiterPrinter(auditReport, title).print();
+  private void printUsersInfo(
+      Writer writer,
+      ReportFormat format,
+      @Nullable Long since,
+      long reportTime,
+      List<UserImpl> users)
+      throws ServerException {
+    Map<String, RelatedWorkspaces> related;
+    try {
+      related = workspacesFinder.find(users);
+    } catch (ServerException x) {
+      LOG.error(x.getMessage(), x);
+      related = new HashMap<>();
+    }
+    final Map<String, String> fingerprints = new HashMap<>();
+    for (UserImpl user : users) {
+      final RelatedWorkspaces workspaces = related.get(user.getId());
+      if (workspaces != null) {
+        fingerprints.put(user.getId(), fingerprint(user, workspaces));
+      }
+    }
+    Map<String, Long> changeTimes;
+    try {
+      changeTimes = stateStore.update(fingerprints, reportTime);
+    } catch (ServerException x) {
+      if (since != null) {
+        throw x;
+      }
+      // full report doesn't depend on the state
+      LOG.error(x.getMessage(), x);
+      changeTimes = new HashMap<>();
+    }
+    for (UserImpl user : users) {
+      final RelatedWorkspaces workspaces = related.get(user.getId());
+      if (workspaces == null) {
+        format
+            .createErrorPrinter(
+                writer,
+                user.getId(),
+                "Failed to retrieve the list of related workspaces for user " + user.getId())
+            .print();
+      } else if (since == null || changeTimes.getOrDefault(user.getId(), reportTime) >= since) {
+        format
+            .createUserPrinter(
+                writer, user, workspaces.getWorkspaces(), workspaces.getPermissions())
+            .print();
+      }
+    }
   }
 
-  private void printAllUsersInfo(Path auditReport) throws ServerException {
-    Page<UserImpl> currentPage = userManager.getAll(30, 0);
-    do {
-      // Print users with their workspaces from current page
-      for (UserImpl user : currentPage.getItems()) {
-        List<WorkspaceImpl> workspaces;
-        try {
-          workspaces = workspaceManager.getWorkspaces(user.getId(), false);
-          Set<String> workspaceIds =
-              workspaces.stream().map(WorkspaceImpl::getId).collect(Collectors.toSet());
-          // add workspaces witch are belong to user, but user doesn't have permissions for them.
-          workspaceManager
-              .getByNamespace(user.getName(), false)
-              .stream()
-              .filter(workspace -> !workspaceIds.contains(workspace.getId()))
-              .forEach(workspaces::add);
-        } catch (ServerException exception) {
-          Printer.createErrorPrinter(
-                  auditReport,
-                  "Failed to retrieve the list of related workspaces for user " + user.getId())
-              .print();
-          continue;
-        }
-        Map<String, AbstractPermissions> wsPermissions = new HashMap<>();
-        for (WorkspaceImpl workspace : workspaces) {
-          try {
-            wsPermissions.put(
-                workspace.getId(),
-                permissionsManager.get(user.getId(), DOMAIN_ID, workspace.getId()));
-          } catch (NotFoundException | ConflictException ignored) {
-            // User doesn't have permissions for workspace
-          }
+  /** Returns hash of everything the report contains about the user. */
+  private static String fingerprint(UserImpl user, RelatedWorkspaces related) {
+    final Hasher hasher =
+        Hashing.sha256()
+            .newHasher()
+            .putString(nullToEmpty(user.getEmail()), UTF_8)
+            .putByte((byte) 0)
+            .putString(nullToEmpty(user.getName()), UTF_8);
+    final List<WorkspaceImpl> workspaces = new ArrayList<>(related.getWorkspaces());
+    workspaces.sort(Comparator.comparing(WorkspaceImpl::getId));
+    for (WorkspaceImpl workspace : workspaces) {
+      hasher
+          .putByte((byte) 0)
+          .putString(workspace.getId(), UTF_8)
+          .putByte((byte) 0)
+          .putString(nullToEmpty(workspace.getConfig().getName()), UTF_8)
+          .putByte((byte) 0)
+          .putString(nullToEmpty(workspace.getNamespace()), UTF_8);
+      final AbstractPermissions permissions = related.getPermissions().get(workspace.getId());
+      if (permissions != null) {
+        final List<String> actions = new ArrayList<>(permissions.getActions());
+        Collections.sort(actions);
+        for (String action : actions) {
+          hasher.putByte((byte) 1).putString(action, UTF_8);
         }
-        Printer.createUserPrinter(auditReport, user, workspaces, wsPermissions).print();
       }
+    }
+    return hasher.hash().toString();
+  }
 
-    } while ((currentPage = getNextPage(currentPage)) != null);
+  /** Prints the error which interrupts the report, so the report is not taken as complete. */
+  private IOException failure(Writer writer, ReportFormat format, Throwable cause)
+      throws IOException {
+    LOG.error(cause.getMessage(), cause);
+    try {
+      format
+          .createErrorPrinter(
+              writer, null, "Failed to generate audit report. " + cause.getMessage())
+          .print();
+      writer.flush();
+    } catch (ServerException | IOException x) {
+      LOG.error(x.getMessage(), x);
+    }
+    return new IOException(cause.getMessage(), cause);
   }
 
-  private Page<UserImpl> getNextPage(Page<UserImpl> currentPage) throws ServerException {
-    if (currentPage.hasNextPage()) {
-      final PageRef nextPageRef = currentPage.getNextPageRef();
-      return userManager.getAll(nextPageRef.getPageSize(), nextPageRef.getItemsBefore());
-    } else {
-      return null;
+  private static class PrintedPage {
+    final String content;
+    final boolean hasNextPage;
+
+    PrintedPage(String content, boolean hasNextPage) {
+      this.content = content;
+      this.hasNextPage = hasNextPage;
     }
   }
 
-  @VisibleForTesting
-  void deleteReportDirectory(Path auditReport) {
-    try {
-      FileUtils.deleteDirectory(auditReport.getParent().toFile());
-    } catch (IOException exception) {
-      LOG.error(exception.getMessage(), exception);
+  /** Right to generate report, it is held from the report request till the end of writing. */
+  private class ReportLease {
+    private final long creationTime;
+
+    private boolean writing;
+
+    private ReportLease(long creationTime) {
+      this.creationTime = creationTime;
+    }
+
+    /** @return false if the lease is expired and taken by another report */
+    private boolean startWriting() {
+      synchronized (AuditManager.this) {
+        if (lease != this) {
+          return false;
+        }
+        writing = true;
+        return true;
+      }
+    }
+
+    private void release() {
+      synchronized (AuditManager.this) {
+        if (lease == this) {
+          lease = null;
+        }
+      }
     }
   }
 }
@@ -10,23 +10,24 @@
  */
 package com.codenvy.api.audit.server;
 
-import static java.nio.file.Files.copy;
-
+import com.codenvy.api.audit.server.printer.ReportFormat;
 import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiOperation;
+import io.swagger.annotations.ApiParam;
 import io.swagger.annotations.ApiResponse;
 import io.swagger.annotations.ApiResponses;
-import java.io.IOException;
-import java.nio.file.Files;
+import java.text.SimpleDateFormat;
+import java.util.Date;
 import javax.inject.Inject;
+import javax.ws.rs.DefaultValue;
 import javax.ws.rs.GET;
 import javax.ws.rs.Path;
 import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
-import javax.ws.rs.core.StreamingOutput;
+import org.eclipse.che.api.core.BadRequestException;
 import org.eclipse.che.api.core.ConflictException;
-import org.eclipse.che.api.core.ServerException;
 import org.eclipse.che.api.core.rest.Service;
 
 /**
@@ -46,29 +47,45 @@ public class AuditService extends Service {
   }
 
   @GET
-  @Produces(MediaType.TEXT_PLAIN)
-  @ApiOperation(value = "Generate audit log")
+  @Produces({MediaType.TEXT_PLAIN, "text/csv", "application/x-ndjson"})
+  @ApiOperation(
+    value = "Generate audit log",
+    notes =
+        "Incremental report covers the users changed since the given time, "
+            + "the time of the previous report request is to be used as the start of the next one"
+  )
   @ApiResponses(
     value = {
       @ApiResponse(code = 200, message = "OK"),
+      @ApiResponse(code = 400, message = "Unknown report format or invalid time"),
+      @ApiResponse(code = 409, message = "Generating report is already in progress"),
       @ApiResponse(code = 500, message = "Server error")
     }
   )
-  public Response downloadReport() throws ServerException, ConflictException, IOException {
-    java.nio.file.Path report = auditManager.generateAuditReport();
-
-    StreamingOutput stream =
-        outputStream -> {
-          try {
-            copy(report, outputStream);
-          } finally {
-            auditManager.deleteReportDirectory(report);
-          }
-        };
-
-    return Response.ok(stream, MediaType.TEXT_PLAIN)
-        .header("Content-Length", String.valueOf(Files.size(report)))
-        .header("Content-Disposition", "attachment; filename=" + report.getFileName().toString())
+  public Response downloadReport(
+      @ApiParam(value = "Report format", allowableValues = "text,csv,json")
+          @QueryParam("format")
+          @DefaultValue("text")
+          String format,
+      @ApiParam("Time in milliseconds since which the changes are covered by incremental report")
+          @QueryParam("since")
+          Long since)
+      throws BadRequestException, ConflictException {
+    final ReportFormat reportFormat;
+    try {
+      reportFormat = ReportFormat.valueOf(format.toUpperCase());
+    } catch (IllegalArgumentException x) {
+      throw new BadRequestException("Unknown report format '" + format + "'");
+    }
+    if (since != null && since < 0) {
+      throw new BadRequestException("Time of incremental report must not be negative");
+    }
+    String dateTime = new SimpleDateFormat("dd-MM-yyyy_hh:mm:ss").format(new Date());
+    return Response.ok(
+            auditManager.generateAuditReport(reportFormat, since), reportFormat.getMediaType())
+        .header(
+            "Content-Disposition",
+            "attachment; filename=report_" + dateTime + "." + reportFormat.getFileExtension())
         .build();
   }
 }
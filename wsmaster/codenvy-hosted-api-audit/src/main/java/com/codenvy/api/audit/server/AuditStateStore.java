@@ -0,0 +1,52 @@
+/*
+ * Copyright (c) [2012] - [2017] Red Hat, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *   Red Hat, Inc. - initial API and implementation
+ */
+package com.codenvy.api.audit.server;
+
+import java.util.List;
+import java.util.Map;
+import org.eclipse.che.api.core.ServerException;
+
+/**
+ * Keeps fingerprints of users records in audit report together with the time of their last change,
+ * so incremental report covers only the users changed since the given time.
+ *
+ * <p>Users, workspaces and permissions don't keep the time of modification, so changes of user
+ * record are detected by each report which covers the user.
+ */
+public interface AuditStateStore {
+
+  /**
+   * Stores fingerprints of users records, the time of change is set to the given time for the users
+   * whose fingerprints differ from the stored ones or are not stored yet.
+   *
+   * @param fingerprints fingerprints of users records mapped by users identifiers
+   * @param time time of the report which computed the fingerprints
+   * @return times of the last change of users records mapped by users identifiers
+   * @throws ServerException if any error occurs
+   */
+  Map<String, Long> update(Map<String, String> fingerprints, long time) throws ServerException;
+
+  /**
+   * Marks the user as removed at the given time.
+   *
+   * @param userId identifier of removed user
+   * @param time time of removal
+   * @throws ServerException if any error occurs
+   */
+  void markRemoved(String userId, long time) throws ServerException;
+
+  /**
+   * Returns identifiers of the users removed at or after the given time.
+   *
+   * @throws ServerException if any error occurs
+   */
+  List<String> getRemoved(long since) throws ServerException;
+}
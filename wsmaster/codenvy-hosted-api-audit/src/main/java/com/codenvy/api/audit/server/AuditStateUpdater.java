@@ -0,0 +1,51 @@
+/*
+ * Copyright (c) [2012] - [2017] Red Hat, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *   Red Hat, Inc. - initial API and implementation
+ */
+package com.codenvy.api.audit.server;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import org.eclipse.che.api.core.ServerException;
+import org.eclipse.che.api.core.notification.EventService;
+import org.eclipse.che.api.core.notification.EventSubscriber;
+import org.eclipse.che.api.user.server.event.UserRemovedEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/** Marks removed users in {@link AuditStateStore}, so incremental audit report covers them. */
+@Singleton
+public class AuditStateUpdater implements EventSubscriber<UserRemovedEvent> {
+
+  private static final Logger LOG = LoggerFactory.getLogger(AuditStateUpdater.class);
+
+  private final AuditStateStore stateStore;
+
+  @Inject
+  public AuditStateUpdater(AuditStateStore stateStore) {
+    this.stateStore = stateStore;
+  }
+
+  @Inject
+  public void subscribe(EventService eventService) {
+    eventService.subscribe(this, UserRemovedEvent.class);
+  }
+
+  @Override
+  public void onEvent(UserRemovedEvent event) {
+    try {
+      stateStore.markRemoved(event.getUserId(), System.currentTimeMillis());
+    } catch (ServerException x) {
+      LOG.error(
+          "Failed to mark user '{}' removed for audit report. {}",
+          event.getUserId(),
+          x.getMessage());
+    }
+  }
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright (c) [2012] - [2017] Red Hat, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *   Red Hat, Inc. - initial API and implementation
+ */
+package com.codenvy.api.audit.server;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+import javax.inject.Singleton;
+
+/** Keeps audit state in memory, the state is lost on restart. */
+@Singleton
+public class InMemoryAuditStateStore implements AuditStateStore {
+
+  private final Map<String, State> states = new ConcurrentHashMap<>();
+
+  @Override
+  public Map<String, Long> update(Map<String, String> fingerprints, long time) {
+    final Map<String, Long> changeTimes = new HashMap<>();
+    for (Map.Entry<String, String> entry : fingerprints.entrySet()) {
+      final State state =
+          states.compute(
+              entry.getKey(),
+              (userId, existing) ->
+                  existing != null && entry.getValue().equals(existing.fingerprint)
+                      ? existing
+                      : new State(entry.getValue(), time));
+      changeTimes.put(entry.getKey(), state.changeTime);
+    }
+    return changeTimes;
+  }
+
+  @Override
+  public void markRemoved(String userId, long time) {
+    states.put(userId, new State(null, time));
+  }
+
+  @Override
+  public List<String> getRemoved(long since) {
+    return states
+        .entrySet()
+        .stream()
+        .filter(e -> e.getValue().fingerprint == null && e.getValue().changeTime >= since)
+        .map(Map.Entry::getKey)
+        .collect(Collectors.toList());
+  }
+
+  private static class State {
+    final String fingerprint;
+    final long changeTime;
+
+    State(String fingerprint, long changeTime) {
+      this.fingerprint = fingerprint;
+      this.changeTime = changeTime;
+    }
+  }
+}
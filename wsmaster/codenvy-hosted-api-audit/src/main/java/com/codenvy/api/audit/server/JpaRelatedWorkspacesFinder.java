@@ -0,0 +1,132 @@
+/*
+ * Copyright (c) [2012] - [2017] Red Hat, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *   Red Hat, Inc. - initial API and implementation
+ */
+package com.codenvy.api.audit.server;
+
+import static java.util.stream.Collectors.toList;
+import static org.eclipse.che.multiuser.permission.workspace.server.WorkspaceDomain.READ;
+
+import com.google.inject.persist.Transactional;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import javax.inject.Inject;
+import javax.inject.Provider;
+import javax.inject.Singleton;
+import javax.persistence.EntityManager;
+import org.eclipse.che.api.core.ServerException;
+import org.eclipse.che.api.user.server.model.impl.UserImpl;
+import org.eclipse.che.api.workspace.server.model.impl.WorkspaceImpl;
+import org.eclipse.che.multiuser.api.permission.server.model.impl.AbstractPermissions;
+
+/**
+ * Finds related workspaces of all the given users with three queries: workspace permissions of the
+ * users, the workspaces which users have permissions to read and the workspaces which belong to
+ * users namespaces.
+ */
+@Singleton
+public class JpaRelatedWorkspacesFinder implements RelatedWorkspacesFinder {
+
+  private final Provider<EntityManager> managerProvider;
+
+  @Inject
+  public JpaRelatedWorkspacesFinder(Provider<EntityManager> managerProvider) {
+    this.managerProvider = managerProvider;
+  }
+
+  @Override
+  @Transactional
+  public Map<String, RelatedWorkspaces> find(List<UserImpl> users) throws ServerException {
+    if (users.isEmpty()) {
+      return new HashMap<>();
+    }
+    try {
+      return doFind(users);
+    } catch (RuntimeException x) {
+      throw new ServerException(x.getLocalizedMessage(), x);
+    }
+  }
+
+  private Map<String, RelatedWorkspaces> doFind(List<UserImpl> users) {
+    final EntityManager manager = managerProvider.get();
+    final List<AbstractPermissions> workers =
+        manager
+            .createQuery(
+                "SELECT worker FROM Worker worker WHERE worker.userId IN :userIds",
+                AbstractPermissions.class)
+            .setParameter("userIds", users.stream().map(UserImpl::getId).collect(toList()))
+            .getResultList();
+    final Map<String, Map<String, AbstractPermissions>> permissions = new HashMap<>();
+    final List<String> readableIds = new ArrayList<>();
+    for (AbstractPermissions worker : workers) {
+      permissions
+          .computeIfAbsent(worker.getUserId(), id -> new HashMap<>())
+          .put(worker.getInstanceId(), worker);
+      if (worker.getActions().contains(READ)) {
+        readableIds.add(worker.getInstanceId());
+      }
+    }
+
+    final Map<String, WorkspaceImpl> workspaces = new HashMap<>();
+    if (!readableIds.isEmpty()) {
+      putAll(
+          workspaces,
+          manager
+              .createQuery("SELECT ws FROM Workspace ws WHERE ws.id IN :ids", WorkspaceImpl.class)
+              .setParameter("ids", readableIds)
+              .getResultList());
+    }
+    final Map<String, List<WorkspaceImpl>> byNamespace = new HashMap<>();
+    for (WorkspaceImpl workspace :
+        manager
+            .createQuery(
+                "SELECT ws FROM Workspace ws WHERE ws.namespace IN :namespaces",
+                WorkspaceImpl.class)
+            .setParameter("namespaces", users.stream().map(UserImpl::getName).collect(toList()))
+            .getResultList()) {
+      workspaces.put(workspace.getId(), workspace);
+      byNamespace.computeIfAbsent(workspace.getNamespace(), ns -> new ArrayList<>()).add(workspace);
+    }
+
+    final Map<String, RelatedWorkspaces> related = new HashMap<>();
+    for (UserImpl user : users) {
+      final Map<String, AbstractPermissions> userPermissions =
+          permissions.getOrDefault(user.getId(), new HashMap<>());
+      final Map<String, WorkspaceImpl> userWorkspaces = new LinkedHashMap<>();
+      for (AbstractPermissions worker : userPermissions.values()) {
+        final WorkspaceImpl workspace = workspaces.get(worker.getInstanceId());
+        if (workspace != null && worker.getActions().contains(READ)) {
+          userWorkspaces.put(workspace.getId(), workspace);
+        }
+      }
+      putAll(userWorkspaces, byNamespace.getOrDefault(user.getName(), new ArrayList<>()));
+      final Map<String, AbstractPermissions> wsPermissions = new HashMap<>();
+      for (String workspaceId : userWorkspaces.keySet()) {
+        final AbstractPermissions worker = userPermissions.get(workspaceId);
+        if (worker != null) {
+          wsPermissions.put(workspaceId, worker);
+        }
+      }
+      related.put(
+          user.getId(),
+          new RelatedWorkspaces(new ArrayList<>(userWorkspaces.values()), wsPermissions));
+    }
+    return related;
+  }
+
+  private static void putAll(Map<String, WorkspaceImpl> map, Collection<WorkspaceImpl> workspaces) {
+    for (WorkspaceImpl workspace : workspaces) {
+      map.putIfAbsent(workspace.getId(), workspace);
+    }
+  }
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright (c) [2012] - [2017] Red Hat, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *   Red Hat, Inc. - initial API and implementation
+ */
+package com.codenvy.api.audit.server;
+
+import static org.eclipse.che.multiuser.permission.workspace.server.WorkspaceDomain.DOMAIN_ID;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import org.eclipse.che.api.core.ConflictException;
+import org.eclipse.che.api.core.NotFoundException;
+import org.eclipse.che.api.core.ServerException;
+import org.eclipse.che.api.user.server.model.impl.UserImpl;
+import org.eclipse.che.api.workspace.server.WorkspaceManager;
+import org.eclipse.che.api.workspace.server.model.impl.WorkspaceImpl;
+import org.eclipse.che.multiuser.api.permission.server.PermissionsManager;
+import org.eclipse.che.multiuser.api.permission.server.model.impl.AbstractPermissions;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Finds related workspaces of each user with {@link WorkspaceManager} and {@link
+ * PermissionsManager}, which requires two requests for workspaces and a request for permissions in
+ * each of the workspaces per user.
+ */
+@Singleton
+public class ManagerRelatedWorkspacesFinder implements RelatedWorkspacesFinder {
+
+  private static final Logger LOG = LoggerFactory.getLogger(ManagerRelatedWorkspacesFinder.class);
+
+  private final WorkspaceManager workspaceManager;
+  private final PermissionsManager permissionsManager;
+
+  @Inject
+  public ManagerRelatedWorkspacesFinder(
+      WorkspaceManager workspaceManager, PermissionsManager permissionsManager) {
+    this.workspaceManager = workspaceManager;
+    this.permissionsManager = permissionsManager;
+  }
+
+  @Override
+  public Map<String, RelatedWorkspaces> find(List<UserImpl> users) throws ServerException {
+    final Map<String, RelatedWorkspaces> related = new HashMap<>();
+    for (UserImpl user : users) {
+      List<WorkspaceImpl> workspaces;
+      try {
+        workspaces = workspaceManager.getWorkspaces(user.getId(), false);
+        Set<String> workspaceIds =
+            workspaces.stream().map(WorkspaceImpl::getId).collect(Collectors.toSet());
+        // add workspaces witch are belong to user, but user doesn't have permissions for them.
+        workspaceManager
+            .getByNamespace(user.getName(), false)
+            .stream()
+            .filter(workspace -> !workspaceIds.contains(workspace.getId()))
+            .forEach(workspaces::add);
+      } catch (ServerException x) {
+        LOG.error(x.getMessage(), x);
+        continue;
+      }
+      Map<String, AbstractPermissions> wsPermissions = new HashMap<>();
+      for (WorkspaceImpl workspace : workspaces) {
+        try {
+          wsPermissions.put(
+              workspace.getId(),
+              permissionsManager.get(user.getId(), DOMAIN_ID, workspace.getId()));
+        } catch (NotFoundException | ConflictException ignored) {
+          // User doesn't have permissions for workspace
+        }
+      }
+      related.put(user.getId(), new RelatedWorkspaces(workspaces, wsPermissions));
+    }
+    return related;
+  }
+}
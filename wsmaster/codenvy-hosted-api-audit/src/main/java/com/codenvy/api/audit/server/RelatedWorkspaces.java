@@ -0,0 +1,42 @@
+/*
+ * Copyright (c) [2012] - [2017] Red Hat, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *   Red Hat, Inc. - initial API and implementation
+ */
+package com.codenvy.api.audit.server;
+
+import java.util.List;
+import java.util.Map;
+import org.eclipse.che.api.workspace.server.model.impl.WorkspaceImpl;
+import org.eclipse.che.multiuser.api.permission.server.model.impl.AbstractPermissions;
+
+/** Workspaces related to user together with user permissions in them. */
+public class RelatedWorkspaces {
+
+  private final List<WorkspaceImpl> workspaces;
+  private final Map<String, AbstractPermissions> permissions;
+
+  /**
+   * @param workspaces workspaces related to user
+   * @param permissions user permissions mapped by workspace identifiers, workspaces in which user
+   *     doesn't have permissions are not present in the map
+   */
+  public RelatedWorkspaces(
+      List<WorkspaceImpl> workspaces, Map<String, AbstractPermissions> permissions) {
+    this.workspaces = workspaces;
+    this.permissions = permissions;
+  }
+
+  public List<WorkspaceImpl> getWorkspaces() {
+    return workspaces;
+  }
+
+  public Map<String, AbstractPermissions> getPermissions() {
+    return permissions;
+  }
+}
@@ -0,0 +1,31 @@
+/*
+ * Copyright (c) [2012] - [2017] Red Hat, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *   Red Hat, Inc. - initial API and implementation
+ */
+package com.codenvy.api.audit.server;
+
+import java.util.List;
+import java.util.Map;
+import org.eclipse.che.api.core.ServerException;
+import org.eclipse.che.api.user.server.model.impl.UserImpl;
+
+/** Finds workspaces related to users for audit report. */
+public interface RelatedWorkspacesFinder {
+
+  /**
+   * Finds workspaces related to each of the given users, which are the workspaces user has
+   * permissions to read and the workspaces which belong to user's namespace.
+   *
+   * @param users users to find related workspaces for
+   * @return related workspaces mapped by user identifiers, the users whose related workspaces can't
+   *     be retrieved are not present in the map
+   * @throws ServerException if related workspaces can't be retrieved for all the users
+   */
+  Map<String, RelatedWorkspaces> find(List<UserImpl> users) throws ServerException;
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright (c) [2012] - [2017] Red Hat, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *   Red Hat, Inc. - initial API and implementation
+ */
+package com.codenvy.api.audit.server.jpa;
+
+import javax.persistence.Cacheable;
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.NamedQueries;
+import javax.persistence.NamedQuery;
+import javax.persistence.Table;
+
+/** Fingerprint of user record in audit report and the time of its last change. */
+@Entity(name = "AuditUserState")
+@Table(name = "codenvy_audit_user_state")
+@Cacheable(false)
+@NamedQueries({
+  @NamedQuery(
+    name = "AuditUserState.getByUserIds",
+    query = "SELECT s " + "FROM AuditUserState s " + "WHERE s.userId IN :userIds"
+  ),
+  @NamedQuery(
+    name = "AuditUserState.getRemovedSince",
+    query =
+        "SELECT s.userId "
+            + "FROM AuditUserState s "
+            + "WHERE s.fingerprint IS NULL "
+            + "  AND s.changeTime >= :since"
+  )
+})
+public class AuditUserStateEntity {
+  @Id
+  @Column(name = "user_id")
+  private String userId;
+
+  /** Fingerprint of user record, or null if user is removed. */
+  @Column(name = "fingerprint")
+  private String fingerprint;
+
+  @Column(name = "change_time", nullable = false)
+  private long changeTime;
+
+  public AuditUserStateEntity() {}
+
+  public AuditUserStateEntity(String userId, String fingerprint, long changeTime) {
+    this.userId = userId;
+    this.fingerprint = fingerprint;
+    this.changeTime = changeTime;
+  }
+
+  public String getUserId() {
+    return userId;
+  }
+
+  public String getFingerprint() {
+    return fingerprint;
+  }
+
+  public void setFingerprint(String fingerprint) {
+    this.fingerprint = fingerprint;
+  }
+
+  public long getChangeTime() {
+    return changeTime;
+  }
+
+  public void setChangeTime(long changeTime) {
+    this.changeTime = changeTime;
+  }
+}
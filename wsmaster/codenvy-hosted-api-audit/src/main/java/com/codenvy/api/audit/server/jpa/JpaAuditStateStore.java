@@ -0,0 +1,110 @@
+/*
+ * Copyright (c) [2012] - [2017] Red Hat, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *   Red Hat, Inc. - initial API and implementation
+ */
+package com.codenvy.api.audit.server.jpa;
+
+import com.codenvy.api.audit.server.AuditStateStore;
+import com.google.inject.persist.Transactional;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import javax.inject.Inject;
+import javax.inject.Provider;
+import javax.inject.Singleton;
+import javax.persistence.EntityManager;
+import org.eclipse.che.api.core.ServerException;
+
+/** JPA based implementation of {@link AuditStateStore}. */
+@Singleton
+public class JpaAuditStateStore implements AuditStateStore {
+
+  private final Provider<EntityManager> managerProvider;
+
+  @Inject
+  public JpaAuditStateStore(Provider<EntityManager> managerProvider) {
+    this.managerProvider = managerProvider;
+  }
+
+  @Override
+  public Map<String, Long> update(Map<String, String> fingerprints, long time)
+      throws ServerException {
+    if (fingerprints.isEmpty()) {
+      return new HashMap<>();
+    }
+    try {
+      return doUpdate(fingerprints, time);
+    } catch (RuntimeException x) {
+      throw new ServerException(x.getLocalizedMessage(), x);
+    }
+  }
+
+  @Override
+  public void markRemoved(String userId, long time) throws ServerException {
+    try {
+      doMarkRemoved(userId, time);
+    } catch (RuntimeException x) {
+      throw new ServerException(x.getLocalizedMessage(), x);
+    }
+  }
+
+  @Override
+  @Transactional
+  public List<String> getRemoved(long since) throws ServerException {
+    try {
+      return managerProvider
+          .get()
+          .createNamedQuery("AuditUserState.getRemovedSince", String.class)
+          .setParameter("since", since)
+          .getResultList();
+    } catch (RuntimeException x) {
+      throw new ServerException(x.getLocalizedMessage(), x);
+    }
+  }
+
+  @Transactional
+  protected Map<String, Long> doUpdate(Map<String, String> fingerprints, long time) {
+    final EntityManager manager = managerProvider.get();
+    final Map<String, Long> changeTimes = new HashMap<>();
+    for (AuditUserStateEntity state :
+        manager
+            .createNamedQuery("AuditUserState.getByUserIds", AuditUserStateEntity.class)
+            .setParameter("userIds", new ArrayList<>(fingerprints.keySet()))
+            .getResultList()) {
+      final String fingerprint = fingerprints.get(state.getUserId());
+      if (!fingerprint.equals(state.getFingerprint())) {
+        state.setFingerprint(fingerprint);
+        state.setChangeTime(time);
+      }
+      changeTimes.put(state.getUserId(), state.getChangeTime());
+    }
+    for (Map.Entry<String, String> entry : fingerprints.entrySet()) {
+      if (!changeTimes.containsKey(entry.getKey())) {
+        manager.persist(new AuditUserStateEntity(entry.getKey(), entry.getValue(), time));
+        changeTimes.put(entry.getKey(), time);
+      }
+    }
+    manager.flush();
+    return changeTimes;
+  }
+
+  @Transactional
+  protected void doMarkRemoved(String userId, long time) {
+    final EntityManager manager = managerProvider.get();
+    final AuditUserStateEntity state = manager.find(AuditUserStateEntity.class, userId);
+    if (state == null) {
+      manager.persist(new AuditUserStateEntity(userId, null, time));
+    } else {
+      state.setFingerprint(null);
+      state.setChangeTime(time);
+    }
+    manager.flush();
+  }
+}
@@ -0,0 +1,53 @@
+/*
+ * Copyright (c) [2012] - [2017] Red Hat, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *   Red Hat, Inc. - initial API and implementation
+ */
+package com.codenvy.api.audit.server.printer;
+
+import java.io.Writer;
+import java.util.List;
+import org.eclipse.che.api.core.ServerException;
+
+/** Prints rows of comma separated values, values are quoted as described in RFC 4180. */
+public class CsvPrinter extends Printer {
+
+  private List<List<String>> rows;
+
+  public CsvPrinter(Writer auditReport, List<List<String>> rows) {
+    super(auditReport);
+
+    this.rows = rows;
+  }
+
+  @Override
+  public void print() throws ServerException {
+    final StringBuilder sb = new StringBuilder();
+    for (List<String> row : rows) {
+      for (int i = 0; i < row.size(); i++) {
+        if (i > 0) {
+          sb.append(',');
+        }
+        appendValue(sb, row.get(i));
+      }
+      sb.append("\r\n");
+    }
+    printRow(sb.toString());
+  }
+
+  private static void appendValue(StringBuilder sb, String value) {
+    if (value.indexOf(',') == -1
+        && value.indexOf('"') == -1
+        && value.indexOf('\n') == -1
+        && value.indexOf('\r') == -1) {
+      sb.append(value);
+    } else {
+      sb.append('"').append(value.replace("\"", "\"\"")).append('"');
+    }
+  }
+}
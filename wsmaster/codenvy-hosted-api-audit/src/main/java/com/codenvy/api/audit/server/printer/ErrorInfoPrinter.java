@@ -10,7 +10,7 @@
  */
 package com.codenvy.api.audit.server.printer;
 
-import java.nio.file.Path;
+import java.io.Writer;
 import org.eclipse.che.api.core.ServerException;
 
 /**
@@ -22,7 +22,7 @@ public class ErrorInfoPrinter extends Printer {
 
   private String error;
 
-  public ErrorInfoPrinter(Path auditReport, String error) {
+  public ErrorInfoPrinter(Writer auditReport, String error) {
     super(auditReport);
 
     this.error = error;
@@ -0,0 +1,32 @@
+/*
+ * Copyright (c) [2012] - [2017] Red Hat, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *   Red Hat, Inc. - initial API and implementation
+ */
+package com.codenvy.api.audit.server.printer;
+
+import com.google.gson.JsonObject;
+import java.io.Writer;
+import org.eclipse.che.api.core.ServerException;
+
+/** Prints JSON object in a single line. */
+public class JsonPrinter extends Printer {
+
+  private JsonObject object;
+
+  public JsonPrinter(Writer auditReport, JsonObject object) {
+    super(auditReport);
+
+    this.object = object;
+  }
+
+  @Override
+  public void print() throws ServerException {
+    printRow(object.toString() + "\n");
+  }
+}
@@ -10,12 +10,10 @@
  */
 package com.codenvy.api.audit.server.printer;
 
-import static com.google.common.io.Files.append;
 import static java.lang.String.format;
 
 import java.io.IOException;
-import java.nio.charset.Charset;
-import java.nio.file.Path;
+import java.io.Writer;
 import java.util.List;
 import java.util.Map;
 import org.eclipse.che.api.core.ServerException;
@@ -35,9 +33,9 @@ public abstract class Printer {
 
   private static final Logger LOG = LoggerFactory.getLogger(Printer.class);
 
-  private Path auditReport;
+  private Writer auditReport;
 
-  public Printer(Path auditReport) {
+  public Printer(Writer auditReport) {
     this.auditReport = auditReport;
   }
 
@@ -50,7 +48,7 @@ public abstract class Printer {
 
   protected void printRow(String row) throws ServerException {
     try {
-      append(row, auditReport.toFile(), Charset.defaultCharset());
+      auditReport.write(row);
     } catch (IOException e) {
       LOG.error(e.getMessage(), e);
       throw new ServerException("Failed to generate audit report. " + e.getMessage(), e);
@@ -67,23 +65,23 @@ public abstract class Printer {
     printRow(format("[ERROR] %s!\n", error));
   }
 
-  public static Printer createSystemInfoPrinter(Path auditReport, long allUsersNumber) {
+  public static Printer createSystemInfoPrinter(Writer auditReport, long allUsersNumber) {
     return new SystemInfoPrinter(auditReport, allUsersNumber);
   }
 
   public static Printer createUserPrinter(
-      Path auditReport,
+      Writer auditReport,
       UserImpl user,
       List<WorkspaceImpl> workspaces,
       Map<String, AbstractPermissions> wsPermissions) {
     return new UserInfoPrinter(auditReport, user, workspaces, wsPermissions);
   }
 
-  public static Printer createErrorPrinter(Path auditReport, String error) {
+  public static Printer createErrorPrinter(Writer auditReport, String error) {
     return new ErrorInfoPrinter(auditReport, error);
   }
 
-  public static DelimiterPrinter createDelimiterPrinter(Path auditReport, String title) {
+  public static DelimiterPrinter createDelimiterPrinter(Writer auditReport, String title) {
     return new DelimiterPrinter(auditReport, title);
   }
 }
@@ -0,0 +1,33 @@
+/*
+ * Copyright (c) [2012] - [2017] Red Hat, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *   Red Hat, Inc. - initial API and implementation
+ */
+package com.codenvy.api.audit.server.printer;
+
+import static java.lang.String.format;
+
+import java.io.Writer;
+import org.eclipse.che.api.core.ServerException;
+
+/** Prints removed user in format: User <user id> is removed */
+public class RemovedUserInfoPrinter extends Printer {
+
+  private String userId;
+
+  public RemovedUserInfoPrinter(Writer auditReport, String userId) {
+    super(auditReport);
+
+    this.userId = userId;
+  }
+
+  @Override
+  public void print() throws ServerException {
+    printRow(format("User %s is removed\n", userId));
+  }
+}
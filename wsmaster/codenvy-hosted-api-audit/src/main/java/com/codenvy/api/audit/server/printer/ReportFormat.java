@@ -0,0 +1,236 @@
+/*
+ * Copyright (c) [2012] - [2017] Red Hat, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *   Red Hat, Inc. - initial API and implementation
+ */
+package com.codenvy.api.audit.server.printer;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.singletonList;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import org.eclipse.che.api.user.server.model.impl.UserImpl;
+import org.eclipse.che.api.workspace.server.model.impl.WorkspaceImpl;
+import org.eclipse.che.commons.annotation.Nullable;
+import org.eclipse.che.multiuser.api.permission.server.model.impl.AbstractPermissions;
+
+/** Format of audit report, creates the printers of report parts. */
+public enum ReportFormat {
+
+  /** Human readable text, see {@link UserInfoPrinter}. */
+  TEXT("text/plain;charset=UTF-8", "txt") {
+    @Override
+    public Printer createHeaderPrinter(Writer auditReport, long allUsersNumber) {
+      return new SystemInfoPrinter(auditReport, allUsersNumber);
+    }
+
+    @Override
+    public Printer createUserPrinter(
+        Writer auditReport,
+        UserImpl user,
+        List<WorkspaceImpl> workspaces,
+        Map<String, AbstractPermissions> wsPermissions) {
+      return new UserInfoPrinter(auditReport, user, workspaces, wsPermissions);
+    }
+
+    @Override
+    public Printer createRemovedUserPrinter(Writer auditReport, String userId) {
+      return new RemovedUserInfoPrinter(auditReport, userId);
+    }
+
+    @Override
+    public Printer createErrorPrinter(Writer auditReport, @Nullable String userId, String error) {
+      return new ErrorInfoPrinter(auditReport, error);
+    }
+  },
+
+  /**
+   * Comma separated values with a header row and a row per user workspace, user without workspaces
+   * has a single row with empty workspace columns. Permissions are separated by spaces.
+   */
+  CSV("text/csv;charset=UTF-8", "csv") {
+    @Override
+    public Printer createHeaderPrinter(Writer auditReport, long allUsersNumber) {
+      return new CsvPrinter(
+          auditReport,
+          singletonList(
+              asList(
+                  "user_id",
+                  "user_email",
+                  "workspace_id",
+                  "workspace_name",
+                  "is_owner",
+                  "permissions",
+                  "user_removed",
+                  "error")));
+    }
+
+    @Override
+    public Printer createUserPrinter(
+        Writer auditReport,
+        UserImpl user,
+        List<WorkspaceImpl> workspaces,
+        Map<String, AbstractPermissions> wsPermissions) {
+      final List<List<String>> rows = new ArrayList<>();
+      for (WorkspaceImpl workspace : sorted(user, workspaces)) {
+        final AbstractPermissions permissions = wsPermissions.get(workspace.getId());
+        rows.add(
+            asList(
+                user.getId(),
+                user.getEmail(),
+                workspace.getId(),
+                workspace.getConfig().getName(),
+                Boolean.toString(isOwner(user, workspace)),
+                permissions == null ? "" : String.join(" ", permissions.getActions()),
+                "false",
+                ""));
+      }
+      if (rows.isEmpty()) {
+        rows.add(asList(user.getId(), user.getEmail(), "", "", "", "", "false", ""));
+      }
+      return new CsvPrinter(auditReport, rows);
+    }
+
+    @Override
+    public Printer createRemovedUserPrinter(Writer auditReport, String userId) {
+      return new CsvPrinter(
+          auditReport, singletonList(asList(userId, "", "", "", "", "", "true", "")));
+    }
+
+    @Override
+    public Printer createErrorPrinter(Writer auditReport, @Nullable String userId, String error) {
+      return new CsvPrinter(
+          auditReport,
+          singletonList(asList(userId == null ? "" : userId, "", "", "", "", "", "", error)));
+    }
+  },
+
+  /**
+   * JSON object per line, user is printed as {@code {"userId":..., "email":..., "workspaces":
+   * [{"id":..., "name":..., "isOwner":..., "permissions":[...]}]}}, removed user as {@code
+   * {"userId":..., "removed":true}} and error as {@code {"userId":..., "error":...}}.
+   */
+  JSON("application/x-ndjson;charset=UTF-8", "jsonl") {
+    @Override
+    public Printer createHeaderPrinter(Writer auditReport, long allUsersNumber) {
+      return new EmptyPrinter(auditReport);
+    }
+
+    @Override
+    public Printer createUserPrinter(
+        Writer auditReport,
+        UserImpl user,
+        List<WorkspaceImpl> workspaces,
+        Map<String, AbstractPermissions> wsPermissions) {
+      final JsonArray workspacesArray = new JsonArray();
+      for (WorkspaceImpl workspace : sorted(user, workspaces)) {
+        final JsonObject workspaceObject = new JsonObject();
+        workspaceObject.addProperty("id", workspace.getId());
+        workspaceObject.addProperty("name", workspace.getConfig().getName());
+        workspaceObject.addProperty("isOwner", isOwner(user, workspace));
+        final JsonArray actions = new JsonArray();
+        final AbstractPermissions permissions = wsPermissions.get(workspace.getId());
+        if (permissions != null) {
+          permissions.getActions().forEach(actions::add);
+        }
+        workspaceObject.add("permissions", actions);
+        workspacesArray.add(workspaceObject);
+      }
+      final JsonObject userObject = new JsonObject();
+      userObject.addProperty("userId", user.getId());
+      userObject.addProperty("email", user.getEmail());
+      userObject.add("workspaces", workspacesArray);
+      return new JsonPrinter(auditReport, userObject);
+    }
+
+    @Override
+    public Printer createRemovedUserPrinter(Writer auditReport, String userId) {
+      final JsonObject object = new JsonObject();
+      object.addProperty("userId", userId);
+      object.addProperty("removed", true);
+      return new JsonPrinter(auditReport, object);
+    }
+
+    @Override
+    public Printer createErrorPrinter(Writer auditReport, @Nullable String userId, String error) {
+      final JsonObject object = new JsonObject();
+      if (userId != null) {
+        object.addProperty("userId", userId);
+      }
+      object.addProperty("error", error);
+      return new JsonPrinter(auditReport, object);
+    }
+  };
+
+  private final String mediaType;
+  private final String fileExtension;
+
+  ReportFormat(String mediaType, String fileExtension) {
+    this.mediaType = mediaType;
+    this.fileExtension = fileExtension;
+  }
+
+  /** Returns media type of the report. */
+  public String getMediaType() {
+    return mediaType;
+  }
+
+  /** Returns extension of the report file. */
+  public String getFileExtension() {
+    return fileExtension;
+  }
+
+  /** Creates printer of the report header, which is printed once at the beginning. */
+  public abstract Printer createHeaderPrinter(Writer auditReport, long allUsersNumber);
+
+  /** Creates printer of user and related workspaces. */
+  public abstract Printer createUserPrinter(
+      Writer auditReport,
+      UserImpl user,
+      List<WorkspaceImpl> workspaces,
+      Map<String, AbstractPermissions> wsPermissions);
+
+  /** Creates printer of the user removed since the time incremental report covers. */
+  public abstract Printer createRemovedUserPrinter(Writer auditReport, String userId);
+
+  /**
+   * Creates printer of error.
+   *
+   * @param auditReport writer of the audit report
+   * @param userId identifier of the user the error relates to, or null if the error relates to the
+   *     whole report
+   * @param error text of error
+   */
+  public abstract Printer createErrorPrinter(
+      Writer auditReport, @Nullable String userId, String error);
+
+  private static List<WorkspaceImpl> sorted(UserImpl user, List<WorkspaceImpl> workspaces) {
+    final List<WorkspaceImpl> sorted = new ArrayList<>(workspaces);
+    sorted.sort(UserInfoPrinter.workspacesOrder(user));
+    return sorted;
+  }
+
+  private static boolean isOwner(UserImpl user, WorkspaceImpl workspace) {
+    return workspace.getNamespace().equals(user.getName());
+  }
+
+  /** Prints nothing. */
+  private static class EmptyPrinter extends Printer {
+    EmptyPrinter(Writer auditReport) {
+      super(auditReport);
+    }
+
+    @Override
+    public void print() {}
+  }
+}
@@ -12,7 +12,7 @@ package com.codenvy.api.audit.server.printer;
 
 import static java.lang.String.format;
 
-import java.nio.file.Path;
+import java.io.Writer;
 import org.eclipse.che.api.core.ServerException;
 
 /**
@@ -25,7 +25,7 @@ public class SystemInfoPrinter extends Printer {
 
   private long allUsersNumber;
 
-  public SystemInfoPrinter(Path auditReport, long allUsersNumber) {
+  public SystemInfoPrinter(Writer auditReport, long allUsersNumber) {
     super(auditReport);
     this.allUsersNumber = allUsersNumber;
   }
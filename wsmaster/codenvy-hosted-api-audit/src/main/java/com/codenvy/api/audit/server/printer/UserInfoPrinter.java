@@ -13,7 +13,8 @@ package com.codenvy.api.audit.server.printer;
 import static com.google.common.collect.ComparisonChain.start;
 import static java.util.Collections.sort;
 
-import java.nio.file.Path;
+import java.io.Writer;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Map;
 import org.eclipse.che.api.core.ServerException;
@@ -41,13 +42,13 @@ public class UserInfoPrinter extends Printer {
   private Map<String, AbstractPermissions> wsPermissions;
 
   /**
-   * @param auditReport file of audit report
+   * @param auditReport writer of the audit report
    * @param user information about user collected in {@link UserImpl} object
    * @param workspaces list of workspaces that are related to given user
    * @param wsPermissions map of permissions to workspaces
    */
   public UserInfoPrinter(
-      Path auditReport,
+      Writer auditReport,
       UserImpl user,
       List<WorkspaceImpl> workspaces,
       Map<String, AbstractPermissions> wsPermissions) {
@@ -78,20 +79,23 @@ public class UserInfoPrinter extends Printer {
             + " workspace"
             + (permissionsNumber > 1 | permissionsNumber == 0 ? "s" : "")
             + "\n");
-    sort(
-        workspaces,
-        (ws1, ws2) ->
-            start()
-                .compareTrueFirst(
-                    ws1.getNamespace().equals(user.getName()),
-                    ws2.getNamespace().equals(user.getName()))
-                .compare(ws1.getConfig().getName(), ws2.getConfig().getName())
-                .result());
+    sort(workspaces, workspacesOrder(user));
     for (WorkspaceImpl workspace : workspaces) {
       printUserWorkspaceInfo(workspace);
     }
   }
 
+  /** Returns the order of user workspaces in report, own workspaces first, then by name. */
+  static Comparator<WorkspaceImpl> workspacesOrder(UserImpl user) {
+    return (ws1, ws2) ->
+        start()
+            .compareTrueFirst(
+                ws1.getNamespace().equals(user.getName()),
+                ws2.getNamespace().equals(user.getName()))
+            .compare(ws1.getConfig().getName(), ws2.getConfig().getName())
+            .result();
+  }
+
   private void printUserWorkspaceInfo(WorkspaceImpl workspace) throws ServerException {
     printRow(
         "   └ "
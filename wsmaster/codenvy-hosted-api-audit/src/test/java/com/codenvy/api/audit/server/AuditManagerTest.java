@@ -10,19 +10,27 @@
  */
 package com.codenvy.api.audit.server;
 
-import static java.nio.file.Files.createTempFile;
+import static java.nio.charset.StandardCharsets.UTF_8;
 import static java.util.Arrays.asList;
+import static java.util.Collections.emptyList;
 import static java.util.Collections.singletonList;
-import static org.apache.commons.io.FileUtils.readFileToString;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyListOf;
+import static org.mockito.Matchers.anyLong;
 import static org.mockito.Matchers.anyString;
 import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.fail;
 
-import java.nio.file.Path;
+import com.codenvy.api.audit.server.printer.ReportFormat;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
+import javax.ws.rs.core.StreamingOutput;
+import org.eclipse.che.api.core.ConflictException;
 import org.eclipse.che.api.core.Page;
 import org.eclipse.che.api.core.ServerException;
 import org.eclipse.che.api.user.server.UserManager;
@@ -34,7 +42,6 @@ import org.eclipse.che.multiuser.api.permission.server.PermissionsManager;
 import org.eclipse.che.multiuser.api.permission.server.model.impl.AbstractPermissions;
 import org.mockito.Mock;
 import org.mockito.testng.MockitoTestNGListener;
-import org.testng.annotations.AfterMethod;
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Listeners;
 import org.testng.annotations.Test;
@@ -47,21 +54,23 @@ import org.testng.annotations.Test;
 @Listeners(value = MockitoTestNGListener.class)
 public class AuditManagerTest {
 
-  private Path auditReport;
-
   @Mock private UserManager userManager;
   @Mock private WorkspaceManager workspaceManager;
   @Mock private PermissionsManager permissionsManager;
   @Mock private WorkspaceImpl workspace1;
   @Mock private WorkspaceImpl workspace2;
 
+  private InMemoryAuditStateStore stateStore;
   private AuditManager auditManager;
 
   @BeforeMethod
   public void setUp() throws Exception {
-    auditReport = createTempFile("report", ".txt");
-
-    auditManager = new AuditManager(userManager, workspaceManager, permissionsManager);
+    stateStore = new InMemoryAuditStateStore();
+    auditManager =
+        new AuditManager(
+            userManager,
+            new ManagerRelatedWorkspacesFinder(workspaceManager, permissionsManager),
+            stateStore);
 
     // User
     UserImpl user1 = mock(UserImpl.class);
@@ -114,25 +123,22 @@ public class AuditManagerTest {
     Page page = mock(Page.class);
     when(page.getItems()).thenReturn(asList(user1, user2));
     when(page.hasNextPage()).thenReturn(false);
-    when(userManager.getAll(1, 0)).thenReturn(page);
-    when(userManager.getAll(30, 0)).thenReturn(page);
+    Page emptyPage = mock(Page.class);
+    when(emptyPage.getItems()).thenReturn(emptyList());
+    when(userManager.getAll(anyInt(), anyLong())).thenReturn(emptyPage);
+    when(userManager.getAll(anyInt(), eq(0L))).thenReturn(page);
 
     when(userManager.getTotalCount()).thenReturn(2L);
   }
 
-  @AfterMethod
-  public void tearDown() throws Exception {
-    auditManager.deleteReportDirectory(auditReport);
-  }
-
   @Test
   public void shouldReturnFullAuditReport() throws Exception {
     // when
-    auditReport = auditManager.generateAuditReport();
+    String auditReport = generateAuditReport();
 
     // then
     assertEquals(
-        readFileToString(auditReport.toFile()),
+        auditReport,
         "Number of users: 2\n"
             + "user@email.com is owner of 1 workspace and has permissions in 2 workspaces\n"
             + "   └ Workspace1Name, is owner: true, permissions: [read, use, run, configure, setPermissions, delete]\n"
@@ -154,11 +160,11 @@ public class AuditManagerTest {
         .thenReturn(asList(workspace1, workspace2));
 
     // when
-    auditReport = auditManager.generateAuditReport();
+    String auditReport = generateAuditReport();
 
     // then
     assertEquals(
-        readFileToString(auditReport.toFile()),
+        auditReport,
         "Number of users: 2\n"
             + "user@email.com is owner of 0 workspaces and has permissions in 2 workspaces\n"
             + "   └ Workspace1Name, is owner: false, permissions: [read, use, run, configure, setPermissions, delete]\n"
@@ -176,14 +182,241 @@ public class AuditManagerTest {
         .thenThrow(new ServerException("Failed to retrieve workspaces"));
 
     // when
-    auditReport = auditManager.generateAuditReport();
+    String auditReport = generateAuditReport();
 
     // then
     assertEquals(
-        readFileToString(auditReport.toFile()),
+        auditReport,
         "Number of users: 2\n"
             + "[ERROR] Failed to retrieve the list of related workspaces for user User1Id!\n"
             + "user2@email.com is owner of 1 workspace and has permissions in 1 workspace\n"
             + "   └ Workspace2Name, is owner: true, permissions: [read, use, run, configure, setPermissions, delete]\n");
   }
+
+  @Test
+  public void shouldPrintPagesOfUsersInOrder() throws Exception {
+    // given
+    auditManager.configure(1, 3);
+    List<UserImpl> users = new ArrayList<>();
+    for (int i = 0; i < 10; i++) {
+      UserImpl user = mock(UserImpl.class);
+      when(user.getId()).thenReturn("Id" + i);
+      when(user.getName()).thenReturn("User" + i);
+      when(user.getEmail()).thenReturn("user" + i + "@email.com");
+      when(workspaceManager.getWorkspaces(eq("Id" + i), eq(false))).thenReturn(new ArrayList<>());
+      users.add(user);
+      Page page = mock(Page.class);
+      when(page.getItems()).thenReturn(singletonList(user));
+      when(page.hasNextPage()).thenReturn(i < 9);
+      when(userManager.getAll(1, i)).thenReturn(page);
+    }
+    when(userManager.getTotalCount()).thenReturn(10L);
+
+    // when
+    String auditReport = generateAuditReport();
+
+    // then
+    StringBuilder expected = new StringBuilder("Number of users: 10\n");
+    for (int i = 0; i < 10; i++) {
+      expected.append(
+          "user" + i + "@email.com is owner of 0 workspaces and has permissions in 0 workspaces\n");
+    }
+    assertEquals(auditReport, expected.toString());
+  }
+
+  @Test
+  public void shouldPrintErrorForEachUserOfPageIfFailedToFindRelatedWorkspaces() throws Exception {
+    // given
+    RelatedWorkspacesFinder finder = mock(RelatedWorkspacesFinder.class);
+    when(finder.find(anyListOf(UserImpl.class))).thenThrow(new ServerException("error"));
+    auditManager = new AuditManager(userManager, finder, stateStore);
+
+    // when
+    String auditReport = generateAuditReport();
+
+    // then
+    assertEquals(
+        auditReport,
+        "Number of users: 2\n"
+            + "[ERROR] Failed to retrieve the list of related workspaces for user User1Id!\n"
+            + "[ERROR] Failed to retrieve the list of related workspaces for user User2Id!\n");
+  }
+
+  @Test
+  public void shouldPrintErrorAndFailIfFailedToRetrieveUsers() throws Exception {
+    // given
+    when(userManager.getAll(anyInt(), eq(0L))).thenThrow(new ServerException("Users error"));
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+    // when
+    try {
+      auditManager.generateAuditReport().write(output);
+      fail("Report must not be completed");
+    } catch (IOException expected) {
+    }
+
+    // then
+    assertEquals(
+        new String(output.toByteArray(), UTF_8),
+        "Number of users: 2\n" + "[ERROR] Failed to generate audit report. Users error!\n");
+    // the next report can be generated
+    auditManager.generateAuditReport();
+  }
+
+  @Test(expectedExceptions = ConflictException.class)
+  public void shouldNotGenerateReportWhileAnotherReportIsInProgress() throws Exception {
+    auditManager.generateAuditReport();
+    auditManager.generateAuditReport();
+  }
+
+  @Test
+  public void shouldGenerateReportIfRequestedReportIsNotWrittenInTimeout() throws Exception {
+    // given
+    auditManager.reportStartTimeoutMs = 0;
+    StreamingOutput expired = auditManager.generateAuditReport();
+
+    // when
+    String auditReport = generateAuditReport();
+
+    // then
+    assertEquals(auditReport.split("\n")[0], "Number of users: 2");
+    try {
+      expired.write(new ByteArrayOutputStream());
+      fail("Expired report must not be written");
+    } catch (IOException expected) {
+    }
+  }
+
+  @Test
+  public void shouldNotExpireReportWhichIsBeingWritten() throws Exception {
+    // given
+    auditManager.reportStartTimeoutMs = 0;
+    List<Exception> concurrentRequestErrors = new ArrayList<>();
+    when(userManager.getAll(anyInt(), eq(0L)))
+        .thenAnswer(
+            invocation -> {
+              try {
+                auditManager.generateAuditReport();
+              } catch (ConflictException x) {
+                concurrentRequestErrors.add(x);
+              }
+              return mock(Page.class);
+            });
+
+    // when
+    auditManager.generateAuditReport().write(new ByteArrayOutputStream());
+
+    // then
+    assertEquals(concurrentRequestErrors.size(), 1);
+  }
+
+  @Test
+  public void shouldReturnAuditReportInCsvFormat() throws Exception {
+    // given
+    WorkspaceConfigImpl quotedConfig = mock(WorkspaceConfigImpl.class);
+    when(quotedConfig.getName()).thenReturn("Workspace1, \"Name\"");
+    when(workspace1.getConfig()).thenReturn(quotedConfig);
+
+    // when
+    String auditReport = generateAuditReport(ReportFormat.CSV, null);
+
+    // then
+    assertEquals(
+        auditReport,
+        "user_id,user_email,workspace_id,workspace_name,is_owner,permissions,user_removed,error\r\n"
+            + "User1Id,user@email.com,Workspace1Id,\"Workspace1, \"\"Name\"\"\",true,"
+            + "read use run configure setPermissions delete,false,\r\n"
+            + "User1Id,user@email.com,Workspace2Id,Workspace2Name,false,"
+            + "read use run configure setPermissions,false,\r\n"
+            + "User2Id,user2@email.com,Workspace2Id,Workspace2Name,true,"
+            + "read use run configure setPermissions delete,false,\r\n");
+  }
+
+  @Test
+  public void shouldReturnAuditReportInJsonFormat() throws Exception {
+    // given
+    when(workspaceManager.getWorkspaces(eq("User1Id"), eq(false)))
+        .thenThrow(new ServerException("Failed to retrieve workspaces"));
+
+    // when
+    String auditReport = generateAuditReport(ReportFormat.JSON, null);
+
+    // then
+    assertEquals(
+        auditReport,
+        "{\"userId\":\"User1Id\",\"error\":\"Failed to retrieve the list of related workspaces "
+            + "for user User1Id\"}\n"
+            + "{\"userId\":\"User2Id\",\"email\":\"user2@email.com\",\"workspaces\":["
+            + "{\"id\":\"Workspace2Id\",\"name\":\"Workspace2Name\",\"isOwner\":true,"
+            + "\"permissions\":[\"read\",\"use\",\"run\",\"configure\",\"setPermissions\",\"delete\"]}"
+            + "]}\n");
+  }
+
+  @Test
+  public void shouldReturnOnlyUsersChangedSinceGivenTimeInIncrementalReport() throws Exception {
+    // given
+    generateAuditReport(ReportFormat.TEXT, null);
+    long since = waitForNextMillisecond();
+    String unchanged = generateAuditReport(ReportFormat.TEXT, since);
+    AbstractPermissions changedPermissions = mock(AbstractPermissions.class);
+    when(changedPermissions.getUserId()).thenReturn("User1Id");
+    when(changedPermissions.getInstanceId()).thenReturn("Workspace2Id");
+    when(changedPermissions.getActions()).thenReturn(asList("read", "use"));
+    when(permissionsManager.get(eq("User1Id"), anyString(), eq("Workspace2Id")))
+        .thenReturn(changedPermissions);
+
+    // when
+    String changed = generateAuditReport(ReportFormat.TEXT, since);
+
+    // then
+    assertEquals(unchanged, "Number of users: 2\n");
+    assertEquals(
+        changed,
+        "Number of users: 2\n"
+            + "user@email.com is owner of 1 workspace and has permissions in 2 workspaces\n"
+            + "   └ Workspace1Name, is owner: true, permissions: [read, use, run, configure, setPermissions, delete]\n"
+            + "   └ Workspace2Name, is owner: false, permissions: [read, use]\n");
+  }
+
+  @Test
+  public void shouldReturnUsersRemovedSinceGivenTimeInIncrementalReport() throws Exception {
+    // given
+    generateAuditReport(ReportFormat.TEXT, null);
+    long since = waitForNextMillisecond();
+    stateStore.markRemoved("User3Id", since - 1);
+    stateStore.markRemoved("User4Id", since);
+
+    // when
+    String auditReport = generateAuditReport(ReportFormat.CSV, Long.MAX_VALUE);
+    String removedReport = generateAuditReport(ReportFormat.CSV, since);
+
+    // then
+    assertEquals(
+        auditReport,
+        "user_id,user_email,workspace_id,workspace_name,is_owner,permissions,user_removed,error\r\n");
+    assertEquals(
+        removedReport,
+        "user_id,user_email,workspace_id,workspace_name,is_owner,permissions,user_removed,error\r\n"
+            + "User4Id,,,,,,true,\r\n");
+  }
+
+  /** Returns current time once it is later than the time the previous report was generated at. */
+  private static long waitForNextMillisecond() throws InterruptedException {
+    long start = System.currentTimeMillis();
+    long now;
+    while ((now = System.currentTimeMillis()) == start) {
+      Thread.sleep(1);
+    }
+    return now;
+  }
+
+  private String generateAuditReport() throws Exception {
+    return generateAuditReport(ReportFormat.TEXT, null);
+  }
+
+  private String generateAuditReport(ReportFormat format, Long since) throws Exception {
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    auditManager.generateAuditReport(format, since).write(output);
+    return new String(output.toByteArray(), UTF_8);
+  }
 }
@@ -10,6 +10,8 @@
  */
 package com.codenvy.api.dao.authentication;
 
+import static java.util.stream.Collectors.toSet;
+
 import java.util.Set;
 
 /**
@@ -45,10 +47,48 @@ public interface TicketManager {
    */
   AccessTicket removeTicket(String accessToken);
 
+  /**
+   * Register SSO client for the ticket with given token.
+   *
+   * @param accessToken unique token of access ticket
+   * @param clientUrl url of the client which uses the ticket
+   */
+  default void registerClientUrl(String accessToken, String clientUrl) {
+    final AccessTicket accessTicket = getAccessTicket(accessToken);
+    if (accessTicket != null) {
+      accessTicket.registerClientUrl(clientUrl);
+    }
+  }
+
+  /**
+   * Unregister SSO client for the ticket with given token.
+   *
+   * @param accessToken unique token of access ticket
+   * @param clientUrl url of the client to unregister
+   */
+  default void unRegisterClientUrl(String accessToken, String clientUrl) {
+    final AccessTicket accessTicket = getAccessTicket(accessToken);
+    if (accessTicket != null) {
+      accessTicket.unRegisterClientUrl(clientUrl);
+    }
+  }
+
   /**
    * Get all access tickets.
    *
    * @return set of access tickets
    */
   Set<AccessTicket> getAccessTickets();
+
+  /**
+   * Get access tickets which were created before the given time.
+   *
+   * @param time time in milliseconds
+   * @return set of access tickets which creation time is less than the given time
+   */
+  default Set<AccessTicket> getAccessTicketsCreatedBefore(long time) {
+    return getAccessTickets().stream()
+        .filter(ticket -> ticket.getCreationTime() < time)
+        .collect(toSet());
+  }
 }
@@ -11,10 +11,15 @@
 package com.codenvy.api.workspace;
 
 import static java.lang.Thread.currentThread;
+import static org.eclipse.che.dto.server.DtoFactory.newDto;
 
+import com.codahale.metrics.annotation.Gauge;
+import com.codenvy.service.system.SystemRamInfo;
 import com.codenvy.service.system.SystemRamInfoProvider;
 import com.google.common.annotations.VisibleForTesting;
-import java.util.concurrent.Semaphore;
+import com.google.common.collect.ImmutableMap;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.PostConstruct;
 import javax.inject.Inject;
 import javax.inject.Named;
 import javax.inject.Singleton;
@@ -22,14 +27,19 @@ import org.eclipse.che.account.api.AccountManager;
 import org.eclipse.che.api.core.ConflictException;
 import org.eclipse.che.api.core.NotFoundException;
 import org.eclipse.che.api.core.ServerException;
+import org.eclipse.che.api.core.model.workspace.Environment;
 import org.eclipse.che.api.core.model.workspace.WorkspaceConfig;
 import org.eclipse.che.api.core.notification.EventService;
+import org.eclipse.che.api.core.notification.EventSubscriber;
+import org.eclipse.che.api.core.rest.shared.dto.ExtendedError;
 import org.eclipse.che.api.machine.server.spi.SnapshotDao;
+import org.eclipse.che.api.machine.shared.dto.event.MachineStatusEvent;
 import org.eclipse.che.api.workspace.server.WorkspaceManager;
 import org.eclipse.che.api.workspace.server.WorkspaceRuntimes;
 import org.eclipse.che.api.workspace.server.WorkspaceSharedPool;
 import org.eclipse.che.api.workspace.server.model.impl.WorkspaceImpl;
 import org.eclipse.che.api.workspace.server.spi.WorkspaceDao;
+import org.eclipse.che.api.workspace.shared.dto.event.WorkspaceStatusEvent;
 import org.eclipse.che.commons.annotation.Nullable;
 import org.eclipse.che.multiuser.resource.api.usage.ResourceUsageManager;
 import org.eclipse.che.multiuser.resource.api.usage.ResourcesLocks;
@@ -49,9 +59,19 @@ import org.eclipse.che.multiuser.resource.api.workspace.LimitsCheckingWorkspaceM
 @Singleton
 public class SystemRamCheckingWorkspaceManager extends LimitsCheckingWorkspaceManager {
 
+  /** Time after which RAM reservation is dropped if workspace start doesn't finish. */
+  private static final long RAM_RESERVATION_TIMEOUT_MS = TimeUnit.MINUTES.toMillis(10);
+
   private final SystemRamInfoProvider systemRamInfoProvider;
+  private final EnvironmentRamCalculator environmentRamCalculator;
+  private final EventService eventService;
+  private final WorkspaceRuntimes runtimes;
+  private final SystemRamReservations ramReservations;
+
+  @VisibleForTesting final EventSubscriber<WorkspaceStatusEvent> ramReservationsReleaser;
+  @VisibleForTesting final EventSubscriber<MachineStatusEvent> machineRamReleaser;
 
-  @VisibleForTesting Semaphore startSemaphore;
+  @VisibleForTesting WorkspaceStartQueue startQueue;
 
   @Inject
   public SystemRamCheckingWorkspaceManager(
@@ -66,6 +86,8 @@ public class SystemRamCheckingWorkspaceManager extends LimitsCheckingWorkspaceMa
       // own injects
       @Named("che.limits.workspace.env.ram") String maxRamPerEnv,
       @Named("limits.workspace.start.throughput") int maxSameTimeStartWSRequests,
+      @Named("limits.workspace.start.queue.size") int maxStartQueueSize,
+      @Named("limits.workspace.start.queue.max_wait_ms") long maxStartWaitMs,
       SystemRamInfoProvider systemRamInfoProvider,
       EnvironmentRamCalculator environmentRamCalculator,
       ResourceUsageManager resourceUsageManager,
@@ -84,17 +106,60 @@ public class SystemRamCheckingWorkspaceManager extends LimitsCheckingWorkspaceMa
         resourceUsageManager,
         resourcesLocks);
     this.systemRamInfoProvider = systemRamInfoProvider;
+    this.environmentRamCalculator = environmentRamCalculator;
+    this.eventService = eventService;
+    this.runtimes = runtimes;
+    this.ramReservations = new SystemRamReservations(RAM_RESERVATION_TIMEOUT_MS);
+    // event type is resolved from the generic interface, so lambda can't be used here
+    this.ramReservationsReleaser =
+        new EventSubscriber<WorkspaceStatusEvent>() {
+          @Override
+          public void onEvent(WorkspaceStatusEvent event) {
+            switch (event.getEventType()) {
+              case RUNNING:
+              case STOPPED:
+              case ERROR:
+                ramReservations.release(event.getWorkspaceId());
+                break;
+              default:
+                break;
+            }
+          }
+        };
+    this.machineRamReleaser =
+        new EventSubscriber<MachineStatusEvent>() {
+          @Override
+          public void onEvent(MachineStatusEvent event) {
+            if (event.getEventType() == MachineStatusEvent.EventType.RUNNING) {
+              releaseMachineRam(event.getWorkspaceId(), event.getMachineId());
+            }
+          }
+        };
 
     if (maxSameTimeStartWSRequests > 0) {
-      this.startSemaphore = new Semaphore(maxSameTimeStartWSRequests);
+      this.startQueue =
+          new WorkspaceStartQueue(maxSameTimeStartWSRequests, maxStartQueueSize, maxStartWaitMs);
     }
   }
 
+  @PostConstruct
+  @VisibleForTesting
+  void subscribe() {
+    eventService.subscribe(ramReservationsReleaser);
+    eventService.subscribe(machineRamReleaser);
+  }
+
   @Override
   public WorkspaceImpl startWorkspace(
       String workspaceId, @Nullable String envName, @Nullable Boolean restore)
       throws NotFoundException, ServerException, ConflictException {
+    final WorkspaceImpl workspace = getWorkspace(workspaceId);
+    final WorkspaceConfig config = workspace.getConfig();
+    final Environment environment =
+        config.getEnvironments().get(envName == null ? config.getDefaultEnv() : envName);
     return checkSystemRamLimitAndPropagateLimitedThroughputStart(
+        workspace.getNamespace(),
+        environment,
         () -> super.startWorkspace(workspaceId, envName, restore));
   }
 
@@ -102,9 +167,36 @@ public class SystemRamCheckingWorkspaceManager extends LimitsCheckingWorkspaceMa
   public WorkspaceImpl startWorkspace(WorkspaceConfig config, String namespace, boolean isTemporary)
       throws ServerException, NotFoundException, ConflictException {
     return checkSystemRamLimitAndPropagateLimitedThroughputStart(
+        namespace,
+        config.getEnvironments().get(config.getDefaultEnv()),
         () -> super.startWorkspace(config, namespace, isTemporary));
   }
 
+  @Gauge(name = "workspace.start.queue.size")
+  public int getStartQueueSize() {
+    return startQueue == null ? 0 : startQueue.getQueueSize();
+  }
+
+  @Gauge(name = "workspace.start.queue.active_starts")
+  public int getActiveStarts() {
+    return startQueue == null ? 0 : startQueue.getActiveStarts();
+  }
+
+  @Gauge(name = "workspace.start.queue.average_wait_time_ms")
+  public long getAverageStartWaitTime() {
+    return startQueue == null ? 0 : startQueue.getAverageWaitTimeMs();
+  }
+
+  @Gauge(name = "workspace.start.queue.timed_out")
+  public long getTimedOutStarts() {
+    return startQueue == null ? 0 : startQueue.getTimedOutCount();
+  }
+
+  @Gauge(name = "workspace.start.reserved_ram_bytes")
+  public long getReservedRam() {
+    return ramReservations.getReserved();
+  }
+
   /**
    * Defines callback which should be called when all necessary checks are performed. Helps to
    * propagate actions to the super class.
@@ -117,49 +209,96 @@ public class SystemRamCheckingWorkspaceManager extends LimitsCheckingWorkspaceMa
   }
 
   /**
-   * One of the checks in {@link #checkSystemRamLimitAndPropagateStart(WorkspaceCallback)} is needed
-   * to deny starting workspace, if system RAM limit exceeded. This check may be slow because it is
-   * based on request to swarm for memory amount allocated on all nodes, but it can't be performed
-   * more than specified times at the same time, and the semaphore is used to control that. The
-   * semaphore is a trade off between speed and risk to exceed system RAM limit. In the worst case
-   * specified number of permits to start workspace can happen at the same time after the actually
-   * system limit allows to start only one workspace, all permits will be allowed to start
-   * workspace. If more than specified number of permits to start workspace happens, they will wait
-   * in a queue. limits.workspace.start.throughput property configures how many permits can be
-   * handled at the same time.
+   * Waits for admission of the start in the start queue and then performs {@link
+   * #checkSystemRamLimitAndPropagateStart(long, WorkspaceCallback)}. The queue limits how many
+   * starts are performed at the same time, the limit is configured by {@code
+   * limits.workspace.start.throughput} property. Starts of different accounts are admitted in
+   * round-robin order, so a storm of starts in one organization doesn't block the others. If start
+   * is not admitted in {@code limits.workspace.start.queue.max_wait_ms} or the queue already holds
+   * {@code limits.workspace.start.queue.size} starts, {@link ConflictException} is thrown with the
+   * position of the start in the queue and estimated waiting time, so the request thread is not
+   * blocked indefinitely.
    */
   @VisibleForTesting
   <T extends WorkspaceImpl> T checkSystemRamLimitAndPropagateLimitedThroughputStart(
-      WorkspaceCallback<T> callback) throws ServerException, NotFoundException, ConflictException {
-    if (startSemaphore == null) {
-      return checkSystemRamLimitAndPropagateStart(callback);
-    } else {
-      try {
-        startSemaphore.acquire();
-        return checkSystemRamLimitAndPropagateStart(callback);
-      } catch (InterruptedException e) {
-        currentThread().interrupt();
-        throw new ServerException(e.getMessage(), e);
-      } finally {
-        startSemaphore.release();
-      }
+      String namespace, @Nullable Environment environment, WorkspaceCallback<T> callback)
+      throws ServerException, NotFoundException, ConflictException {
+    final long environmentRam =
+        environment == null ? 0 : environmentRamCalculator.calculate(environment) * 1024 * 1024;
+    if (startQueue == null) {
+      return checkSystemRamLimitAndPropagateStart(environmentRam, callback);
+    }
+    final WorkspaceStartQueue.Permit permit;
+    try {
+      permit = startQueue.acquire(namespace);
+    } catch (InterruptedException e) {
+      currentThread().interrupt();
+      throw new ServerException(e.getMessage(), e);
+    } catch (WorkspaceStartQueue.AdmissionTimeoutException e) {
+      final long etaSeconds = TimeUnit.MILLISECONDS.toSeconds(e.getEstimatedWaitTimeMs());
+      throw new ConflictException(
+          newDto(ExtendedError.class)
+              .withMessage(
+                  String.format(
+                      "Too many workspaces are being started at the moment. Your workspace start "
+                          + "is number %d in the queue, please try again in %d seconds.",
+                      e.getPosition(), Math.max(1, etaSeconds)))
+              .withAttributes(
+                  ImmutableMap.of(
+                      "position",
+                      Integer.toString(e.getPosition()),
+                      "eta",
+                      Long.toString(etaSeconds))));
+    }
+    try {
+      return checkSystemRamLimitAndPropagateStart(environmentRam, callback);
+    } finally {
+      permit.release();
     }
   }
 
   /**
-   * Checks that starting workspace won't exceed system RAM limit. Then, if previous check is
-   * passed, checks that starting workspace won't exceed user's started workspaces number limit.
-   * Throws {@link LimitExceededException} in the case of constraints violation, otherwise performs
-   * {@code callback.call()} and returns its result.
+   * Reserves RAM of the starting environment if it doesn't exceed system RAM limit together with
+   * the RAM used by the system and reserved by other starts, then performs {@code callback.call()}
+   * and returns its result. Throws {@link LimitExceededException} if there is not enough RAM or
+   * there is no node which can hold the environment, see {@link SystemRamReservations}. The
+   * reservation is kept until the workspace is running or its start fails, RAM of each machine is
+   * released from it when the machine is created, since from then on the system reports it as used.
    */
   @VisibleForTesting
-  <T extends WorkspaceImpl> T checkSystemRamLimitAndPropagateStart(WorkspaceCallback<T> callback)
+  <T extends WorkspaceImpl> T checkSystemRamLimitAndPropagateStart(
+      long environmentRam, WorkspaceCallback<T> callback)
       throws ServerException, NotFoundException, ConflictException {
-    if (systemRamInfoProvider.getSystemRamInfo().isSystemRamLimitExceeded()) {
-      throw new LimitExceededException(
-          "Low RAM. Your workspace cannot be started until the system has more RAM available.");
+    final SystemRamInfo systemRamInfo = systemRamInfoProvider.getSystemRamInfo();
+    final SystemRamReservations.Reservation reservation =
+        ramReservations.reserve(environmentRam, systemRamInfo);
+
+    boolean started = false;
+    try {
+      final T workspace = callback.call();
+      if (workspace != null) {
+        ramReservations.bind(reservation, workspace.getId());
+        started = true;
+      }
+      return workspace;
+    } finally {
+      if (!started) {
+        ramReservations.cancel(reservation);
+      }
     }
+  }
 
-    return callback.call();
+  private void releaseMachineRam(String workspaceId, String machineId) {
+    final long machineRam;
+    try {
+      machineRam =
+          runtimes.getMachine(workspaceId, machineId).getConfig().getLimits().getRam()
+              * 1024L
+              * 1024L;
+    } catch (NotFoundException x) {
+      // machine is already destroyed, reservation is released by workspace status event
+      return;
+    }
+    ramReservations.release(workspaceId, machineRam);
   }
 }
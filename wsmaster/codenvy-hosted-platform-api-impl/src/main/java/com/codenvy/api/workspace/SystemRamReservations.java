@@ -0,0 +1,251 @@
+/*
+ * Copyright (c) [2012] - [2017] Red Hat, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *   Red Hat, Inc. - initial API and implementation
+ */
+package com.codenvy.api.workspace;
+
+import static java.lang.String.format;
+import static org.eclipse.che.commons.lang.Size.toHumanSize;
+
+import com.codenvy.service.system.SystemRamInfo;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import org.eclipse.che.multiuser.resource.api.workspace.LimitExceededException;
+
+/**
+ * Keeps RAM of environments which are admitted to start but may be not reported by the system as
+ * used yet.
+ *
+ * <p>Reservation is made when start is admitted and is kept until workspace is started or its start
+ * fails, so environments which are started at the same time can't exceed system RAM limit together.
+ * RAM of each machine is released from the reservation as soon as the machine is created, since
+ * from then on it is reported by the system as used. Releases which happen before the reservation
+ * is bound to the workspace are remembered and applied when it is bound. Reservations which are not
+ * released in {@code reservationTimeoutMs} are dropped, which protects from leaks when the
+ * workspace status event is missed.
+ */
+class SystemRamReservations {
+
+  private final long reservationTimeoutMs;
+  private final Map<Object, Reservation> reservations;
+  // releases of the workspaces which may be not bound to their reservations yet
+  private final Map<String, List<EarlyRelease>> earlyReleases;
+
+  private long reserved;
+  private long sequence;
+
+  SystemRamReservations(long reservationTimeoutMs) {
+    this.reservationTimeoutMs = reservationTimeoutMs;
+    this.reservations = new HashMap<>();
+    this.earlyReleases = new HashMap<>();
+  }
+
+  /**
+   * Reserves RAM if it fits into the system RAM limit together with the already used and reserved
+   * RAM and if all the reserved RAM can be placed on the nodes of the system.
+   *
+   * <p>Placement is checked by first-fit decreasing: reservations are placed one by one starting
+   * from the biggest one onto the first node which has enough free RAM. It is a predictive check,
+   * actual placement is done by the system later, but it rejects starts which can't fit into any
+   * node before images are built and containers are created.
+   *
+   * @param ram RAM to reserve in bytes
+   * @param systemRamInfo the current system RAM info
+   * @return reservation
+   * @throws LimitExceededException if the system doesn't have enough RAM
+   */
+  synchronized Reservation reserve(long ram, SystemRamInfo systemRamInfo)
+      throws LimitExceededException {
+    dropExpired();
+    if (systemRamInfo.getSystemRamUsed() + reserved + ram > systemRamInfo.getSystemRamLimit()) {
+      throw new LimitExceededException(
+          "Low RAM. Your workspace cannot be started until the system has more RAM available.");
+    }
+    final List<Long> nodesFreeRam = systemRamInfo.getNodesFreeRam();
+    if (!nodesFreeRam.isEmpty() && !canBePlaced(ram, nodesFreeRam)) {
+      throw new LimitExceededException(
+          format(
+              "Low RAM. Your workspace requires %s of RAM but none of the system nodes has that "
+                  + "much free RAM. Your workspace cannot be started until the system has more RAM "
+                  + "available.",
+              toHumanSize(ram)));
+    }
+    final Reservation reservation = new Reservation(ram, ++sequence);
+    reservations.put(reservation, reservation);
+    reserved += ram;
+    return reservation;
+  }
+
+  /**
+   * Binds reservation to the workspace, so it can be released by {@link #release(String)}. RAM
+   * which is released for the workspace after the reservation is made is released from it.
+   */
+  synchronized void bind(Reservation reservation, String workspaceId) {
+    if (reservations.remove(reservation) == null) {
+      return;
+    }
+    final List<EarlyRelease> released = earlyReleases.remove(workspaceId);
+    if (released != null) {
+      for (EarlyRelease release : released) {
+        if (release.sequence > reservation.sequence) {
+          free(reservation, release.ram);
+        }
+      }
+    }
+    if (reservation.ram > 0) {
+      final Reservation previous = reservations.put(workspaceId, reservation);
+      if (previous != null) {
+        reserved -= previous.ram;
+      }
+    }
+    pruneEarlyReleases();
+  }
+
+  /** Releases reservation which is not bound to a workspace. */
+  synchronized void cancel(Reservation reservation) {
+    if (reservations.remove(reservation) != null) {
+      reserved -= reservation.ram;
+    }
+    pruneEarlyReleases();
+  }
+
+  /** Releases reservation of the workspace if it exists. */
+  synchronized void release(String workspaceId) {
+    release(workspaceId, Long.MAX_VALUE);
+  }
+
+  /**
+   * Releases the given amount of RAM from reservation of the workspace. If workspace is not bound
+   * to a reservation while other reservations are not bound yet, the release is remembered and
+   * applied when the workspace is bound.
+   *
+   * @param workspaceId the id of the workspace
+   * @param ram RAM to release in bytes
+   */
+  synchronized void release(String workspaceId, long ram) {
+    final Reservation reservation = reservations.get(workspaceId);
+    if (reservation != null) {
+      free(reservation, ram);
+      if (reservation.ram == 0) {
+        reservations.remove(workspaceId);
+      }
+    } else if (hasUnbound()) {
+      earlyReleases
+          .computeIfAbsent(workspaceId, id -> new ArrayList<>())
+          .add(new EarlyRelease(ram, ++sequence));
+    }
+  }
+
+  /** Returns the amount of reserved RAM in bytes. */
+  synchronized long getReserved() {
+    return reserved;
+  }
+
+  private boolean canBePlaced(long ram, List<Long> nodesFreeRam) {
+    final long[] free = new long[nodesFreeRam.size()];
+    for (int i = 0; i < free.length; i++) {
+      free[i] = nodesFreeRam.get(i);
+    }
+    final long[] sizes = new long[reservations.size() + 1];
+    int i = 0;
+    for (Reservation reservation : reservations.values()) {
+      sizes[i++] = reservation.ram;
+    }
+    sizes[i] = ram;
+    Arrays.sort(sizes);
+    for (int s = sizes.length - 1; s >= 0; s--) {
+      if (sizes[s] == 0) {
+        break;
+      }
+      int node = 0;
+      while (node < free.length && free[node] < sizes[s]) {
+        node++;
+      }
+      if (node == free.length) {
+        return false;
+      }
+      free[node] -= sizes[s];
+    }
+    return true;
+  }
+
+  private void free(Reservation reservation, long ram) {
+    final long freed = Math.min(ram, reservation.ram);
+    reservation.ram -= freed;
+    reserved -= freed;
+  }
+
+  private void dropExpired() {
+    final long expirationTime = System.currentTimeMillis() - reservationTimeoutMs;
+    for (Iterator<Reservation> it = reservations.values().iterator(); it.hasNext(); ) {
+      final Reservation reservation = it.next();
+      if (reservation.creationTime < expirationTime) {
+        it.remove();
+        reserved -= reservation.ram;
+      }
+    }
+    pruneEarlyReleases();
+  }
+
+  private boolean hasUnbound() {
+    for (Map.Entry<Object, Reservation> entry : reservations.entrySet()) {
+      if (entry.getKey() == entry.getValue()) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /** Forgets the releases which happened before any of the unbound reservations was made. */
+  private void pruneEarlyReleases() {
+    long oldestUnbound = Long.MAX_VALUE;
+    for (Map.Entry<Object, Reservation> entry : reservations.entrySet()) {
+      if (entry.getKey() == entry.getValue()) {
+        oldestUnbound = Math.min(oldestUnbound, entry.getValue().sequence);
+      }
+    }
+    for (Iterator<List<EarlyRelease>> it = earlyReleases.values().iterator(); it.hasNext(); ) {
+      final List<EarlyRelease> released = it.next();
+      final long oldest = oldestUnbound;
+      released.removeIf(release -> release.sequence < oldest);
+      if (released.isEmpty()) {
+        it.remove();
+      }
+    }
+  }
+
+  /** RAM reserved for a single start. */
+  static class Reservation {
+    private final long creationTime;
+    private final long sequence;
+
+    private long ram;
+
+    private Reservation(long ram, long sequence) {
+      this.ram = ram;
+      this.sequence = sequence;
+      this.creationTime = System.currentTimeMillis();
+    }
+  }
+
+  /** RAM released for the workspace which was not bound to its reservation. */
+  private static class EarlyRelease {
+    private final long ram;
+    private final long sequence;
+
+    private EarlyRelease(long ram, long sequence) {
+      this.ram = ram;
+      this.sequence = sequence;
+    }
+  }
+}
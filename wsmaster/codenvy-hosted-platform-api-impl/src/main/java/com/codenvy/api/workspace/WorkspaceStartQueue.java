@@ -0,0 +1,298 @@
+/*
+ * Copyright (c) [2012] - [2017] Red Hat, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *   Red Hat, Inc. - initial API and implementation
+ */
+package com.codenvy.api.workspace;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+import com.google.common.annotations.VisibleForTesting;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Limits the number of workspace starts which are performed at the same time.
+ *
+ * <p>Starts which exceed the limit wait in a queue. Each account has its own queue and accounts are
+ * served in round-robin order, so an account which requests many starts at once doesn't delay
+ * starts of other accounts. Waiting is bounded, if start is not admitted in time {@link
+ * AdmissionTimeoutException} is thrown with the position of the start in the queue and the
+ * estimated waiting time, so the caller may retry later instead of holding a request thread.
+ */
+class WorkspaceStartQueue {
+
+  /** Weight of the latest value in moving averages of start and wait times. */
+  private static final double AVERAGE_WEIGHT = 0.2;
+
+  private final int maxConcurrentStarts;
+  private final int maxQueueSize;
+  private final long maxWaitMs;
+
+  private final ReentrantLock lock;
+  private final Map<String, Deque<Waiter>> accountWaiters;
+  /** Accounts which have waiting starts, in the order they are served. */
+  private final Deque<String> accounts;
+
+  private final AtomicLong timedOut;
+
+  private int activeStarts;
+  private int queueSize;
+
+  private volatile long averageStartTimeMs;
+  private volatile long averageWaitTimeMs;
+
+  /**
+   * @param maxConcurrentStarts how many starts may be performed at the same time
+   * @param maxQueueSize how many starts may wait for admission, further starts are rejected
+   *     immediately
+   * @param maxWaitMs how long a start may wait for admission
+   */
+  WorkspaceStartQueue(int maxConcurrentStarts, int maxQueueSize, long maxWaitMs) {
+    this.maxConcurrentStarts = maxConcurrentStarts;
+    this.maxQueueSize = maxQueueSize;
+    this.maxWaitMs = maxWaitMs;
+    this.lock = new ReentrantLock();
+    this.accountWaiters = new HashMap<>();
+    this.accounts = new ArrayDeque<>();
+    this.timedOut = new AtomicLong();
+  }
+
+  /**
+   * Waits until start requested by the account is admitted.
+   *
+   * @param account identifier of the account which owns the workspace
+   * @return permit which must be released when start is performed
+   * @throws AdmissionTimeoutException if the queue is full or start is not admitted in time
+   * @throws InterruptedException if thread is interrupted while waiting
+   */
+  Permit acquire(String account) throws AdmissionTimeoutException, InterruptedException {
+    return acquire(account, maxWaitMs);
+  }
+
+  @VisibleForTesting
+  Permit acquire(String account, long maxWaitMs)
+      throws AdmissionTimeoutException, InterruptedException {
+    final long waitStart = System.currentTimeMillis();
+    lock.lock();
+    try {
+      if (queueSize == 0 && activeStarts < maxConcurrentStarts) {
+        activeStarts++;
+        return new Permit();
+      }
+      if (queueSize >= maxQueueSize) {
+        timedOut.incrementAndGet();
+        throw new AdmissionTimeoutException(queueSize + 1, estimateWaitTime(queueSize + 1));
+      }
+      final Waiter waiter = new Waiter(account, lock.newCondition());
+      enqueue(waiter);
+      long nanos = MILLISECONDS.toNanos(maxWaitMs);
+      try {
+        while (!waiter.admitted) {
+          if (nanos <= 0) {
+            final int position = positionOf(waiter);
+            remove(waiter);
+            timedOut.incrementAndGet();
+            throw new AdmissionTimeoutException(position, estimateWaitTime(position));
+          }
+          nanos = waiter.condition.awaitNanos(nanos);
+        }
+      } catch (InterruptedException x) {
+        if (waiter.admitted) {
+          activeStarts--;
+          admitWaiters();
+        } else {
+          remove(waiter);
+        }
+        throw x;
+      }
+      averageWaitTimeMs = average(averageWaitTimeMs, System.currentTimeMillis() - waitStart);
+      return new Permit();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /** Returns the number of starts which wait for admission. */
+  int getQueueSize() {
+    lock.lock();
+    try {
+      return queueSize;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /** Returns the number of starts which are admitted and not finished yet. */
+  int getActiveStarts() {
+    lock.lock();
+    try {
+      return activeStarts;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /** Returns moving average of the time starts wait for admission. */
+  long getAverageWaitTimeMs() {
+    return averageWaitTimeMs;
+  }
+
+  /** Returns moving average of the time admitted starts take. */
+  long getAverageStartTimeMs() {
+    return averageStartTimeMs;
+  }
+
+  /** Returns the number of starts which were not admitted in time or rejected by full queue. */
+  long getTimedOutCount() {
+    return timedOut.get();
+  }
+
+  private void release(long startTimeMs) {
+    averageStartTimeMs = average(averageStartTimeMs, startTimeMs);
+    lock.lock();
+    try {
+      activeStarts--;
+      admitWaiters();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  private void enqueue(Waiter waiter) {
+    Deque<Waiter> waiters = accountWaiters.get(waiter.account);
+    if (waiters == null) {
+      waiters = new ArrayDeque<>();
+      accountWaiters.put(waiter.account, waiters);
+      accounts.addLast(waiter.account);
+    }
+    waiters.addLast(waiter);
+    queueSize++;
+  }
+
+  private void remove(Waiter waiter) {
+    final Deque<Waiter> waiters = accountWaiters.get(waiter.account);
+    if (waiters != null && waiters.remove(waiter)) {
+      queueSize--;
+      if (waiters.isEmpty()) {
+        accountWaiters.remove(waiter.account);
+        accounts.remove(waiter.account);
+      }
+    }
+  }
+
+  /** Admits the next waiters of accounts in round-robin order while the limit allows. */
+  private void admitWaiters() {
+    while (activeStarts < maxConcurrentStarts && !accounts.isEmpty()) {
+      final String account = accounts.pollFirst();
+      final Deque<Waiter> waiters = accountWaiters.get(account);
+      final Waiter waiter = waiters.pollFirst();
+      if (waiters.isEmpty()) {
+        accountWaiters.remove(account);
+      } else {
+        accounts.addLast(account);
+      }
+      queueSize--;
+      activeStarts++;
+      waiter.admitted = true;
+      waiter.condition.signal();
+    }
+  }
+
+  /**
+   * Returns 1-based position of the waiter in the order of admission. Round i admits i-th waiter of
+   * each account in the order accounts are served.
+   */
+  private int positionOf(Waiter waiter) {
+    final int round = indexOf(accountWaiters.get(waiter.account), waiter);
+    int position = 0;
+    boolean beforeWaiter = true;
+    for (String account : accounts) {
+      final int size = accountWaiters.get(account).size();
+      position += Math.min(size, round);
+      if (beforeWaiter && size > round) {
+        position++;
+      }
+      if (account.equals(waiter.account)) {
+        beforeWaiter = false;
+      }
+    }
+    return position;
+  }
+
+  private long estimateWaitTime(int position) {
+    final long rounds = (position + maxConcurrentStarts - 1) / maxConcurrentStarts;
+    return rounds * averageStartTimeMs;
+  }
+
+  private static int indexOf(Deque<Waiter> waiters, Waiter waiter) {
+    int index = 0;
+    for (Iterator<Waiter> it = waiters.iterator(); it.hasNext(); index++) {
+      if (it.next() == waiter) {
+        return index;
+      }
+    }
+    return index;
+  }
+
+  private static long average(long average, long value) {
+    return average == 0 ? value : (long) (average + AVERAGE_WEIGHT * (value - average));
+  }
+
+  /** Admission of a single start, must be released once start is performed. */
+  class Permit {
+    private final long admissionTime = System.currentTimeMillis();
+    private boolean released;
+
+    void release() {
+      if (!released) {
+        released = true;
+        WorkspaceStartQueue.this.release(System.currentTimeMillis() - admissionTime);
+      }
+    }
+  }
+
+  /** Thrown when start is not admitted in time. */
+  static class AdmissionTimeoutException extends Exception {
+    private final int position;
+    private final long estimatedWaitTimeMs;
+
+    AdmissionTimeoutException(int position, long estimatedWaitTimeMs) {
+      super("Workspace start is not admitted, position in the queue is " + position);
+      this.position = position;
+      this.estimatedWaitTimeMs = estimatedWaitTimeMs;
+    }
+
+    /** Returns 1-based position of start in the queue at the moment waiting was stopped. */
+    int getPosition() {
+      return position;
+    }
+
+    /** Returns estimated time until start could be admitted, 0 if it is unknown. */
+    long getEstimatedWaitTimeMs() {
+      return estimatedWaitTimeMs;
+    }
+  }
+
+  private static class Waiter {
+    final String account;
+    final Condition condition;
+    boolean admitted;
+
+    Waiter(String account, Condition condition) {
+      this.account = account;
+      this.condition = condition;
+    }
+  }
+}
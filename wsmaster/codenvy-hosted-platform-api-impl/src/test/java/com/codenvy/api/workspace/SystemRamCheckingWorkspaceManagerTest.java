@@ -10,8 +10,12 @@
  */
 package com.codenvy.api.workspace;
 
+import static java.util.Arrays.asList;
 import static org.eclipse.che.commons.lang.Size.parseSize;
+import static org.eclipse.che.dto.server.DtoFactory.newDto;
+import static org.mockito.Matchers.anyLong;
 import static org.mockito.Matchers.anyObject;
+import static org.mockito.Mockito.RETURNS_DEEP_STUBS;
 import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
@@ -19,7 +23,9 @@ import static org.mockito.Mockito.spy;
 import static org.mockito.Mockito.timeout;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
+import static org.testng.Assert.assertEquals;
 import static org.testng.Assert.assertNull;
+import static org.testng.Assert.fail;
 
 import com.codenvy.api.workspace.SystemRamCheckingWorkspaceManager.WorkspaceCallback;
 import com.codenvy.service.system.SystemRamInfo;
@@ -27,10 +33,18 @@ import com.codenvy.service.system.SystemRamInfoProvider;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
-import java.util.concurrent.Semaphore;
 import org.eclipse.che.account.shared.model.Account;
+import org.eclipse.che.api.core.ConflictException;
 import org.eclipse.che.api.core.ServerException;
+import org.eclipse.che.api.core.model.workspace.Environment;
+import org.eclipse.che.api.core.notification.EventService;
+import org.eclipse.che.api.core.rest.shared.dto.ExtendedError;
+import org.eclipse.che.api.machine.server.spi.Instance;
+import org.eclipse.che.api.machine.shared.dto.event.MachineStatusEvent;
+import org.eclipse.che.api.workspace.server.WorkspaceRuntimes;
+import org.eclipse.che.api.workspace.server.model.impl.WorkspaceImpl;
 import org.eclipse.che.api.workspace.server.spi.WorkspaceDao;
+import org.eclipse.che.api.workspace.shared.dto.event.WorkspaceStatusEvent;
 import org.eclipse.che.multiuser.resource.api.usage.ResourceUsageManager;
 import org.eclipse.che.multiuser.resource.api.usage.tracker.EnvironmentRamCalculator;
 import org.eclipse.che.multiuser.resource.api.workspace.LimitExceededException;
@@ -57,6 +71,7 @@ public class SystemRamCheckingWorkspaceManagerTest {
   @Mock private EnvironmentRamCalculator environmentRamCalculator;
   @Mock private Account account;
   @Mock private ResourceUsageManager resourceUsageManager;
+  @Mock private WorkspaceRuntimes runtimes;
 
   @Test(
     expectedExceptions = LimitExceededException.class,
@@ -69,7 +84,7 @@ public class SystemRamCheckingWorkspaceManagerTest {
     final SystemRamCheckingWorkspaceManager manager =
         managerBuilder().setSystemRamInfoProvider(systemRamInfoProvider).build();
 
-    manager.checkSystemRamLimitAndPropagateStart(null);
+    manager.checkSystemRamLimitAndPropagateStart(0, null);
   }
 
   @Test
@@ -77,61 +92,231 @@ public class SystemRamCheckingWorkspaceManagerTest {
     final WorkspaceCallback callback = mock(WorkspaceCallback.class);
     final SystemRamCheckingWorkspaceManager manager = managerBuilder().build();
 
-    manager.checkSystemRamLimitAndPropagateStart(callback);
+    manager.checkSystemRamLimitAndPropagateStart(0, callback);
 
     verify(callback).call();
   }
 
+  @Test(
+    expectedExceptions = LimitExceededException.class,
+    expectedExceptionsMessageRegExp =
+        "Low RAM. Your workspace cannot be started until the system has more RAM available."
+  )
+  public void shouldNotStartWorkspaceIfRamReservedByOtherStartsExceedsSystemRamLimit()
+      throws Exception {
+    when(systemRamInfoProvider.getSystemRamInfo())
+        .thenReturn(new SystemRamInfo(parseSize("1 GiB"), parseSize("3 GiB")));
+    final SystemRamCheckingWorkspaceManager manager =
+        managerBuilder().setSystemRamInfoProvider(systemRamInfoProvider).build();
+    manager.checkSystemRamLimitAndPropagateStart(parseSize("1 GiB"), callback("ws1"));
+
+    manager.checkSystemRamLimitAndPropagateStart(parseSize("1 GiB"), callback("ws2"));
+  }
+
+  @Test(
+    expectedExceptions = LimitExceededException.class,
+    expectedExceptionsMessageRegExp =
+        "Low RAM. Your workspace requires .* of RAM but none of the system nodes has that much .*"
+  )
+  public void shouldNotStartWorkspaceWhichCanNotBePlacedOnAnyNode() throws Exception {
+    when(systemRamInfoProvider.getSystemRamInfo())
+        .thenReturn(
+            new SystemRamInfo(
+                parseSize("2 GiB"),
+                parseSize("6 GiB"),
+                asList(parseSize("1.5 GiB"), parseSize("1.5 GiB"), parseSize("1 GiB"))));
+    final SystemRamCheckingWorkspaceManager manager =
+        managerBuilder().setSystemRamInfoProvider(systemRamInfoProvider).build();
+
+    manager.checkSystemRamLimitAndPropagateStart(parseSize("2 GiB"), callback("ws1"));
+  }
+
+  @Test(
+    expectedExceptions = LimitExceededException.class,
+    expectedExceptionsMessageRegExp =
+        "Low RAM. Your workspace requires .* of RAM but none of the system nodes has that much .*"
+  )
+  public void shouldNotStartWorkspaceIfNodesCanNotHoldItTogetherWithReservedRam()
+      throws Exception {
+    when(systemRamInfoProvider.getSystemRamInfo())
+        .thenReturn(
+            new SystemRamInfo(
+                parseSize("2 GiB"),
+                parseSize("10 GiB"),
+                asList(parseSize("3 GiB"), parseSize("3 GiB"))));
+    final SystemRamCheckingWorkspaceManager manager =
+        managerBuilder().setSystemRamInfoProvider(systemRamInfoProvider).build();
+    manager.checkSystemRamLimitAndPropagateStart(parseSize("2 GiB"), callback("ws1"));
+    manager.checkSystemRamLimitAndPropagateStart(parseSize("2 GiB"), callback("ws2"));
+
+    manager.checkSystemRamLimitAndPropagateStart(parseSize("1.5 GiB"), callback("ws3"));
+  }
+
   @Test
-  public void shouldAcquireAndReleaseSemaphoreIfThroughputPropertyIsMoreThanZero()
+  public void shouldStartWorkspaceWhichCanBePlacedOnNode() throws Exception {
+    final WorkspaceCallback callback = callback("ws1");
+    when(systemRamInfoProvider.getSystemRamInfo())
+        .thenReturn(
+            new SystemRamInfo(
+                parseSize("2 GiB"),
+                parseSize("6 GiB"),
+                asList(parseSize("1 GiB"), parseSize("3 GiB"))));
+    final SystemRamCheckingWorkspaceManager manager =
+        managerBuilder().setSystemRamInfoProvider(systemRamInfoProvider).build();
+
+    manager.checkSystemRamLimitAndPropagateStart(parseSize("2 GiB"), callback);
+
+    verify(callback).call();
+  }
+
+  @Test
+  public void shouldReleaseReservedRamWhenWorkspaceIsRunning() throws Exception {
+    final EventService eventService = mock(EventService.class);
+    when(systemRamInfoProvider.getSystemRamInfo())
+        .thenReturn(new SystemRamInfo(parseSize("1 GiB"), parseSize("3 GiB")));
+    final SystemRamCheckingWorkspaceManager manager =
+        managerBuilder()
+            .setSystemRamInfoProvider(systemRamInfoProvider)
+            .setEventService(eventService)
+            .build();
+    manager.subscribe();
+    verify(eventService).subscribe(manager.ramReservationsReleaser);
+    manager.checkSystemRamLimitAndPropagateStart(parseSize("1 GiB"), callback("ws1"));
+    assertEquals(manager.getReservedRam(), parseSize("1 GiB"));
+
+    manager.ramReservationsReleaser.onEvent(workspaceStatusEvent("ws1"));
+
+    assertEquals(manager.getReservedRam(), 0);
+    manager.checkSystemRamLimitAndPropagateStart(parseSize("1 GiB"), callback("ws2"));
+  }
+
+  @Test
+  public void shouldReleaseReservedRamIfWorkspaceIsRunningBeforeReservationIsBound()
       throws Exception {
     final SystemRamCheckingWorkspaceManager manager = managerBuilder().build();
-    Semaphore semaphore = mock(Semaphore.class);
-    WorkspaceCallback callback = mock(WorkspaceCallback.class);
-    manager.startSemaphore = semaphore;
+    final WorkspaceCallback callback = callback("ws1");
+    final WorkspaceImpl workspace = callback.call();
+    when(callback.call())
+        .thenAnswer(
+            invocation -> {
+              manager.ramReservationsReleaser.onEvent(workspaceStatusEvent("ws1"));
+              return workspace;
+            });
+
+    manager.checkSystemRamLimitAndPropagateStart(parseSize("1 GiB"), callback);
+
+    assertEquals(manager.getReservedRam(), 0);
+  }
+
+  @Test
+  public void shouldReleaseRamOfCreatedMachineFromReservation() throws Exception {
+    final Instance machine = mock(Instance.class, RETURNS_DEEP_STUBS);
+    when(machine.getConfig().getLimits().getRam()).thenReturn(256);
+    when(runtimes.getMachine("ws1", "machine1")).thenReturn(machine);
+    final SystemRamCheckingWorkspaceManager manager =
+        managerBuilder().setRuntimes(runtimes).build();
+    manager.checkSystemRamLimitAndPropagateStart(parseSize("1 GiB"), callback("ws1"));
 
-    manager.checkSystemRamLimitAndPropagateLimitedThroughputStart(callback);
+    manager.machineRamReleaser.onEvent(
+        newDto(MachineStatusEvent.class)
+            .withWorkspaceId("ws1")
+            .withMachineId("machine1")
+            .withEventType(MachineStatusEvent.EventType.RUNNING));
 
-    verify(semaphore).acquire();
-    verify(semaphore).release();
+    assertEquals(manager.getReservedRam(), parseSize("768 MiB"));
   }
 
-  @Test(expectedExceptions = Exception.class)
-  public void
-      shouldAcquireAndReleaseSemaphoreIfThroughputPropertyIsMoreThanZeroAndExceptionHappened()
-          throws Exception {
+  @Test
+  public void shouldReleaseReservedRamIfStartFailed() throws Exception {
     final SystemRamCheckingWorkspaceManager manager = managerBuilder().build();
-    Semaphore semaphore = mock(Semaphore.class);
+    final WorkspaceCallback callback = mock(WorkspaceCallback.class);
+    when(callback.call()).thenThrow(new ServerException("start failed"));
+
+    try {
+      manager.checkSystemRamLimitAndPropagateStart(parseSize("1 GiB"), callback);
+      fail("Start must fail");
+    } catch (ServerException ignored) {
+    }
+
+    assertEquals(manager.getReservedRam(), 0);
+  }
+
+  @Test
+  public void shouldReserveRamOfEnvironment() throws Exception {
+    final Environment environment = mock(Environment.class);
+    when(environmentRamCalculator.calculate(environment)).thenReturn(1024L);
+    final SystemRamCheckingWorkspaceManager manager =
+        managerBuilder()
+            .setMaxSameTimeStartWSRequests(5)
+            .setEnvironmentRamCalculator(environmentRamCalculator)
+            .build();
+    final WorkspaceCallback callback = callback("ws1");
+
+    manager.checkSystemRamLimitAndPropagateLimitedThroughputStart(NAMESPACE, environment, callback);
+
+    verify(manager).checkSystemRamLimitAndPropagateStart(parseSize("1 GiB"), callback);
+    assertEquals(manager.getReservedRam(), parseSize("1 GiB"));
+  }
+
+  @Test
+  public void shouldAcquireAndReleaseStartPermitIfThroughputPropertyIsMoreThanZero()
+      throws Exception {
+    final SystemRamCheckingWorkspaceManager manager =
+        managerBuilder().setMaxSameTimeStartWSRequests(5).build();
     WorkspaceCallback callback = mock(WorkspaceCallback.class);
-    manager.startSemaphore = semaphore;
-    doThrow(new Exception()).when(manager).checkSystemRamLimitAndPropagateStart(anyObject());
+    doAnswer(
+            invocationOnMock -> {
+              assertEquals(manager.getActiveStarts(), 1);
+              return null;
+            })
+        .when(callback)
+        .call();
 
-    manager.checkSystemRamLimitAndPropagateLimitedThroughputStart(callback);
+    manager.checkSystemRamLimitAndPropagateLimitedThroughputStart(NAMESPACE, null, callback);
 
-    verify(semaphore).acquire();
-    verify(semaphore).release();
+    verify(callback).call();
+    assertEquals(manager.getActiveStarts(), 0);
+  }
+
+  @Test
+  public void shouldReleaseStartPermitIfThroughputPropertyIsMoreThanZeroAndExceptionHappened()
+      throws Exception {
+    final SystemRamCheckingWorkspaceManager manager =
+        managerBuilder().setMaxSameTimeStartWSRequests(5).build();
+    WorkspaceCallback callback = mock(WorkspaceCallback.class);
+    doThrow(new ServerException("error"))
+        .when(manager)
+        .checkSystemRamLimitAndPropagateStart(anyLong(), anyObject());
+
+    try {
+      manager.checkSystemRamLimitAndPropagateLimitedThroughputStart(NAMESPACE, null, callback);
+      fail("Start must fail");
+    } catch (ServerException ignored) {
+    }
+
+    assertEquals(manager.getActiveStarts(), 0);
   }
 
   @Test
-  public void shouldSetSemaphoreToNullIfThroughputPropertyIsZero() throws Exception {
+  public void shouldNotCreateStartQueueIfThroughputPropertyIsZero() throws Exception {
     final SystemRamCheckingWorkspaceManager manager =
         managerBuilder().setMaxSameTimeStartWSRequests(0).build();
     WorkspaceCallback callback = mock(WorkspaceCallback.class);
 
-    manager.checkSystemRamLimitAndPropagateLimitedThroughputStart(callback);
+    manager.checkSystemRamLimitAndPropagateLimitedThroughputStart(NAMESPACE, null, callback);
 
-    assertNull(manager.startSemaphore);
+    assertNull(manager.startQueue);
   }
 
   @Test
-  public void shouldSetSemaphoreToNullIfThroughputPropertyIsLessThenZero() throws Exception {
+  public void shouldNotCreateStartQueueIfThroughputPropertyIsLessThenZero() throws Exception {
     final SystemRamCheckingWorkspaceManager manager =
         managerBuilder().setMaxSameTimeStartWSRequests(-1).build();
     WorkspaceCallback callback = mock(WorkspaceCallback.class);
 
-    manager.checkSystemRamLimitAndPropagateLimitedThroughputStart(callback);
+    manager.checkSystemRamLimitAndPropagateLimitedThroughputStart(NAMESPACE, null, callback);
 
-    assertNull(manager.startSemaphore);
+    assertNull(manager.startQueue);
   }
 
   @Test(timeOut = 3000)
@@ -152,12 +337,13 @@ public class SystemRamCheckingWorkspaceManagerTest {
               return null;
             })
         .when(manager)
-        .checkSystemRamLimitAndPropagateStart(anyObject());
+        .checkSystemRamLimitAndPropagateStart(anyLong(), anyObject());
     Runnable runnable =
         () -> {
           try {
             final WorkspaceCallback callback = mock(WorkspaceCallback.class);
-            manager.checkSystemRamLimitAndPropagateLimitedThroughputStart(callback);
+            manager.checkSystemRamLimitAndPropagateLimitedThroughputStart(
+                NAMESPACE, null, callback);
           } catch (Exception ignored) {
           }
         };
@@ -174,13 +360,62 @@ public class SystemRamCheckingWorkspaceManagerTest {
 
     // Wait for throughput limit will be reached and check that RAM check was performed only in
     // allowed number of threads.
-    verify(manager, timeout(300).times(5)).checkSystemRamLimitAndPropagateStart(anyObject());
+    verify(manager, timeout(300).times(5))
+        .checkSystemRamLimitAndPropagateStart(anyLong(), anyObject());
 
     // Execute paused threads to release the throughput limit for other threads.
     invokeProcessLatch.countDown();
     // Wait for throughput limit will be released and check that RAM check was performed in other
     // threads.
-    verify(manager, timeout(300).times(7)).checkSystemRamLimitAndPropagateStart(anyObject());
+    verify(manager, timeout(300).times(7))
+        .checkSystemRamLimitAndPropagateStart(anyLong(), anyObject());
+  }
+
+  @Test(timeOut = 3000)
+  public void shouldRejectStartWhichIsNotAdmittedInTime() throws Exception {
+    final SystemRamCheckingWorkspaceManager manager =
+        managerBuilder().setMaxSameTimeStartWSRequests(1).setMaxStartWaitMs(100).build();
+    final CountDownLatch startLatch = new CountDownLatch(1);
+    final WorkspaceCallback longStart = mock(WorkspaceCallback.class);
+    doAnswer(
+            invocationOnMock -> {
+              startLatch.await();
+              return null;
+            })
+        .when(longStart)
+        .call();
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    executor.submit(
+        () -> {
+          manager.checkSystemRamLimitAndPropagateLimitedThroughputStart(NAMESPACE, null, longStart);
+          return null;
+        });
+    verify(longStart, timeout(1000)).call();
+
+    try {
+      manager.checkSystemRamLimitAndPropagateLimitedThroughputStart(
+          NAMESPACE, null, mock(WorkspaceCallback.class));
+      fail("Start must not be admitted");
+    } catch (ConflictException x) {
+      assertEquals(((ExtendedError) x.getServiceError()).getAttributes().get("position"), "1");
+    } finally {
+      startLatch.countDown();
+      executor.shutdown();
+    }
+  }
+
+  private static WorkspaceStatusEvent workspaceStatusEvent(String workspaceId) {
+    return newDto(WorkspaceStatusEvent.class)
+        .withWorkspaceId(workspaceId)
+        .withEventType(WorkspaceStatusEvent.EventType.RUNNING);
+  }
+
+  private static WorkspaceCallback callback(String workspaceId) throws Exception {
+    final WorkspaceImpl workspace = mock(WorkspaceImpl.class);
+    when(workspace.getId()).thenReturn(workspaceId);
+    final WorkspaceCallback callback = mock(WorkspaceCallback.class);
+    when(callback.call()).thenReturn(workspace);
+    return callback;
   }
 
   private static ManagerBuilder managerBuilder() throws ServerException {
@@ -190,22 +425,28 @@ public class SystemRamCheckingWorkspaceManagerTest {
   private static class ManagerBuilder {
 
     private int maxSameTimeStartWSRequests;
+    private long maxStartWaitMs;
     private SystemRamInfoProvider systemRamInfoProvider;
+    private EnvironmentRamCalculator environmentRamCalculator;
+    private EventService eventService;
+    private WorkspaceRuntimes runtimes;
 
     ManagerBuilder() throws ServerException {
       maxSameTimeStartWSRequests = 0;
+      maxStartWaitMs = 10_000;
 
       systemRamInfoProvider = mock(SystemRamInfoProvider.class);
       when(systemRamInfoProvider.getSystemRamInfo())
           .thenReturn(new SystemRamInfo(0, parseSize("3 GiB")));
+      environmentRamCalculator = mock(EnvironmentRamCalculator.class);
     }
 
     public SystemRamCheckingWorkspaceManager build() {
       return spy(
           new SystemRamCheckingWorkspaceManager(
               null,
-              null,
-              null,
+              runtimes,
+              eventService,
               null,
               false,
               false,
@@ -213,8 +454,10 @@ public class SystemRamCheckingWorkspaceManagerTest {
               null,
               "10gb",
               maxSameTimeStartWSRequests,
+              100,
+              maxStartWaitMs,
               systemRamInfoProvider,
-              null,
+              environmentRamCalculator,
               null,
               null));
     }
@@ -224,9 +467,29 @@ public class SystemRamCheckingWorkspaceManagerTest {
       return this;
     }
 
+    ManagerBuilder setMaxStartWaitMs(long maxStartWaitMs) {
+      this.maxStartWaitMs = maxStartWaitMs;
+      return this;
+    }
+
     ManagerBuilder setSystemRamInfoProvider(SystemRamInfoProvider systemRamInfoProvider) {
       this.systemRamInfoProvider = systemRamInfoProvider;
       return this;
     }
+
+    ManagerBuilder setEnvironmentRamCalculator(EnvironmentRamCalculator environmentRamCalculator) {
+      this.environmentRamCalculator = environmentRamCalculator;
+      return this;
+    }
+
+    ManagerBuilder setEventService(EventService eventService) {
+      this.eventService = eventService;
+      return this;
+    }
+
+    ManagerBuilder setRuntimes(WorkspaceRuntimes runtimes) {
+      this.runtimes = runtimes;
+      return this;
+    }
   }
 }
@@ -0,0 +1,149 @@
+/*
+ * Copyright (c) [2012] - [2017] Red Hat, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *   Red Hat, Inc. - initial API and implementation
+ */
+package com.codenvy.api.workspace;
+
+import static java.util.Arrays.asList;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+import com.codenvy.api.workspace.WorkspaceStartQueue.AdmissionTimeoutException;
+import com.codenvy.api.workspace.WorkspaceStartQueue.Permit;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+/** Tests for {@link WorkspaceStartQueue}. */
+public class WorkspaceStartQueueTest {
+
+  private ExecutorService executor;
+
+  @BeforeMethod
+  public void setUp() {
+    executor = Executors.newCachedThreadPool();
+  }
+
+  @AfterMethod
+  public void tearDown() {
+    executor.shutdownNow();
+  }
+
+  @Test
+  public void shouldAdmitStartsImmediatelyWhileLimitIsNotReached() throws Exception {
+    final WorkspaceStartQueue queue = new WorkspaceStartQueue(2, 10, 0);
+
+    queue.acquire("account1");
+    queue.acquire("account2");
+
+    assertEquals(queue.getActiveStarts(), 2);
+    assertEquals(queue.getQueueSize(), 0);
+  }
+
+  @Test(timeOut = 5000)
+  public void shouldAdmitStartsOfDifferentAccountsInTurn() throws Exception {
+    final WorkspaceStartQueue queue = new WorkspaceStartQueue(1, 10, 5000);
+    final List<String> admitted = new CopyOnWriteArrayList<>();
+    final Permit permit = queue.acquire("account1");
+
+    enqueue(queue, "account1", "start1", admitted);
+    enqueue(queue, "account1", "start2", admitted);
+    enqueue(queue, "account1", "start3", admitted);
+    enqueue(queue, "account2", "start4", admitted);
+    permit.release();
+
+    waitUntil(() -> admitted.size() == 4);
+    assertEquals(admitted, asList("start1", "start4", "start2", "start3"));
+    assertEquals(queue.getActiveStarts(), 0);
+    assertEquals(queue.getQueueSize(), 0);
+  }
+
+  @Test(timeOut = 5000)
+  public void shouldReportPositionOfStartWhichIsNotAdmittedInTime() throws Exception {
+    final WorkspaceStartQueue queue = new WorkspaceStartQueue(1, 10, 5000);
+    queue.acquire("account1");
+    enqueue(queue, "account1", "start1", new CopyOnWriteArrayList<>());
+    enqueue(queue, "account1", "start2", new CopyOnWriteArrayList<>());
+
+    try {
+      queue.acquire("account2", 50);
+      fail("Start must not be admitted");
+    } catch (AdmissionTimeoutException x) {
+      assertEquals(x.getPosition(), 2);
+    }
+    assertEquals(queue.getQueueSize(), 2);
+    assertEquals(queue.getTimedOutCount(), 1);
+  }
+
+  @Test
+  public void shouldRejectStartIfQueueIsFull() throws Exception {
+    final WorkspaceStartQueue queue = new WorkspaceStartQueue(1, 0, 5000);
+    final Permit permit = queue.acquire("account1");
+    Thread.sleep(100);
+    permit.release();
+    queue.acquire("account1");
+
+    try {
+      queue.acquire("account2");
+      fail("Start must not be admitted");
+    } catch (AdmissionTimeoutException x) {
+      assertEquals(x.getPosition(), 1);
+      assertTrue(x.getEstimatedWaitTimeMs() >= 100);
+    }
+    assertEquals(queue.getQueueSize(), 0);
+  }
+
+  @Test(timeOut = 5000)
+  public void shouldAdmitNextStartWhenPermitIsReleased() throws Exception {
+    final WorkspaceStartQueue queue = new WorkspaceStartQueue(1, 10, 5000);
+    final List<String> admitted = new CopyOnWriteArrayList<>();
+    final Permit permit = queue.acquire("account1");
+    enqueue(queue, "account2", "start1", admitted);
+
+    permit.release();
+    permit.release();
+
+    waitUntil(() -> admitted.size() == 1);
+    assertEquals(queue.getActiveStarts(), 0);
+  }
+
+  /** Enqueues start which releases its permit right after admission. */
+  private void enqueue(
+      WorkspaceStartQueue queue, String account, String start, List<String> admitted)
+      throws Exception {
+    final int queueSize = queue.getQueueSize();
+    executor.execute(
+        () -> {
+          try {
+            final Permit permit = queue.acquire(account);
+            admitted.add(start);
+            permit.release();
+          } catch (Exception ignored) {
+          }
+        });
+    waitUntil(() -> queue.getQueueSize() == queueSize + 1);
+  }
+
+  private static void waitUntil(Condition condition) throws Exception {
+    while (!condition.isMet()) {
+      TimeUnit.MILLISECONDS.sleep(10);
+    }
+  }
+
+  @FunctionalInterface
+  private interface Condition {
+    boolean isMet();
+  }
+}
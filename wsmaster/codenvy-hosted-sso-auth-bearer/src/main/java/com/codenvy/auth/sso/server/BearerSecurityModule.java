@@ -11,6 +11,8 @@
 package com.codenvy.auth.sso.server;
 
 import com.codenvy.auth.sso.server.handler.BearerTokenAuthenticationHandler;
+import com.codenvy.auth.sso.server.handler.BearerTokenStore;
+import com.codenvy.auth.sso.server.handler.BearerTokenStoreProvider;
 import com.google.inject.AbstractModule;
 import org.eclipse.che.inject.DynaModule;
 
@@ -25,6 +27,7 @@ public class BearerSecurityModule extends AbstractModule {
   protected void configure() {
     bind(com.codenvy.auth.sso.server.BearerTokenAuthenticationService.class);
     bind(BearerTokenAuthenticationHandler.class);
+    bind(BearerTokenStore.class).toProvider(BearerTokenStoreProvider.class);
     bind(EmailValidator.class);
   }
 }
@@ -19,8 +19,6 @@ import java.util.Map;
 import java.util.Optional;
 import java.util.Timer;
 import java.util.TimerTask;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentMap;
 import javax.annotation.PostConstruct;
 import javax.annotation.PreDestroy;
 import javax.inject.Inject;
@@ -44,7 +42,6 @@ import org.slf4j.LoggerFactory;
 @Singleton
 public class BearerTokenAuthenticationHandler {
   private static final Logger LOG = LoggerFactory.getLogger(BearerTokenAuthenticationHandler.class);
-  private final ConcurrentMap<String, Map<String, String>> tokenMap;
   private final Timer timer;
   /** Period of time when bearer ticked keep valid */
   @Named("auth.sso.bearer_ticket_lifetime_seconds")
@@ -53,9 +50,9 @@ public class BearerTokenAuthenticationHandler {
 
   @Inject private TokenGenerator tokenGenerator;
   @Inject private UserManager userManager;
+  @Inject private BearerTokenStore tokenStore;
 
   public BearerTokenAuthenticationHandler() {
-    this.tokenMap = new ConcurrentHashMap<>();
     // Remove all invalid token once per hour;
     timer = new Timer("bearer-token-timer", true);
   }
@@ -67,11 +64,11 @@ public class BearerTokenAuthenticationHandler {
         new TimerTask() {
           @Override
           public void run() {
-            for (String token : tokenMap.keySet()) {
-              if (!isValid(token)) {
-                LOG.debug("Ticket {} invalidated ", token);
-                tokenMap.remove(token);
-              }
+            try {
+              tokenStore.removeCreatedBefore(
+                  System.currentTimeMillis() - ticketLifeTimeSeconds * 1000L);
+            } catch (RuntimeException x) {
+              LOG.error("Not able to remove expired bearer tokens. " + x.getLocalizedMessage(), x);
             }
           }
         },
@@ -90,9 +87,8 @@ public class BearerTokenAuthenticationHandler {
    * @throws AuthenticationException
    */
   public void authenticate(final String userSecret) throws AuthenticationException {
-    if (isValid(userSecret)) {
-      tokenMap.remove(userSecret);
-    } else {
+    // token may be used concurrently on several masters, only the one which removes it succeeds
+    if (!isValid(userSecret) || !tokenStore.remove(userSecret)) {
       throw new AuthenticationException(
           403, "Authentication of user failed. Token " + userSecret + " not found or expired.");
     }
@@ -113,8 +109,9 @@ public class BearerTokenAuthenticationHandler {
     Map<String, String> payloadCopy = payload == null ? new HashMap() : new HashMap(payload);
     payloadCopy.put("email", email);
     payloadCopy.put("username", username);
-    payloadCopy.put("creation.time", Long.toString(System.currentTimeMillis()));
-    tokenMap.put(token, payloadCopy);
+    final long creationTime = System.currentTimeMillis();
+    payloadCopy.put("creation.time", Long.toString(creationTime));
+    tokenStore.put(token, payloadCopy, creationTime);
     return token;
   }
 
@@ -136,9 +133,9 @@ public class BearerTokenAuthenticationHandler {
    * @return - map with payload
    */
   public Map<String, String> getPayload(String bearerToken) {
-    Map<String, String> payload = tokenMap.get(bearerToken);
+    Map<String, String> payload = tokenStore.get(bearerToken);
 
-    return payload == null ? Collections.<String, String>emptyMap() : new HashMap<>(payload);
+    return payload == null ? Collections.<String, String>emptyMap() : payload;
   }
 
   /**
@@ -148,10 +145,7 @@ public class BearerTokenAuthenticationHandler {
    * @return - map with payload
    */
   public void addPayload(String bearerToken, Map<String, String> addPayload) {
-    Map<String, String> payload = tokenMap.get(bearerToken);
-    if (payload != null) {
-      payload.putAll(addPayload);
-    } else {
+    if (!tokenStore.addPayload(bearerToken, addPayload)) {
       throw new IllegalStateException("Token " + bearerToken + " is not found ");
     }
   }
@@ -163,7 +157,7 @@ public class BearerTokenAuthenticationHandler {
    * @return - true if it is valid, false otherwise
    */
   public boolean isValid(String token) {
-    Map<String, String> payload = tokenMap.get(token);
+    Map<String, String> payload = tokenStore.get(token);
     if (payload != null) {
       // verify token's age
       long creationTime = Long.valueOf(payload.get("creation.time"));
@@ -0,0 +1,58 @@
+/*
+ * Copyright (c) [2012] - [2017] Red Hat, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *   Red Hat, Inc. - initial API and implementation
+ */
+package com.codenvy.auth.sso.server.handler;
+
+import java.util.Map;
+
+/** Storage of bearer tokens used by {@link BearerTokenAuthenticationHandler}. */
+public interface BearerTokenStore {
+
+  /**
+   * Stores token with its payload.
+   *
+   * @param token bearer token
+   * @param payload payload associated with token
+   * @param creationTime time of token creation in milliseconds
+   */
+  void put(String token, Map<String, String> payload, long creationTime);
+
+  /**
+   * Gets token payload.
+   *
+   * @param token bearer token
+   * @return copy of the payload or null if the token doesn't exist
+   */
+  Map<String, String> get(String token);
+
+  /**
+   * Adds payload to the existing token.
+   *
+   * @param token bearer token
+   * @param payload payload to add
+   * @return true if the token exists, false otherwise
+   */
+  boolean addPayload(String token, Map<String, String> payload);
+
+  /**
+   * Removes token.
+   *
+   * @param token bearer token
+   * @return true if the token was removed by this call, false if it doesn't exist
+   */
+  boolean remove(String token);
+
+  /**
+   * Removes tokens created before the given time.
+   *
+   * @param time time in milliseconds
+   */
+  void removeCreatedBefore(long time);
+}
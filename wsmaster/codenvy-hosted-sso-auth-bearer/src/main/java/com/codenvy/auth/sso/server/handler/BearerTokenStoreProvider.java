@@ -0,0 +1,43 @@
+/*
+ * Copyright (c) [2012] - [2017] Red Hat, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *   Red Hat, Inc. - initial API and implementation
+ */
+package com.codenvy.auth.sso.server.handler;
+
+import com.codenvy.auth.sso.server.handler.jpa.JpaBearerTokenStore;
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Provider;
+
+/**
+ * Provides {@link BearerTokenStore} implementation based on configuration, the same store is used
+ * for bearer tokens as for access tickets.
+ */
+public class BearerTokenStoreProvider implements Provider<BearerTokenStore> {
+
+  @Inject private Provider<InMemoryBearerTokenStore> inMemoryStoreProvider;
+
+  @Inject private Provider<JpaBearerTokenStore> jpaStoreProvider;
+
+  @com.google.inject.Inject(optional = true)
+  @Named("auth.sso.ticket_store")
+  private String ticketStore;
+
+  @Override
+  public BearerTokenStore get() {
+    if (ticketStore == null || ticketStore.equals("memory")) {
+      return inMemoryStoreProvider.get();
+    }
+    if (ticketStore.equals("jpa")) {
+      return jpaStoreProvider.get();
+    }
+    throw new IllegalStateException(
+        "Supported values for the property 'auth.sso.ticket_store' are 'memory' or 'jpa'");
+  }
+}
@@ -0,0 +1,71 @@
+/*
+ * Copyright (c) [2012] - [2017] Red Hat, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *   Red Hat, Inc. - initial API and implementation
+ */
+package com.codenvy.auth.sso.server.handler;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import javax.inject.Singleton;
+
+/** Keeps bearer tokens in the heap of the master. */
+@Singleton
+public class InMemoryBearerTokenStore implements BearerTokenStore {
+  private final ConcurrentMap<String, Token> tokens = new ConcurrentHashMap<>();
+
+  @Override
+  public void put(String token, Map<String, String> payload, long creationTime) {
+    tokens.put(token, new Token(payload, creationTime));
+  }
+
+  @Override
+  public Map<String, String> get(String token) {
+    final Token existing = tokens.get(token);
+    if (existing == null) {
+      return null;
+    }
+    synchronized (existing) {
+      return new HashMap<>(existing.payload);
+    }
+  }
+
+  @Override
+  public boolean addPayload(String token, Map<String, String> payload) {
+    final Token existing = tokens.get(token);
+    if (existing == null) {
+      return false;
+    }
+    synchronized (existing) {
+      existing.payload.putAll(payload);
+    }
+    return true;
+  }
+
+  @Override
+  public boolean remove(String token) {
+    return tokens.remove(token) != null;
+  }
+
+  @Override
+  public void removeCreatedBefore(long time) {
+    tokens.values().removeIf(token -> token.creationTime < time);
+  }
+
+  private static class Token {
+    final Map<String, String> payload;
+    final long creationTime;
+
+    Token(Map<String, String> payload, long creationTime) {
+      this.payload = new HashMap<>(payload);
+      this.creationTime = creationTime;
+    }
+  }
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright (c) [2012] - [2017] Red Hat, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *   Red Hat, Inc. - initial API and implementation
+ */
+package com.codenvy.auth.sso.server.handler.jpa;
+
+import java.util.HashMap;
+import java.util.Map;
+import javax.persistence.Cacheable;
+import javax.persistence.CollectionTable;
+import javax.persistence.Column;
+import javax.persistence.ElementCollection;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.JoinColumn;
+import javax.persistence.MapKeyColumn;
+import javax.persistence.NamedQueries;
+import javax.persistence.NamedQuery;
+import javax.persistence.Table;
+
+/** Bearer token with its payload. */
+@Entity(name = "BearerToken")
+@Table(name = "codenvy_bearer_token")
+@Cacheable(false)
+@NamedQueries({
+  @NamedQuery(
+    name = "BearerToken.remove",
+    query = "DELETE " + "FROM BearerToken t " + "WHERE t.token = :token"
+  ),
+  @NamedQuery(
+    name = "BearerToken.removeCreatedBefore",
+    query = "DELETE " + "FROM BearerToken t " + "WHERE t.creationTime < :time"
+  )
+})
+public class BearerTokenEntity {
+  @Id
+  @Column(name = "token")
+  private String token;
+
+  @Column(name = "creation_time", nullable = false)
+  private long creationTime;
+
+  @ElementCollection
+  @MapKeyColumn(name = "payload_name")
+  @Column(name = "payload_value", columnDefinition = "TEXT")
+  @CollectionTable(name = "codenvy_bearer_token_payload", joinColumns = @JoinColumn(name = "token"))
+  private Map<String, String> payload;
+
+  public BearerTokenEntity() {}
+
+  public BearerTokenEntity(String token, Map<String, String> payload, long creationTime) {
+    this.token = token;
+    this.payload = new HashMap<>(payload);
+    this.creationTime = creationTime;
+  }
+
+  public String getToken() {
+    return token;
+  }
+
+  public long getCreationTime() {
+    return creationTime;
+  }
+
+  public Map<String, String> getPayload() {
+    if (payload == null) {
+      payload = new HashMap<>();
+    }
+    return payload;
+  }
+}
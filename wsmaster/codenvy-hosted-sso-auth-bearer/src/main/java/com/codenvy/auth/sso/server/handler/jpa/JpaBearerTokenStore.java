@@ -0,0 +1,84 @@
+/*
+ * Copyright (c) [2012] - [2017] Red Hat, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *   Red Hat, Inc. - initial API and implementation
+ */
+package com.codenvy.auth.sso.server.handler.jpa;
+
+import com.codenvy.auth.sso.server.handler.BearerTokenStore;
+import com.google.inject.persist.Transactional;
+import java.util.HashMap;
+import java.util.Map;
+import javax.inject.Inject;
+import javax.inject.Provider;
+import javax.inject.Singleton;
+import javax.persistence.EntityManager;
+
+/**
+ * JPA implementation of {@link BearerTokenStore}, keeps bearer tokens in the database, so token
+ * generated by one master can be used on another one.
+ */
+@Singleton
+public class JpaBearerTokenStore implements BearerTokenStore {
+  private final Provider<EntityManager> managerProvider;
+
+  @Inject
+  public JpaBearerTokenStore(Provider<EntityManager> managerProvider) {
+    this.managerProvider = managerProvider;
+  }
+
+  @Override
+  @Transactional
+  public void put(String token, Map<String, String> payload, long creationTime) {
+    final EntityManager manager = managerProvider.get();
+    manager.merge(new BearerTokenEntity(token, payload, creationTime));
+    manager.flush();
+  }
+
+  @Override
+  @Transactional
+  public Map<String, String> get(String token) {
+    final BearerTokenEntity entity = managerProvider.get().find(BearerTokenEntity.class, token);
+    return entity == null ? null : new HashMap<>(entity.getPayload());
+  }
+
+  @Override
+  @Transactional
+  public boolean addPayload(String token, Map<String, String> payload) {
+    final EntityManager manager = managerProvider.get();
+    final BearerTokenEntity entity = manager.find(BearerTokenEntity.class, token);
+    if (entity == null) {
+      return false;
+    }
+    entity.getPayload().putAll(payload);
+    manager.flush();
+    return true;
+  }
+
+  /** Token is removed by a single statement, so only one master succeeds in its removal. */
+  @Override
+  @Transactional
+  public boolean remove(String token) {
+    return managerProvider
+            .get()
+            .createNamedQuery("BearerToken.remove")
+            .setParameter("token", token)
+            .executeUpdate()
+        > 0;
+  }
+
+  @Override
+  @Transactional
+  public void removeCreatedBefore(long time) {
+    managerProvider
+        .get()
+        .createNamedQuery("BearerToken.removeCreatedBefore")
+        .setParameter("time", time)
+        .executeUpdate();
+  }
+}
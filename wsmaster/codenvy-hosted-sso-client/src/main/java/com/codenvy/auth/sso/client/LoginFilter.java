@@ -12,6 +12,7 @@ package com.codenvy.auth.sso.client;
 
 import static java.net.URLEncoder.encode;
 
+import com.codenvy.auth.sso.client.filter.CompiledRequestFilter;
 import com.codenvy.auth.sso.client.filter.RequestFilter;
 import java.io.IOException;
 import javax.inject.Inject;
@@ -47,6 +48,7 @@ public class LoginFilter implements Filter {
   @Inject protected RequestTokenExtractor tokenExtractor;
   @Inject protected ClientUrlExtractor clientUrlExtractor;
   @Inject protected ServerClient ssoServerClient;
+  @Inject protected PrincipalCache principalCache;
 
   @Inject
   @Named("auth.sso.login_page_url")
@@ -60,7 +62,11 @@ public class LoginFilter implements Filter {
   @Inject protected TokenHandler tokenHandler;
 
   @Override
-  public void init(FilterConfig config) throws ServletException {}
+  public void init(FilterConfig config) throws ServletException {
+    if (!(requestFilter instanceof CompiledRequestFilter)) {
+      requestFilter = new CompiledRequestFilter(requestFilter);
+    }
+  }
 
   @Override
   public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain)
@@ -130,7 +136,13 @@ public class LoginFilter implements Filter {
         sessionStore.removeSessionByToken(principal.getToken());
         sessionStore.saveSession(token, session);
       }
-      Subject subject = ssoServerClient.getSubject(token, clientUrl);
+      Subject subject = principalCache.get(token, clientUrl);
+      if (subject == null) {
+        subject = ssoServerClient.getSubject(token, clientUrl);
+        if (subject != null) {
+          principalCache.put(token, clientUrl, subject);
+        }
+      }
       if (subject != null) {
         principal = new SsoClientPrincipal(token, clientUrl, subject);
         session.setAttribute("principal", principal);
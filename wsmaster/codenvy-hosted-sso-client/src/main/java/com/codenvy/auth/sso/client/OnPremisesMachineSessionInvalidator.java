@@ -30,13 +30,18 @@ public class OnPremisesMachineSessionInvalidator implements EventSubscriber<Work
 
   private final MachineTokenRegistry tokenRegistry;
   private final SessionStore sessionStore;
+  private final PrincipalCache principalCache;
   private final EventService eventService;
 
   @Inject
   public OnPremisesMachineSessionInvalidator(
-      MachineTokenRegistry tokenRegistry, SessionStore sessionStore, EventService eventService) {
+      MachineTokenRegistry tokenRegistry,
+      SessionStore sessionStore,
+      PrincipalCache principalCache,
+      EventService eventService) {
     this.tokenRegistry = tokenRegistry;
     this.sessionStore = sessionStore;
+    this.principalCache = principalCache;
     this.eventService = eventService;
   }
 
@@ -44,6 +49,7 @@ public class OnPremisesMachineSessionInvalidator implements EventSubscriber<Work
   public void onEvent(WorkspaceStatusEvent event) {
     if (WorkspaceStatusEvent.EventType.STOPPED.equals(event.getEventType())) {
       for (String token : tokenRegistry.removeTokens(event.getWorkspaceId()).values()) {
+        principalCache.invalidate(token);
         final HttpSession session = sessionStore.removeSessionByToken(token);
         if (session != null) {
           session.removeAttribute("principal");
@@ -0,0 +1,135 @@
+/*
+ * Copyright (c) [2012] - [2017] Red Hat, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *   Red Hat, Inc. - initial API and implementation
+ */
+package com.codenvy.auth.sso.client;
+
+import com.codahale.metrics.annotation.Gauge;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.inject.Named;
+import javax.inject.Singleton;
+import org.eclipse.che.commons.subject.Subject;
+
+/**
+ * Keeps subjects received from SSO server by their tokens, so HTTP sessions created for the token
+ * which is already known don't request SSO server.
+ *
+ * <p>Subject is cached together with the urls of clients for which it was received, since SSO
+ * server registers the client on subject request to notify it about logout. Tokens are removed from
+ * the cache on logout, and a subject received for the token which is just logged out is not cached.
+ * Cached subjects are kept not longer than {@code auth.sso.client.principal_cache_ttl_seconds},
+ * which limits the time the token is valid for the client if logout notification is lost.
+ */
+@Singleton
+public class PrincipalCache {
+  private static final long DEFAULT_TTL_SECONDS = 60;
+  private static final long DEFAULT_MAX_SIZE = 10_000;
+
+  private final AtomicLong hits;
+  private final AtomicLong misses;
+
+  private volatile Cache<String, Entry> subjects;
+  private volatile Cache<String, Boolean> loggedOut;
+
+  public PrincipalCache() {
+    this(DEFAULT_TTL_SECONDS, DEFAULT_MAX_SIZE);
+  }
+
+  @VisibleForTesting
+  PrincipalCache(long ttlSeconds, long maxSize) {
+    this.hits = new AtomicLong();
+    this.misses = new AtomicLong();
+    configure(ttlSeconds, maxSize);
+  }
+
+  @com.google.inject.Inject(optional = true)
+  void configure(
+      @Named("auth.sso.client.principal_cache_ttl_seconds") long ttlSeconds,
+      @Named("auth.sso.client.principal_cache_size") long maxSize) {
+    this.subjects =
+        CacheBuilder.newBuilder()
+            .maximumSize(maxSize)
+            .expireAfterWrite(ttlSeconds, TimeUnit.SECONDS)
+            .build();
+    this.loggedOut =
+        CacheBuilder.newBuilder()
+            .maximumSize(maxSize)
+            .expireAfterWrite(ttlSeconds, TimeUnit.SECONDS)
+            .build();
+  }
+
+  /**
+   * Gets subject of the token which was received for the given client.
+   *
+   * @param token SSO authentication token
+   * @param clientUrl url of the client which asks the subject
+   * @return cached subject or null if there is no subject of the token for the client
+   */
+  public Subject get(String token, String clientUrl) {
+    final Entry entry = subjects.getIfPresent(token);
+    if (entry != null && entry.clientUrls.contains(clientUrl)) {
+      hits.incrementAndGet();
+      return entry.subject;
+    }
+    misses.incrementAndGet();
+    return null;
+  }
+
+  /**
+   * Caches subject received from SSO server for the given client.
+   *
+   * @param token SSO authentication token
+   * @param clientUrl url of the client which asked the subject
+   * @param subject subject received from SSO server
+   */
+  public void put(String token, String clientUrl, Subject subject) {
+    if (loggedOut.getIfPresent(token) != null) {
+      return;
+    }
+    final Entry entry = new Entry(subject);
+    final Entry existing = subjects.asMap().putIfAbsent(token, entry);
+    (existing == null ? entry : existing).clientUrls.add(clientUrl);
+    // token may be logged out while the subject is cached
+    if (loggedOut.getIfPresent(token) != null) {
+      subjects.invalidate(token);
+    }
+  }
+
+  /** Removes subject of the token which is logged out. */
+  public void invalidate(String token) {
+    loggedOut.put(token, Boolean.TRUE);
+    subjects.invalidate(token);
+  }
+
+  @Gauge(name = "auth.sso.client.principal_cache_hits")
+  public long getHitCount() {
+    return hits.get();
+  }
+
+  @Gauge(name = "auth.sso.client.principal_cache_misses")
+  public long getMissCount() {
+    return misses.get();
+  }
+
+  private static class Entry {
+    final Subject subject;
+    final Set<String> clientUrls;
+
+    Entry(Subject subject) {
+      this.subject = subject;
+      this.clientUrls = ConcurrentHashMap.newKeySet();
+    }
+  }
+}
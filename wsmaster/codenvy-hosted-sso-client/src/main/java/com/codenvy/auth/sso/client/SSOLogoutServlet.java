@@ -22,7 +22,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
- * Invalidate sso client session associated with given token.
+ * Invalidate sso client sessions associated with given tokens.
  *
  * @author Sergii Kabashniuk
  * @author Andrey Parfonov
@@ -31,15 +31,24 @@ import org.slf4j.LoggerFactory;
 public class SSOLogoutServlet extends HttpServlet {
   private static final Logger LOG = LoggerFactory.getLogger(SSOLogoutServlet.class);
   @Inject protected SessionStore sessionStore;
+  @Inject protected PrincipalCache principalCache;
 
   @Override
   protected void doPost(HttpServletRequest req, HttpServletResponse resp)
       throws ServletException, IOException {
-    final String token = req.getParameter("authToken");
-    if (token == null) {
+    final String[] tokens = req.getParameterValues("authToken");
+    if (tokens == null || tokens.length == 0) {
       resp.sendError(HttpServletResponse.SC_BAD_REQUEST, "Token is not set");
       return;
     }
+    // SSO server sends tokens of the same client in batches
+    for (String token : tokens) {
+      logout(token);
+    }
+  }
+
+  private void logout(String token) {
+    principalCache.invalidate(token);
     HttpSession session = sessionStore.removeSessionByToken(token);
     if (session != null) {
       session.removeAttribute("principal");
@@ -10,72 +10,151 @@
  */
 package com.codenvy.auth.sso.client;
 
-import java.util.HashSet;
+import com.codahale.metrics.annotation.Gauge;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalNotification;
+import com.google.common.util.concurrent.UncheckedExecutionException;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.inject.Named;
 import javax.inject.Singleton;
 import javax.servlet.http.HttpSession;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 /**
  * Storage HttpSession's. Used to transfer relation's between session and token inside of SSO
  * client.
  *
+ * <p>Store doesn't use global lock, session and its tokens are changed under the lock of the
+ * session entry only, so requests of different sessions don't wait for each other. Number of
+ * tracked sessions is limited by {@code auth.sso.client.session_store_size}, least recently used
+ * (saved or looked up) sessions are evicted from the store and principal is removed from them, so
+ * the token of evicted session is checked by SSO server again on the next request.
+ *
  * @author Sergii Kabashniuk
  */
 @Singleton
 public class SessionStore {
-  private final ConcurrentHashMap<String, HttpSession> sessionsByToken;
-  private final ConcurrentHashMap<String, HttpSession> sessionsById;
-  private final ConcurrentHashMap<String, Set<String>> tokensBySessionId;
+  private static final Logger LOG = LoggerFactory.getLogger(SessionStore.class);
+
+  private static final long DEFAULT_MAX_SIZE = 100_000;
+
+  private final ConcurrentHashMap<String, SessionEntry> sessionsByToken;
+  private final AtomicLong evictions;
+
+  private volatile Cache<String, SessionEntry> sessionsById;
 
   public SessionStore() {
+    this(DEFAULT_MAX_SIZE);
+  }
+
+  @VisibleForTesting
+  SessionStore(long maxSize) {
     this.sessionsByToken = new ConcurrentHashMap<>();
-    this.sessionsById = new ConcurrentHashMap<>();
-    this.tokensBySessionId = new ConcurrentHashMap<>();
+    this.evictions = new AtomicLong();
+    configure(maxSize);
   }
 
-  public synchronized void saveSession(String token, HttpSession session) {
-    String sessionId = session.getId();
-    sessionsByToken.put(token, session);
-    sessionsById.putIfAbsent(sessionId, session);
-    Set<String> tokens = tokensBySessionId.get(sessionId);
-    if (tokens == null) {
-      tokens = new HashSet<>();
-      tokensBySessionId.put(sessionId, tokens);
-    }
-    tokens.add(token);
+  @com.google.inject.Inject(optional = true)
+  void configure(@Named("auth.sso.client.session_store_size") long maxSize) {
+    this.sessionsById =
+        CacheBuilder.newBuilder().maximumSize(maxSize).removalListener(this::onRemoval).build();
   }
 
-  public synchronized HttpSession removeSessionByToken(String token) {
-
-    HttpSession session = sessionsByToken.remove(token);
-    if (session != null) {
-      String sessionId = session.getId();
-      sessionsById.remove(sessionId);
-      Set<String> tokens = tokensBySessionId.remove(sessionId);
-      for (String otherToken : tokens) {
-        if (!token.equals(otherToken)) {
-          sessionsByToken.remove(otherToken);
-        }
+  public void saveSession(String token, HttpSession session) {
+    final String sessionId = session.getId();
+    SessionEntry entry;
+    do {
+      try {
+        entry = sessionsById.get(sessionId, () -> new SessionEntry(sessionId, session));
+      } catch (ExecutionException | UncheckedExecutionException x) {
+        throw new IllegalStateException(x.getCause());
       }
+    } while (!entry.addToken(token));
+  }
+
+  public HttpSession removeSessionByToken(String token) {
+    final SessionEntry entry = sessionsByToken.remove(token);
+    if (entry == null) {
+      return null;
     }
-    return session;
+    entry.remove();
+    return entry.session;
   }
 
   public HttpSession getSession(String token) {
+    final SessionEntry entry = sessionsByToken.get(token);
+    return entry == null ? null : entry.session;
+  }
 
-    return sessionsByToken.get(token);
+  public void removeSessionById(String sessionId) {
+    final SessionEntry entry = sessionsById.getIfPresent(sessionId);
+    if (entry != null) {
+      entry.remove();
+    }
   }
 
-  public synchronized void removeSessionById(String sessionId) {
+  @Gauge(name = "auth.sso.client.session_store.size")
+  public long getSize() {
+    return sessionsById.size();
+  }
 
-    HttpSession session = sessionsById.remove(sessionId);
-    if (session != null) {
+  @Gauge(name = "auth.sso.client.session_store.evictions")
+  public long getEvictionCount() {
+    return evictions.get();
+  }
 
-      Set<String> tokens = tokensBySessionId.remove(sessionId);
+  private void onRemoval(RemovalNotification<String, SessionEntry> notification) {
+    if (notification.wasEvicted() && notification.getValue().remove()) {
+      evictions.incrementAndGet();
+      try {
+        notification.getValue().session.removeAttribute("principal");
+      } catch (IllegalStateException x) {
+        LOG.debug("Evicted session {} is already invalidated", notification.getKey());
+      }
+    }
+  }
+
+  /** Session and its tokens, the tokens are changed under the lock of this entry. */
+  private class SessionEntry {
+    final String sessionId;
+    final HttpSession session;
+    final Set<String> tokens;
+
+    boolean removed;
+
+    SessionEntry(String sessionId, HttpSession session) {
+      this.sessionId = sessionId;
+      this.session = session;
+      this.tokens = ConcurrentHashMap.newKeySet();
+    }
+
+    /** Returns false if the entry is already removed from the store and can't be used anymore. */
+    synchronized boolean addToken(String token) {
+      if (removed) {
+        return false;
+      }
+      tokens.add(token);
+      sessionsByToken.put(token, this);
+      return true;
+    }
+
+    /** Removes this entry with all its tokens, returns false if the entry is already removed. */
+    synchronized boolean remove() {
+      if (removed) {
+        return false;
+      }
+      removed = true;
+      sessionsById.asMap().remove(sessionId, this);
       for (String token : tokens) {
-        sessionsByToken.remove(token);
+        sessionsByToken.remove(token, this);
       }
+      return true;
     }
   }
 }
@@ -0,0 +1,202 @@
+/*
+ * Copyright (c) [2012] - [2017] Red Hat, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *   Red Hat, Inc. - initial API and implementation
+ */
+package com.codenvy.auth.sso.client.filter;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Pattern;
+import javax.servlet.http.HttpServletRequest;
+
+/**
+ * Request filter which gives the same answers as the given filter tree, but doesn't evaluate the
+ * branches of the tree which can't skip the request.
+ *
+ * <p>Top level alternatives of the tree are indexed by the uri prefixes which are required for them
+ * to skip the request, e.g. prefix of {@link UriStartFromRequestFilter} or literal beginning of
+ * {@link RegexpRequestFilter} pattern. On each request the prefix tree is walked once along the
+ * request uri and only the alternatives which prefixes match the uri are evaluated. Alternatives
+ * without known prefix are evaluated for each request.
+ */
+public class CompiledRequestFilter implements RequestFilter {
+  private static final String REGEXP_META_CHARS = ".[]{}()*+?^$|";
+  private static final String REGEXP_QUANTIFIERS = "*?{";
+
+  private final RequestFilter[] unconditional;
+  private final Node root;
+
+  public CompiledRequestFilter(RequestFilter filter) {
+    final List<RequestFilter> alternatives = new ArrayList<>();
+    collectAlternatives(filter, alternatives);
+    final List<RequestFilter> unconditional = new ArrayList<>();
+    this.root = new Node();
+    for (RequestFilter alternative : alternatives) {
+      final Collection<String> prefixes = requiredPrefixes(alternative);
+      if (prefixes == null) {
+        unconditional.add(alternative);
+      } else {
+        for (String prefix : prefixes) {
+          root.add(prefix, 0, alternative);
+        }
+      }
+    }
+    this.unconditional = unconditional.toArray(new RequestFilter[unconditional.size()]);
+  }
+
+  @Override
+  public boolean shouldSkip(HttpServletRequest request) {
+    for (RequestFilter filter : unconditional) {
+      if (filter.shouldSkip(request)) {
+        return true;
+      }
+    }
+    final String uri = request.getRequestURI();
+    Node node = root;
+    for (int i = 0; node != null; i++) {
+      for (RequestFilter filter : node.filters) {
+        if (filter.shouldSkip(request)) {
+          return true;
+        }
+      }
+      if (uri == null || i == uri.length()) {
+        break;
+      }
+      node = node.child(uri.charAt(i));
+    }
+    return false;
+  }
+
+  private static void collectAlternatives(RequestFilter filter, List<RequestFilter> alternatives) {
+    if (filter instanceof DisjunctionRequestFilter) {
+      for (RequestFilter child : ((DisjunctionRequestFilter) filter).getRequestFilters()) {
+        collectAlternatives(child, alternatives);
+      }
+    } else if (!(filter instanceof SkipNothingFilter)) {
+      alternatives.add(filter);
+    }
+  }
+
+  /**
+   * Returns uri prefixes one of which the request uri must start with for the given filter to skip
+   * the request, or null if such prefixes are unknown.
+   */
+  static Collection<String> requiredPrefixes(RequestFilter filter) {
+    if (filter instanceof UriStartFromRequestFilter) {
+      return ((UriStartFromRequestFilter) filter).getStartUrlPatterns();
+    }
+    if (filter instanceof RegexpRequestFilter) {
+      final String prefix = literalPrefix(((RegexpRequestFilter) filter).getFilterPattern());
+      return prefix.isEmpty() ? null : Collections.singleton(prefix);
+    }
+    if (filter instanceof DisjunctionRequestFilter) {
+      final List<String> prefixes = new ArrayList<>();
+      for (RequestFilter child : ((DisjunctionRequestFilter) filter).getRequestFilters()) {
+        final Collection<String> childPrefixes = requiredPrefixes(child);
+        if (childPrefixes == null) {
+          return null;
+        }
+        prefixes.addAll(childPrefixes);
+      }
+      return prefixes;
+    }
+    if (filter instanceof ConjunctionRequestFilter) {
+      // any of the children must skip the request, so the most selective prefixes are taken
+      Collection<String> best = null;
+      for (RequestFilter child : ((ConjunctionRequestFilter) filter).getRequestFilters()) {
+        final Collection<String> childPrefixes = requiredPrefixes(child);
+        if (childPrefixes != null && (best == null || minLength(childPrefixes) > minLength(best))) {
+          best = childPrefixes;
+        }
+      }
+      return best;
+    }
+    return null;
+  }
+
+  /** Returns literal part of the pattern which any matching uri starts with. */
+  static String literalPrefix(Pattern pattern) {
+    final String regexp = pattern.pattern();
+    if (pattern.flags() != 0 || regexp.indexOf('|') != -1) {
+      return "";
+    }
+    final StringBuilder prefix = new StringBuilder();
+    int i = regexp.startsWith("^") ? 1 : 0;
+    while (i < regexp.length()) {
+      final char c = regexp.charAt(i);
+      if (REGEXP_META_CHARS.indexOf(c) != -1) {
+        break;
+      }
+      if (c == '\\') {
+        if (i + 1 == regexp.length() || Character.isLetterOrDigit(regexp.charAt(i + 1))) {
+          break;
+        }
+        prefix.append(regexp.charAt(i + 1));
+        i += 2;
+      } else {
+        prefix.append(c);
+        i++;
+      }
+    }
+    // the last literal is optional or repeated, e.g. '/api/?'
+    if (i < regexp.length()
+        && REGEXP_QUANTIFIERS.indexOf(regexp.charAt(i)) != -1
+        && prefix.length() > 0) {
+      prefix.setLength(prefix.length() - 1);
+    }
+    return prefix.toString();
+  }
+
+  private static int minLength(Collection<String> prefixes) {
+    int min = Integer.MAX_VALUE;
+    for (String prefix : prefixes) {
+      min = Math.min(min, prefix.length());
+    }
+    return min;
+  }
+
+  /** Node of the uri prefix tree, keeps the filters which prefix ends in this node. */
+  private static class Node {
+    char[] keys = new char[0];
+    Node[] children = new Node[0];
+    RequestFilter[] filters = new RequestFilter[0];
+
+    Node child(char key) {
+      for (int i = 0; i < keys.length; i++) {
+        if (keys[i] == key) {
+          return children[i];
+        }
+      }
+      return null;
+    }
+
+    void add(String prefix, int position, RequestFilter filter) {
+      if (position == prefix.length()) {
+        if (!Arrays.asList(filters).contains(filter)) {
+          filters = Arrays.copyOf(filters, filters.length + 1);
+          filters[filters.length - 1] = filter;
+        }
+        return;
+      }
+      final char key = prefix.charAt(position);
+      Node child = child(key);
+      if (child == null) {
+        child = new Node();
+        keys = Arrays.copyOf(keys, keys.length + 1);
+        keys[keys.length - 1] = key;
+        children = Arrays.copyOf(children, children.length + 1);
+        children[children.length - 1] = child;
+      }
+      child.add(prefix, position + 1, filter);
+    }
+  }
+}
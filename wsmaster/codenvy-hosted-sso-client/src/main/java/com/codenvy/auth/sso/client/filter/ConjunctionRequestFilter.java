@@ -31,6 +31,10 @@ public class ConjunctionRequestFilter implements RequestFilter {
         anotherRequestFilters, 0, this.requestFilters, 2, anotherRequestFilters.length);
   }
 
+  RequestFilter[] getRequestFilters() {
+    return requestFilters;
+  }
+
   @Override
   public boolean shouldSkip(HttpServletRequest request) {
     boolean result = true;
@@ -31,6 +31,10 @@ public class RegexpRequestFilter implements RequestFilter {
     this.filterPattern = Pattern.compile(filterPattern);
   }
 
+  Pattern getFilterPattern() {
+    return filterPattern;
+  }
+
   @Override
   public boolean shouldSkip(HttpServletRequest request) {
     return filterPattern.matcher(request.getRequestURI()).matches();
@@ -31,6 +31,10 @@ public class UriStartFromRequestFilter implements RequestFilter {
     this.startUrlPatterns = Collections.singletonList(startUrlPattern);
   }
 
+  List<String> getStartUrlPatterns() {
+    return startUrlPatterns;
+  }
+
   @Override
   public boolean shouldSkip(HttpServletRequest request) {
     String uri = request.getRequestURI();
@@ -21,6 +21,7 @@ import javax.servlet.http.HttpSession;
 import org.eclipse.che.api.core.notification.EventService;
 import org.eclipse.che.api.workspace.shared.dto.event.WorkspaceStatusEvent;
 import org.eclipse.che.commons.lang.NameGenerator;
+import org.eclipse.che.commons.subject.Subject;
 import org.eclipse.che.multiuser.machine.authentication.server.MachineTokenRegistry;
 import org.junit.Test;
 
@@ -32,13 +33,16 @@ public class MachineSessionInvalidatorTest {
     final MachineTokenRegistry registry = new MachineTokenRegistry();
     final EventService eventService = new EventService();
     final SessionStore sessionStore = new SessionStore();
+    final PrincipalCache principalCache = new PrincipalCache();
     final OnPremisesMachineSessionInvalidator invalidator =
-        new OnPremisesMachineSessionInvalidator(registry, sessionStore, eventService);
+        new OnPremisesMachineSessionInvalidator(
+            registry, sessionStore, principalCache, eventService);
     invalidator.subscribe();
     // generating a few tokens for the workspace
     final String token1 = registry.generateToken("user123", "workspace123");
     final String token2 = registry.generateToken("user234", "workspace123");
     final String token3 = registry.generateToken("user345", "workspace123");
+    principalCache.put(token1, "http://localhost:8080/wsagent", mock(Subject.class));
     // creating the sessions for the tokens
     final HttpSession httpSession1 = mockHttpSession();
     sessionStore.saveSession(token1, httpSession1);
@@ -55,6 +59,7 @@ public class MachineSessionInvalidatorTest {
     assertNull(sessionStore.getSession(token2));
     verify(httpSession2).invalidate();
     assertNull(sessionStore.getSession(token3));
+    assertNull(principalCache.get(token1, "http://localhost:8080/wsagent"));
   }
 
   private static HttpSession mockHttpSession() {
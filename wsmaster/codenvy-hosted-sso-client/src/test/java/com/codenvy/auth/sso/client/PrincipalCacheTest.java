@@ -0,0 +1,68 @@
+/*
+ * Copyright (c) [2012] - [2017] Red Hat, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *   Red Hat, Inc. - initial API and implementation
+ */
+package com.codenvy.auth.sso.client;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+
+import org.eclipse.che.commons.subject.Subject;
+import org.eclipse.che.commons.subject.SubjectImpl;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+public class PrincipalCacheTest {
+  private static final String TOKEN = "token123";
+  private static final String CLIENT = "http://localhost:8080/api";
+
+  private final Subject subject = new SubjectImpl("user", "user123", TOKEN, false);
+
+  private PrincipalCache cache;
+
+  @BeforeMethod
+  public void setUp() {
+    cache = new PrincipalCache(60, 100);
+  }
+
+  @Test
+  public void shouldReturnCachedSubjectForTheSameClient() {
+    cache.put(TOKEN, CLIENT, subject);
+
+    assertEquals(cache.get(TOKEN, CLIENT), subject);
+    assertEquals(cache.getHitCount(), 1);
+    assertEquals(cache.getMissCount(), 0);
+  }
+
+  @Test
+  public void shouldNotReturnSubjectForClientWhichIsNotRegistered() {
+    cache.put(TOKEN, CLIENT, subject);
+
+    assertNull(cache.get(TOKEN, "http://localhost:8080/wsagent"));
+    assertEquals(cache.getMissCount(), 1);
+  }
+
+  @Test
+  public void shouldRemoveSubjectOfLoggedOutToken() {
+    cache.put(TOKEN, CLIENT, subject);
+
+    cache.invalidate(TOKEN);
+
+    assertNull(cache.get(TOKEN, CLIENT));
+  }
+
+  @Test
+  public void shouldNotCacheSubjectOfLoggedOutToken() {
+    cache.invalidate(TOKEN);
+
+    cache.put(TOKEN, CLIENT, subject);
+
+    assertNull(cache.get(TOKEN, CLIENT));
+  }
+}
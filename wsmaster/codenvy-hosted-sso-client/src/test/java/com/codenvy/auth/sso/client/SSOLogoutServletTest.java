@@ -11,6 +11,7 @@
 package com.codenvy.auth.sso.client;
 
 import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyZeroInteractions;
 import static org.mockito.Mockito.when;
@@ -33,6 +34,7 @@ public class SSOLogoutServletTest {
 
   @Mock HttpServletResponse response;
   @Mock SessionStore sessionStore;
+  @Mock PrincipalCache principalCache;
 
   @Mock(answer = Answers.RETURNS_DEEP_STUBS)
   HttpSession session;
@@ -59,6 +61,7 @@ public class SSOLogoutServletTest {
     // when
     servlet.doPost(request, response);
     // when
+    verify(principalCache).invalidate("t-12312344");
     verify(sessionStore).removeSessionByToken("t-12312344");
     verifyZeroInteractions(response);
   }
@@ -76,4 +79,17 @@ public class SSOLogoutServletTest {
     verify(session).invalidate();
     verify(session).removeAttribute(eq("principal"));
   }
+
+  @Test
+  public void shouldRemoveAllTokensOfBatch() throws ServletException, IOException {
+    // given
+    HttpServletRequest request = mock(HttpServletRequest.class);
+    when(request.getParameterValues("authToken")).thenReturn(new String[] {"t-1", "t-2"});
+    // when
+    servlet.doPost(request, response);
+    // then
+    verify(sessionStore).removeSessionByToken("t-1");
+    verify(sessionStore).removeSessionByToken("t-2");
+    verifyZeroInteractions(response);
+  }
 }
@@ -0,0 +1,110 @@
+/*
+ * Copyright (c) [2012] - [2017] Red Hat, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *   Red Hat, Inc. - initial API and implementation
+ */
+package com.codenvy.auth.sso.client;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import javax.servlet.http.HttpSession;
+import org.testng.annotations.Test;
+
+public class SessionStoreTest {
+
+  @Test
+  public void shouldRemoveAllTokensOfSessionByOneOfTheTokens() {
+    final SessionStore store = new SessionStore(10);
+    final HttpSession session = mockSession("session1");
+    store.saveSession("token1", session);
+    store.saveSession("token2", session);
+
+    assertEquals(store.removeSessionByToken("token1"), session);
+
+    assertNull(store.getSession("token1"));
+    assertNull(store.getSession("token2"));
+    assertEquals(store.getSize(), 0);
+  }
+
+  @Test
+  public void shouldRemoveAllTokensOfSessionById() {
+    final SessionStore store = new SessionStore(10);
+    final HttpSession session = mockSession("session1");
+    store.saveSession("token1", session);
+    store.saveSession("token2", session);
+
+    store.removeSessionById("session1");
+
+    assertNull(store.getSession("token1"));
+    assertNull(store.getSession("token2"));
+    assertNull(store.removeSessionByToken("token1"));
+  }
+
+  @Test
+  public void shouldEvictSessionsWhenLimitIsReached() {
+    final SessionStore store = new SessionStore(1);
+    final HttpSession session1 = mockSession("session1");
+    final HttpSession session2 = mockSession("session2");
+
+    store.saveSession("token1", session1);
+    store.saveSession("token2", session2);
+
+    assertNull(store.getSession("token1"));
+    assertEquals(store.getSession("token2"), session2);
+    assertEquals(store.getSize(), 1);
+    assertEquals(store.getEvictionCount(), 1);
+    verify(session1).removeAttribute("principal");
+    verify(session2, never()).removeAttribute("principal");
+  }
+
+  @Test
+  public void shouldKeepIndexesConsistentUnderConcurrentModifications() throws Exception {
+    final SessionStore store = new SessionStore(1000);
+    final ExecutorService executor = Executors.newFixedThreadPool(8);
+    try {
+      final List<CompletableFuture<Void>> futures = new ArrayList<>();
+      for (int i = 0; i < 200; i++) {
+        final HttpSession session = mockSession("session" + i % 20);
+        final String token = "token" + i;
+        futures.add(
+            CompletableFuture.runAsync(
+                () -> {
+                  store.saveSession(token, session);
+                  store.removeSessionByToken(token);
+                },
+                executor));
+      }
+      CompletableFuture.allOf(futures.toArray(new CompletableFuture[futures.size()]))
+          .get(10, TimeUnit.SECONDS);
+    } finally {
+      executor.shutdownNow();
+    }
+
+    for (int i = 0; i < 200; i++) {
+      assertNull(store.getSession("token" + i));
+    }
+    assertEquals(store.getSize(), 0);
+  }
+
+  private static HttpSession mockSession(String id) {
+    final HttpSession session = mock(HttpSession.class);
+    when(session.getId()).thenReturn(id);
+    return session;
+  }
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright (c) [2012] - [2017] Red Hat, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *   Red Hat, Inc. - initial API and implementation
+ */
+package com.codenvy.auth.sso.client.filter;
+
+import static java.util.Arrays.asList;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+
+import java.util.regex.Pattern;
+import javax.servlet.http.HttpServletRequest;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+public class CompiledRequestFilterTest {
+
+  private final RequestFilter tree =
+      new DisjunctionRequestFilter(
+          new ConjunctionRequestFilter(
+              new UriStartFromRequestFilter("/api/factory"),
+              new RequestMethodFilter("GET"),
+              new NegationRequestFilter(new UriStartFromRequestFilter("/api/factory/find"))),
+          new UriStartFromRequestFilter(asList("/api/analytics/public-metric", "/api/docs")),
+          new RegexpRequestFilter("^/api/builder/(\\w+)/download/(.+)$"),
+          new ConjunctionRequestFilter(
+              new UriStartFromRequestFilter("/api/oauth/authenticate"),
+              r -> r.getParameter("userId") == null),
+          new DisjunctionRequestFilter(
+              new UriStartFromAndMethodRequestFilter("POST", "/api/user/settings"),
+              new RegexpRequestFilter("/api/user/?")),
+          new ConjunctionRequestFilter(
+              new RegexpRequestFilter("^/api/permissions$"), new RequestMethodFilter("GET")),
+          new ConjunctionRequestFilter(
+              new RequestMethodFilter("OPTIONS"), new NegationRequestFilter(r -> false)));
+
+  private final CompiledRequestFilter compiled = new CompiledRequestFilter(tree);
+
+  @Test(dataProvider = "requests")
+  public void shouldGiveTheSameAnswersAsFilterTree(String method, String uri, String userId) {
+    final HttpServletRequest request = mockRequest(method, uri, userId);
+
+    assertEquals(compiled.shouldSkip(request), tree.shouldSkip(request));
+  }
+
+  @DataProvider(name = "requests")
+  public Object[][] requests() {
+    return new Object[][] {
+      {"GET", "/api/factory/factory123", null},
+      {"POST", "/api/factory/factory123", null},
+      {"GET", "/api/factory/find", null},
+      {"GET", "/api/factor", null},
+      {"GET", "/api/analytics/public-metric/factory_used", null},
+      {"GET", "/api/docs/swagger.json", null},
+      {"GET", "/api/builder/b1/download/file.zip", null},
+      {"GET", "/api/builder/b1/status", null},
+      {"GET", "/api/oauth/authenticate", null},
+      {"GET", "/api/oauth/authenticate", "user123"},
+      {"POST", "/api/user/settings", null},
+      {"GET", "/api/user/settings", null},
+      {"GET", "/api/user", null},
+      {"GET", "/api/user/", null},
+      {"GET", "/api/permissions", null},
+      {"GET", "/api/permissions/workspace", null},
+      {"POST", "/api/permissions", null},
+      {"OPTIONS", "/api/workspace", null},
+      {"GET", "/api/workspace/workspace123", null},
+      {"GET", "/", null},
+      {"GET", "", null}
+    };
+  }
+
+  @Test
+  public void shouldNotEvaluateFiltersWhichPrefixDoesNotMatchUri() {
+    final RequestFilter docs = spy(new UriStartFromRequestFilter("/api/docs"));
+    final RequestFilter method = spy(new RequestMethodFilter("OPTIONS"));
+    final CompiledRequestFilter filter =
+        new CompiledRequestFilter(
+            new DisjunctionRequestFilter(
+                docs,
+                new ConjunctionRequestFilter(new UriStartFromRequestFilter("/api/user"), method)));
+
+    filter.shouldSkip(mockRequest("OPTIONS", "/api/workspace", null));
+
+    verify(docs, never()).shouldSkip(any());
+    verify(method, never()).shouldSkip(any());
+  }
+
+  @Test
+  public void shouldFindLiteralPrefixOfPattern() {
+    assertEquals(
+        CompiledRequestFilter.literalPrefix(Pattern.compile("^/api/builder/(\\w+)/download$")),
+        "/api/builder/");
+    assertEquals(CompiledRequestFilter.literalPrefix(Pattern.compile("/api/user/?")), "/api/user");
+    assertEquals(CompiledRequestFilter.literalPrefix(Pattern.compile("\\/api\\.x")), "/api.x");
+    assertEquals(CompiledRequestFilter.literalPrefix(Pattern.compile("/api|/ide")), "");
+    assertEquals(
+        CompiledRequestFilter.literalPrefix(Pattern.compile("/api", Pattern.CASE_INSENSITIVE)), "");
+  }
+
+  @Test
+  public void shouldNotRequirePrefixForFilterWhichMayMatchAnyUri() {
+    assertNull(
+        CompiledRequestFilter.requiredPrefixes(
+            new DisjunctionRequestFilter(
+                new UriStartFromRequestFilter("/api/docs"), new RequestMethodFilter("GET"))));
+  }
+
+  private static HttpServletRequest mockRequest(String method, String uri, String userId) {
+    final HttpServletRequest request = mock(HttpServletRequest.class);
+    when(request.getMethod()).thenReturn(method);
+    when(request.getRequestURI()).thenReturn(uri);
+    when(request.getParameter("userId")).thenReturn(userId);
+    return request;
+  }
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright (c) [2012] - [2017] Red Hat, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *   Red Hat, Inc. - initial API and implementation
+ */
+package com.codenvy.auth.sso.client.filter;
+
+import static com.google.common.base.Strings.isNullOrEmpty;
+
+import java.util.concurrent.TimeUnit;
+import javax.servlet.http.HttpServletRequest;
+import org.everrest.test.mock.MockHttpServletRequest;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Compares {@link CompiledRequestFilter} with the filter tree it is compiled from, on the tree
+ * configured for workspace master and the mix of requests which mostly are not skipped.
+ *
+ * <p>Run with {@code main} method from the test classpath.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RequestFilterBenchmark {
+  private static final String[][] REQUESTS = {
+    {"GET", "/api/workspace/workspace123"},
+    {"GET", "/api/workspace"},
+    {"POST", "/api/workspace/workspace123/runtime"},
+    {"GET", "/api/user"},
+    {"GET", "/api/user/settings"},
+    {"GET", "/api/profile"},
+    {"GET", "/api/preferences"},
+    {"GET", "/api/permissions"},
+    {"GET", "/api/permissions/workspace"},
+    {"GET", "/api/factory/factory123"},
+    {"GET", "/api/factory/find"},
+    {"GET", "/api/docs/swagger.json"},
+    {"GET", "/api/builder/b1/download/file.zip"},
+    {"GET", "/api/oauth/authenticate"},
+    {"GET", "/api/project-template/all"},
+    {"GET", "/api/ssh/machine"}
+  };
+
+  private RequestFilter tree;
+  private RequestFilter compiled;
+  private HttpServletRequest[] requests;
+
+  @Setup
+  public void setUp() {
+    tree =
+        new DisjunctionRequestFilter(
+            new ConjunctionRequestFilter(
+                new UriStartFromRequestFilter("/api/factory"),
+                new RequestMethodFilter("GET"),
+                new DisjunctionRequestFilter(
+                    new PathSegmentValueFilter(4, "image"),
+                    new PathSegmentValueFilter(4, "snippet"),
+                    new ConjunctionRequestFilter(
+                        new PathSegmentNumberFilter(3),
+                        new NegationRequestFilter(
+                            new UriStartFromRequestFilter("/api/factory/find"))))),
+            new UriStartFromRequestFilter("/api/analytics/public-metric"),
+            new UriStartFromRequestFilter("/api/docs"),
+            new RegexpRequestFilter("^/api/builder/(\\w+)/download/(.+)$"),
+            new ConjunctionRequestFilter(
+                new UriStartFromRequestFilter("/api/oauth/authenticate"),
+                r -> isNullOrEmpty(r.getParameter("userId"))),
+            new UriStartFromRequestFilter("/api/user/settings"),
+            new ConjunctionRequestFilter(
+                new RegexpRequestFilter("^/api/permissions$"), new RequestMethodFilter("GET")));
+    compiled = new CompiledRequestFilter(tree);
+    requests = new HttpServletRequest[REQUESTS.length];
+    for (int i = 0; i < REQUESTS.length; i++) {
+      requests[i] =
+          new MockHttpServletRequest(
+              "http://localhost:8080" + REQUESTS[i][1], null, 0, REQUESTS[i][0], null);
+    }
+  }
+
+  @Benchmark
+  public void filterTree(Blackhole blackhole) {
+    for (HttpServletRequest request : requests) {
+      blackhole.consume(tree.shouldSkip(request));
+    }
+  }
+
+  @Benchmark
+  public void compiledFilter(Blackhole blackhole) {
+    for (HttpServletRequest request : requests) {
+      blackhole.consume(compiled.shouldSkip(request));
+    }
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    new Runner(new OptionsBuilder().include(RequestFilterBenchmark.class.getSimpleName()).build())
+        .run();
+  }
+}
@@ -97,7 +97,7 @@ public class SsoService {
     if (accessTicket == null) {
       throw new AuthenticationException("Access token not found or expired.");
     } else {
-      accessTicket.registerClientUrl(clientUrl);
+      ticketManager.registerClientUrl(token, clientUrl);
       User user = userManager.getById(accessTicket.getUserId());
       return DtoFactory.newDto(SubjectDto.class)
           .withName(user.getName())
@@ -116,10 +116,7 @@ public class SsoService {
     if (clientUrl == null || clientUrl.isEmpty()) {
       ticketManager.removeTicket(token);
     } else {
-      AccessTicket accessTicket = ticketManager.getAccessTicket(token);
-      if (accessTicket != null) {
-        accessTicket.unRegisterClientUrl(clientUrl);
-      }
+      ticketManager.unRegisterClientUrl(token, clientUrl);
     }
   }
 
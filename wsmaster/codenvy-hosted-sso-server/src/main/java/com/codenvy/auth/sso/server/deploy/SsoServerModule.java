@@ -10,7 +10,7 @@
  */
 package com.codenvy.auth.sso.server.deploy;
 
-import com.codenvy.auth.sso.server.ticket.InMemoryTicketManager;
+import com.codenvy.auth.sso.server.ticket.TicketManagerProvider;
 import com.google.inject.AbstractModule;
 
 /**
@@ -22,7 +22,8 @@ public class SsoServerModule extends AbstractModule {
 
   @Override
   protected void configure() {
-    bind(com.codenvy.api.dao.authentication.TicketManager.class).to(InMemoryTicketManager.class);
+    bind(com.codenvy.api.dao.authentication.TicketManager.class)
+        .toProvider(TicketManagerProvider.class);
     bind(com.codenvy.api.dao.authentication.TokenGenerator.class)
         .to(com.codenvy.auth.sso.server.SecureRandomTokenGenerator.class);
     bind(com.codenvy.api.dao.authentication.CookieBuilder.class)
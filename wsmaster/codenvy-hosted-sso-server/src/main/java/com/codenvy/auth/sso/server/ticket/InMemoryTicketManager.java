@@ -14,29 +14,37 @@ import com.codahale.metrics.annotation.Gauge;
 import com.codenvy.api.dao.authentication.AccessTicket;
 import com.codenvy.api.dao.authentication.TicketManager;
 import com.google.inject.Singleton;
-import java.io.IOException;
-import java.io.InputStream;
-import java.io.OutputStream;
-import java.net.HttpURLConnection;
-import java.net.URL;
-import java.net.URLEncoder;
-import java.util.HashMap;
+import java.util.Comparator;
 import java.util.HashSet;
-import java.util.Map;
+import java.util.NavigableSet;
 import java.util.Set;
-import java.util.concurrent.locks.ReadWriteLock;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
-import javax.servlet.http.HttpServletResponse;
-import org.eclipse.che.commons.lang.IoUtil;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import javax.inject.Inject;
 
-/** Simple implementation of <code>TicketManager</code> */
+/**
+ * Simple implementation of <code>TicketManager</code>
+ *
+ * <p>Tickets are kept in a concurrent map, so token validation never waits for other operations.
+ * Tickets are also indexed by creation time to find expired tickets without scanning all of them.
+ * Logout notifications are sent to SSO clients asynchronously by {@link SsoClientLogoutNotifier}.
+ */
 @Singleton
 public class InMemoryTicketManager implements TicketManager {
-  private static final Logger LOG = LoggerFactory.getLogger(InMemoryTicketManager.class);
-  private final Map<String, AccessTicket> accessTickets = new HashMap<>();
-  private final ReadWriteLock readWriteLock = new ReentrantReadWriteLock();
+  private static final Comparator<AccessTicket> CREATION_ORDER =
+      Comparator.comparingLong(AccessTicket::getCreationTime)
+          .thenComparing(AccessTicket::getAccessToken);
+
+  private final ConcurrentMap<String, AccessTicket> accessTickets = new ConcurrentHashMap<>();
+  private final NavigableSet<AccessTicket> creationIndex =
+      new ConcurrentSkipListSet<>(CREATION_ORDER);
+  private final SsoClientLogoutNotifier logoutNotifier;
+
+  @Inject
+  public InMemoryTicketManager(SsoClientLogoutNotifier logoutNotifier) {
+    this.logoutNotifier = logoutNotifier;
+  }
 
   /** @see TicketManager#putAccessTicket(com.codenvy.api.dao.authentication.AccessTicket) */
   @Override
@@ -44,12 +52,15 @@ public class InMemoryTicketManager implements TicketManager {
     if (accessTicket.getUserId() == null) {
       throw new IllegalArgumentException("Access ticket has no principal or username in principal");
     }
-    readWriteLock.writeLock().lock();
-    try {
-      accessTickets.put(accessTicket.getAccessToken(), accessTicket);
-    } finally {
-      readWriteLock.writeLock().unlock();
-    }
+    accessTickets.compute(
+        accessTicket.getAccessToken(),
+        (token, previous) -> {
+          if (previous != null) {
+            creationIndex.remove(previous);
+          }
+          creationIndex.add(accessTicket);
+          return accessTicket;
+        });
   }
 
   /** @see TicketManager#getAccessTicket(java.lang.String) */
@@ -58,13 +69,7 @@ public class InMemoryTicketManager implements TicketManager {
     if (accessToken == null) {
       return null;
     }
-
-    readWriteLock.readLock().lock();
-    try {
-      return accessTickets.get(accessToken);
-    } finally {
-      readWriteLock.readLock().unlock();
-    }
+    return accessTickets.get(accessToken);
   }
 
   /** @see TicketManager#removeTicket(java.lang.String) */
@@ -73,63 +78,19 @@ public class InMemoryTicketManager implements TicketManager {
     if (accessToken == null) {
       return null;
     }
-
-    readWriteLock.writeLock().lock();
-    try {
-
-      AccessTicket ticket = accessTickets.remove(accessToken);
-      if (ticket == null) return null;
-      for (String ssoClient : ticket.getRegisteredClients()) {
-        // NOTE : must send as many logout request as possible.
-        HttpURLConnection conn = null;
-        try {
-          conn = (HttpURLConnection) new URL(ssoClient + "/_sso/client/logout").openConnection();
-          conn.setRequestMethod("POST");
-          conn.setDoOutput(true);
-          conn.setInstanceFollowRedirects(false);
-          conn.setConnectTimeout(5 * 1000);
-          conn.setReadTimeout(5 * 1000);
-          conn.setRequestProperty("Content-Type", "application/x-www-form-urlencoded");
-          OutputStream out = conn.getOutputStream();
-          out.write(
-              ("authToken=" + URLEncoder.encode(ticket.getAccessToken(), "UTF-8")).getBytes());
-
-          int responseCode = conn.getResponseCode();
-          LOG.debug("Sent logout request to {} response {}", conn.getURL(), responseCode);
-          if (responseCode / 100 != 2) {
-            if (responseCode == HttpServletResponse.SC_BAD_GATEWAY) {
-              LOG.warn("Tenant {} is unavailable. Logout request not executed", ssoClient);
-            } else if (responseCode == HttpServletResponse.SC_MOVED_TEMPORARILY) {
-              LOG.warn(
-                  "Logout request for tenant {} was redirected to {}. Logout was omitted",
-                  ssoClient,
-                  conn.getHeaderField("Location"));
-            } else {
-              InputStream errorStream = conn.getErrorStream();
-              String message = errorStream != null ? IoUtil.readAndCloseQuietly(errorStream) : "";
-              throw new IOException(
-                  "Unexpected response code '"
-                      + responseCode
-                      + "' for SSO logout request to"
-                      + " '"
-                      + conn.getURL()
-                      + "'. "
-                      + message);
-            }
-          }
-
-        } catch (IOException e) {
-          LOG.warn("{}. Not able to send logout request to {}", e.getLocalizedMessage(), ssoClient);
-        } finally {
-          if (conn != null) {
-            conn.disconnect();
-          }
-        }
-      }
-      return ticket;
-    } finally {
-      readWriteLock.writeLock().unlock();
+    final AccessTicket[] removed = new AccessTicket[1];
+    accessTickets.computeIfPresent(
+        accessToken,
+        (token, ticket) -> {
+          creationIndex.remove(ticket);
+          removed[0] = ticket;
+          return null;
+        });
+    if (removed[0] == null) {
+      return null;
     }
+    logoutNotifier.notifyLogout(removed[0]);
+    return removed[0];
   }
 
   /** @return number of access tickets. */
@@ -140,11 +101,18 @@ public class InMemoryTicketManager implements TicketManager {
 
   @Override
   public Set<AccessTicket> getAccessTickets() {
-    readWriteLock.readLock().lock();
-    try {
-      return new HashSet<>(accessTickets.values());
-    } finally {
-      readWriteLock.readLock().unlock();
+    return new HashSet<>(accessTickets.values());
+  }
+
+  @Override
+  public Set<AccessTicket> getAccessTicketsCreatedBefore(long time) {
+    final Set<AccessTicket> tickets = new HashSet<>();
+    for (AccessTicket ticket : creationIndex) {
+      if (ticket.getCreationTime() >= time) {
+        break;
+      }
+      tickets.add(ticket);
     }
+    return tickets;
   }
 }
@@ -0,0 +1,224 @@
+/*
+ * Copyright (c) [2012] - [2017] Red Hat, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *   Red Hat, Inc. - initial API and implementation
+ */
+package com.codenvy.auth.sso.server.ticket;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.codahale.metrics.annotation.Gauge;
+import com.codenvy.api.dao.authentication.AccessTicket;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.annotation.PreDestroy;
+import javax.inject.Singleton;
+import javax.servlet.http.HttpServletResponse;
+import org.eclipse.che.commons.lang.IoUtil;
+import org.eclipse.che.commons.lang.concurrent.LoggingUncaughtExceptionHandler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Notifies SSO clients about logout of access tickets.
+ *
+ * <p>Notifications are sent asynchronously, so removal of a ticket doesn't wait for clients. Each
+ * client has its own queue of tokens, which is drained by one thread at a time, and all the tokens
+ * which are queued for a client are sent in a single request up to {@link #MAX_BATCH_SIZE} tokens.
+ * Thus a slow client delays only its own notifications, and mass logout, e.g. on tickets
+ * expiration, doesn't produce a request per ticket.
+ */
+@Singleton
+public class SsoClientLogoutNotifier {
+  private static final Logger LOG = LoggerFactory.getLogger(SsoClientLogoutNotifier.class);
+
+  @VisibleForTesting static final int MAX_BATCH_SIZE = 100;
+
+  private static final int THREADS = 4;
+
+  private final ExecutorService executor;
+  private final Cache<String, ClientQueue> clientQueues;
+  private final AtomicInteger pending;
+
+  public SsoClientLogoutNotifier() {
+    this.executor =
+        Executors.newFixedThreadPool(
+            THREADS,
+            new ThreadFactoryBuilder()
+                .setNameFormat("SsoClientLogoutNotifier-%d")
+                .setUncaughtExceptionHandler(LoggingUncaughtExceptionHandler.getInstance())
+                .setDaemon(true)
+                .build());
+    this.clientQueues = CacheBuilder.newBuilder().expireAfterAccess(1, TimeUnit.HOURS).build();
+    this.pending = new AtomicInteger();
+  }
+
+  /** Schedules logout notifications for all the clients registered in the ticket. */
+  public void notifyLogout(AccessTicket ticket) {
+    for (String client : ticket.getRegisteredClients()) {
+      try {
+        clientQueues.get(client, () -> new ClientQueue(client)).add(ticket.getAccessToken());
+      } catch (ExecutionException x) {
+        // never happens, queue creation doesn't throw checked exceptions
+        LOG.error(x.getLocalizedMessage(), x);
+      }
+    }
+  }
+
+  /** @return number of tokens which are waiting to be sent to clients. */
+  @Gauge(name = "auth.sso.logout_notifications_pending")
+  public int getPendingNotifications() {
+    return pending.get();
+  }
+
+  @PreDestroy
+  public void shutdown() {
+    executor.shutdownNow();
+  }
+
+  /**
+   * Sends logout request with the tokens to the client.
+   *
+   * @throws IOException if client responds with unexpected code
+   */
+  @VisibleForTesting
+  void sendLogout(String client, List<String> tokens) throws IOException {
+    final StringBuilder body = new StringBuilder();
+    for (String token : tokens) {
+      if (body.length() > 0) {
+        body.append('&');
+      }
+      body.append("authToken=").append(URLEncoder.encode(token, "UTF-8"));
+    }
+    HttpURLConnection conn = null;
+    try {
+      conn = (HttpURLConnection) new URL(client + "/_sso/client/logout").openConnection();
+      conn.setRequestMethod("POST");
+      conn.setDoOutput(true);
+      conn.setInstanceFollowRedirects(false);
+      conn.setConnectTimeout(5 * 1000);
+      conn.setReadTimeout(5 * 1000);
+      conn.setRequestProperty("Content-Type", "application/x-www-form-urlencoded");
+      try (OutputStream out = conn.getOutputStream()) {
+        out.write(body.toString().getBytes(UTF_8));
+      }
+
+      int responseCode = conn.getResponseCode();
+      LOG.debug(
+          "Sent logout request for {} tokens to {} response {}",
+          tokens.size(),
+          conn.getURL(),
+          responseCode);
+      if (responseCode / 100 != 2) {
+        if (responseCode == HttpServletResponse.SC_BAD_GATEWAY) {
+          LOG.warn("Tenant {} is unavailable. Logout request not executed", client);
+        } else if (responseCode == HttpServletResponse.SC_MOVED_TEMPORARILY) {
+          LOG.warn(
+              "Logout request for tenant {} was redirected to {}. Logout was omitted",
+              client,
+              conn.getHeaderField("Location"));
+        } else {
+          InputStream errorStream = conn.getErrorStream();
+          String message = errorStream != null ? IoUtil.readAndCloseQuietly(errorStream) : "";
+          throw new IOException(
+              "Unexpected response code '"
+                  + responseCode
+                  + "' for SSO logout request to"
+                  + " '"
+                  + conn.getURL()
+                  + "'. "
+                  + message);
+        }
+      }
+    } finally {
+      if (conn != null) {
+        conn.disconnect();
+      }
+    }
+  }
+
+  /** Tokens which wait to be sent to a single client. */
+  private class ClientQueue {
+    final String client;
+    final Queue<String> tokens;
+    final AtomicBoolean scheduled;
+
+    ClientQueue(String client) {
+      this.client = client;
+      this.tokens = new ConcurrentLinkedQueue<>();
+      this.scheduled = new AtomicBoolean();
+    }
+
+    void add(String token) {
+      tokens.add(token);
+      pending.incrementAndGet();
+      schedule();
+    }
+
+    void schedule() {
+      if (scheduled.compareAndSet(false, true)) {
+        try {
+          executor.execute(this::drain);
+        } catch (RejectedExecutionException x) {
+          // notifier is shut down
+          scheduled.set(false);
+        }
+      }
+    }
+
+    void drain() {
+      try {
+        List<String> batch;
+        while (!(batch = poll()).isEmpty()) {
+          try {
+            sendLogout(client, batch);
+          } catch (IOException x) {
+            // NOTE : must send as many logout request as possible.
+            LOG.warn("{}. Not able to send logout request to {}", x.getLocalizedMessage(), client);
+          } finally {
+            pending.addAndGet(-batch.size());
+          }
+        }
+      } finally {
+        scheduled.set(false);
+      }
+      // tokens may be added after the last poll but before the flag is reset
+      if (!tokens.isEmpty()) {
+        schedule();
+      }
+    }
+
+    private List<String> poll() {
+      final List<String> batch = new ArrayList<>();
+      String token;
+      while (batch.size() < MAX_BATCH_SIZE && (token = tokens.poll()) != null) {
+        batch.add(token);
+      }
+      return batch;
+    }
+  }
+}
@@ -0,0 +1,46 @@
+/*
+ * Copyright (c) [2012] - [2017] Red Hat, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *   Red Hat, Inc. - initial API and implementation
+ */
+package com.codenvy.auth.sso.server.ticket;
+
+import com.codenvy.api.dao.authentication.TicketManager;
+import com.codenvy.auth.sso.server.ticket.jpa.JpaTicketManager;
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Provider;
+
+/**
+ * Provides {@link TicketManager} implementation based on configuration.
+ *
+ * <p>{@code memory} store keeps tickets in the heap of the master, {@code jpa} store keeps them in
+ * the database, so they are shared between masters and survive restart.
+ */
+public class TicketManagerProvider implements Provider<TicketManager> {
+
+  @Inject private Provider<InMemoryTicketManager> inMemoryTicketManagerProvider;
+
+  @Inject private Provider<JpaTicketManager> jpaTicketManagerProvider;
+
+  @com.google.inject.Inject(optional = true)
+  @Named("auth.sso.ticket_store")
+  private String ticketStore;
+
+  @Override
+  public TicketManager get() {
+    if (ticketStore == null || ticketStore.equals("memory")) {
+      return inMemoryTicketManagerProvider.get();
+    }
+    if (ticketStore.equals("jpa")) {
+      return jpaTicketManagerProvider.get();
+    }
+    throw new IllegalStateException(
+        "Supported values for the property 'auth.sso.ticket_store' are 'memory' or 'jpa'");
+  }
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright (c) [2012] - [2017] Red Hat, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *   Red Hat, Inc. - initial API and implementation
+ */
+package com.codenvy.auth.sso.server.ticket.jpa;
+
+import com.codenvy.api.dao.authentication.AccessTicket;
+import java.util.HashSet;
+import java.util.Set;
+import javax.persistence.Cacheable;
+import javax.persistence.CollectionTable;
+import javax.persistence.Column;
+import javax.persistence.ElementCollection;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.JoinColumn;
+import javax.persistence.NamedQueries;
+import javax.persistence.NamedQuery;
+import javax.persistence.Table;
+
+/**
+ * Data object for {@link AccessTicket}.
+ *
+ * <p>Entity is not kept in the shared cache, since tickets are changed by all the masters and
+ * {@link JpaTicketManager} keeps its own near-cache which is invalidated between masters.
+ */
+@Entity(name = "AccessTicket")
+@Table(name = "codenvy_access_ticket")
+@Cacheable(false)
+@NamedQueries({
+  @NamedQuery(
+    name = "AccessTicket.getAll",
+    query = "SELECT t " + "FROM AccessTicket t " + "LEFT JOIN FETCH t.registeredClients"
+  ),
+  @NamedQuery(
+    name = "AccessTicket.getCreatedBefore",
+    query =
+        "SELECT t "
+            + "FROM AccessTicket t "
+            + "LEFT JOIN FETCH t.registeredClients "
+            + "WHERE t.creationTime < :time"
+  ),
+  @NamedQuery(
+    name = "AccessTicket.remove",
+    query = "DELETE " + "FROM AccessTicket t " + "WHERE t.accessToken = :token"
+  )
+})
+public class AccessTicketEntity {
+  @Id
+  @Column(name = "access_token")
+  private String accessToken;
+
+  @Column(name = "user_id", nullable = false)
+  private String userId;
+
+  @Column(name = "auth_handler_type", nullable = false)
+  private String authHandlerType;
+
+  @Column(name = "creation_time", nullable = false)
+  private long creationTime;
+
+  @ElementCollection
+  @Column(name = "client_url", nullable = false)
+  @CollectionTable(
+    name = "codenvy_access_ticket_client",
+    joinColumns = @JoinColumn(name = "access_token")
+  )
+  private Set<String> registeredClients;
+
+  public AccessTicketEntity() {}
+
+  public AccessTicketEntity(AccessTicket ticket) {
+    this.accessToken = ticket.getAccessToken();
+    this.userId = ticket.getUserId();
+    this.authHandlerType = ticket.getAuthHandlerType();
+    this.creationTime = ticket.getCreationTime();
+    this.registeredClients = new HashSet<>(ticket.getRegisteredClients());
+  }
+
+  public String getAccessToken() {
+    return accessToken;
+  }
+
+  public Set<String> getRegisteredClients() {
+    if (registeredClients == null) {
+      registeredClients = new HashSet<>();
+    }
+    return registeredClients;
+  }
+
+  /** Creates {@link AccessTicket} from this entity. */
+  public AccessTicket toAccessTicket() {
+    final AccessTicket ticket =
+        new AccessTicket(accessToken, userId, authHandlerType, creationTime);
+    getRegisteredClients().forEach(ticket::registerClientUrl);
+    return ticket;
+  }
+}
@@ -0,0 +1,293 @@
+/*
+ * Copyright (c) [2012] - [2017] Red Hat, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *   Red Hat, Inc. - initial API and implementation
+ */
+package com.codenvy.auth.sso.server.ticket.jpa;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.util.stream.Collectors.toSet;
+
+import com.codenvy.api.dao.authentication.AccessTicket;
+import com.codenvy.api.dao.authentication.TicketManager;
+import com.codenvy.auth.sso.server.ticket.SsoClientLogoutNotifier;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.inject.persist.Transactional;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Provider;
+import javax.inject.Singleton;
+import javax.persistence.EntityManager;
+import org.eclipse.che.commons.lang.concurrent.LoggingUncaughtExceptionHandler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * JPA implementation of {@link TicketManager} which allows to share access tickets between several
+ * masters and keep them after restart.
+ *
+ * <p>Token validation is the most frequent operation, so tickets are read through a near-cache
+ * which is kept for {@code auth.sso.ticket_store.cache_ttl_seconds}. Registration of the SSO client
+ * happens on each token validation as well, so only registration of the client which is not known
+ * to the cached ticket yet is written to the database. It is written at once, so the client is
+ * notified about logout performed on any master.
+ *
+ * <p>Removal of a ticket is recorded in the database, and each master reads the records once in
+ * {@code auth.sso.ticket_store.sync_period_ms} and evicts removed tickets from its near-cache.
+ * Records are read for the whole near-cache lifetime, so a ticket removed by another master is not
+ * served longer than the synchronization period as long as the clocks of masters differ less than
+ * the near-cache lifetime.
+ */
+@Singleton
+public class JpaTicketManager implements TicketManager {
+  private static final Logger LOG = LoggerFactory.getLogger(JpaTicketManager.class);
+
+  private static final int NEAR_CACHE_MAX_SIZE = 100_000;
+
+  private final Provider<EntityManager> managerProvider;
+  private final SsoClientLogoutNotifier logoutNotifier;
+  private final long cacheTtlMs;
+  private final long syncPeriodMs;
+  private final Cache<String, AccessTicket> nearCache;
+
+  private ScheduledExecutorService syncExecutor;
+  private long lastRemovalRecordsCleanup;
+
+  @Inject
+  public JpaTicketManager(
+      Provider<EntityManager> managerProvider,
+      SsoClientLogoutNotifier logoutNotifier,
+      @Named("auth.sso.ticket_store.cache_ttl_seconds") long cacheTtlSeconds,
+      @Named("auth.sso.ticket_store.sync_period_ms") long syncPeriodMs) {
+    checkArgument(
+        syncPeriodMs > 0 && syncPeriodMs < TimeUnit.SECONDS.toMillis(cacheTtlSeconds),
+        "Synchronization period must be positive and less than near-cache lifetime");
+    this.managerProvider = managerProvider;
+    this.logoutNotifier = logoutNotifier;
+    this.cacheTtlMs = TimeUnit.SECONDS.toMillis(cacheTtlSeconds);
+    this.syncPeriodMs = syncPeriodMs;
+    this.nearCache =
+        CacheBuilder.newBuilder()
+            .maximumSize(NEAR_CACHE_MAX_SIZE)
+            .expireAfterWrite(cacheTtlSeconds, TimeUnit.SECONDS)
+            .build();
+  }
+
+  @PostConstruct
+  public void start() {
+    syncExecutor =
+        Executors.newSingleThreadScheduledExecutor(
+            new ThreadFactoryBuilder()
+                .setNameFormat("JpaTicketManagerSync-%d")
+                .setUncaughtExceptionHandler(LoggingUncaughtExceptionHandler.getInstance())
+                .setDaemon(true)
+                .build());
+    syncExecutor.scheduleWithFixedDelay(
+        this::synchronize, syncPeriodMs, syncPeriodMs, TimeUnit.MILLISECONDS);
+  }
+
+  @PreDestroy
+  public void stop() {
+    if (syncExecutor != null) {
+      syncExecutor.shutdownNow();
+    }
+  }
+
+  @Override
+  public void putAccessTicket(AccessTicket accessTicket) {
+    if (accessTicket.getUserId() == null) {
+      throw new IllegalArgumentException("Access ticket has no principal or username in principal");
+    }
+    doPut(accessTicket);
+    nearCache.put(accessTicket.getAccessToken(), accessTicket);
+  }
+
+  @Override
+  public AccessTicket getAccessTicket(String accessToken) {
+    if (accessToken == null) {
+      return null;
+    }
+    AccessTicket ticket = nearCache.getIfPresent(accessToken);
+    if (ticket == null) {
+      ticket = doGet(accessToken);
+      if (ticket != null) {
+        nearCache.put(accessToken, ticket);
+      }
+    }
+    return ticket;
+  }
+
+  @Override
+  public AccessTicket removeTicket(String accessToken) {
+    if (accessToken == null) {
+      return null;
+    }
+    nearCache.invalidate(accessToken);
+    final AccessTicket removed = doRemove(accessToken, System.currentTimeMillis());
+    if (removed == null) {
+      return null;
+    }
+    logoutNotifier.notifyLogout(removed);
+    return removed;
+  }
+
+  /**
+   * Saves registration of the client and applies it to the cached ticket. Registration of the
+   * client which is already known to the cached ticket is not saved at all.
+   */
+  @Override
+  public void registerClientUrl(String accessToken, String clientUrl) {
+    final AccessTicket ticket = getAccessTicket(accessToken);
+    if (ticket == null || ticket.getRegisteredClients().contains(clientUrl)) {
+      return;
+    }
+    doRegisterClient(accessToken, clientUrl);
+    ticket.registerClientUrl(clientUrl);
+  }
+
+  @Override
+  public void unRegisterClientUrl(String accessToken, String clientUrl) {
+    final AccessTicket ticket = nearCache.getIfPresent(accessToken);
+    if (ticket != null) {
+      ticket.unRegisterClientUrl(clientUrl);
+    }
+    doUnregisterClient(accessToken, clientUrl);
+  }
+
+  @Override
+  @Transactional
+  public Set<AccessTicket> getAccessTickets() {
+    return managerProvider.get().createNamedQuery("AccessTicket.getAll", AccessTicketEntity.class)
+        .getResultList().stream()
+        .map(AccessTicketEntity::toAccessTicket)
+        .collect(toSet());
+  }
+
+  @Override
+  @Transactional
+  public Set<AccessTicket> getAccessTicketsCreatedBefore(long time) {
+    return managerProvider.get()
+        .createNamedQuery("AccessTicket.getCreatedBefore", AccessTicketEntity.class)
+        .setParameter("time", time).getResultList().stream()
+        .map(AccessTicketEntity::toAccessTicket)
+        .collect(toSet());
+  }
+
+  /** Evicts tickets removed by other masters from near-cache. */
+  @VisibleForTesting
+  void synchronize() {
+    try {
+      evictRemovedTickets();
+    } catch (RuntimeException x) {
+      LOG.error("Not able to read removed access tickets. " + x.getLocalizedMessage(), x);
+    }
+  }
+
+  private void evictRemovedTickets() {
+    final long now = System.currentTimeMillis();
+    for (String token : doGetTokensRemovedAfter(now - cacheTtlMs)) {
+      nearCache.invalidate(token);
+    }
+    // records are needed only while removed tickets may be kept in near-caches
+    if (now - lastRemovalRecordsCleanup > cacheTtlMs) {
+      doRemoveRemovalRecordsBefore(now - 2 * cacheTtlMs);
+      lastRemovalRecordsCleanup = now;
+    }
+  }
+
+  @Transactional
+  protected void doPut(AccessTicket accessTicket) {
+    final EntityManager manager = managerProvider.get();
+    manager.merge(new AccessTicketEntity(accessTicket));
+    manager.flush();
+  }
+
+  @Transactional
+  protected AccessTicket doGet(String accessToken) {
+    final AccessTicketEntity entity =
+        managerProvider.get().find(AccessTicketEntity.class, accessToken);
+    if (entity == null) {
+      return null;
+    }
+    return entity.toAccessTicket();
+  }
+
+  /**
+   * Removes ticket and records its removal.
+   *
+   * @return removed ticket or null if the ticket doesn't exist or was removed by another master
+   *     concurrently
+   */
+  @Transactional
+  protected AccessTicket doRemove(String accessToken, long removalTime) {
+    final EntityManager manager = managerProvider.get();
+    final AccessTicketEntity entity = manager.find(AccessTicketEntity.class, accessToken);
+    if (entity == null) {
+      return null;
+    }
+    final AccessTicket ticket = entity.toAccessTicket();
+    final int removed =
+        manager
+            .createNamedQuery("AccessTicket.remove")
+            .setParameter("token", accessToken)
+            .executeUpdate();
+    if (removed == 0) {
+      return null;
+    }
+    manager.merge(new RemovedAccessTicketEntity(accessToken, removalTime));
+    manager.flush();
+    return ticket;
+  }
+
+  @Transactional
+  protected void doRegisterClient(String accessToken, String clientUrl) {
+    final EntityManager manager = managerProvider.get();
+    final AccessTicketEntity entity = manager.find(AccessTicketEntity.class, accessToken);
+    // ticket may be already removed
+    if (entity != null && entity.getRegisteredClients().add(clientUrl)) {
+      manager.flush();
+    }
+  }
+
+  @Transactional
+  protected void doUnregisterClient(String accessToken, String clientUrl) {
+    final EntityManager manager = managerProvider.get();
+    final AccessTicketEntity entity = manager.find(AccessTicketEntity.class, accessToken);
+    if (entity != null && entity.getRegisteredClients().remove(clientUrl)) {
+      manager.flush();
+    }
+  }
+
+  @Transactional
+  protected List<String> doGetTokensRemovedAfter(long time) {
+    return managerProvider
+        .get()
+        .createNamedQuery("RemovedAccessTicket.getTokensRemovedAfter", String.class)
+        .setParameter("time", time)
+        .getResultList();
+  }
+
+  @Transactional
+  protected void doRemoveRemovalRecordsBefore(long time) {
+    managerProvider
+        .get()
+        .createNamedQuery("RemovedAccessTicket.removeBefore")
+        .setParameter("time", time)
+        .executeUpdate();
+  }
+}
@@ -0,0 +1,61 @@
+/*
+ * Copyright (c) [2012] - [2017] Red Hat, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *   Red Hat, Inc. - initial API and implementation
+ */
+package com.codenvy.auth.sso.server.ticket.jpa;
+
+import javax.persistence.Cacheable;
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.NamedQueries;
+import javax.persistence.NamedQuery;
+import javax.persistence.Table;
+
+/**
+ * Record about removal of access ticket. Records are read by all the masters to evict removed
+ * tickets from their near-caches, see {@link JpaTicketManager}.
+ */
+@Entity(name = "RemovedAccessTicket")
+@Table(name = "codenvy_removed_access_ticket")
+@Cacheable(false)
+@NamedQueries({
+  @NamedQuery(
+    name = "RemovedAccessTicket.getTokensRemovedAfter",
+    query =
+        "SELECT r.accessToken " + "FROM RemovedAccessTicket r " + "WHERE r.removalTime >= :time"
+  ),
+  @NamedQuery(
+    name = "RemovedAccessTicket.removeBefore",
+    query = "DELETE " + "FROM RemovedAccessTicket r " + "WHERE r.removalTime < :time"
+  )
+})
+public class RemovedAccessTicketEntity {
+  @Id
+  @Column(name = "access_token")
+  private String accessToken;
+
+  @Column(name = "removal_time", nullable = false)
+  private long removalTime;
+
+  public RemovedAccessTicketEntity() {}
+
+  public RemovedAccessTicketEntity(String accessToken, long removalTime) {
+    this.accessToken = accessToken;
+    this.removalTime = removalTime;
+  }
+
+  public String getAccessToken() {
+    return accessToken;
+  }
+
+  public long getRemovalTime() {
+    return removalTime;
+  }
+}
@@ -16,7 +16,6 @@ import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoMoreInteractions;
 import static org.mockito.Mockito.when;
 import static org.testng.Assert.assertEquals;
-import static org.testng.Assert.assertTrue;
 
 import com.codenvy.api.dao.authentication.AccessTicket;
 import com.codenvy.api.dao.authentication.CookieBuilder;
@@ -96,7 +95,7 @@ public class SsoServiceTest {
             .get("internal/sso/server/{token}");
     // then
     assertEquals(unwrapDto(response, SubjectDto.class), subjectDto);
-    assertTrue(ticket.getRegisteredClients().contains("http://dev.box.com/api"));
+    verify(ticketManager).registerClientUrl("t1", "http://dev.box.com/api");
   }
 
   @Test
@@ -118,9 +117,7 @@ public class SsoServiceTest {
   @Test
   public void shouldUnregisterClientByTokenAndUrl() {
     // given
-    AccessTicket ticket = new AccessTicket("t1", "id-34", "default");
-    ticket.registerClientUrl("http://dev.box.com/api");
-    when(ticketManager.getAccessTicket(eq("t1"))).thenReturn(ticket);
+
     // when
     given()
         .pathParam("token", "t1")
@@ -131,9 +128,8 @@ public class SsoServiceTest {
         .when()
         .delete("internal/sso/server/{token}");
     // then
-    verify(ticketManager).getAccessTicket(eq("t1"));
+    verify(ticketManager).unRegisterClientUrl("t1", "http://dev.box.com/api");
     verifyNoMoreInteractions(ticketManager);
-    assertEquals(ticket.getRegisteredClients().size(), 0);
   }
 
   private static <T> T unwrapDto(Response response, Class<T> dtoClass) {
@@ -10,21 +10,30 @@
  */
 package com.codenvy.auth.sso.server.ticket;
 
+import static java.util.Arrays.asList;
+import static org.mockito.Mockito.verify;
 import static org.testng.Assert.assertEquals;
 import static org.testng.Assert.assertNull;
 
 import com.codenvy.api.dao.authentication.AccessTicket;
 import com.codenvy.api.dao.authentication.TicketManager;
 import java.util.Collections;
+import java.util.HashSet;
+import org.mockito.Mock;
+import org.mockito.testng.MockitoTestNGListener;
+import org.testng.annotations.Listeners;
 import org.testng.annotations.Test;
 
+@Listeners(MockitoTestNGListener.class)
 public class InMemoryTicketManagerTest {
   private static final String TOKEN = "123456789";
   String userId = "sdfsd345345";
 
+  @Mock SsoClientLogoutNotifier logoutNotifier;
+
   @Test
   public void shouldBeAbleToPutAndGetTicket() {
-    TicketManager ticketManager = new InMemoryTicketManager();
+    TicketManager ticketManager = new InMemoryTicketManager(logoutNotifier);
 
     assertNull(ticketManager.getAccessTicket(TOKEN));
 
@@ -39,7 +48,7 @@ public class InMemoryTicketManagerTest {
 
   @Test
   public void shouldBeAbleToGetTickets() {
-    TicketManager ticketManager = new InMemoryTicketManager();
+    TicketManager ticketManager = new InMemoryTicketManager(logoutNotifier);
 
     assertEquals(ticketManager.getAccessTickets().size(), 0);
 
@@ -53,7 +62,7 @@ public class InMemoryTicketManagerTest {
   @Test
   public void shouldBeAbleToRemoveTickets() {
 
-    TicketManager ticketManager = new InMemoryTicketManager();
+    TicketManager ticketManager = new InMemoryTicketManager(logoutNotifier);
 
     ticketManager.putAccessTicket(new AccessTicket(TOKEN, userId, "default"));
 
@@ -63,4 +72,36 @@ public class InMemoryTicketManagerTest {
 
     assertEquals(ticketManager.getAccessTickets().size(), 0);
   }
+
+  @Test
+  public void shouldNotifyClientsAboutRemovedTicket() {
+    TicketManager ticketManager = new InMemoryTicketManager(logoutNotifier);
+    AccessTicket ticket = new AccessTicket(TOKEN, userId, "default");
+    ticketManager.putAccessTicket(ticket);
+
+    ticketManager.removeTicket(TOKEN);
+    ticketManager.removeTicket(TOKEN);
+
+    verify(logoutNotifier).notifyLogout(ticket);
+  }
+
+  @Test
+  public void shouldReturnTicketsCreatedBeforeGivenTime() {
+    TicketManager ticketManager = new InMemoryTicketManager(logoutNotifier);
+    AccessTicket ticket1 = new AccessTicket("token1", userId, "default", 1000);
+    AccessTicket ticket2 = new AccessTicket("token2", userId, "default", 2000);
+    AccessTicket ticket3 = new AccessTicket("token3", userId, "default", 1000);
+    ticketManager.putAccessTicket(ticket2);
+    ticketManager.putAccessTicket(ticket1);
+    ticketManager.putAccessTicket(ticket3);
+
+    assertEquals(
+        ticketManager.getAccessTicketsCreatedBefore(2000), new HashSet<>(asList(ticket1, ticket3)));
+    assertEquals(ticketManager.getAccessTicketsCreatedBefore(1000), Collections.emptySet());
+
+    ticketManager.removeTicket("token1");
+
+    assertEquals(
+        ticketManager.getAccessTicketsCreatedBefore(3000), new HashSet<>(asList(ticket2, ticket3)));
+  }
 }
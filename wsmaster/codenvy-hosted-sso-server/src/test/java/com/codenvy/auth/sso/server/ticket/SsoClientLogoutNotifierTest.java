@@ -0,0 +1,120 @@
+/*
+ * Copyright (c) [2012] - [2017] Red Hat, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *   Red Hat, Inc. - initial API and implementation
+ */
+package com.codenvy.auth.sso.server.ticket;
+
+import static java.util.Collections.singletonList;
+import static org.mockito.Matchers.anyListOf;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.testng.Assert.assertEquals;
+
+import com.codenvy.api.dao.authentication.AccessTicket;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+public class SsoClientLogoutNotifierTest {
+  private static final String CLIENT = "http://localhost:8080/api";
+
+  private SsoClientLogoutNotifier notifier;
+  private List<List<String>> sent;
+
+  @BeforeMethod
+  public void setUp() throws Exception {
+    notifier = spy(new SsoClientLogoutNotifier());
+    sent = new CopyOnWriteArrayList<>();
+    doAnswer(
+            invocation -> {
+              sent.add(new ArrayList<>((List<String>) invocation.getArguments()[1]));
+              return null;
+            })
+        .when(notifier)
+        .sendLogout(anyString(), anyListOf(String.class));
+  }
+
+  @AfterMethod
+  public void tearDown() {
+    notifier.shutdown();
+  }
+
+  @Test
+  public void shouldNotifyAllRegisteredClients() throws Exception {
+    AccessTicket ticket = new AccessTicket("token", "user", "default");
+    ticket.registerClientUrl(CLIENT);
+    ticket.registerClientUrl("http://localhost:8080/wsagent");
+
+    notifier.notifyLogout(ticket);
+
+    verify(notifier, timeout(1000)).sendLogout(CLIENT, singletonList("token"));
+    verify(notifier, timeout(1000))
+        .sendLogout("http://localhost:8080/wsagent", singletonList("token"));
+  }
+
+  @Test
+  public void shouldSendTokensQueuedForClientInBatches() throws Exception {
+    final CountDownLatch firstSendLatch = new CountDownLatch(1);
+    doAnswer(
+            invocation -> {
+              sent.add(new ArrayList<>((List<String>) invocation.getArguments()[1]));
+              firstSendLatch.await();
+              return null;
+            })
+        .doAnswer(
+            invocation -> {
+              sent.add(new ArrayList<>((List<String>) invocation.getArguments()[1]));
+              return null;
+            })
+        .when(notifier)
+        .sendLogout(anyString(), anyListOf(String.class));
+    notifier.notifyLogout(ticket("token0"));
+    verify(notifier, timeout(1000)).sendLogout(CLIENT, singletonList("token0"));
+
+    for (int i = 1; i <= SsoClientLogoutNotifier.MAX_BATCH_SIZE + 50; i++) {
+      notifier.notifyLogout(ticket("token" + i));
+    }
+    assertEquals(notifier.getPendingNotifications(), SsoClientLogoutNotifier.MAX_BATCH_SIZE + 51);
+    firstSendLatch.countDown();
+
+    verify(notifier, timeout(1000).times(3)).sendLogout(eq(CLIENT), anyListOf(String.class));
+    assertEquals(sent.get(1).size(), SsoClientLogoutNotifier.MAX_BATCH_SIZE);
+    assertEquals(sent.get(1).get(0), "token1");
+    assertEquals(sent.get(2).size(), 50);
+  }
+
+  @Test
+  public void shouldContinueSendingAfterFailure() throws Exception {
+    doThrow(new IOException("client is down"))
+        .when(notifier)
+        .sendLogout(CLIENT, singletonList("token1"));
+
+    notifier.notifyLogout(ticket("token1"));
+    verify(notifier, timeout(1000)).sendLogout(CLIENT, singletonList("token1"));
+    notifier.notifyLogout(ticket("token2"));
+
+    verify(notifier, timeout(1000)).sendLogout(CLIENT, singletonList("token2"));
+  }
+
+  private static AccessTicket ticket(String token) {
+    AccessTicket ticket = new AccessTicket(token, "user", "default");
+    ticket.registerClientUrl(CLIENT);
+    return ticket;
+  }
+}
@@ -0,0 +1,162 @@
+/*
+ * Copyright (c) [2012] - [2017] Red Hat, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *   Red Hat, Inc. - initial API and implementation
+ */
+package com.codenvy.auth.sso.server.ticket.jpa;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.emptyList;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+import com.codenvy.api.dao.authentication.AccessTicket;
+import com.codenvy.auth.sso.server.ticket.SsoClientLogoutNotifier;
+import com.google.common.collect.ImmutableSet;
+import javax.persistence.EntityManager;
+import javax.persistence.Query;
+import javax.persistence.TypedQuery;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.testng.MockitoTestNGListener;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Listeners;
+import org.testng.annotations.Test;
+
+@Listeners(MockitoTestNGListener.class)
+public class JpaTicketManagerTest {
+  private static final String TOKEN = "token";
+  private static final String CLIENT = "http://localhost:8080/api";
+
+  @Mock private EntityManager manager;
+  @Mock private SsoClientLogoutNotifier logoutNotifier;
+  @Mock private TypedQuery<String> removedTokensQuery;
+  @Mock private Query removeQuery;
+
+  private JpaTicketManager ticketManager;
+
+  @BeforeMethod
+  public void setUp() {
+    when(manager.createNamedQuery("RemovedAccessTicket.getTokensRemovedAfter", String.class))
+        .thenReturn(removedTokensQuery);
+    when(removedTokensQuery.setParameter(anyString(), any())).thenReturn(removedTokensQuery);
+    when(removedTokensQuery.getResultList()).thenReturn(emptyList());
+    when(manager.createNamedQuery(anyString())).thenReturn(removeQuery);
+    when(removeQuery.setParameter(anyString(), any())).thenReturn(removeQuery);
+    when(removeQuery.executeUpdate()).thenReturn(1);
+
+    ticketManager = new JpaTicketManager(() -> manager, logoutNotifier, 30, 1000);
+  }
+
+  @Test
+  public void shouldServeTicketFromNearCache() {
+    when(manager.find(AccessTicketEntity.class, TOKEN)).thenReturn(entity());
+
+    final AccessTicket first = ticketManager.getAccessTicket(TOKEN);
+    final AccessTicket second = ticketManager.getAccessTicket(TOKEN);
+
+    assertEquals(first, new AccessTicket(TOKEN, "user", "default", 1000));
+    assertEquals(second, first);
+    verify(manager, times(1)).find(AccessTicketEntity.class, TOKEN);
+  }
+
+  @Test
+  public void shouldSaveRegistrationsOfClientsWhichAreNotKnownToTicket() {
+    final AccessTicketEntity entity = entity();
+    when(manager.find(AccessTicketEntity.class, TOKEN)).thenReturn(entity);
+
+    ticketManager.registerClientUrl(TOKEN, CLIENT);
+    ticketManager.registerClientUrl(TOKEN, "http://localhost:8080/wsagent");
+    ticketManager.registerClientUrl(TOKEN, CLIENT);
+
+    assertEquals(
+        ticketManager.getAccessTicket(TOKEN).getRegisteredClients(),
+        ImmutableSet.of(CLIENT, "http://localhost:8080/wsagent"));
+    assertEquals(
+        entity.getRegisteredClients(), ImmutableSet.of(CLIENT, "http://localhost:8080/wsagent"));
+    verify(manager, times(2)).flush();
+  }
+
+  @Test
+  public void shouldEvictTicketsRemovedByOtherMasters() {
+    when(manager.find(AccessTicketEntity.class, TOKEN)).thenReturn(entity());
+    ticketManager.getAccessTicket(TOKEN);
+    when(removedTokensQuery.getResultList()).thenReturn(asList(TOKEN, "token3"));
+
+    ticketManager.synchronize();
+    when(manager.find(AccessTicketEntity.class, TOKEN)).thenReturn(null);
+
+    assertNull(ticketManager.getAccessTicket(TOKEN));
+    verify(manager, times(2)).find(AccessTicketEntity.class, TOKEN);
+  }
+
+  @Test
+  public void shouldNotifyClientsRegisteredOnAnyMasterAboutLogout() {
+    final AccessTicketEntity entity = entity();
+    entity.getRegisteredClients().add("http://localhost:8080/wsagent");
+    when(manager.find(AccessTicketEntity.class, TOKEN)).thenReturn(entity);
+    ticketManager.registerClientUrl(TOKEN, CLIENT);
+
+    final AccessTicket removed = ticketManager.removeTicket(TOKEN);
+
+    final ArgumentCaptor<AccessTicket> captor = ArgumentCaptor.forClass(AccessTicket.class);
+    verify(logoutNotifier).notifyLogout(captor.capture());
+    assertEquals(captor.getValue(), removed);
+    assertEquals(
+        removed.getRegisteredClients(), ImmutableSet.of(CLIENT, "http://localhost:8080/wsagent"));
+    verify(manager).merge(any(RemovedAccessTicketEntity.class));
+  }
+
+  @Test
+  public void shouldNotNotifyAboutLogoutIfTicketIsRemovedByAnotherMaster() {
+    when(manager.find(AccessTicketEntity.class, TOKEN)).thenReturn(entity());
+    when(removeQuery.executeUpdate()).thenReturn(0);
+
+    assertNull(ticketManager.removeTicket(TOKEN));
+
+    verify(logoutNotifier, never()).notifyLogout(any());
+    verify(manager, never()).merge(any(RemovedAccessTicketEntity.class));
+  }
+
+  @Test
+  public void shouldRemoveOldRemovalRecordsOnSynchronization() {
+    ticketManager.synchronize();
+
+    verify(manager).createNamedQuery("RemovedAccessTicket.removeBefore");
+    verify(removeQuery).setParameter(eq("time"), anyLong());
+  }
+
+  @Test
+  public void shouldNotRegisterClientInCachedTicketIfRegistrationIsNotSaved() {
+    when(manager.find(AccessTicketEntity.class, TOKEN))
+        .thenReturn(entity())
+        .thenThrow(new RuntimeException("database is down"));
+
+    try {
+      ticketManager.registerClientUrl(TOKEN, CLIENT);
+      fail("Registration must fail");
+    } catch (RuntimeException ignored) {
+    }
+
+    assertTrue(ticketManager.getAccessTicket(TOKEN).getRegisteredClients().isEmpty());
+  }
+
+  private static AccessTicketEntity entity() {
+    return new AccessTicketEntity(new AccessTicket(TOKEN, "user", "default", 1000));
+  }
+}
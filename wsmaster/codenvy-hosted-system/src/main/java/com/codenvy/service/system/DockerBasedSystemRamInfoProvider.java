@@ -27,6 +27,9 @@ import org.slf4j.LoggerFactory;
 /**
  * Implementation of {@link SystemRamInfoProvider} based on docker.
  *
+ * <p>Swarm connector returns the same cached system info until its topology snapshot is refreshed,
+ * so RAM info is parsed once per system info instance.
+ *
  * @author Igor Vinokur
  */
 public class DockerBasedSystemRamInfoProvider implements SystemRamInfoProvider {
@@ -38,6 +41,8 @@ public class DockerBasedSystemRamInfoProvider implements SystemRamInfoProvider {
 
   private final DockerConnector dockerConnector;
 
+  private volatile ParsedRamInfo lastParsed;
+
   @Inject
   public DockerBasedSystemRamInfoProvider(DockerConnectorProvider dockerConnectorProvider) {
     this.dockerConnector = dockerConnectorProvider.get();
@@ -52,6 +57,16 @@ public class DockerBasedSystemRamInfoProvider implements SystemRamInfoProvider {
       LOG.error("Failed to retrieve system information from docker.", e);
       throw new ServerException(SYSTEM_RAM_INFO_ERROR, e);
     }
+    final ParsedRamInfo parsed = lastParsed;
+    if (parsed != null && parsed.systemInfo == systemInfo) {
+      return parsed.ramInfo;
+    }
+    final SystemRamInfo ramInfo = parseSystemRamInfo(systemInfo);
+    lastParsed = new ParsedRamInfo(systemInfo, ramInfo);
+    return ramInfo;
+  }
+
+  private SystemRamInfo parseSystemRamInfo(SystemInfo systemInfo) throws ServerException {
     String[][] driverStatus = systemInfo.getDriverStatus();
     String[][] systemStatus = systemInfo.getSystemStatus();
     String[][] statusOutput = driverStatus == null ? systemStatus : driverStatus;
@@ -109,6 +124,7 @@ public class DockerBasedSystemRamInfoProvider implements SystemRamInfoProvider {
 
     long systemRamUsed = 0;
     long systemRamTotal = 0;
+    List<Long> nodesFreeRam = new ArrayList<>(allNodesRamUsage.size());
     for (String nodeRamUsage : allNodesRamUsage) {
       String[] ramValues = nodeRamUsage.split(" / ");
       if (ramValues.length != 2) {
@@ -118,10 +134,23 @@ public class DockerBasedSystemRamInfoProvider implements SystemRamInfoProvider {
                 + nodeRamUsage);
         throw new ServerException(SYSTEM_RAM_INFO_ERROR);
       }
-      systemRamUsed += parseSize(ramValues[0]);
-      systemRamTotal += parseSize(ramValues[1]);
+      long nodeRamUsed = parseSize(ramValues[0]);
+      long nodeRamTotal = parseSize(ramValues[1]);
+      systemRamUsed += nodeRamUsed;
+      systemRamTotal += nodeRamTotal;
+      nodesFreeRam.add(Math.max(0, nodeRamTotal - nodeRamUsed));
     }
 
-    return new SystemRamInfo(systemRamUsed, systemRamTotal);
+    return new SystemRamInfo(systemRamUsed, systemRamTotal, nodesFreeRam);
+  }
+
+  private static class ParsedRamInfo {
+    final SystemInfo systemInfo;
+    final SystemRamInfo ramInfo;
+
+    ParsedRamInfo(SystemInfo systemInfo, SystemRamInfo ramInfo) {
+      this.systemInfo = systemInfo;
+      this.ramInfo = ramInfo;
+    }
   }
 }
@@ -10,6 +10,11 @@
  */
 package com.codenvy.service.system;
 
+import static java.util.Collections.emptyList;
+import static java.util.Collections.unmodifiableList;
+
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Objects;
 
 /**
@@ -21,12 +26,25 @@ public class SystemRamInfo {
 
   private final long systemRamUsed;
   private final long systemRamTotal;
+  private final long systemRamLimit;
   private final boolean isSystemRamLimitExceeded;
+  private final List<Long> nodesFreeRam;
 
   public SystemRamInfo(long systemRamUsed, long systemRamTotal) {
+    this(systemRamUsed, systemRamTotal, emptyList());
+  }
+
+  /**
+   * @param systemRamUsed used system RAM amount in Bytes
+   * @param systemRamTotal total system RAM amount in Bytes
+   * @param nodesFreeRam free RAM amount of each node of the system in Bytes
+   */
+  public SystemRamInfo(long systemRamUsed, long systemRamTotal, List<Long> nodesFreeRam) {
+    this.nodesFreeRam = unmodifiableList(new ArrayList<>(nodesFreeRam));
     this.systemRamUsed = systemRamUsed;
     this.systemRamTotal = systemRamTotal;
-    this.isSystemRamLimitExceeded = systemRamTotal * 0.9 < systemRamUsed;
+    this.systemRamLimit = (long) (systemRamTotal * 0.9);
+    this.isSystemRamLimitExceeded = systemRamLimit < systemRamUsed;
   }
 
   /** Total system RAM amount in Bytes. */
@@ -39,6 +57,20 @@ public class SystemRamInfo {
     return systemRamUsed;
   }
 
+  /** System RAM amount in Bytes which may be used, it is 90% of the total system RAM. */
+  public long getSystemRamLimit() {
+    return systemRamLimit;
+  }
+
+  /**
+   * Free RAM amount of each node of the system in Bytes. Memory of a single machine can't be split
+   * between nodes, so it is possible that the system has enough free RAM in total but machine can't
+   * be placed on any node. Empty list if RAM of nodes is unknown.
+   */
+  public List<Long> getNodesFreeRam() {
+    return nodesFreeRam;
+  }
+
   /**
    * Returns {@code true} if there is less then 10% of free RAM is present in the system, otherwise
    * returns {@code false}.
@@ -56,12 +88,13 @@ public class SystemRamInfo {
 
     return systemRamUsed == other.systemRamUsed
         && systemRamTotal == other.systemRamTotal
-        && isSystemRamLimitExceeded == other.isSystemRamLimitExceeded;
+        && isSystemRamLimitExceeded == other.isSystemRamLimitExceeded
+        && nodesFreeRam.equals(other.nodesFreeRam);
   }
 
   @Override
   public int hashCode() {
-    return Objects.hash(systemRamUsed, systemRamTotal, isSystemRamLimitExceeded);
+    return Objects.hash(systemRamUsed, systemRamTotal, isSystemRamLimitExceeded, nodesFreeRam);
   }
 
   @Override
@@ -73,6 +106,8 @@ public class SystemRamInfo {
         + systemRamTotal
         + ", isSystemRamLimitExceeded="
         + isSystemRamLimitExceeded
+        + ", nodesFreeRam="
+        + nodesFreeRam
         + '}';
   }
 }
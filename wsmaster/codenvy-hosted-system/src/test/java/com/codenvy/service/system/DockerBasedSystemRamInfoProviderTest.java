@@ -10,9 +10,12 @@
  */
 package com.codenvy.service.system;
 
+import static java.util.Arrays.asList;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.testng.Assert.assertEquals;
 import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertSame;
 import static org.testng.Assert.assertTrue;
 
 import org.eclipse.che.api.core.ServerException;
@@ -79,6 +82,32 @@ public class DockerBasedSystemRamInfoProviderTest {
     assertEquals(systemRamInfo.getSystemRamTotal(), 3L * 1024 * 1024 * 1024);
   }
 
+  @Test
+  public void shouldReturnFreeRamOfEachNode() throws Exception {
+    when(systemInfo.getDriverStatus())
+        .thenReturn(
+            new String[][] {
+              {" └ Reserved Memory", "1 GiB / 3 GiB"},
+              {" └ Reserved Memory", "3 GiB / 3 GiB"}
+            });
+
+    SystemRamInfo systemRamInfo = systemRamInfoProvider.getSystemRamInfo();
+
+    assertEquals(systemRamInfo.getNodesFreeRam(), asList(2L * 1024 * 1024 * 1024, 0L));
+  }
+
+  @Test
+  public void shouldParseTheSameSystemInfoOnlyOnce() throws Exception {
+    when(systemInfo.getDriverStatus())
+        .thenReturn(new String[][] {{" └ Reserved Memory", "1 GiB / 3 GiB"}});
+
+    SystemRamInfo first = systemRamInfoProvider.getSystemRamInfo();
+    SystemRamInfo second = systemRamInfoProvider.getSystemRamInfo();
+
+    assertSame(second, first);
+    verify(systemInfo).getDriverStatus();
+  }
+
   @Test(
     expectedExceptions = ServerException.class,
     expectedExceptionsMessageRegExp = "An error occurred while getting system RAM info."
@@ -0,0 +1,65 @@
+/*
+ * Copyright (c) [2012] - [2017] Red Hat, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *   Red Hat, Inc. - initial API and implementation
+ */
+package com.codenvy.ldap;
+
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+import java.util.concurrent.atomic.AtomicLong;
+import org.ldaptive.Connection;
+import org.ldaptive.DefaultConnectionFactory;
+import org.ldaptive.pool.BlockingConnectionPool;
+import org.ldaptive.pool.BlockingTimeoutException;
+import org.ldaptive.pool.PoolConfig;
+import org.ldaptive.pool.PoolException;
+
+/**
+ * Blocking connection pool which counts connection checkouts, the time spent on them and the
+ * checkouts failed because no connection became available in the configured block wait time.
+ */
+public class InstrumentedConnectionPool extends BlockingConnectionPool {
+
+  private final AtomicLong checkouts = new AtomicLong();
+  private final AtomicLong checkoutTime = new AtomicLong();
+  private final AtomicLong exhaustions = new AtomicLong();
+
+  public InstrumentedConnectionPool(PoolConfig poolConfig, DefaultConnectionFactory factory) {
+    super(poolConfig, factory);
+  }
+
+  @Override
+  public Connection getConnection() throws PoolException {
+    final long start = System.nanoTime();
+    try {
+      return super.getConnection();
+    } catch (BlockingTimeoutException x) {
+      exhaustions.incrementAndGet();
+      throw x;
+    } finally {
+      checkoutTime.addAndGet(System.nanoTime() - start);
+      checkouts.incrementAndGet();
+    }
+  }
+
+  /** Returns the number of connection checkouts. */
+  public long getCheckoutCount() {
+    return checkouts.get();
+  }
+
+  /** Returns the total time in milliseconds spent on waiting for connections. */
+  public long getCheckoutTimeMs() {
+    return NANOSECONDS.toMillis(checkoutTime.get());
+  }
+
+  /** Returns the number of checkouts failed because the pool was exhausted. */
+  public long getExhaustionCount() {
+    return exhaustions.get();
+  }
+}
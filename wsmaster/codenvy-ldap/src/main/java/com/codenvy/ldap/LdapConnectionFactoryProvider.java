@@ -15,6 +15,7 @@ import static java.lang.Boolean.parseBoolean;
 import static java.lang.Integer.parseInt;
 import static java.lang.Long.parseLong;
 
+import com.codahale.metrics.annotation.Gauge;
 import java.time.Duration;
 import javax.inject.Inject;
 import javax.inject.Named;
@@ -30,7 +31,6 @@ import org.ldaptive.Credential;
 import org.ldaptive.DefaultConnectionFactory;
 import org.ldaptive.ad.extended.FastBindOperation;
 import org.ldaptive.pool.BindPassivator;
-import org.ldaptive.pool.BlockingConnectionPool;
 import org.ldaptive.pool.IdlePruneStrategy;
 import org.ldaptive.pool.Passivator;
 import org.ldaptive.pool.PoolConfig;
@@ -55,6 +55,7 @@ public class LdapConnectionFactoryProvider implements Provider<PooledConnectionF
   private static final Logger LOG = LoggerFactory.getLogger(LdapConnectionFactoryProvider.class);
 
   private final PooledConnectionFactory connFactory;
+  private final InstrumentedConnectionPool pool;
 
   @Inject
   public LdapConnectionFactoryProvider(
@@ -197,7 +198,7 @@ public class LdapConnectionFactoryProvider implements Provider<PooledConnectionF
         LOG.error(e.getMessage(), e);
       }
     }
-    final BlockingConnectionPool cp = new BlockingConnectionPool(pc, bindCf);
+    final InstrumentedConnectionPool cp = new InstrumentedConnectionPool(pc, bindCf);
 
     if (!isNullOrEmpty(blockWaitTime)) {
       cp.setBlockWaitTime(Duration.ofMillis(parseLong(blockWaitTime)));
@@ -226,10 +227,36 @@ public class LdapConnectionFactoryProvider implements Provider<PooledConnectionF
     }
     cp.initialize();
     connFactory = new PooledConnectionFactory(cp);
+    pool = cp;
   }
 
   @Override
   public PooledConnectionFactory get() {
     return connFactory;
   }
+
+  @Gauge(name = "ldap.pool.checkouts")
+  public long getCheckoutCount() {
+    return pool.getCheckoutCount();
+  }
+
+  @Gauge(name = "ldap.pool.checkout_time_ms")
+  public long getCheckoutTimeMs() {
+    return pool.getCheckoutTimeMs();
+  }
+
+  @Gauge(name = "ldap.pool.exhaustions")
+  public long getExhaustionCount() {
+    return pool.getExhaustionCount();
+  }
+
+  @Gauge(name = "ldap.pool.active_connections")
+  public int getActiveCount() {
+    return pool.activeCount();
+  }
+
+  @Gauge(name = "ldap.pool.available_connections")
+  public int getAvailableCount() {
+    return pool.availableCount();
+  }
 }
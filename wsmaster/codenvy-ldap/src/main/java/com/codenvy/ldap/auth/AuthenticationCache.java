@@ -0,0 +1,155 @@
+/*
+ * Copyright (c) [2012] - [2017] Red Hat, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *   Red Hat, Inc. - initial API and implementation
+ */
+package com.codenvy.ldap.auth;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.codahale.metrics.annotation.Gauge;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.hash.Hashing;
+import java.security.SecureRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.inject.Named;
+import javax.inject.Singleton;
+import org.eclipse.che.commons.annotation.Nullable;
+
+/**
+ * Keeps the results of ldap authentications, so repeated authentications with the same credentials
+ * don't bind to ldap server.
+ *
+ * <p>Successful authentications are kept not longer than {@code ldap.auth.cache.ttl_ms}, which is
+ * the time the old password remains valid after it is changed or the user is disabled in ldap, so
+ * the cache is disabled by default. Failed authentications are kept not longer than {@code
+ * ldap.auth.failure_cache.ttl_ms}, they are cached for exact credentials, so a user who enters the
+ * correct password after the wrong one is authenticated by ldap server. Credentials are never kept
+ * as is, the cache key is a hash of the credentials and a random salt generated on startup.
+ */
+@Singleton
+public class AuthenticationCache {
+  private static final long DEFAULT_MAX_SIZE = 10_000;
+
+  private final byte[] salt;
+  private final AtomicLong hits;
+  private final AtomicLong misses;
+  private final AtomicLong failureHits;
+
+  private volatile Cache<String, String> userIds;
+  private volatile Cache<String, Boolean> failures;
+
+  public AuthenticationCache() {
+    this(0, 0, DEFAULT_MAX_SIZE);
+  }
+
+  @VisibleForTesting
+  AuthenticationCache(long ttlMs, long failureTtlMs, long maxSize) {
+    this.salt = new byte[32];
+    new SecureRandom().nextBytes(salt);
+    this.hits = new AtomicLong();
+    this.misses = new AtomicLong();
+    this.failureHits = new AtomicLong();
+    configure(ttlMs, failureTtlMs, maxSize);
+  }
+
+  @com.google.inject.Inject(optional = true)
+  void configure(
+      @Named("ldap.auth.cache.ttl_ms") long ttlMs,
+      @Named("ldap.auth.failure_cache.ttl_ms") long failureTtlMs,
+      @Named("ldap.auth.cache.size") long maxSize) {
+    this.userIds = newCache(ttlMs, maxSize);
+    this.failures = newCache(failureTtlMs, maxSize);
+  }
+
+  /**
+   * Gets identifier of the user successfully authenticated with the given credentials.
+   *
+   * @param login user login
+   * @param password user password
+   * @return identifier of the user or null if there is no successful authentication cached
+   */
+  @Nullable
+  public String getUserId(String login, String password) {
+    if (userIds == null) {
+      return null;
+    }
+    final String userId = userIds.getIfPresent(key(login, password));
+    if (userId != null) {
+      hits.incrementAndGet();
+    } else {
+      misses.incrementAndGet();
+    }
+    return userId;
+  }
+
+  /** Returns true if authentication with the given credentials recently failed. */
+  public boolean isFailed(String login, String password) {
+    if (failures == null || failures.getIfPresent(key(login, password)) == null) {
+      return false;
+    }
+    failureHits.incrementAndGet();
+    return true;
+  }
+
+  /** Caches successful authentication of the user with the given credentials. */
+  public void putUserId(String login, String password, String userId) {
+    if (userIds != null) {
+      userIds.put(key(login, password), userId);
+    }
+    if (failures != null) {
+      failures.invalidate(key(login, password));
+    }
+  }
+
+  /** Caches failed authentication with the given credentials. */
+  public void putFailure(String login, String password) {
+    if (failures != null) {
+      failures.put(key(login, password), Boolean.TRUE);
+    }
+  }
+
+  @Gauge(name = "ldap.auth.cache_hits")
+  public long getHitCount() {
+    return hits.get();
+  }
+
+  @Gauge(name = "ldap.auth.cache_misses")
+  public long getMissCount() {
+    return misses.get();
+  }
+
+  @Gauge(name = "ldap.auth.failure_cache_hits")
+  public long getFailureHitCount() {
+    return failureHits.get();
+  }
+
+  private String key(String login, String password) {
+    return Hashing.sha256()
+        .newHasher()
+        .putBytes(salt)
+        .putString(login, UTF_8)
+        .putByte((byte) 0)
+        .putString(password, UTF_8)
+        .hash()
+        .toString();
+  }
+
+  private static <V> Cache<String, V> newCache(long ttlMs, long maxSize) {
+    if (ttlMs <= 0 || maxSize <= 0) {
+      return null;
+    }
+    return CacheBuilder.newBuilder()
+        .maximumSize(maxSize)
+        .expireAfterWrite(ttlMs, TimeUnit.MILLISECONDS)
+        .build();
+  }
+}
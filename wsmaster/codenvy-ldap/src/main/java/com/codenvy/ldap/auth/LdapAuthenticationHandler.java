@@ -10,9 +10,14 @@
  */
 package com.codenvy.ldap.auth;
 
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+import com.codahale.metrics.annotation.Gauge;
 import com.codenvy.api.dao.authentication.AuthenticationHandler;
 import com.codenvy.ldap.LdapUserIdNormalizer;
+import java.util.concurrent.atomic.AtomicLong;
 import javax.inject.Inject;
+import javax.inject.Singleton;
 import org.eclipse.che.commons.auth.AuthenticationException;
 import org.ldaptive.Credential;
 import org.ldaptive.LdapException;
@@ -29,8 +34,12 @@ import org.slf4j.LoggerFactory;
  * corresponding to the DN of the bound user (in the bound security context) upon successful
  * authentication.
  *
+ * <p>Results of authentications are kept in {@link AuthenticationCache}, failures caused by ldap
+ * errors are not cached.
+ *
  * @author Sergii Kabashniuk
  */
+@Singleton
 public class LdapAuthenticationHandler implements AuthenticationHandler {
 
   private static final Logger LOG = LoggerFactory.getLogger(LdapAuthenticationHandler.class);
@@ -40,19 +49,42 @@ public class LdapAuthenticationHandler implements AuthenticationHandler {
   private final Authenticator ldapAuthenticator;
   private final LdapUserIdNormalizer idNormalizer;
   private final String[] returnAttributes;
+  private final AuthenticationCache cache;
+  private final AtomicLong binds;
+  private final AtomicLong bindTime;
 
-  @Inject
   public LdapAuthenticationHandler(
       Authenticator ldapAuthenticator, LdapUserIdNormalizer idNormalizer) {
+    this(ldapAuthenticator, idNormalizer, new AuthenticationCache());
+  }
+
+  @Inject
+  public LdapAuthenticationHandler(
+      Authenticator ldapAuthenticator,
+      LdapUserIdNormalizer idNormalizer,
+      AuthenticationCache cache) {
     this.ldapAuthenticator = ldapAuthenticator;
     this.idNormalizer = idNormalizer;
     this.returnAttributes = new String[] {idNormalizer.getIdAttributeName()};
+    this.cache = cache;
+    this.binds = new AtomicLong();
+    this.bindTime = new AtomicLong();
   }
 
   @Override
   public String authenticate(String login, String password) throws AuthenticationException {
+    final String cachedId = cache.getUserId(login, password);
+    if (cachedId != null) {
+      LOG.debug("LDAP authentication for {} is cached", login);
+      return cachedId;
+    }
+    if (cache.isFailed(login, password)) {
+      throw new AuthenticationException(
+          401, "Authentication failed. Please check username and password.");
+    }
 
     final AuthenticationResponse response;
+    final long start = System.nanoTime();
     try {
       LOG.debug("Attempting LDAP authentication for: {}", login);
       final AuthenticationRequest request =
@@ -61,19 +93,38 @@ public class LdapAuthenticationHandler implements AuthenticationHandler {
       response = this.ldapAuthenticator.authenticate(request);
     } catch (final LdapException e) {
       throw new AuthenticationException(401, "Unexpected LDAP error");
+    } finally {
+      bindTime.addAndGet(System.nanoTime() - start);
+      binds.incrementAndGet();
     }
     LOG.debug("LDAP response: {}", response);
 
     if (!response.getResult()) {
+      cache.putFailure(login, password);
       throw new AuthenticationException(
           401, "Authentication failed. Please check username and password.");
     }
 
     if (AuthenticationResultCode.DN_RESOLUTION_FAILURE == response.getAuthenticationResultCode()) {
+      cache.putFailure(login, password);
       throw new AuthenticationException(login + "  is not found");
     }
     LOG.debug("Account state {}", response.getAccountState());
-    return idNormalizer.retrieveAndNormalize(response.getLdapEntry());
+    final String userId = idNormalizer.retrieveAndNormalize(response.getLdapEntry());
+    if (userId != null) {
+      cache.putUserId(login, password, userId);
+    }
+    return userId;
+  }
+
+  @Gauge(name = "ldap.auth.binds")
+  public long getBindCount() {
+    return binds.get();
+  }
+
+  @Gauge(name = "ldap.auth.bind_time_ms")
+  public long getBindTimeMs() {
+    return NANOSECONDS.toMillis(bindTime.get());
   }
 
   @Override
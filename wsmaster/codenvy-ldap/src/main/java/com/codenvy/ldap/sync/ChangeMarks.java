@@ -0,0 +1,88 @@
+/*
+ * Copyright (c) [2012] - [2017] Red Hat, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *   Red Hat, Inc. - initial API and implementation
+ */
+package com.codenvy.ldap.sync;
+
+import org.eclipse.che.commons.annotation.Nullable;
+import org.ldaptive.LdapAttribute;
+import org.ldaptive.LdapEntry;
+
+/**
+ * Compares values of ldap change tracking attributes, such as {@code modifyTimestamp} which value
+ * is a generalized time e.g. <i>20170125153000.0Z</i>, or {@code uSNChanged} which value is a
+ * number.
+ */
+final class ChangeMarks {
+
+  /** Returns the greatest of the current mark and the mark of the entry. */
+  @Nullable
+  static String max(@Nullable String current, LdapEntry entry, String changeAttr) {
+    final LdapAttribute attribute = entry.getAttribute(changeAttr);
+    if (attribute == null || attribute.getStringValue() == null) {
+      return current;
+    }
+    final String mark = attribute.getStringValue();
+    return current == null || compare(mark, current) > 0 ? mark : current;
+  }
+
+  /**
+   * Compares two marks, both numbers and generalized times are compared by their leading digits
+   * first and then by fraction digits, time zone designator is ignored.
+   */
+  static int compare(String mark1, String mark2) {
+    final int integerEnd1 = digitsEnd(mark1, 0);
+    final int integerEnd2 = digitsEnd(mark2, 0);
+    final int result =
+        compareNumbers(mark1.substring(0, integerEnd1), mark2.substring(0, integerEnd2));
+    if (result != 0) {
+      return result;
+    }
+    return fraction(mark1, integerEnd1).compareTo(fraction(mark2, integerEnd2));
+  }
+
+  private static int compareNumbers(String number1, String number2) {
+    final String stripped1 = stripLeadingZeros(number1);
+    final String stripped2 = stripLeadingZeros(number2);
+    if (stripped1.length() != stripped2.length()) {
+      return Integer.compare(stripped1.length(), stripped2.length());
+    }
+    return stripped1.compareTo(stripped2);
+  }
+
+  private static String fraction(String mark, int integerEnd) {
+    if (integerEnd < mark.length()
+        && (mark.charAt(integerEnd) == '.' || mark.charAt(integerEnd) == ',')) {
+      String fraction = mark.substring(integerEnd + 1, digitsEnd(mark, integerEnd + 1));
+      while (fraction.endsWith("0")) {
+        fraction = fraction.substring(0, fraction.length() - 1);
+      }
+      return fraction;
+    }
+    return "";
+  }
+
+  private static String stripLeadingZeros(String number) {
+    int i = 0;
+    while (i < number.length() - 1 && number.charAt(i) == '0') {
+      i++;
+    }
+    return number.substring(i);
+  }
+
+  private static int digitsEnd(String mark, int from) {
+    int i = from;
+    while (i < mark.length() && Character.isDigit(mark.charAt(i))) {
+      i++;
+    }
+    return i;
+  }
+
+  private ChangeMarks() {}
+}
@@ -12,10 +12,14 @@ package com.codenvy.ldap.sync;
 
 import com.google.inject.Inject;
 import com.google.inject.persist.Transactional;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Function;
 import javax.inject.Provider;
 import javax.inject.Singleton;
 import javax.persistence.EntityManager;
+import javax.persistence.Query;
+import javax.persistence.TypedQuery;
 
 /**
  * Helps to make db requests.
@@ -37,4 +41,64 @@ public class DBHelper {
   public List executeNativeQuery(String nativeQuery) {
     return emProvider.get().createNativeQuery(nativeQuery).getResultList();
   }
+
+  /**
+   * Executes native query with positional parameters e.g. <i>?1</i> and returns execution result.
+   *
+   * @param nativeQuery query to execute
+   * @param parameters values of the query parameters, the first value is bound to <i>?1</i>
+   * @return execution result
+   */
+  @Transactional
+  public List executeNativeQuery(String nativeQuery, Object... parameters) {
+    return createNativeQuery(nativeQuery, parameters).getResultList();
+  }
+
+  /**
+   * Executes native update or delete query with positional parameters.
+   *
+   * @param nativeQuery query to execute
+   * @param parameters values of the query parameters, the first value is bound to <i>?1</i>
+   * @return the number of entities updated or deleted
+   */
+  @Transactional
+  public int executeNativeUpdate(String nativeQuery, Object... parameters) {
+    return createNativeQuery(nativeQuery, parameters).executeUpdate();
+  }
+
+  /**
+   * Executes query with positional parameters e.g. <i>?1</i> and converts each of the resulting
+   * entities with the given function while the transaction is active, so lazy entity attributes can
+   * be read by the function.
+   *
+   * @param query JPQL query to execute
+   * @param resultClass the type of the query result
+   * @param converter function converting query result to the returned value
+   * @param parameters values of the query parameters, the first value is bound to <i>?1</i>
+   * @return converted execution result
+   */
+  @Transactional
+  public <T, R> List<R> executeQuery(
+      String query,
+      Class<T> resultClass,
+      Function<? super T, ? extends R> converter,
+      Object... parameters) {
+    final TypedQuery<T> typedQuery = emProvider.get().createQuery(query, resultClass);
+    for (int i = 0; i < parameters.length; i++) {
+      typedQuery.setParameter(i + 1, parameters[i]);
+    }
+    final List<R> result = new ArrayList<>();
+    for (T entity : typedQuery.getResultList()) {
+      result.add(converter.apply(entity));
+    }
+    return result;
+  }
+
+  private Query createNativeQuery(String nativeQuery, Object... parameters) {
+    final Query query = emProvider.get().createNativeQuery(nativeQuery);
+    for (int i = 0; i < parameters.length; i++) {
+      query.setParameter(i + 1, parameters[i]);
+    }
+    return query;
+  }
 }
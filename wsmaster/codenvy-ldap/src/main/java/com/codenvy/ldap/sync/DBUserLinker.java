@@ -10,11 +10,18 @@
  */
 package com.codenvy.ldap.sync;
 
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Map;
 import java.util.Set;
+import java.util.function.Function;
 import org.eclipse.che.api.core.NotFoundException;
 import org.eclipse.che.api.core.ServerException;
+import org.eclipse.che.api.core.model.user.Profile;
 import org.eclipse.che.api.core.model.user.User;
+import org.eclipse.che.api.user.server.model.impl.ProfileImpl;
+import org.eclipse.che.api.user.server.model.impl.UserImpl;
 import org.eclipse.che.api.user.server.spi.UserDao;
 
 /**
@@ -68,6 +75,64 @@ public abstract class DBUserLinker {
   /** Returns linking attribute values for those users who exist in persistence layer. */
   public abstract Set<String> findIds();
 
+  /**
+   * Finds users in persistence layer by specified identifiers.
+   *
+   * <p>The default implementation finds users one by one with {@link #findUser(String)}.
+   *
+   * @param linkingAttributes the values returned from {@link #extractId(User)}
+   * @return found users mapped by their linking attributes, users who don't exist are missing
+   * @throws ServerException when any error occurs
+   */
+  public Map<String, User> findUsers(Collection<String> linkingAttributes) throws ServerException {
+    final Map<String, User> users = new HashMap<>();
+    for (String linkingAttribute : linkingAttributes) {
+      try {
+        users.put(linkingAttribute, findUser(linkingAttribute));
+      } catch (NotFoundException ignored) {
+        // the user will be created
+      }
+    }
+    return users;
+  }
+
+  /**
+   * Finds profiles of the users with specified identifiers in persistence layer.
+   *
+   * @param userIds identifiers of database users
+   * @return found profiles mapped by user identifiers, profiles which don't exist are missing
+   */
+  public Map<String, Profile> findProfiles(Collection<String> userIds) {
+    final Map<String, Profile> profiles = new HashMap<>();
+    for (Profile profile :
+        dbHelper.executeQuery(
+            "SELECT p FROM Profile p WHERE p.userId IN ?1",
+            ProfileImpl.class,
+            ProfileImpl::new,
+            userIds)) {
+      profiles.put(profile.getUserId(), profile);
+    }
+    return profiles;
+  }
+
+  /**
+   * Finds users by the values of the given {@link UserImpl} entity attribute with a single query.
+   * Returned users have no password, the same as users returned by {@link UserDao}.
+   */
+  protected Map<String, User> findUsersBy(
+      String attribute, Collection<String> values, Function<User, String> linkingAttribute) {
+    final Map<String, User> users = new HashMap<>();
+    for (User user :
+        dbHelper.executeQuery(
+            "SELECT u FROM Usr u WHERE u." + attribute + " IN ?1",
+            UserImpl.class,
+            u -> new UserImpl(u.getId(), u.getEmail(), u.getName(), null, u.getAliases()),
+            values)) {
+      users.put(linkingAttribute.apply(user), user);
+    }
+    return users;
+  }
+
   /** Retrieves user by his id. */
   private static class IdLinker extends DBUserLinker {
 
@@ -90,6 +155,11 @@ public abstract class DBUserLinker {
     public Set<String> findIds() {
       return new HashSet<>(dbHelper.executeNativeQuery("SELECT id FROM Usr"));
     }
+
+    @Override
+    public Map<String, User> findUsers(Collection<String> ids) {
+      return findUsersBy("id", ids, User::getId);
+    }
   }
 
   /** Retrieves user by his email. */
@@ -114,6 +184,11 @@ public abstract class DBUserLinker {
     public Set<String> findIds() {
       return new HashSet<>(dbHelper.executeNativeQuery("SELECT email FROM Usr"));
     }
+
+    @Override
+    public Map<String, User> findUsers(Collection<String> emails) {
+      return findUsersBy("email", emails, User::getEmail);
+    }
   }
 
   /** Links & retrieves user by his name. */
@@ -138,5 +213,10 @@ public abstract class DBUserLinker {
     public Set<String> findIds() {
       return new HashSet<>(dbHelper.executeNativeQuery("SELECT name FROM Usr"));
     }
+
+    @Override
+    public Map<String, User> findUsers(Collection<String> names) {
+      return findUsersBy("name", names, User::getName);
+    }
   }
 }
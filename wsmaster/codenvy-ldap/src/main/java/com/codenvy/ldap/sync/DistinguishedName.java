@@ -0,0 +1,248 @@
+/*
+ * Copyright (c) [2012] - [2017] Red Hat, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *   Red Hat, Inc. - initial API and implementation
+ */
+package com.codenvy.ldap.sync;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import org.eclipse.che.commons.annotation.Nullable;
+import org.eclipse.che.commons.lang.Pair;
+
+/**
+ * Parsed distinguished name of ldap entry.
+ *
+ * <p>Entry can't be matched by its DN in a search filter in a way which works for all the ldap
+ * servers, but it can be matched by the values of its relative DN attributes with one level search
+ * in the parent entry. This allows to find many entries having the same parent with a single search
+ * request.
+ */
+final class DistinguishedName {
+
+  /**
+   * Parses the given DN.
+   *
+   * @param dn DN to parse
+   * @return parsed DN or null if the DN is not valid, has no parent or has a value in the format
+   *     which can't be matched by search filter e.g. BER encoded value
+   */
+  @Nullable
+  static DistinguishedName parse(String dn) {
+    final List<List<Pair<String, String>>> rdns = parseRdns(dn);
+    if (rdns == null || rdns.size() < 2) {
+      return null;
+    }
+    return new DistinguishedName(
+        dn.substring(indexOfParent(dn)).trim(), rdns.get(0), normalize(rdns));
+  }
+
+  /**
+   * Returns DN in the form suitable for comparison of DNs, attribute types and values are lower
+   * cased and spaces around separators are removed. DNs which can't be parsed are only lower cased.
+   */
+  static String normalize(String dn) {
+    final List<List<Pair<String, String>>> rdns = parseRdns(dn);
+    return rdns == null ? dn.trim().toLowerCase() : normalize(rdns);
+  }
+
+  /** Escapes the value to be used in search filter assertion as described in RFC 4515. */
+  static String escapeFilterValue(String value) {
+    final StringBuilder sb = new StringBuilder(value.length());
+    for (int i = 0; i < value.length(); i++) {
+      final char c = value.charAt(i);
+      switch (c) {
+        case '*':
+          sb.append("\\2a");
+          break;
+        case '(':
+          sb.append("\\28");
+          break;
+        case ')':
+          sb.append("\\29");
+          break;
+        case '\\':
+          sb.append("\\5c");
+          break;
+        case '\0':
+          sb.append("\\00");
+          break;
+        default:
+          sb.append(c);
+      }
+    }
+    return sb.toString();
+  }
+
+  private final String parent;
+  private final List<Pair<String, String>> rdn;
+  private final String normalized;
+
+  private DistinguishedName(String parent, List<Pair<String, String>> rdn, String normalized) {
+    this.parent = parent;
+    this.rdn = rdn;
+    this.normalized = normalized;
+  }
+
+  /** Returns DN of the parent entry. */
+  String getParent() {
+    return parent;
+  }
+
+  /** Returns DN in the form returned by {@link #normalize(String)}. */
+  String getNormalized() {
+    return normalized;
+  }
+
+  /** Returns search filter which matches entries having the attribute values of relative DN. */
+  String toRdnFilter() {
+    final StringBuilder sb = new StringBuilder();
+    if (rdn.size() > 1) {
+      sb.append("(&");
+    }
+    for (Pair<String, String> ava : rdn) {
+      sb.append('(')
+          .append(ava.first)
+          .append('=')
+          .append(escapeFilterValue(ava.second))
+          .append(')');
+    }
+    if (rdn.size() > 1) {
+      sb.append(')');
+    }
+    return sb.toString();
+  }
+
+  @Override
+  public String toString() {
+    return normalized;
+  }
+
+  /** Returns the list of relative DNs each of which is a list of attribute type/value pairs. */
+  private static List<List<Pair<String, String>>> parseRdns(String dn) {
+    final List<List<Pair<String, String>>> rdns = new ArrayList<>();
+    List<Pair<String, String>> rdn = new ArrayList<>();
+    final int length = dn.length();
+    int i = 0;
+    while (i < length) {
+      final int eqIdx = dn.indexOf('=', i);
+      if (eqIdx == -1) {
+        return null;
+      }
+      final String type = dn.substring(i, eqIdx).trim();
+      if (type.isEmpty()) {
+        return null;
+      }
+      i = eqIdx + 1;
+      while (i < length && dn.charAt(i) == ' ') {
+        i++;
+      }
+      if (i < length && (dn.charAt(i) == '#' || dn.charAt(i) == '"')) {
+        return null;
+      }
+      final ByteArrayOutputStream value = new ByteArrayOutputStream();
+      int significantLength = 0;
+      while (i < length) {
+        final char c = dn.charAt(i);
+        if (c == ',' || c == '+' || c == ';') {
+          break;
+        }
+        if (c == '\\') {
+          if (isHexPair(dn, i + 1)) {
+            value.write(Integer.parseInt(dn.substring(i + 1, i + 3), 16));
+            i += 3;
+          } else if (i + 1 < length) {
+            writeUtf8(value, dn.charAt(i + 1));
+            i += 2;
+          } else {
+            return null;
+          }
+          significantLength = value.size();
+        } else {
+          final int codePoint = dn.codePointAt(i);
+          writeUtf8(value, codePoint);
+          i += Character.charCount(codePoint);
+          if (c != ' ') {
+            significantLength = value.size();
+          }
+        }
+      }
+      rdn.add(Pair.of(type, new String(value.toByteArray(), 0, significantLength, UTF_8)));
+      if (i < length) {
+        final char separator = dn.charAt(i++);
+        if (separator != '+') {
+          rdns.add(rdn);
+          rdn = new ArrayList<>();
+        }
+        if (i == length) {
+          return null;
+        }
+      }
+    }
+    if (rdn.isEmpty()) {
+      return null;
+    }
+    rdns.add(rdn);
+    return rdns;
+  }
+
+  /** Returns the index of the first character after the first relative DN separator. */
+  private static int indexOfParent(String dn) {
+    for (int i = 0; i < dn.length(); i++) {
+      final char c = dn.charAt(i);
+      if (c == '\\') {
+        i++;
+      } else if (c == ',' || c == ';') {
+        return i + 1;
+      }
+    }
+    return dn.length();
+  }
+
+  private static String normalize(List<List<Pair<String, String>>> rdns) {
+    final StringBuilder sb = new StringBuilder();
+    for (List<Pair<String, String>> rdn : rdns) {
+      if (sb.length() > 0) {
+        sb.append(',');
+      }
+      final List<String> avas = new ArrayList<>(rdn.size());
+      for (Pair<String, String> ava : rdn) {
+        avas.add(ava.first.toLowerCase() + '=' + escapeDnValue(ava.second.toLowerCase()));
+      }
+      avas.sort(null);
+      sb.append(String.join("+", avas));
+    }
+    return sb.toString();
+  }
+
+  private static String escapeDnValue(String value) {
+    final StringBuilder sb = new StringBuilder(value.length());
+    for (int i = 0; i < value.length(); i++) {
+      final char c = value.charAt(i);
+      if (",+=\\;\"<>".indexOf(c) != -1) {
+        sb.append('\\');
+      }
+      sb.append(c);
+    }
+    return sb.toString();
+  }
+
+  private static boolean isHexPair(String s, int idx) {
+    return idx + 1 < s.length()
+        && Character.digit(s.charAt(idx), 16) != -1
+        && Character.digit(s.charAt(idx + 1), 16) != -1;
+  }
+
+  private static void writeUtf8(ByteArrayOutputStream out, int codePoint) {
+    final byte[] bytes = new String(Character.toChars(codePoint)).getBytes(UTF_8);
+    out.write(bytes, 0, bytes.length);
+  }
+}
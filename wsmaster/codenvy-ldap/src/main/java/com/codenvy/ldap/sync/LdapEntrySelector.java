@@ -32,4 +32,21 @@ public interface LdapEntrySelector {
    * @throws SyncException when any error occurs during selection, or during iteration
    */
   Iterable<LdapEntry> select(Connection connection) throws SyncException;
+
+  /**
+   * Selects ldap entries which were changed since the given value of change tracking attribute,
+   * e.g. entries which {@code modifyTimestamp} is greater or equal to the given one.
+   *
+   * <p>Change tracking attribute is returned only if it is a part of selector's return attributes.
+   *
+   * @param connection the connection which should be used for selection, it is already opened and
+   *     shouldn't be closed
+   * @param changeAttr change tracking attribute e.g. 'modifyTimestamp' or 'uSNChanged'
+   * @param changedSince the value of change tracking attribute starting from which entries should
+   *     be selected
+   * @return an iterable describing the result iterator
+   * @throws SyncException when any error occurs during selection, or during iteration
+   */
+  Iterable<LdapEntry> selectChanged(Connection connection, String changeAttr, String changedSince)
+      throws SyncException;
 }
@@ -30,6 +30,7 @@ public class LdapEntrySelectorProvider implements Provider<LdapEntrySelector> {
 
   private static final int DEFAULT_PAGE_SIZE = 1000;
   private static final long DEFAULT_PAGE_READ_TIMEOUT = 30_000L;
+  private static final int DEFAULT_MEMBERS_BATCH_SIZE = 100;
 
   private final LdapEntrySelector selector;
 
@@ -41,12 +42,14 @@ public class LdapEntrySelectorProvider implements Provider<LdapEntrySelector> {
       @Named("ldap.sync.group.filter") @Nullable String groupFilter,
       @Named("ldap.sync.group.additional_dn") @Nullable String additionalGroupDn,
       @Named("ldap.sync.group.attr.members") @Nullable String membersAttrName,
+      @Named("ldap.sync.group.members.batch_size") int membersBatchSize,
       @Named("ldap.sync.page.size") int pageSize,
       @Named("ldap.sync.page.read_timeout_ms") long pageReadTimeoutMs,
       @Named("ldap.sync.profile.attrs") @Nullable Pair<String, String>[] profileAttributes,
       @Named("ldap.sync.user.attr.id") String userIdAttr,
       @Named("ldap.sync.user.attr.name") String userNameAttr,
-      @Named("ldap.sync.user.attr.email") String userEmailAttr) {
+      @Named("ldap.sync.user.attr.email") String userEmailAttr,
+      @Named("ldap.sync.change_attr") @Nullable String changeAttr) {
     if (groupFilter != null && membersAttrName == null) {
       throw new NullPointerException(
           format(
@@ -65,6 +68,9 @@ public class LdapEntrySelectorProvider implements Provider<LdapEntrySelector> {
         attrsList.add(profileAttribute.second);
       }
     }
+    if (changeAttr != null) {
+      attrsList.add(changeAttr);
+    }
     final String[] syncAttributes = attrsList.toArray(new String[attrsList.size()]);
 
     if (groupFilter == null) {
@@ -82,6 +88,7 @@ public class LdapEntrySelectorProvider implements Provider<LdapEntrySelector> {
               groupFilter,
               usersFilter,
               membersAttrName,
+              membersBatchSize <= 0 ? DEFAULT_MEMBERS_BATCH_SIZE : membersBatchSize,
               syncAttributes);
     }
   }
@@ -11,11 +11,24 @@
 package com.codenvy.ldap.sync;
 
 import static java.lang.String.format;
+import static java.util.Collections.emptyMap;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+import static java.util.stream.Collectors.toList;
 
 import com.codenvy.ldap.LdapUserIdNormalizer;
 import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.google.inject.persist.Transactional;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
@@ -59,6 +72,14 @@ import org.slf4j.LoggerFactory;
  *
  * <p>Ldap entries selection strategy is picked by {@link LdapEntrySelectorProvider}.
  *
+ * <p>If change tracking attribute is configured, scheduled synchronizations select only the entries
+ * changed since the last synchronization, see {@link #syncChanged()}, while full synchronization
+ * which also removes missing users is performed once per configured full synchronization period.
+ *
+ * <p>Fetched entries are synchronized in batches, each batch is mapped and persisted by one of the
+ * synchronization threads while the next entries are fetched from ldap storage, see {@link
+ * SyncResult} for the time spent on each of the stages.
+ *
  * <p>It is thread-safe.
  *
  * @author Yevhenii Voevodin
@@ -68,7 +89,7 @@ import org.slf4j.LoggerFactory;
 public class LdapSynchronizer {
 
   private static final Logger LOG = LoggerFactory.getLogger(LdapSynchronizer.class);
-  private static final int EACH_ENTRIES_COUNT_CHECK_INTERRUPTION = 200;
+  private static final List<LdapEntry> LAST_BATCH = Collections.emptyList();
 
   private static final String USER_ID_ATTRIBUTE_NAME = "ldap.sync.user.attr.id";
   private static final String USER_NAME_ATTRIBUTE_NAME = "ldap.sync.user.attr.name";
@@ -88,6 +109,11 @@ public class LdapSynchronizer {
   private final AtomicBoolean isSyncing;
   private final LdapUserIdNormalizer idNormalizer;
   private final DBUserLinker linker;
+  private final String changeAttr;
+  private final long fullSyncPeriodMs;
+  private final SyncStateStore stateStore;
+  private final int batchSize;
+  private final int threads;
 
   /**
    * Creates an instance of synchronizer.
@@ -113,6 +139,14 @@ public class LdapSynchronizer {
    * @param removeIfMissing whether remove those users who are present in persistence layer while
    *     missing from ldap storage
    * @param userLinker gets database users and their attributes
+   * @param changeAttr an optional ldap attribute which value increases on each entry modification
+   *     e.g. 'modifyTimestamp' or 'uSNChanged', if it is set then scheduled synchronizations are
+   *     incremental
+   * @param fullSyncPeriodMs how often scheduled synchronization is full, it is used only if {@code
+   *     changeAttr} is set
+   * @param stateStore keeps the state of incremental synchronization
+   * @param batchSize how many entries are persisted in a single transaction
+   * @param threads how many threads map and persist the entries fetched from ldap storage
    */
   @Inject
   public LdapSynchronizer(
@@ -130,11 +164,24 @@ public class LdapSynchronizer {
       @Named("ldap.sync.profile.attrs") @Nullable Pair<String, String>[] profileAttributes,
       @Named("ldap.sync.update_if_exists") boolean updateIfExists,
       @Named("ldap.sync.remove_if_missing") boolean removeIfMissing,
-      DBUserLinker userLinker) {
+      DBUserLinker userLinker,
+      @Named("ldap.sync.change_attr") @Nullable String changeAttr,
+      @Named("ldap.sync.full_sync_period_ms") long fullSyncPeriodMs,
+      SyncStateStore stateStore,
+      @Named("ldap.sync.batch_size") int batchSize,
+      @Named("ldap.sync.threads") int threads) {
     if (initDelayMs < 0) {
       throw new IllegalArgumentException(
           "'ldap.sync.initial_delay_ms' must be >= 0, the actual value is " + initDelayMs);
     }
+    if (batchSize <= 0) {
+      throw new IllegalArgumentException(
+          "'ldap.sync.batch_size' must be > 0, the actual value is " + batchSize);
+    }
+    if (threads <= 0) {
+      throw new IllegalArgumentException(
+          "'ldap.sync.threads' must be > 0, the actual value is " + threads);
+    }
     this.connFactory = connFactory;
     this.userManager = userManager;
     this.profileManager = profileManager;
@@ -148,6 +195,11 @@ public class LdapSynchronizer {
     this.updateIfExists = updateIfExists;
     this.removeIfMissing = removeIfMissing;
     this.linker = userLinker;
+    this.changeAttr = changeAttr;
+    this.fullSyncPeriodMs = fullSyncPeriodMs;
+    this.stateStore = stateStore;
+    this.batchSize = batchSize;
+    this.threads = threads;
     this.scheduler =
         Executors.newScheduledThreadPool(
             1,
@@ -167,7 +219,7 @@ public class LdapSynchronizer {
     if (!isSyncing.compareAndSet(false, true)) {
       throw new SyncException("Couldn't start synchronization as it is executing right now");
     }
-    scheduler.execute(this::syncSilentlyAndUnsetFlag);
+    scheduler.execute(() -> syncSilentlyAndUnsetFlag(false));
   }
 
   /**
@@ -179,33 +231,22 @@ public class LdapSynchronizer {
    */
   public SyncResult syncAll() throws LdapException, SyncException {
     LOG.info("Preparing synchronization environment");
+    final long startTime = System.currentTimeMillis();
     final SyncResult syncResult = new SyncResult();
-    final Set<String> linkingIds = linker.findIds();
+    // ids are removed by synchronization workers
+    final Set<String> linkingIds = ConcurrentHashMap.newKeySet();
+    linkingIds.addAll(linker.findIds());
     LOG.debug("Using selector {} for synchronization", selector);
     LOG.info("Starting synchronization of users/profiles");
+    final String highWaterMark;
     try (Connection connection = connFactory.getConnection()) {
       connection.open();
-      for (LdapEntry entry : selector.select(connection)) {
-        syncResult.fetched++;
-
-        if (LOG.isDebugEnabled()) {
-          LOG.debug("Synchronizing entry: {}", entry);
-        }
-
-        syncFetched(entry, linkingIds, syncResult);
-
-        // Each EACH_ENTRIES_COUNT_CHECK_INTERRUPTION synchronized entries check whether thread
-        // wasn't interrupted
-        // if it was - stop the synchronization, all the users who were not synchronized
-        // will be synchronized with the next synchronization
-        if (syncResult.fetched % EACH_ENTRIES_COUNT_CHECK_INTERRUPTION == 0) {
-          if (Thread.currentThread().isInterrupted()) {
-            LOG.warn("User/Profile synchronization was interrupted");
-            LOG.info("Synchronization result: {}", syncResult);
-            return syncResult;
-          }
-        }
-      }
+      highWaterMark = syncSelected(selector.select(connection), linkingIds, syncResult, null);
+    }
+    if (Thread.currentThread().isInterrupted()) {
+      LOG.warn("User/Profile synchronization was interrupted");
+      LOG.info("Synchronization result: {}", syncResult);
+      return syncResult;
     }
 
     if (removeIfMissing && !linkingIds.isEmpty()) {
@@ -223,66 +264,347 @@ public class LdapSynchronizer {
       }
     }
 
+    if (changeAttr != null) {
+      if (highWaterMark != null) {
+        stateStore.setHighWaterMark(highWaterMark);
+      }
+      stateStore.setLastFullSyncTime(startTime);
+    }
+
+    LOG.info("Synchronization result: {}", syncResult);
+    return syncResult;
+  }
+
+  /**
+   * Synchronizes only the entries changed since the last synchronization, which are the entries
+   * with the value of change tracking attribute greater or equal to the greatest value seen by the
+   * last synchronization. Users removed from ldap storage are not removed by this synchronization.
+   *
+   * <p>If change tracking attribute is not configured or there was no successful synchronization
+   * yet, then full synchronization is performed.
+   *
+   * <p>Entries changed while synchronization is in progress may be missed if their change marks are
+   * less than the greatest mark seen by the synchronization, such entries are synchronized by the
+   * next full synchronization.
+   *
+   * @return the result of synchronization
+   * @throws LdapException when any error occurs during connection opening or closing
+   * @throws SyncException when any error occurs during synchronization
+   */
+  public SyncResult syncChanged() throws LdapException, SyncException {
+    final String changedSince = changeAttr == null ? null : stateStore.getHighWaterMark();
+    if (changedSince == null) {
+      return syncAll();
+    }
+    final SyncResult syncResult = new SyncResult();
+    LOG.debug("Using selector {} for synchronization", selector);
+    LOG.info(
+        "Starting synchronization of users/profiles changed since '{}={}'",
+        changeAttr,
+        changedSince);
+    final String highWaterMark;
+    try (Connection connection = connFactory.getConnection()) {
+      connection.open();
+      highWaterMark =
+          syncSelected(
+              selector.selectChanged(connection, changeAttr, changedSince),
+              null,
+              syncResult,
+              changedSince);
+    }
+    if (Thread.currentThread().isInterrupted()) {
+      LOG.warn("User/Profile synchronization was interrupted");
+    } else if (!highWaterMark.equals(changedSince)) {
+      stateStore.setHighWaterMark(highWaterMark);
+    }
     LOG.info("Synchronization result: {}", syncResult);
     return syncResult;
   }
 
-  /** Validates and tries to persist fetched ldap entry. */
-  private void syncFetched(LdapEntry entry, Set<String> linkingIds, SyncResult syncResult) {
-    idNormalizer.normalize(entry);
+  /**
+   * Synchronizes selected entries and returns the greatest value of change tracking attribute of
+   * the synchronized entries or the given mark if it is greater.
+   *
+   * <p>The calling thread reads entries from ldap storage and puts them in batches to the bounded
+   * queue, while the batches are mapped and persisted by {@code ldap.sync.threads} workers, so
+   * reading of the next ldap page overlaps with the database work on the previous ones.
+   *
+   * @param linkingIds linking ids of database users, found entries are removed from this set, if it
+   *     is null then users are searched in the database
+   */
+  private String syncSelected(
+      Iterable<LdapEntry> entries,
+      @Nullable Set<String> linkingIds,
+      SyncResult syncResult,
+      @Nullable String highWaterMark) {
+    final BlockingQueue<List<LdapEntry>> batches = new ArrayBlockingQueue<>(threads);
+    final ExecutorService workers =
+        Executors.newFixedThreadPool(
+            threads,
+            new ThreadFactoryBuilder()
+                .setNameFormat("LdapSynchronizerWorker-%d")
+                .setUncaughtExceptionHandler(LoggingUncaughtExceptionHandler.getInstance())
+                .setDaemon(false)
+                .build());
+    for (int i = 0; i < threads; i++) {
+      workers.execute(() -> syncBatches(batches, linkingIds, syncResult));
+    }
+    final SyncResult fetchResult = new SyncResult();
+    boolean interrupted = false;
+    try {
+      final Iterator<LdapEntry> it = entries.iterator();
+      List<LdapEntry> batch = new ArrayList<>(batchSize);
+      long fetchStart = System.nanoTime();
+      while (it.hasNext()) {
+        final LdapEntry entry = it.next();
+        fetchResult.fetchTime += System.nanoTime() - fetchStart;
+        fetchResult.fetched++;
 
-    final UserImpl ldapUser = userMapper.apply(entry);
-    if (!isValid(ldapUser)) {
-      syncResult.failed++;
-      return;
+        if (LOG.isDebugEnabled()) {
+          LOG.debug("Synchronizing entry: {}", entry);
+        }
+
+        if (changeAttr != null) {
+          highWaterMark = ChangeMarks.max(highWaterMark, entry, changeAttr);
+        }
+        batch.add(entry);
+
+        // Each batch check whether thread wasn't interrupted
+        // if it was - stop the synchronization, all the users who were not synchronized
+        // will be synchronized with the next synchronization
+        if (batch.size() == batchSize) {
+          if (Thread.currentThread().isInterrupted()) {
+            interrupted = true;
+            break;
+          }
+          batches.put(batch);
+          batch = new ArrayList<>(batchSize);
+        }
+        fetchStart = System.nanoTime();
+      }
+      if (!interrupted && !batch.isEmpty()) {
+        batches.put(batch);
+      }
+    } catch (InterruptedException x) {
+      interrupted = true;
+    } finally {
+      interrupted |= Thread.interrupted();
+      if (interrupted) {
+        batches.clear();
+      }
+      stopWorkers(workers, batches);
+      syncResult.add(fetchResult);
+      if (interrupted) {
+        Thread.currentThread().interrupt();
+      }
     }
+    return highWaterMark;
+  }
 
-    final ProfileImpl ldapProfile = profileMapper.apply(entry);
+  /** Lets the workers finish the queued batches and waits for their termination. */
+  private void stopWorkers(ExecutorService workers, BlockingQueue<List<LdapEntry>> batches) {
     try {
-      final String linkingId = linker.extractId(ldapUser);
-      if (!linkingIds.remove(linkingId)) {
-        createUserAndProfile(ldapUser, ldapProfile);
-        syncResult.created++;
-        LOG.debug("Created user & profile '{}'", ldapUser.getId());
-        return;
+      for (int i = 0; i < threads; i++) {
+        batches.put(LAST_BATCH);
+      }
+      workers.shutdown();
+      while (!workers.awaitTermination(1, TimeUnit.MINUTES)) {
+        LOG.info("Waiting for synchronization workers to persist remaining entries");
       }
+    } catch (InterruptedException x) {
+      workers.shutdownNow();
+      Thread.currentThread().interrupt();
+    }
+  }
 
-      if (!updateIfExists) {
+  /** Synchronizes batches taken from the queue until {@link #LAST_BATCH} is taken. */
+  private void syncBatches(
+      BlockingQueue<List<LdapEntry>> batches,
+      @Nullable Set<String> linkingIds,
+      SyncResult syncResult) {
+    try {
+      for (List<LdapEntry> batch = batches.take(); batch != LAST_BATCH; batch = batches.take()) {
+        final SyncResult batchResult = new SyncResult();
+        try {
+          syncBatch(batch, linkingIds, batchResult);
+        } catch (RuntimeException x) {
+          LOG.error("Couldn't synchronize batch of ldap entries due to occurred error", x);
+          batchResult.failed += batch.size() - batchResult.getProcessed();
+        }
+        syncResult.add(batchResult);
+      }
+    } catch (InterruptedException x) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /**
+   * Maps the batch of entries to users and profiles, fetches existing users and profiles with bulk
+   * queries and persists the changes in a single transaction. If the transaction fails then the
+   * entries are persisted one by one, so a single invalid entry doesn't fail the whole batch.
+   */
+  private void syncBatch(
+      List<LdapEntry> batch, @Nullable Set<String> linkingIds, SyncResult syncResult) {
+    long stageStart = System.nanoTime();
+    final List<MappedEntry> mapped = new ArrayList<>(batch.size());
+    for (LdapEntry entry : batch) {
+      idNormalizer.normalize(entry);
+
+      final UserImpl ldapUser = userMapper.apply(entry);
+      if (!isValid(ldapUser)) {
+        syncResult.failed++;
+        continue;
+      }
+
+      try {
+        final MappedEntry mappedEntry =
+            new MappedEntry(
+                entry, ldapUser, profileMapper.apply(entry), linker.extractId(ldapUser));
+        mappedEntry.exists = linkingIds != null && linkingIds.remove(mappedEntry.linkingId);
+        mapped.add(mappedEntry);
+      } catch (RuntimeException x) {
+        logSyncFailure(entry, ldapUser, x);
+        syncResult.failed++;
+      }
+    }
+    syncResult.mapTime += System.nanoTime() - stageStart;
+
+    stageStart = System.nanoTime();
+    final Set<String> lookupIds = new HashSet<>();
+    for (MappedEntry mappedEntry : mapped) {
+      if (linkingIds == null || mappedEntry.exists && updateIfExists) {
+        lookupIds.add(mappedEntry.linkingId);
+      }
+    }
+    final Map<String, User> dbUsers;
+    try {
+      dbUsers = lookupIds.isEmpty() ? emptyMap() : linker.findUsers(lookupIds);
+    } catch (ServerException x) {
+      LOG.error("Couldn't find database users of the batch due to occurred error", x);
+      syncResult.failed += mapped.size();
+      return;
+    }
+    final List<MappedEntry> toCreate = new ArrayList<>();
+    final List<MappedEntry> toUpdate = new ArrayList<>();
+    for (MappedEntry mappedEntry : mapped) {
+      final User dbUser = dbUsers.get(mappedEntry.linkingId);
+      if (linkingIds == null ? dbUser == null : !mappedEntry.exists) {
+        toCreate.add(mappedEntry);
+      } else if (!updateIfExists) {
         syncResult.skipped++;
-        LOG.debug("User & profile '{}' are skipped", ldapUser.getId());
-        return;
+        LOG.debug("User & profile '{}' are skipped", mappedEntry.ldapUser.getId());
+      } else if (dbUser == null) {
+        LOG.info(
+            "Couldn't update user '{}' as it was removed from the database while synchronizing",
+            mappedEntry.linkingId);
+        syncResult.failed++;
+      } else {
+        // user identifier in database is always 'id', which means
+        // that if linking attribute is different from 'id' then
+        // update may update the different user entity or fail.
+        // e.g.
+        // ldapUser.id    = "user123" !=  dbUser.id    = "123user"
+        // ldapUser.email = "m@m.com" ==  dbUser.email = "m@m.com"
+        // linking_attribute = 'email' update will fail with not found exception
+        //
+        // always use db id for user
+        mappedEntry.ldapUser.setId(dbUser.getId());
+        mappedEntry.dbUser = dbUser;
+        toUpdate.add(mappedEntry);
+      }
+    }
+    if (!toUpdate.isEmpty()) {
+      final Map<String, Profile> dbProfiles =
+          linker.findProfiles(toUpdate.stream().map(e -> e.dbUser.getId()).collect(toList()));
+      for (Iterator<MappedEntry> it = toUpdate.iterator(); it.hasNext(); ) {
+        final MappedEntry mappedEntry = it.next();
+        mappedEntry.dbProfile = dbProfiles.get(mappedEntry.dbUser.getId());
+        if (mappedEntry.dbProfile == null) {
+          LOG.info("Couldn't update profile of user '{}' as it is missing", mappedEntry.dbUser);
+          syncResult.failed++;
+          it.remove();
+        } else if (mappedEntry.dbUser.equals(mappedEntry.ldapUser)
+            && mappedEntry.dbProfile.equals(mappedEntry.ldapProfile)) {
+          syncResult.upToDate++;
+          LOG.debug("User & profile '{}' are up-to-date", mappedEntry.ldapUser.getId());
+          it.remove();
+        }
       }
+    }
+    syncResult.lookupTime += System.nanoTime() - stageStart;
+
+    stageStart = System.nanoTime();
+    if (!toCreate.isEmpty() || !toUpdate.isEmpty()) {
+      try {
+        persistBatch(toCreate, toUpdate);
+        syncResult.created += toCreate.size();
+        syncResult.updated += toUpdate.size();
+        LOG.debug("Created '{}' and updated '{}' users", toCreate.size(), toUpdate.size());
+      } catch (RuntimeException | ConflictException | NotFoundException | ServerException x) {
+        LOG.debug("Couldn't persist the batch, persisting its entries one by one", x);
+        for (MappedEntry mappedEntry : toCreate) {
+          create(mappedEntry, syncResult);
+        }
+        for (MappedEntry mappedEntry : toUpdate) {
+          update(mappedEntry, syncResult);
+        }
+      }
+    }
+    syncResult.persistTime += System.nanoTime() - stageStart;
+  }
+
+  private void create(MappedEntry mappedEntry, SyncResult syncResult) {
+    try {
+      createUserAndProfile(mappedEntry.ldapUser, mappedEntry.ldapProfile);
+      syncResult.created++;
+      LOG.debug("Created user & profile '{}'", mappedEntry.ldapUser.getId());
+    } catch (RuntimeException | ConflictException | NotFoundException | ServerException x) {
+      logSyncFailure(mappedEntry.entry, mappedEntry.ldapUser, x);
+      syncResult.failed++;
+    }
+  }
 
-      final User dbUser = linker.findUser(linkingId);
-      final Profile dbProfile = profileManager.getById(dbUser.getId());
-      // user identifier in database is always 'id', which means
-      // that if linking attribute is different from 'id' then
-      // update may update the different user entity or fail.
-      // e.g.
-      // ldapUser.id    = "user123" !=  dbUser.id    = "123user"
-      // ldapUser.email = "m@m.com" ==  dbUser.email = "m@m.com"
-      // linking_attribute = 'email' update will fail with not found exception
-      //
-      // always use db id for user
-      ldapUser.setId(dbUser.getId());
-      if (updateUserAndProfile(dbUser, dbProfile, ldapUser, ldapProfile)) {
+  private void update(MappedEntry mappedEntry, SyncResult syncResult) {
+    try {
+      if (updateUserAndProfile(
+          mappedEntry.dbUser,
+          mappedEntry.dbProfile,
+          mappedEntry.ldapUser,
+          mappedEntry.ldapProfile)) {
         syncResult.updated++;
-        LOG.debug("Updated user & profile '{}'", ldapUser.getId());
+        LOG.debug("Updated user & profile '{}'", mappedEntry.ldapUser.getId());
       } else {
         syncResult.upToDate++;
-        LOG.debug("User & profile '{}' are up-to-date", ldapUser.getId());
+        LOG.debug("User & profile '{}' are up-to-date", mappedEntry.ldapUser.getId());
       }
     } catch (RuntimeException | ConflictException | NotFoundException | ServerException x) {
-      LOG.info(
-          "Couldn't synchronize(update/create) user or his profile '{}' "
-              + "due to occurred error, original ldap entry '{}'. Error: {}",
-          ldapUser.getId(),
-          entry,
-          x.getMessage());
+      logSyncFailure(mappedEntry.entry, mappedEntry.ldapUser, x);
       syncResult.failed++;
     }
   }
 
+  private void logSyncFailure(LdapEntry entry, User ldapUser, Exception x) {
+    LOG.info(
+        "Couldn't synchronize(update/create) user or his profile '{}' "
+            + "due to occurred error, original ldap entry '{}'. Error: {}",
+        ldapUser.getId(),
+        entry,
+        x.getMessage());
+  }
+
+  /** Creates and updates users and profiles of the batch in a single transaction. */
+  @Transactional(rollbackOn = Exception.class)
+  protected void persistBatch(List<MappedEntry> toCreate, List<MappedEntry> toUpdate)
+      throws ConflictException, NotFoundException, ServerException {
+    for (MappedEntry mappedEntry : toCreate) {
+      createUserAndProfile(mappedEntry.ldapUser, mappedEntry.ldapProfile);
+    }
+    for (MappedEntry mappedEntry : toUpdate) {
+      updateUserAndProfile(
+          mappedEntry.dbUser, mappedEntry.dbProfile, mappedEntry.ldapUser, mappedEntry.ldapProfile);
+    }
+  }
+
   @Transactional
   protected void createUserAndProfile(UserImpl user, ProfileImpl profile)
       throws ConflictException, NotFoundException, ServerException {
@@ -306,9 +628,13 @@ public class LdapSynchronizer {
     return updated;
   }
 
-  private void syncSilentlyAndUnsetFlag() {
+  private void syncSilentlyAndUnsetFlag(boolean onlyChanged) {
     try {
-      syncAll();
+      if (onlyChanged) {
+        syncChanged();
+      } else {
+        syncAll();
+      }
     } catch (Exception x) {
       LOG.error(
           "Couldn't finish users synchronization due to occurred error, "
@@ -350,6 +676,19 @@ public class LdapSynchronizer {
     }
   }
 
+  /** Returns true if scheduled synchronization may select only changed entries. */
+  private boolean isIncrementalSyncDue() {
+    if (changeAttr == null) {
+      return false;
+    }
+    try {
+      return System.currentTimeMillis() - stateStore.getLastFullSyncTime() < fullSyncPeriodMs;
+    } catch (RuntimeException x) {
+      LOG.warn("Couldn't get the time of the last full synchronization", x);
+      return false;
+    }
+  }
+
   private boolean isValid(UserImpl user) {
     if (user.getId() == null) {
       LOG.warn(
@@ -385,6 +724,10 @@ public class LdapSynchronizer {
     private long upToDate;
     private long skipped;
     private long fetched;
+    private long fetchTime;
+    private long mapTime;
+    private long lookupTime;
+    private long persistTime;
 
     /** How many users where removed. */
     public long getRemoved() {
@@ -429,6 +772,49 @@ public class LdapSynchronizer {
       return created + updated + upToDate + failed + skipped;
     }
 
+    /** How much time in milliseconds was spent on waiting for entries from ldap storage. */
+    public long getFetchTimeMs() {
+      return NANOSECONDS.toMillis(fetchTime);
+    }
+
+    /**
+     * How much time in milliseconds was spent on mapping ldap entries to users and profiles, summed
+     * up over all the synchronization threads.
+     */
+    public long getMapTimeMs() {
+      return NANOSECONDS.toMillis(mapTime);
+    }
+
+    /**
+     * How much time in milliseconds was spent on fetching existing users and profiles from the
+     * database, summed up over all the synchronization threads.
+     */
+    public long getLookupTimeMs() {
+      return NANOSECONDS.toMillis(lookupTime);
+    }
+
+    /**
+     * How much time in milliseconds was spent on persisting users and profiles, summed up over all
+     * the synchronization threads.
+     */
+    public long getPersistTimeMs() {
+      return NANOSECONDS.toMillis(persistTime);
+    }
+
+    private synchronized void add(SyncResult other) {
+      created += other.created;
+      updated += other.updated;
+      removed += other.removed;
+      failed += other.failed;
+      upToDate += other.upToDate;
+      skipped += other.skipped;
+      fetched += other.fetched;
+      fetchTime += other.fetchTime;
+      mapTime += other.mapTime;
+      lookupTime += other.lookupTime;
+      persistTime += other.persistTime;
+    }
+
     @Override
     public String toString() {
       return format(
@@ -439,8 +825,42 @@ public class LdapSynchronizer {
               + "failed = '%d', "
               + "up-to-date = '%d', "
               + "skipped = '%d', "
-              + "fetched = '%d'",
-          getProcessed(), created, updated, removed, failed, upToDate, skipped, fetched);
+              + "fetched = '%d', "
+              + "fetch time = '%dms', "
+              + "map time = '%dms', "
+              + "lookup time = '%dms', "
+              + "persist time = '%dms'",
+          getProcessed(),
+          created,
+          updated,
+          removed,
+          failed,
+          upToDate,
+          skipped,
+          fetched,
+          getFetchTimeMs(),
+          getMapTimeMs(),
+          getLookupTimeMs(),
+          getPersistTimeMs());
+    }
+  }
+
+  /** Ldap entry with the user and profile mapped from it. */
+  static class MappedEntry {
+    final LdapEntry entry;
+    final UserImpl ldapUser;
+    final ProfileImpl ldapProfile;
+    final String linkingId;
+
+    boolean exists;
+    User dbUser;
+    Profile dbProfile;
+
+    MappedEntry(LdapEntry entry, UserImpl ldapUser, ProfileImpl ldapProfile, String linkingId) {
+      this.entry = entry;
+      this.ldapUser = ldapUser;
+      this.ldapProfile = ldapProfile;
+      this.linkingId = linkingId;
     }
   }
 
@@ -448,7 +868,7 @@ public class LdapSynchronizer {
     @Override
     public void run() {
       if (isSyncing.compareAndSet(false, true)) {
-        syncSilentlyAndUnsetFlag();
+        syncSilentlyAndUnsetFlag(isIncrementalSyncDue());
       }
     }
   }
@@ -10,6 +10,7 @@
  */
 package com.codenvy.ldap.sync;
 
+import static java.lang.String.format;
 import static org.ldaptive.ResultCode.SUCCESS;
 
 import java.time.Duration;
@@ -53,9 +54,22 @@ public class LookupSelector implements LdapEntrySelector {
 
   @Override
   public Iterable<LdapEntry> select(Connection connection) {
+    return select(connection, new SearchFilter(filter));
+  }
+
+  @Override
+  public Iterable<LdapEntry> selectChanged(
+      Connection connection, String changeAttr, String changedSince) {
+    final SearchFilter changedFilter =
+        new SearchFilter(format("(&%s(%s>={changedSince}))", parenthesize(filter), changeAttr));
+    changedFilter.setParameter("changedSince", changedSince);
+    return select(connection, changedFilter);
+  }
+
+  private Iterable<LdapEntry> select(Connection connection, SearchFilter searchFilter) {
     final SearchRequest req = new SearchRequest();
     req.setBaseDn(baseDn);
-    req.setSearchFilter(new SearchFilter(filter));
+    req.setSearchFilter(searchFilter);
     req.setReturnAttributes(attributes);
     req.setSearchScope(SearchScope.SUBTREE);
     req.setTimeLimit(Duration.ofMillis(readPageTimeoutMs));
@@ -81,6 +95,11 @@ public class LookupSelector implements LdapEntrySelector {
         + '}';
   }
 
+  /** Wraps the filter into parentheses if it is not wrapped, e.g. 'objectClass=person'. */
+  static String parenthesize(String filter) {
+    return filter.startsWith("(") ? filter : '(' + filter + ')';
+  }
+
   private static class PagedIterable implements Iterable<LdapEntry> {
 
     private final SearchRequest request;
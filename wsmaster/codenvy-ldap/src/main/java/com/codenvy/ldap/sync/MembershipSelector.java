@@ -10,16 +10,25 @@
  */
 package com.codenvy.ldap.sync;
 
+import static com.codenvy.ldap.sync.LookupSelector.parenthesize;
 import static java.lang.String.format;
-import static java.util.stream.Collectors.toSet;
 import static org.ldaptive.ResultCode.SUCCESS;
 import static org.ldaptive.SearchScope.OBJECT;
+import static org.ldaptive.SearchScope.ONELEVEL;
 import static org.ldaptive.SearchScope.SUBTREE;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.Iterator;
-import java.util.Set;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
 import org.ldaptive.Connection;
+import org.ldaptive.LdapAttribute;
 import org.ldaptive.LdapEntry;
 import org.ldaptive.LdapException;
 import org.ldaptive.Response;
@@ -27,13 +36,19 @@ import org.ldaptive.SearchFilter;
 import org.ldaptive.SearchOperation;
 import org.ldaptive.SearchRequest;
 import org.ldaptive.SearchResult;
+import org.ldaptive.SearchScope;
 import org.ldaptive.ad.handler.ObjectGuidHandler;
 import org.ldaptive.ad.handler.RangeEntryHandler;
 
 /**
- * Queries all the group members and returns and iterable requesting each of them when {@link
+ * Queries all the group members and returns and iterable requesting them when {@link
  * Iterator#next()} is called.
  *
+ * <p>If members batch size is greater than 1, then members having the same parent entry are
+ * requested in batches with one level search in the parent entry, using the filter which matches
+ * the relative DNs of the batch members. Otherwise each member is requested separately. Members of
+ * overlapping groups are requested once.
+ *
  * @author Yevhenii Voevodin
  */
 public class MembershipSelector implements LdapEntrySelector {
@@ -42,6 +57,7 @@ public class MembershipSelector implements LdapEntrySelector {
   private final String groupsFilter;
   private final String usersFilter;
   private final String membersAttr;
+  private final int membersBatchSize;
   private final String[] returnAttrs;
 
   public MembershipSelector(
@@ -49,42 +65,105 @@ public class MembershipSelector implements LdapEntrySelector {
       String groupsFilter,
       String usersFilter,
       String membersAttr,
+      int membersBatchSize,
       String... returnAttrs) {
     this.baseDn = baseDn;
     this.groupsFilter = groupsFilter;
     this.usersFilter = usersFilter;
     this.membersAttr = membersAttr;
+    this.membersBatchSize = membersBatchSize;
     this.returnAttrs = returnAttrs;
   }
 
   @Override
   public Iterable<LdapEntry> select(Connection connection) {
+    final String filter = parenthesize(usersFilter);
+    final Map<String, Member> members = new LinkedHashMap<>();
+    for (LdapEntry group : selectGroups(connection, membersAttr)) {
+      for (String dn : getMembers(group)) {
+        members.computeIfAbsent(DistinguishedName.normalize(dn), k -> new Member(dn, filter));
+      }
+    }
+    return newIterable(members.values(), connection);
+  }
+
+  /**
+   * Selects the members which entries were changed since the given mark and all the members of the
+   * groups which were changed since the given mark, as members may be added to the group without
+   * modification of their entries.
+   */
+  @Override
+  public Iterable<LdapEntry> selectChanged(
+      Connection connection, String changeAttr, String changedSince) {
+    final String allFilter = parenthesize(usersFilter);
+    final String changedFilter =
+        format(
+            "(&%s(%s>=%s))",
+            allFilter, changeAttr, DistinguishedName.escapeFilterValue(changedSince));
+    final Map<String, Member> members = new LinkedHashMap<>();
+    for (LdapEntry group : selectGroups(connection, membersAttr, changeAttr)) {
+      final LdapAttribute groupMark = group.getAttribute(changeAttr);
+      final boolean groupChanged =
+          groupMark == null || ChangeMarks.compare(groupMark.getStringValue(), changedSince) >= 0;
+      for (String dn : getMembers(group)) {
+        final Member member =
+            members.computeIfAbsent(
+                DistinguishedName.normalize(dn), k -> new Member(dn, changedFilter));
+        if (groupChanged) {
+          member.filter = allFilter;
+        }
+      }
+    }
+    return newIterable(members.values(), connection);
+  }
+
+  private Iterable<LdapEntry> newIterable(Collection<Member> members, Connection connection) {
+    if (membersBatchSize <= 1) {
+      return new RequestEachEntryIterable(members, connection, returnAttrs);
+    }
+    // group members by their parents and filters, so each batch is requested with a single search
+    final Map<String, MembersBatch> openBatches = new HashMap<>();
+    final List<MembersBatch> batches = new ArrayList<>();
+    for (Member member : members) {
+      final DistinguishedName dn = DistinguishedName.parse(member.dn);
+      if (dn == null) {
+        batches.add(new MembersBatch(member));
+        continue;
+      }
+      final String key = DistinguishedName.normalize(dn.getParent()) + '\n' + member.filter;
+      MembersBatch batch = openBatches.get(key);
+      if (batch == null || batch.members.size() == membersBatchSize) {
+        openBatches.put(key, batch = new MembersBatch(dn.getParent(), member.filter));
+        batches.add(batch);
+      }
+      batch.members.put(dn.getNormalized(), dn);
+    }
+    return new RequestBatchesIterable(batches, connection, returnAttrs);
+  }
+
+  private Collection<LdapEntry> selectGroups(Connection connection, String... returnAttrs) {
     final SearchRequest groupsSearch = new SearchRequest();
     groupsSearch.setBaseDn(baseDn);
     groupsSearch.setSearchFilter(new SearchFilter(groupsFilter));
     groupsSearch.setSearchScope(SUBTREE);
-    groupsSearch.setReturnAttributes(membersAttr);
+    groupsSearch.setReturnAttributes(returnAttrs);
     groupsSearch.setSearchEntryHandlers(new RangeEntryHandler());
     try {
       final Response<SearchResult> response = new SearchOperation(connection).execute(groupsSearch);
       if (response.getResultCode() != SUCCESS) {
         throw new SyncException("Couldn't get groups, result code is " + response.getResultCode());
       }
-      return new RequestEachEntryIterable(
-          response
-              .getResult()
-              .getEntries()
-              .stream()
-              .flatMap(entry -> entry.getAttribute(membersAttr).getStringValues().stream())
-              .collect(toSet()),
-          connection,
-          usersFilter,
-          returnAttrs);
+      return response.getResult().getEntries();
     } catch (LdapException x) {
       throw new SyncException(x.getLocalizedMessage(), x);
     }
   }
 
+  private Collection<String> getMembers(LdapEntry group) {
+    final LdapAttribute members = group.getAttribute(membersAttr);
+    return members == null ? Collections.emptyList() : members.getStringValues();
+  }
+
   @Override
   public String toString() {
     return "MembershipSelector{"
@@ -100,75 +179,216 @@ public class MembershipSelector implements LdapEntrySelector {
         + ", membersAttr='"
         + membersAttr
         + '\''
+        + ", membersBatchSize="
+        + membersBatchSize
         + ", returnAttrs="
         + Arrays.toString(returnAttrs)
         + '}';
   }
 
+  /** Group member along with the filter the member entry is requested with. */
+  private static class Member {
+    private final String dn;
+    private String filter;
+
+    private Member(String dn, String filter) {
+      this.dn = dn;
+      this.filter = filter;
+    }
+  }
+
+  /** Members requested with a single search, all of them have the same parent and filter. */
+  private static class MembersBatch {
+    private final String baseDn;
+    private final String filter;
+    private final SearchScope scope;
+    private final Map<String, DistinguishedName> members;
+
+    /** Creates a batch of members of the given parent entry. */
+    private MembersBatch(String parentDn, String filter) {
+      this.baseDn = parentDn;
+      this.filter = filter;
+      this.scope = ONELEVEL;
+      this.members = new LinkedHashMap<>();
+    }
+
+    /** Creates a batch of the single member which DN can't be matched by filter. */
+    private MembersBatch(Member member) {
+      this.baseDn = member.dn;
+      this.filter = member.filter;
+      this.scope = OBJECT;
+      this.members = Collections.emptyMap();
+    }
+
+    private SearchFilter getSearchFilter() {
+      if (scope == OBJECT) {
+        return new SearchFilter(filter);
+      }
+      final StringBuilder sb = new StringBuilder("(&").append(filter).append("(|");
+      for (DistinguishedName member : members.values()) {
+        sb.append(member.toRdnFilter());
+      }
+      return new SearchFilter(sb.append("))").toString());
+    }
+
+    /** Returns true if the entry found by this batch search is a member of this batch. */
+    private boolean contains(LdapEntry entry) {
+      return scope == OBJECT || members.containsKey(DistinguishedName.normalize(entry.getDn()));
+    }
+  }
+
   private static class RequestEachEntryIterable implements Iterable<LdapEntry> {
-    private final Set<String> dns;
+    private final Collection<Member> members;
     private final Connection connection;
-    private final SearchFilter usersFilter;
+    private final String[] returnAttrs;
 
     private RequestEachEntryIterable(
-        Set<String> dns, Connection connection, String usersFilter, String[] returnAttrs) {
-      this.dns = dns;
+        Collection<Member> members, Connection connection, String[] returnAttrs) {
+      this.members = members;
       this.connection = connection;
-      this.usersFilter = new SearchFilter(usersFilter);
       this.returnAttrs = returnAttrs;
     }
 
-    private final String[] returnAttrs;
-
     @Override
     public Iterator<LdapEntry> iterator() {
-      return new RequestEachEntryIterator(dns.iterator(), connection, usersFilter, returnAttrs);
+      return new RequestEachEntryIterator(members.iterator(), connection, returnAttrs);
     }
   }
 
+  /** Requests each member entry with its filter, skips members which don't match the filter. */
   private static class RequestEachEntryIterator implements Iterator<LdapEntry> {
 
-    private final Iterator<String> dnsIterator;
-    private final SearchFilter usersFilter;
+    private final Iterator<Member> membersIterator;
     private final String[] returnAttrs;
     private final SearchOperation searchOp;
 
+    private LdapEntry next;
+
     private RequestEachEntryIterator(
-        Iterator<String> dns,
-        Connection connection,
-        SearchFilter usersFilter,
-        String[] returnAttrs) {
-      this.dnsIterator = dns;
-      this.usersFilter = usersFilter;
+        Iterator<Member> membersIterator, Connection connection, String[] returnAttrs) {
+      this.membersIterator = membersIterator;
       this.returnAttrs = returnAttrs;
       this.searchOp = new SearchOperation(connection);
     }
 
     @Override
     public boolean hasNext() {
-      return dnsIterator.hasNext();
+      while (next == null && membersIterator.hasNext()) {
+        final Member member = membersIterator.next();
+        next =
+            search(searchOp, member.dn, new SearchFilter(member.filter), OBJECT, returnAttrs)
+                .getEntry();
+      }
+      return next != null;
     }
 
     @Override
     public LdapEntry next() {
-      final String dn = dnsIterator.next();
-      final SearchRequest request = new SearchRequest();
-      request.setBaseDn(dn);
-      request.setSearchFilter(usersFilter);
-      request.setSearchScope(OBJECT);
-      request.setReturnAttributes(returnAttrs);
-      request.setSearchEntryHandlers(new ObjectGuidHandler());
-      try {
-        final Response<SearchResult> response = searchOp.execute(request);
-        if (response.getResultCode() != SUCCESS) {
-          throw new SyncException(
-              format(
-                  "Couldn't get entry dn '%s', result code is '%s'", dn, response.getResultCode()));
+      if (!hasNext()) {
+        throw new NoSuchElementException();
+      }
+      final LdapEntry entry = next;
+      next = null;
+      return entry;
+    }
+  }
+
+  private static class RequestBatchesIterable implements Iterable<LdapEntry> {
+    private final List<MembersBatch> batches;
+    private final Connection connection;
+    private final String[] returnAttrs;
+
+    private RequestBatchesIterable(
+        List<MembersBatch> batches, Connection connection, String[] returnAttrs) {
+      this.batches = batches;
+      this.connection = connection;
+      this.returnAttrs = returnAttrs;
+    }
+
+    @Override
+    public Iterator<LdapEntry> iterator() {
+      return new RequestBatchesIterator(batches.iterator(), connection, returnAttrs);
+    }
+  }
+
+  /**
+   * Requests members batch by batch, skips members which don't match the filter and the entries
+   * which are found by batch search while they are not batch members.
+   */
+  private static class RequestBatchesIterator implements Iterator<LdapEntry> {
+
+    private final Iterator<MembersBatch> batchesIterator;
+    private final String[] returnAttrs;
+    private final SearchOperation searchOp;
+
+    private Iterator<LdapEntry> batchEntries;
+    private LdapEntry next;
+
+    private RequestBatchesIterator(
+        Iterator<MembersBatch> batchesIterator, Connection connection, String[] returnAttrs) {
+      this.batchesIterator = batchesIterator;
+      this.returnAttrs = returnAttrs;
+      this.searchOp = new SearchOperation(connection);
+      this.batchEntries = Collections.emptyIterator();
+    }
+
+    @Override
+    public boolean hasNext() {
+      while (next == null) {
+        if (batchEntries.hasNext()) {
+          next = batchEntries.next();
+        } else if (batchesIterator.hasNext()) {
+          final MembersBatch batch = batchesIterator.next();
+          final List<LdapEntry> found = new ArrayList<>();
+          for (LdapEntry entry :
+              search(searchOp, batch.baseDn, batch.getSearchFilter(), batch.scope, returnAttrs)
+                  .getEntries()) {
+            if (batch.contains(entry)) {
+              found.add(entry);
+            }
+          }
+          batchEntries = found.iterator();
+        } else {
+          return false;
         }
-        return response.getResult().getEntry();
-      } catch (LdapException x) {
-        throw new SyncException(x.getLocalizedMessage(), x);
       }
+      return true;
+    }
+
+    @Override
+    public LdapEntry next() {
+      if (!hasNext()) {
+        throw new NoSuchElementException();
+      }
+      final LdapEntry entry = next;
+      next = null;
+      return entry;
+    }
+  }
+
+  private static SearchResult search(
+      SearchOperation searchOp,
+      String baseDn,
+      SearchFilter filter,
+      SearchScope scope,
+      String[] returnAttrs) {
+    final SearchRequest request = new SearchRequest();
+    request.setBaseDn(baseDn);
+    request.setSearchFilter(filter);
+    request.setSearchScope(scope);
+    request.setReturnAttributes(returnAttrs);
+    request.setSearchEntryHandlers(new ObjectGuidHandler());
+    try {
+      final Response<SearchResult> response = searchOp.execute(request);
+      if (response.getResultCode() != SUCCESS) {
+        throw new SyncException(
+            format(
+                "Couldn't get entry dn '%s', result code is '%s'",
+                baseDn, response.getResultCode()));
+      }
+      return response.getResult();
+    } catch (LdapException x) {
+      throw new SyncException(x.getLocalizedMessage(), x);
     }
   }
 }
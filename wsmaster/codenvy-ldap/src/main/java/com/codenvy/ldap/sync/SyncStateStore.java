@@ -0,0 +1,77 @@
+/*
+ * Copyright (c) [2012] - [2017] Red Hat, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *   Red Hat, Inc. - initial API and implementation
+ */
+package com.codenvy.ldap.sync;
+
+import java.util.List;
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import org.eclipse.che.commons.annotation.Nullable;
+
+/**
+ * Keeps the state of ldap synchronization in the database, so incremental synchronization continues
+ * from the point where the previous one stopped, even after restart.
+ *
+ * @see LdapSynchronizer#syncChanged()
+ */
+@Singleton
+public class SyncStateStore {
+
+  static final String HIGH_WATER_MARK = "high_water_mark";
+  static final String LAST_FULL_SYNC_TIME = "last_full_sync_time";
+
+  private final DBHelper dbHelper;
+
+  @Inject
+  public SyncStateStore(DBHelper dbHelper) {
+    this.dbHelper = dbHelper;
+  }
+
+  /**
+   * Returns the greatest value of change tracking attribute seen by the last successful
+   * synchronization, or null if there was no such synchronization.
+   */
+  @Nullable
+  public String getHighWaterMark() {
+    return get(HIGH_WATER_MARK);
+  }
+
+  /** Returns the time of the last successful full synchronization, or 0 if there was no one. */
+  public long getLastFullSyncTime() {
+    final String value = get(LAST_FULL_SYNC_TIME);
+    return value == null ? 0 : Long.parseLong(value);
+  }
+
+  public void setHighWaterMark(String highWaterMark) {
+    set(HIGH_WATER_MARK, highWaterMark);
+  }
+
+  public void setLastFullSyncTime(long time) {
+    set(LAST_FULL_SYNC_TIME, Long.toString(time));
+  }
+
+  private String get(String key) {
+    final List result =
+        dbHelper.executeNativeQuery(
+            "SELECT state_value FROM codenvy_ldap_sync_state WHERE state_key = ?1", key);
+    return result.isEmpty() ? null : (String) result.get(0);
+  }
+
+  private void set(String key, String value) {
+    if (dbHelper.executeNativeUpdate(
+            "UPDATE codenvy_ldap_sync_state SET state_value = ?1 WHERE state_key = ?2", value, key)
+        == 0) {
+      dbHelper.executeNativeUpdate(
+          "INSERT INTO codenvy_ldap_sync_state (state_key, state_value) VALUES (?1, ?2)",
+          key,
+          value);
+    }
+  }
+}
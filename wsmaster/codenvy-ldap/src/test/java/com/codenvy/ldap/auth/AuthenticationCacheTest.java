@@ -0,0 +1,99 @@
+/*
+ * Copyright (c) [2012] - [2017] Red Hat, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *   Red Hat, Inc. - initial API and implementation
+ */
+package com.codenvy.ldap.auth;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+import org.testng.annotations.Test;
+
+/** Tests {@link AuthenticationCache}. */
+public class AuthenticationCacheTest {
+
+  @Test
+  public void returnsUserIdOfCachedAuthentication() {
+    final AuthenticationCache cache = new AuthenticationCache(60_000, 60_000, 10);
+
+    cache.putUserId("user", "password", "user123");
+
+    assertEquals(cache.getUserId("user", "password"), "user123");
+    assertEquals(cache.getHitCount(), 1);
+  }
+
+  @Test
+  public void doesNotReturnUserIdForDifferentCredentials() {
+    final AuthenticationCache cache = new AuthenticationCache(60_000, 60_000, 10);
+
+    cache.putUserId("user", "password", "user123");
+
+    assertNull(cache.getUserId("user", "wrong"));
+    assertNull(cache.getUserId("user2", "password"));
+    assertNull(cache.getUserId("userp", "assword"));
+    assertEquals(cache.getMissCount(), 3);
+  }
+
+  @Test
+  public void cachesFailuresForExactCredentials() {
+    final AuthenticationCache cache = new AuthenticationCache(60_000, 60_000, 10);
+
+    cache.putFailure("user", "wrong");
+
+    assertTrue(cache.isFailed("user", "wrong"));
+    assertFalse(cache.isFailed("user", "password"));
+    assertEquals(cache.getFailureHitCount(), 1);
+  }
+
+  @Test
+  public void successfulAuthenticationRemovesFailure() {
+    final AuthenticationCache cache = new AuthenticationCache(60_000, 60_000, 10);
+    cache.putFailure("user", "password");
+
+    cache.putUserId("user", "password", "user123");
+
+    assertFalse(cache.isFailed("user", "password"));
+  }
+
+  @Test
+  public void doesNotCacheWhenDisabled() {
+    final AuthenticationCache cache = new AuthenticationCache();
+
+    cache.putUserId("user", "password", "user123");
+    cache.putFailure("user", "wrong");
+
+    assertNull(cache.getUserId("user", "password"));
+    assertFalse(cache.isFailed("user", "wrong"));
+  }
+
+  @Test
+  public void expiresCachedAuthentications() throws Exception {
+    final AuthenticationCache cache = new AuthenticationCache(1, 1, 10);
+    cache.putUserId("user", "password", "user123");
+    cache.putFailure("user", "wrong");
+
+    Thread.sleep(10);
+
+    assertNull(cache.getUserId("user", "password"));
+    assertFalse(cache.isFailed("user", "wrong"));
+  }
+
+  @Test
+  public void boundsCacheSize() {
+    final AuthenticationCache cache = new AuthenticationCache(60_000, 60_000, 1);
+
+    cache.putUserId("user1", "password", "user1");
+    cache.putUserId("user2", "password", "user2");
+
+    assertNull(cache.getUserId("user1", "password"));
+    assertEquals(cache.getUserId("user2", "password"), "user2");
+  }
+}
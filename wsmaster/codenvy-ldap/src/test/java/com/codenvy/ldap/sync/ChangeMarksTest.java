@@ -0,0 +1,40 @@
+/*
+ * Copyright (c) [2012] - [2017] Red Hat, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *   Red Hat, Inc. - initial API and implementation
+ */
+package com.codenvy.ldap.sync;
+
+import static org.testng.Assert.assertEquals;
+
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+/** Tests {@link ChangeMarks}. */
+public class ChangeMarksTest {
+
+  @Test(dataProvider = "marks")
+  public void comparesMarks(String mark1, String mark2, int expected) {
+    assertEquals(Integer.signum(ChangeMarks.compare(mark1, mark2)), expected);
+    assertEquals(Integer.signum(ChangeMarks.compare(mark2, mark1)), -expected);
+  }
+
+  @DataProvider
+  public Object[][] marks() {
+    return new Object[][] {
+      {"20170101000000Z", "20170101000000Z", 0},
+      {"20170101000000Z", "20170101000000.0Z", 0},
+      {"20170101000001Z", "20170101000000Z", 1},
+      {"20170101000000.5Z", "20170101000000.45Z", 1},
+      {"20171231235959Z", "20180101000000Z", -1},
+      {"12345", "12345", 0},
+      {"99999", "100000", -1},
+      {"0100", "99", 1}
+    };
+  }
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright (c) [2012] - [2017] Red Hat, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *   Red Hat, Inc. - initial API and implementation
+ */
+package com.codenvy.ldap.sync;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNull;
+
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+/** Tests {@link DistinguishedName}. */
+public class DistinguishedNameTest {
+
+  @Test(dataProvider = "dns")
+  public void parsesDn(String dn, String parent, String rdnFilter, String normalized) {
+    final DistinguishedName parsed = DistinguishedName.parse(dn);
+
+    assertNotNull(parsed);
+    assertEquals(parsed.getParent(), parent);
+    assertEquals(parsed.toRdnFilter(), rdnFilter);
+    assertEquals(parsed.getNormalized(), normalized);
+    assertEquals(DistinguishedName.normalize(dn), normalized);
+  }
+
+  @DataProvider
+  public Object[][] dns() {
+    return new Object[][] {
+      {
+        "uid=user1,ou=people,dc=codenvy,dc=com",
+        "ou=people,dc=codenvy,dc=com",
+        "(uid=user1)",
+        "uid=user1,ou=people,dc=codenvy,dc=com"
+      },
+      {
+        "CN=John Smith , OU=People, DC=codenvy",
+        "OU=People, DC=codenvy",
+        "(CN=John Smith)",
+        "cn=john smith,ou=people,dc=codenvy"
+      },
+      {"cn=Smith\\, John,ou=people", "ou=people", "(cn=Smith, John)", "cn=smith\\, john,ou=people"},
+      {"cn=a\\2a\\28b\\29,ou=people", "ou=people", "(cn=a\\2a\\28b\\29)", "cn=a*(b),ou=people"},
+      {"cn=\\C3\\A9t\\C3\\A9,ou=people", "ou=people", "(cn=été)", "cn=été,ou=people"},
+      {"cn=trailing\\ ,ou=people", "ou=people", "(cn=trailing )", "cn=trailing ,ou=people"},
+      {"uid=u1+cn=User,ou=people", "ou=people", "(&(uid=u1)(cn=User))", "cn=user+uid=u1,ou=people"}
+    };
+  }
+
+  @Test(dataProvider = "notMatchableDns")
+  public void doesNotParseDnWhichCanNotBeMatchedByFilter(String dn) {
+    assertNull(DistinguishedName.parse(dn));
+  }
+
+  @DataProvider
+  public Object[][] notMatchableDns() {
+    return new Object[][] {
+      {"dc=com"}, {"cn=#04024869,ou=people"}, {"not a dn"}, {"cn=user,"}, {"cn=user\\"}
+    };
+  }
+
+  @Test
+  public void normalizesDnWhichCanNotBeParsed() {
+    assertEquals(DistinguishedName.normalize(" Not A DN "), "not a dn");
+  }
+
+  @Test
+  public void escapesFilterValue() {
+    assertEquals(DistinguishedName.escapeFilterValue("a*(b)\\c\0"), "a\\2a\\28b\\29\\5cc\\00");
+  }
+}
@@ -228,9 +228,13 @@ public class LdapSynchronizationFlowTest {
       bindConstant().annotatedWith(Names.named("ldap.sync.user.attr.id")).to("uid");
       bindConstant().annotatedWith(Names.named("ldap.sync.user.attr.name")).to("cn");
       bindConstant().annotatedWith(Names.named("ldap.sync.page.size")).to(10);
+      bindConstant().annotatedWith(Names.named("ldap.sync.group.members.batch_size")).to(10);
       bindConstant().annotatedWith(Names.named("ldap.sync.page.read_timeout_ms")).to(30_000L);
       bindConstant().annotatedWith(Names.named("ldap.sync.remove_if_missing")).to(true);
       bindConstant().annotatedWith(Names.named("ldap.sync.update_if_exists")).to(true);
+      bindConstant().annotatedWith(Names.named("ldap.sync.full_sync_period_ms")).to(0L);
+      bindConstant().annotatedWith(Names.named("ldap.sync.batch_size")).to(2);
+      bindConstant().annotatedWith(Names.named("ldap.sync.threads")).to(2);
       bindConstant().annotatedWith(Names.named("ldap.base_dn")).to(server.getBaseDn());
       bindConstant()
           .annotatedWith(Names.named("ldap.sync.user.filter"))
@@ -247,6 +251,9 @@ public class LdapSynchronizationFlowTest {
       bind(String.class)
           .annotatedWith(Names.named("ldap.sync.user.additional_dn"))
           .toProvider(Providers.of(null));
+      bind(String.class)
+          .annotatedWith(Names.named("ldap.sync.change_attr"))
+          .toProvider(Providers.of(null));
       @SuppressWarnings("unchecked") // all the pairs are (string, string) pairs
       final Pair<String, String>[] attributes =
           new Pair[] {
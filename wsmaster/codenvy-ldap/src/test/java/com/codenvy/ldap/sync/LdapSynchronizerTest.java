@@ -11,8 +11,10 @@
 package com.codenvy.ldap.sync;
 
 import static java.util.Arrays.asList;
+import static java.util.Collections.emptyMap;
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyBoolean;
+import static org.mockito.Matchers.anyLong;
 import static org.mockito.Matchers.anyObject;
 import static org.mockito.Matchers.anyString;
 import static org.mockito.Mockito.mock;
@@ -26,13 +28,16 @@ import com.codenvy.ldap.LdapUserIdNormalizer;
 import com.codenvy.ldap.sync.LdapSynchronizer.SyncResult;
 import com.google.common.collect.ImmutableMap;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
 import javax.persistence.EntityManager;
+import org.eclipse.che.api.core.ConflictException;
 import org.eclipse.che.api.core.NotFoundException;
+import org.eclipse.che.api.core.model.user.Profile;
 import org.eclipse.che.api.core.model.user.User;
 import org.eclipse.che.api.user.server.ProfileManager;
 import org.eclipse.che.api.user.server.UserManager;
@@ -74,6 +79,8 @@ public class LdapSynchronizerTest {
 
   @Mock private ProfileManager profileManager;
 
+  @Mock private SyncStateStore stateStore;
+
   private LdapSynchronizer synchronizer;
   private Set<String> existingIds;
 
@@ -96,12 +103,18 @@ public class LdapSynchronizerTest {
             new Pair[] {Pair.of("firstName", "givenName")},
             true,
             true,
-            userFinder);
+            userFinder,
+            null,
+            0,
+            stateStore,
+            2,
+            2);
 
     // mocking existing ids
     existingIds = new HashSet<>();
     when(userFinder.findIds()).thenReturn(existingIds);
     when(userFinder.extractId(any())).thenAnswer(inv -> ((User) inv.getArguments()[0]).getId());
+    mockBulkLookups(userFinder);
 
     // mocking connection
     when(connFactory.getConnection()).thenReturn(connection);
@@ -253,7 +266,12 @@ public class LdapSynchronizerTest {
             null,
             false, // <- don't update
             true,
-            userFinder);
+            userFinder,
+            null,
+            0,
+            stateStore,
+            2,
+            2);
     when(entrySelector.select(anyObject()))
         .thenReturn(asList(createUserEntry("user123"), createUserEntry("user234")));
     existingIds.add("user123");
@@ -288,6 +306,7 @@ public class LdapSynchronizerTest {
               return existingUser;
             });
     when(profileManager.getById(existingUser.getId())).thenReturn(mock(ProfileImpl.class));
+    mockBulkLookups(emailFinder);
 
     synchronizer =
         new LdapSynchronizer(
@@ -305,7 +324,12 @@ public class LdapSynchronizerTest {
             null,
             true,
             true,
-            emailFinder);
+            emailFinder,
+            null,
+            0,
+            stateStore,
+            2,
+            2);
 
     ArrayList<LdapEntry> entries = new ArrayList<>(2);
     entries.add(
@@ -336,6 +360,171 @@ public class LdapSynchronizerTest {
     assertEquals(user.getEmail(), existingUser.getEmail(), "linking attribute must be the same");
   }
 
+  @Test
+  public void synchronizesOnlyChangedEntriesIfHighWaterMarkIsKnown() throws Exception {
+    synchronizer = newIncrementalSynchronizer();
+    when(stateStore.getHighWaterMark()).thenReturn("20170101000000Z");
+    when(entrySelector.selectChanged(connection, "modifyTimestamp", "20170101000000Z"))
+        .thenReturn(
+            asList(
+                createUserEntry("user123", "20170102000000Z"),
+                createUserEntry("user234", "20170103000000Z"),
+                createUserEntry("user345", "20170101000000Z")));
+    when(userFinder.findUser(anyString()))
+        .thenAnswer(
+            inv -> {
+              final String id = inv.getArguments()[0].toString();
+              if (!id.equals("user123")) {
+                throw new NotFoundException("no user " + id);
+              }
+              return new UserMapper("uid", "cn", "mail").apply(createUserEntry(id));
+            });
+    when(profileManager.getById("user123"))
+        .thenReturn(new ProfileImpl("user123", ImmutableMap.of("firstName", "old")));
+
+    final SyncResult syncResult = synchronizer.syncChanged();
+
+    assertEquals(syncResult.getFetched(), 3);
+    assertEquals(syncResult.getCreated(), 2);
+    assertEquals(syncResult.getUpdated(), 1);
+    assertEquals(syncResult.getRemoved(), 0);
+    verify(userFinder, never()).findIds();
+    verify(entrySelector, never()).select(anyObject());
+    verify(stateStore).setHighWaterMark("20170103000000Z");
+    verify(stateStore, never()).setLastFullSyncTime(anyLong());
+  }
+
+  @Test
+  public void performsFullSynchronizationIfHighWaterMarkIsUnknown() throws Exception {
+    synchronizer = newIncrementalSynchronizer();
+    when(entrySelector.select(anyObject()))
+        .thenReturn(
+            asList(
+                createUserEntry("user123", "20170102000000.0Z"),
+                createUserEntry("user234", "20170102000000.5Z")));
+    existingIds.add("missed-in-selection");
+    when(userFinder.findUser("missed-in-selection"))
+        .thenReturn(new UserImpl("missed-in-selection", "email", "name"));
+
+    final SyncResult syncResult = synchronizer.syncChanged();
+
+    assertEquals(syncResult.getCreated(), 2);
+    assertEquals(syncResult.getRemoved(), 1);
+    verify(entrySelector, never()).selectChanged(any(), anyString(), anyString());
+    verify(stateStore).setHighWaterMark("20170102000000.5Z");
+    verify(stateStore).setLastFullSyncTime(anyLong());
+  }
+
+  @Test
+  public void doesNotChangeHighWaterMarkIfNothingChanged() throws Exception {
+    synchronizer = newIncrementalSynchronizer();
+    when(stateStore.getHighWaterMark()).thenReturn("20170101000000Z");
+    when(entrySelector.selectChanged(connection, "modifyTimestamp", "20170101000000Z"))
+        .thenReturn(Collections.emptyList());
+
+    final SyncResult syncResult = synchronizer.syncChanged();
+
+    assertEquals(syncResult.getFetched(), 0);
+    verify(stateStore, never()).setHighWaterMark(anyString());
+  }
+
+  @Test
+  public void persistsEntriesOneByOneIfBatchCanNotBePersisted() throws Exception {
+    when(entrySelector.select(anyObject()))
+        .thenReturn(
+            asList(
+                createUserEntry("user123"),
+                createUserEntry("user234"),
+                createUserEntry("user345")));
+    when(userManager.create(anyObject(), anyBoolean()))
+        .thenAnswer(
+            inv -> {
+              final User user = (User) inv.getArguments()[0];
+              if (user.getId().equals("user234")) {
+                throw new ConflictException("conflict " + user.getId());
+              }
+              return user;
+            });
+
+    final SyncResult syncResult = synchronizer.syncAll();
+
+    assertEquals(syncResult.getFetched(), 3);
+    assertEquals(syncResult.getProcessed(), 3);
+    assertEquals(syncResult.getCreated(), 2);
+    assertEquals(syncResult.getFailed(), 1);
+  }
+
+  @Test
+  public void findsExistingUsersAndProfilesOncePerBatch() throws Exception {
+    when(entrySelector.select(anyObject()))
+        .thenReturn(
+            asList(
+                createUserEntry("user123"),
+                createUserEntry("user234"),
+                createUserEntry("user345"),
+                createUserEntry("user456")));
+    final UserMapper mapper = new UserMapper("uid", "cn", "mail");
+    when(userFinder.findUser(any()))
+        .thenAnswer(inv -> mapper.apply(createUserEntry(inv.getArguments()[0].toString())));
+    when(profileManager.getById(any()))
+        .thenAnswer(inv -> new ProfileImpl(inv.getArguments()[0].toString(), emptyMap()));
+    existingIds.addAll(asList("user123", "user234", "user345", "user456"));
+
+    final SyncResult syncResult = synchronizer.syncAll();
+
+    assertEquals(syncResult.getUpdated(), 4);
+    verify(userFinder, times(2)).findUsers(any());
+    verify(userFinder, times(2)).findProfiles(any());
+  }
+
+  /** Makes bulk lookups use the single user lookups and the profile manager. */
+  private void mockBulkLookups(DBUserLinker linker) throws Exception {
+    when(linker.findUsers(any())).thenCallRealMethod();
+    when(linker.findProfiles(any()))
+        .thenAnswer(
+            inv -> {
+              final Map<String, Profile> profiles = new HashMap<>();
+              for (Object userId : (Collection<?>) inv.getArguments()[0]) {
+                final Profile profile = profileManager.getById(userId.toString());
+                if (profile != null) {
+                  profiles.put(userId.toString(), profile);
+                }
+              }
+              return profiles;
+            });
+  }
+
+  @SuppressWarnings("unchecked") // synchronizer generic array of string pairs
+  private LdapSynchronizer newIncrementalSynchronizer() {
+    return new LdapSynchronizer(
+        connFactory,
+        entrySelector,
+        userManager,
+        profileManager,
+        idNormalizer,
+        null,
+        0,
+        0,
+        "uid",
+        "cn",
+        "mail",
+        new Pair[] {Pair.of("firstName", "givenName")},
+        true,
+        true,
+        userFinder,
+        "modifyTimestamp",
+        86_400_000,
+        stateStore,
+        2,
+        2);
+  }
+
+  private static LdapEntry createUserEntry(String id, String modifyTimestamp) {
+    final LdapEntry entry = createUserEntry(id);
+    entry.addAttribute(new LdapAttribute("modifyTimestamp", modifyTimestamp));
+    return entry;
+  }
+
   private static LdapEntry createUserEntry(String id) {
     return createUserEntry(id, "name-" + id, "email" + id, "firstName-" + id);
   }
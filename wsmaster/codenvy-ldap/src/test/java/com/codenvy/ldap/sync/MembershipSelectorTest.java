@@ -26,6 +26,7 @@ import org.ldaptive.ConnectionFactory;
 import org.ldaptive.LdapEntry;
 import org.testng.annotations.AfterClass;
 import org.testng.annotations.BeforeClass;
+import org.testng.annotations.DataProvider;
 import org.testng.annotations.Test;
 
 /**
@@ -69,14 +70,20 @@ public class MembershipSelectorTest {
     server.shutdown();
   }
 
-  @Test
-  public void testMembershipSelection() throws Exception {
+  @DataProvider
+  public Object[][] membersBatchSizes() {
+    return new Object[][] {{1}, {30}, {1000}};
+  }
+
+  @Test(dataProvider = "membersBatchSizes")
+  public void testMembershipSelection(int membersBatchSize) throws Exception {
     final MembershipSelector selector =
         new MembershipSelector(
             server.getBaseDn(),
             "(objectClass=groupOfNames)",
             "(objectClass=inetOrgPerson)",
             "member",
+            membersBatchSize,
             "uid",
             "givenName");
     try (Connection conn = connFactory.getConnection()) {
@@ -0,0 +1,49 @@
+--
+--  [2012] - [2017] Codenvy, S.A.
+--  All Rights Reserved.
+--
+-- NOTICE:  All information contained herein is, and remains
+-- the property of Codenvy S.A. and its suppliers,
+-- if any.  The intellectual and technical concepts contained
+-- herein are proprietary to Codenvy S.A.
+-- and its suppliers and may be covered by U.S. and Foreign Patents,
+-- patents in process, and are protected by trade secret or copyright law.
+-- Dissemination of this information or reproduction of this material
+-- is strictly forbidden unless prior written permission is obtained
+-- from Codenvy S.A..
+--
+
+-- Access ticket ---------------------------------------------------------------
+CREATE TABLE codenvy_access_ticket (
+    access_token        VARCHAR(255)         NOT NULL,
+    user_id             VARCHAR(255)         NOT NULL,
+    auth_handler_type   VARCHAR(255)         NOT NULL,
+    creation_time       BIGINT               NOT NULL,
+
+    PRIMARY KEY (access_token)
+);
+-- indexes
+CREATE INDEX index_codenvy_access_ticket_creation_time ON codenvy_access_ticket (creation_time);
+--------------------------------------------------------------------------------
+
+-- Access ticket clients -------------------------------------------------------
+CREATE TABLE codenvy_access_ticket_client (
+    access_token        VARCHAR(255)         NOT NULL,
+    client_url          VARCHAR(255)         NOT NULL
+);
+-- indexes
+CREATE INDEX index_codenvy_access_ticket_client_access_token ON codenvy_access_ticket_client (access_token);
+-- constraints
+ALTER TABLE codenvy_access_ticket_client ADD CONSTRAINT fk_codenvy_access_ticket_client_access_token FOREIGN KEY (access_token) REFERENCES codenvy_access_ticket (access_token) ON DELETE CASCADE;
+--------------------------------------------------------------------------------
+
+-- Removed access ticket -------------------------------------------------------
+CREATE TABLE codenvy_removed_access_ticket (
+    access_token        VARCHAR(255)         NOT NULL,
+    removal_time        BIGINT               NOT NULL,
+
+    PRIMARY KEY (access_token)
+);
+-- indexes
+CREATE INDEX index_codenvy_removed_access_ticket_removal_time ON codenvy_removed_access_ticket (removal_time);
+--------------------------------------------------------------------------------
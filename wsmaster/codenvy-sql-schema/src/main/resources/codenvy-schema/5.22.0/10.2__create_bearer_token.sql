@@ -0,0 +1,37 @@
+--
+--  [2012] - [2017] Codenvy, S.A.
+--  All Rights Reserved.
+--
+-- NOTICE:  All information contained herein is, and remains
+-- the property of Codenvy S.A. and its suppliers,
+-- if any.  The intellectual and technical concepts contained
+-- herein are proprietary to Codenvy S.A.
+-- and its suppliers and may be covered by U.S. and Foreign Patents,
+-- patents in process, and are protected by trade secret or copyright law.
+-- Dissemination of this information or reproduction of this material
+-- is strictly forbidden unless prior written permission is obtained
+-- from Codenvy S.A..
+--
+
+-- Bearer token ----------------------------------------------------------------
+CREATE TABLE codenvy_bearer_token (
+    token               VARCHAR(255)         NOT NULL,
+    creation_time       BIGINT               NOT NULL,
+
+    PRIMARY KEY (token)
+);
+-- indexes
+CREATE INDEX index_codenvy_bearer_token_creation_time ON codenvy_bearer_token (creation_time);
+--------------------------------------------------------------------------------
+
+-- Bearer token payload --------------------------------------------------------
+CREATE TABLE codenvy_bearer_token_payload (
+    token               VARCHAR(255)         NOT NULL,
+    payload_name        VARCHAR(255)         NOT NULL,
+    payload_value       TEXT
+);
+-- indexes
+CREATE UNIQUE INDEX index_codenvy_bearer_token_payload_token_name ON codenvy_bearer_token_payload (token, payload_name);
+-- constraints
+ALTER TABLE codenvy_bearer_token_payload ADD CONSTRAINT fk_codenvy_bearer_token_payload_token FOREIGN KEY (token) REFERENCES codenvy_bearer_token (token) ON DELETE CASCADE;
+--------------------------------------------------------------------------------
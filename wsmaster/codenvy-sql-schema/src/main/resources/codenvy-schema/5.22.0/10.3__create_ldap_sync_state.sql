@@ -0,0 +1,23 @@
+--
+--  [2012] - [2017] Codenvy, S.A.
+--  All Rights Reserved.
+--
+-- NOTICE:  All information contained herein is, and remains
+-- the property of Codenvy S.A. and its suppliers,
+-- if any.  The intellectual and technical concepts contained
+-- herein are proprietary to Codenvy S.A.
+-- and its suppliers and may be covered by U.S. and Foreign Patents,
+-- patents in process, and are protected by trade secret or copyright law.
+-- Dissemination of this information or reproduction of this material
+-- is strictly forbidden unless prior written permission is obtained
+-- from Codenvy S.A..
+--
+
+-- Ldap synchronization state -------------------------------------------------
+CREATE TABLE codenvy_ldap_sync_state (
+    state_key      VARCHAR(255)    NOT NULL,
+    state_value    VARCHAR(255),
+
+    PRIMARY KEY (state_key)
+);
+--------------------------------------------------------------------------------
@@ -0,0 +1,26 @@
+--
+--  [2012] - [2017] Codenvy, S.A.
+--  All Rights Reserved.
+--
+-- NOTICE:  All information contained herein is, and remains
+-- the property of Codenvy S.A. and its suppliers,
+-- if any.  The intellectual and technical concepts contained
+-- herein are proprietary to Codenvy S.A.
+-- and its suppliers and may be covered by U.S. and Foreign Patents,
+-- patents in process, and are protected by trade secret or copyright law.
+-- Dissemination of this information or reproduction of this material
+-- is strictly forbidden unless prior written permission is obtained
+-- from Codenvy S.A..
+--
+
+-- Audit user state ------------------------------------------------------------
+CREATE TABLE codenvy_audit_user_state (
+    user_id             VARCHAR(255)         NOT NULL,
+    fingerprint         VARCHAR(255),
+    change_time         BIGINT               NOT NULL,
+
+    PRIMARY KEY (user_id)
+);
+-- indexes
+CREATE INDEX index_codenvy_audit_user_state_change_time ON codenvy_audit_user_state (change_time);
+--------------------------------------------------------------------------------